@@ -34,7 +34,6 @@ import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupCallback;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
-import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.util.DefaultLockRegistry;
 import org.springframework.integration.util.LockRegistry;
@@ -432,10 +431,16 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		return false;
 	}
 
-	private static class SequenceAwareMessageGroup extends SimpleMessageGroup {
+	/**
+	 * Wraps the group held by the store without copying it, so that stores returning lazily loaded groups
+	 * only read the messages when a duplicate sequence number has to be checked.
+	 */
+	private static class SequenceAwareMessageGroup implements MessageGroup {
 
-		public SequenceAwareMessageGroup(MessageGroup messageGroup) {
-			super(messageGroup);
+		private final MessageGroup delegate;
+
+		public SequenceAwareMessageGroup(MessageGroup delegate) {
+			this.delegate = delegate;
 		}
 
 		/**
@@ -443,7 +448,6 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		 * its sequence id. This can be helpful to avoid ending up with sequences larger than their required sequence size
 		 * or sequences that are missing certain sequence numbers.
 		 */
-		@Override
 		public boolean canAdd(Message<?> message) {
 			if (this.size() == 0) {
 				return true;
@@ -470,5 +474,50 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 			}
 			return false;
 		}
+
+		public Collection<Message<?>> getMessages() {
+			return this.delegate.getMessages();
+		}
+
+		public Object getGroupId() {
+			return this.delegate.getGroupId();
+		}
+
+		public int getLastReleasedMessageSequenceNumber() {
+			return this.delegate.getLastReleasedMessageSequenceNumber();
+		}
+
+		public boolean isComplete() {
+			return this.delegate.isComplete();
+		}
+
+		public void complete() {
+			this.delegate.complete();
+		}
+
+		public int getSequenceSize() {
+			return this.delegate.getSequenceSize();
+		}
+
+		public int size() {
+			return this.delegate.size();
+		}
+
+		public Message<?> getOne() {
+			return this.delegate.getOne();
+		}
+
+		public long getTimestamp() {
+			return this.delegate.getTimestamp();
+		}
+
+		public long getLastModified() {
+			return this.delegate.getLastModified();
+		}
+
+		@Override
+		public String toString() {
+			return this.delegate.toString();
+		}
 	}
 }
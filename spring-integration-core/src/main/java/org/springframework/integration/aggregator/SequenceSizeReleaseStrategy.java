@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,6 @@
 package org.springframework.integration.aggregator;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -67,14 +66,14 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 
 		boolean canRelease = false;
 		
-		Collection<Message<?>> messages = messageGroup.getMessages();
-		
-		if (releasePartialSequences && !messages.isEmpty()) {
+		int size = messageGroup.size();
+
+		if (releasePartialSequences && size > 0) {
 			
 			if (logger.isTraceEnabled()) {
 				logger.trace("Considering partial release of group [" + messageGroup + "]");
 			}
-			List<Message<?>> sorted = new ArrayList<Message<?>>(messages);
+			List<Message<?>> sorted = new ArrayList<Message<?>>(messageGroup.getMessages());
 			Collections.sort(sorted, comparator);
 			
 			int nextSequenceNumber = sorted.get(0).getHeaders().getSequenceNumber();
@@ -85,13 +84,12 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 			}	
 		}
 		else {
-			int size = messages.size();
-			
 			if (size == 0){
 				canRelease = true;
 			}
 			else {
-				int sequenceSize = messageGroup.getOne().getHeaders().getSequenceSize();
+				// the group may be able to provide the sequence size without loading its messages
+				int sequenceSize = messageGroup.getSequenceSize();
 				// If there is no sequence then it must be incomplete....
 				if (sequenceSize == size){
 					canRelease = true;
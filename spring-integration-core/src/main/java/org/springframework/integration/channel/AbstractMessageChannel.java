@@ -16,9 +16,17 @@
 
 package org.springframework.integration.channel;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -50,8 +58,21 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 
 	private volatile boolean shouldTrack = false;
 
+	/**
+	 * Upper bound for the number of payload types whose datatype resolution is cached.
+	 */
+	private static final int MAX_DATATYPE_CACHE_SIZE = 256;
+
 	private volatile Class<?>[] datatypes = new Class<?>[] { Object.class };
 
+	private volatile boolean acceptsAnyDatatype = true;
+
+	/**
+	 * Payload type to the datatype it must be converted to; payload types
+	 * that are accepted as is map to themselves.
+	 */
+	private final Map<Class<?>, Class<?>> datatypeCache = new ConcurrentHashMap<Class<?>, Class<?>>();
+
 	private final ChannelInterceptorList interceptors = new ChannelInterceptorList();
 
 
@@ -76,6 +97,14 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 	public void setDatatypes(Class<?>... datatypes) {
 		this.datatypes = (datatypes != null && datatypes.length > 0)
 				? datatypes : new Class<?>[] { Object.class };
+		boolean acceptsAnyDatatype = false;
+		for (Class<?> datatype : this.datatypes) {
+			if (Object.class.equals(datatype)) {
+				acceptsAnyDatatype = true;
+			}
+		}
+		this.acceptsAnyDatatype = acceptsAnyDatatype;
+		this.datatypeCache.clear();
 	}
 
 	/**
@@ -105,6 +134,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 	 */
 	public void setConversionService(ConversionService conversionService) {
 		super.setConversionService(conversionService);
+		this.datatypeCache.clear();
 	}
 
 	/**
@@ -168,26 +198,52 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 	}
 
 	private Message<?> convertPayloadIfNecessary(Message<?> message) {
+		if (this.acceptsAnyDatatype) {
+			return message;
+		}
+		Class<?> payloadType = message.getPayload().getClass();
+		Class<?> datatype = this.datatypeCache.get(payloadType);
+		if (datatype == null) {
+			datatype = this.resolveDatatype(payloadType);
+			if (datatype != null && this.datatypeCache.size() < MAX_DATATYPE_CACHE_SIZE) {
+				this.datatypeCache.put(payloadType, datatype);
+			}
+		}
+		if (datatype == payloadType) {
+			return message;
+		}
+		if (datatype != null) {
+			Object convertedPayload = this.getConversionService().convert(message.getPayload(), datatype);
+			return MessageBuilder.withPayload(convertedPayload).copyHeaders(message.getHeaders()).build();
+		}
+		throw new MessageDeliveryException(message, "Channel '" + this.getComponentName() +
+				"' expected one of the following datataypes [" + 
+				StringUtils.arrayToCommaDelimitedString(this.datatypes) + 
+				"], but received [" + payloadType + "]");
+	}
+
+	/**
+	 * Determine the datatype a payload of the given type is to be converted to, the
+	 * payload type itself if it matches one of the datatypes already, or
+	 * <code>null</code> if it can not be converted to any of them.
+	 */
+	private Class<?> resolveDatatype(Class<?> payloadType) {
 		// first pass checks if the payload type already matches any of the datatypes
 		for (Class<?> datatype : this.datatypes) {
-			if (datatype.isAssignableFrom(message.getPayload().getClass())) {
-				return message;
+			if (datatype.isAssignableFrom(payloadType)) {
+				return payloadType;
 			}
 		}
 		// second pass applies conversion if possible, attempting datatypes in order
 		ConversionService conversionService = this.getConversionService();
 		if (conversionService != null) {
 			for (Class<?> datatype : this.datatypes) {
-				if (conversionService.canConvert(message.getPayload().getClass(), datatype)) {
-					Object convertedPayload = conversionService.convert(message.getPayload(), datatype);
-					return MessageBuilder.withPayload(convertedPayload).copyHeaders(message.getHeaders()).build();
+				if (conversionService.canConvert(payloadType, datatype)) {
+					return datatype;
 				}
 			}
 		}
-		throw new MessageDeliveryException(message, "Channel '" + this.getComponentName() +
-				"' expected one of the following datataypes [" + 
-				StringUtils.arrayToCommaDelimitedString(this.datatypes) + 
-				"], but received [" + message.getPayload().getClass() + "]");
+		return null;
 	}
 
 	/**
@@ -202,42 +258,70 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 
 	/**
 	 * A convenience wrapper class for the list of ChannelInterceptors.
+	 * <p/>
+	 * The interceptors are held in an array snapshot that every modification of
+	 * the list (including modifications made directly on the underlying list)
+	 * replaces, and that the interception methods iterate over; channels without interceptors return right away and
+	 * a single interceptor is invoked without any iteration.
 	 */
 	protected class ChannelInterceptorList {
 
-		private final List<ChannelInterceptor> interceptors = new CopyOnWriteArrayList<ChannelInterceptor>();
+		private final SnapshotList interceptors = new SnapshotList();
+
+		private volatile ChannelInterceptor[] snapshot = new ChannelInterceptor[0];
 
 
 		public boolean set(List<ChannelInterceptor> interceptors) {
-			synchronized (this.interceptors) {
-				this.interceptors.clear();
-				return this.interceptors.addAll(interceptors);
-			}
+			return this.interceptors.setAll(interceptors);
 		}
 
 		public boolean add(ChannelInterceptor interceptor) {
 			return this.interceptors.add(interceptor);
 		}
 
+		/**
+		 * @return the number of interceptors.
+		 */
+		public int getSize() {
+			return this.snapshot.length;
+		}
+
 		public Message<?> preSend(Message<?> message, MessageChannel channel) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("preSend on channel '" + channel + "', message: " + message);
 			}
-			for (ChannelInterceptor interceptor : interceptors) {
-				message = interceptor.preSend(message, channel);
-				if (message == null) {
-					return null;
-				}
+			ChannelInterceptor[] interceptors = this.snapshot;
+			switch (interceptors.length) {
+				case 0:
+					return message;
+				case 1:
+					return interceptors[0].preSend(message, channel);
+				default:
+					for (ChannelInterceptor interceptor : interceptors) {
+						message = interceptor.preSend(message, channel);
+						if (message == null) {
+							return null;
+						}
+					}
+					return message;
 			}
-			return message;
 		}
 
 		public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("postSend (sent=" + sent + ") on channel '" + channel + "', message: " + message);
 			}
-			for (ChannelInterceptor interceptor : interceptors) {
-				interceptor.postSend(message, channel, sent);
+			ChannelInterceptor[] interceptors = this.snapshot;
+			switch (interceptors.length) {
+				case 0:
+					return;
+				case 1:
+					interceptors[0].postSend(message, channel, sent);
+					return;
+				default:
+					for (ChannelInterceptor interceptor : interceptors) {
+						interceptor.postSend(message, channel, sent);
+					}
 			}
 		}
 
@@ -245,12 +329,20 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 			if (logger.isTraceEnabled()) {
 				logger.trace("preReceive on channel '" + channel + "'");
 			}
-			for (ChannelInterceptor interceptor : interceptors) {
-				if (!interceptor.preReceive(channel)) {
-					return false;
-				}
+			ChannelInterceptor[] interceptors = this.snapshot;
+			switch (interceptors.length) {
+				case 0:
+					return true;
+				case 1:
+					return interceptors[0].preReceive(channel);
+				default:
+					for (ChannelInterceptor interceptor : interceptors) {
+						if (!interceptor.preReceive(channel)) {
+							return false;
+						}
+					}
+					return true;
 			}
-			return true;
 		}
 
 		public Message<?> postReceive(Message<?> message, MessageChannel channel) {
@@ -260,13 +352,175 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport im
 			else if (logger.isTraceEnabled()) {
 				logger.trace("postReceive on channel '" + channel + "', message is null");
 			}
-			for (ChannelInterceptor interceptor : interceptors) {
-				message = interceptor.postReceive(message, channel);
-				if (message == null) {
-					return null;
+			ChannelInterceptor[] interceptors = this.snapshot;
+			switch (interceptors.length) {
+				case 0:
+					return message;
+				case 1:
+					return interceptors[0].postReceive(message, channel);
+				default:
+					for (ChannelInterceptor interceptor : interceptors) {
+						message = interceptor.postReceive(message, channel);
+						if (message == null) {
+							return null;
+						}
+					}
+					return message;
+			}
+		}
+
+
+		/**
+		 * The interceptor list; it may also be modified directly, e.g. by the
+		 * {@link org.springframework.integration.channel.interceptor.GlobalChannelInterceptorBeanPostProcessor}.
+		 * Its content is the snapshot itself: each modification copies the snapshot
+		 * and publishes the copy while holding the list's monitor, so the snapshot
+		 * always reflects the latest modification. Views and bulk operations inherited
+		 * from {@link AbstractList} ({@link #subList(int, int)}, iterator removal,
+		 * sorting) all modify the list through these methods.
+		 */
+		private class SnapshotList extends AbstractList<ChannelInterceptor> implements RandomAccess {
+
+			@Override
+			public ChannelInterceptor get(int index) {
+				return snapshot[index];
+			}
+
+			@Override
+			public int size() {
+				return snapshot.length;
+			}
+
+			@Override
+			public synchronized ChannelInterceptor set(int index, ChannelInterceptor interceptor) {
+				ChannelInterceptor[] interceptors = snapshot.clone();
+				ChannelInterceptor previous = interceptors[index];
+				interceptors[index] = interceptor;
+				snapshot = interceptors;
+				return previous;
+			}
+
+			@Override
+			public synchronized boolean add(ChannelInterceptor interceptor) {
+				this.add(snapshot.length, interceptor);
+				return true;
+			}
+
+			@Override
+			public synchronized void add(int index, ChannelInterceptor interceptor) {
+				ChannelInterceptor[] current = snapshot;
+				if (index < 0 || index > current.length) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
 				}
+				ChannelInterceptor[] interceptors = new ChannelInterceptor[current.length + 1];
+				System.arraycopy(current, 0, interceptors, 0, index);
+				interceptors[index] = interceptor;
+				System.arraycopy(current, index, interceptors, index + 1, current.length - index);
+				this.modCount++;
+				snapshot = interceptors;
+			}
+
+			@Override
+			public synchronized ChannelInterceptor remove(int index) {
+				ChannelInterceptor[] current = snapshot;
+				ChannelInterceptor removed = current[index];
+				ChannelInterceptor[] interceptors = new ChannelInterceptor[current.length - 1];
+				System.arraycopy(current, 0, interceptors, 0, index);
+				System.arraycopy(current, index + 1, interceptors, index, current.length - index - 1);
+				this.modCount++;
+				snapshot = interceptors;
+				return removed;
+			}
+
+			@Override
+			public synchronized boolean remove(Object interceptor) {
+				ChannelInterceptor[] current = snapshot;
+				for (int i = 0; i < current.length; i++) {
+					if (interceptor == null ? current[i] == null : interceptor.equals(current[i])) {
+						this.remove(i);
+						return true;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public synchronized boolean addAll(Collection<? extends ChannelInterceptor> interceptors) {
+				if (interceptors.isEmpty()) {
+					return false;
+				}
+				ChannelInterceptor[] current = snapshot;
+				ChannelInterceptor[] added = interceptors.toArray(new ChannelInterceptor[interceptors.size()]);
+				ChannelInterceptor[] merged = new ChannelInterceptor[current.length + added.length];
+				System.arraycopy(current, 0, merged, 0, current.length);
+				System.arraycopy(added, 0, merged, current.length, added.length);
+				this.modCount++;
+				snapshot = merged;
+				return true;
+			}
+
+			@Override
+			public synchronized void clear() {
+				this.modCount++;
+				snapshot = new ChannelInterceptor[0];
+			}
+
+			/**
+			 * Replace all interceptors with a single publication of the snapshot.
+			 */
+			synchronized boolean setAll(Collection<? extends ChannelInterceptor> interceptors) {
+				this.modCount++;
+				snapshot = interceptors.toArray(new ChannelInterceptor[interceptors.size()]);
+				return !interceptors.isEmpty();
+			}
+
+			/**
+			 * Sort the interceptors with a single publication of the snapshot (this
+			 * replaces the element-wise default of {@code List.sort} on Java 8).
+			 */
+			public synchronized void sort(Comparator<? super ChannelInterceptor> comparator) {
+				ChannelInterceptor[] interceptors = snapshot.clone();
+				Arrays.sort(interceptors, comparator);
+				this.modCount++;
+				snapshot = interceptors;
+			}
+
+			/**
+			 * Iterates over the snapshot taken when the iterator is created, like a
+			 * {@link java.util.concurrent.CopyOnWriteArrayList} iterator, but supports
+			 * removal.
+			 */
+			@Override
+			public Iterator<ChannelInterceptor> iterator() {
+				final ChannelInterceptor[] interceptors = snapshot;
+				return new Iterator<ChannelInterceptor>() {
+
+					private int next;
+
+					private ChannelInterceptor last;
+
+					private boolean removable;
+
+					public boolean hasNext() {
+						return this.next < interceptors.length;
+					}
+
+					public ChannelInterceptor next() {
+						if (!this.hasNext()) {
+							throw new NoSuchElementException();
+						}
+						this.last = interceptors[this.next++];
+						this.removable = true;
+						return this.last;
+					}
+
+					public void remove() {
+						Assert.state(this.removable, "next() has not been called, or remove() has already been called");
+						this.removable = false;
+						SnapshotList.this.remove(this.last);
+					}
+				};
 			}
-			return message;
 		}
 	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.integration.channel.interceptor;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.Lifecycle;
@@ -31,6 +33,10 @@ import org.springframework.util.Assert;
 /**
  * A {@link ChannelInterceptor} that publishes a copy of the intercepted message
  * to a secondary target while still sending the original message to the main channel.
+ * <p/>
+ * On busy channels the tap may be restricted to a sample of the messages, either
+ * every n-th accepted message ({@link #setSampleRate(int)}) and/or at most a given
+ * number of messages per second ({@link #setMaxMessagesPerSecond(int)}).
  * 
  * @author Mark Fisher
  */
@@ -47,6 +53,20 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 
 	private volatile boolean running = true;
 
+	private volatile int sampleRate = 1;
+
+	private volatile int maxMessagesPerSecond = 0;
+
+	private final AtomicLong acceptedCount = new AtomicLong();
+
+	private final AtomicLong tappedCount = new AtomicLong();
+
+	private final Object rateMonitor = new Object();
+
+	private long currentSecond;
+
+	private int sentInCurrentSecond;
+
 
 	/**
 	 * Create a new wire tap with <em>no</em> {@link MessageSelector}.
@@ -80,6 +100,33 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 		this.timeout = timeout;
 	}
 
+	/**
+	 * Specify that only every n-th message accepted by the selector is sent
+	 * to the intercepting target. Default is 1 (every message).
+	 */
+	public void setSampleRate(int sampleRate) {
+		Assert.isTrue(sampleRate > 0, "sampleRate must be positive");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Specify the maximum number of messages sent to the intercepting target
+	 * per second; further messages within the same second are not tapped.
+	 * Default is 0 (no limit).
+	 */
+	public void setMaxMessagesPerSecond(int maxMessagesPerSecond) {
+		Assert.isTrue(maxMessagesPerSecond >= 0, "maxMessagesPerSecond must not be negative");
+		this.maxMessagesPerSecond = maxMessagesPerSecond;
+	}
+
+	/**
+	 * Return the number of messages successfully sent to the intercepting target.
+	 */
+	@ManagedAttribute
+	public long getTappedCount() {
+		return this.tappedCount.get();
+	}
+
 	/**
 	 * Check whether the wire tap is currently running.
 	 */
@@ -117,10 +164,22 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 			}
 			return message;
 		}
-		if (this.running && (this.selector == null || this.selector.accept(message))) {
-			boolean sent = (this.timeout >= 0)
-					? this.channel.send(message, this.timeout)
-					: this.channel.send(message);
+		long second = System.currentTimeMillis() / 1000;
+		if (this.running && (this.selector == null || this.selector.accept(message)) && this.sample(second)) {
+			boolean sent = false;
+			try {
+				sent = (this.timeout >= 0)
+						? this.channel.send(message, this.timeout)
+						: this.channel.send(message);
+			}
+			finally {
+				if (sent) {
+					this.tappedCount.incrementAndGet();
+				}
+				else {
+					this.unsample(second);
+				}
+			}
 			if (!sent && logger.isWarnEnabled()) {
 				logger.warn("failed to send message to WireTap channel '" + this.channel + "'");
 			}
@@ -128,4 +187,38 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 		return message;
 	}
 
+	private boolean sample(long second) {
+		int sampleRate = this.sampleRate;
+		if (sampleRate > 1 && this.acceptedCount.getAndIncrement() % sampleRate != 0) {
+			return false;
+		}
+		int maxMessagesPerSecond = this.maxMessagesPerSecond;
+		if (maxMessagesPerSecond > 0) {
+			synchronized (this.rateMonitor) {
+				if (second != this.currentSecond) {
+					this.currentSecond = second;
+					this.sentInCurrentSecond = 0;
+				}
+				if (this.sentInCurrentSecond >= maxMessagesPerSecond) {
+					return false;
+				}
+				this.sentInCurrentSecond++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A message that could not be sent does not use up the rate of its second.
+	 */
+	private void unsample(long second) {
+		if (this.maxMessagesPerSecond > 0) {
+			synchronized (this.rateMonitor) {
+				if (second == this.currentSecond && this.sentInCurrentSecond > 0) {
+					this.sentInCurrentSecond--;
+				}
+			}
+		}
+	}
+
 }
@@ -20,6 +20,8 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aopalliance.aop.Advice;
 import org.springframework.aop.framework.ProxyFactory;
@@ -30,7 +32,9 @@ import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.scheduling.AdaptivePollingTrigger;
 import org.springframework.integration.scheduling.PollerMetadata;
+import org.springframework.integration.scheduling.SharedPollerTaskExecutor;
 import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
 import org.springframework.integration.util.ErrorHandlingTaskExecutor;
 import org.springframework.scheduling.Trigger;
@@ -49,6 +53,10 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 	private volatile Executor taskExecutor = new SyncTaskExecutor();
 
+	private volatile SharedPollerTaskExecutor sharedPollerTaskExecutor;
+
+	private volatile boolean synchronousPolling = true;
+
 	private volatile ErrorHandler errorHandler;
 
 	private volatile Trigger trigger = new PeriodicTrigger(10);
@@ -67,6 +75,12 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 	private final Object initializationMonitor = new Object();
 
+	private final AtomicLong pollCount = new AtomicLong();
+
+	private final AtomicLong emptyPollCount = new AtomicLong();
+
+	private final AtomicLong polledMessageCount = new AtomicLong();
+
 	public AbstractPollingEndpoint() {
 		this.setPhase(Integer.MAX_VALUE);
 	}
@@ -85,6 +99,9 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 	public void setTaskExecutor(Executor taskExecutor) {
 		this.taskExecutor = (taskExecutor != null ? taskExecutor : new SyncTaskExecutor());
+		this.sharedPollerTaskExecutor = (taskExecutor instanceof SharedPollerTaskExecutor)
+				? (SharedPollerTaskExecutor) taskExecutor : null;
+		this.synchronousPolling = (taskExecutor == null || taskExecutor instanceof SyncTaskExecutor);
 	}
 
 	public void setTrigger(Trigger trigger) {
@@ -107,6 +124,36 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 		this.beanClassLoader = classLoader;
 	}
 
+	/**
+	 * @return the number of polls performed since this endpoint was created.
+	 */
+	public long getPollCount() {
+		return this.pollCount.get();
+	}
+
+	/**
+	 * @return the number of polls that did not return any message.
+	 */
+	public long getEmptyPollCount() {
+		return this.emptyPollCount.get();
+	}
+
+	/**
+	 * @return the number of messages received by all polls.
+	 */
+	public long getPolledMessageCount() {
+		return this.polledMessageCount.get();
+	}
+
+	/**
+	 * @return the period, in milliseconds, that currently applies between polls
+	 * when an {@link AdaptivePollingTrigger} is used, or -1 for any other trigger.
+	 */
+	public long getCurrentPollPeriod() {
+		Trigger trigger = this.trigger;
+		return (trigger instanceof AdaptivePollingTrigger) ? ((AdaptivePollingTrigger) trigger).getCurrentPeriod() : -1;
+	}
+
 	@Override
 	protected void onInit() {
 		synchronized (this.initializationMonitor) {
@@ -114,6 +161,10 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 				return;
 			}
 			Assert.notNull(this.trigger, "Trigger is required");
+			if (this.trigger instanceof AdaptivePollingTrigger) {
+				// adaptive triggers keep per-endpoint state
+				this.trigger = ((AdaptivePollingTrigger) this.trigger).copy();
+			}
 			Executor providedExecutor = this.taskExecutor;
 			if (providedExecutor != null) {
 				this.taskExecutor = providedExecutor;
@@ -222,16 +273,56 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 		private final Callable<Boolean> pollingTask;
 
+		private final AtomicBoolean pollInProgress = new AtomicBoolean();
+
 
 		public Poller(Callable<Boolean> pollingTask) {
 			this.pollingTask = pollingTask;
 		}
 
 		public void run() {
-			taskExecutor.execute(new Runnable() {
-				public void run() {
-					int count = 0;
-					while (initialized && (maxMessagesPerPoll <= 0 || count < maxMessagesPerPoll)) {
+			if (sharedPollerTaskExecutor != null && !this.pollInProgress.compareAndSet(false, true)) {
+				// the shared workers are still busy with (or yet to start) the previous poll
+				return;
+			}
+			this.execute(new Poll(0));
+		}
+
+		private void execute(Poll poll) {
+			try {
+				taskExecutor.execute(poll);
+			}
+			catch (RuntimeException e) {
+				this.pollInProgress.set(false);
+				throw e;
+			}
+		}
+
+
+		/**
+		 * A single poll; when a {@link SharedPollerTaskExecutor} is used, a poll that
+		 * has received its quantum of messages continues as a new task, so that other
+		 * endpoints get their turn in between.
+		 */
+		private class Poll implements Runnable {
+
+			private final long previousCount;
+
+			public Poll(long previousCount) {
+				this.previousCount = previousCount;
+			}
+
+			public void run() {
+				SharedPollerTaskExecutor sharedExecutor = sharedPollerTaskExecutor;
+				int quantum = (sharedExecutor != null) ? sharedExecutor.getQuantum() : -1;
+				int count = 0;
+				boolean yielded = false;
+				try {
+					while (initialized && (maxMessagesPerPoll <= 0 || this.previousCount + count < maxMessagesPerPoll)) {
+						if (quantum > 0 && count >= quantum) {
+							yielded = true;
+							break;
+						}
 						try {
 							if (!pollingTask.call()) {
 								break;
@@ -248,7 +339,45 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 						}
 					}
 				}
-			});
+				finally {
+					if (!yielded) {
+						pollInProgress.set(false);
+						pollCompleted(this.previousCount + count);
+					}
+				}
+				if (yielded) {
+					try {
+						execute(new Poll(this.previousCount + count));
+					}
+					catch (RuntimeException e) {
+						// nobody is left to complete this poll; end it with what has been received so far
+						logger.error("Failed to continue the poll of endpoint '" + getComponentName()
+								+ "' after receiving " + (this.previousCount + count) + " messages", e);
+						pollCompleted(this.previousCount + count);
+					}
+				}
+			}
+		}
+	}
+
+	private void pollCompleted(long count) {
+		this.pollCount.incrementAndGet();
+		if (count == 0) {
+			this.emptyPollCount.incrementAndGet();
+		}
+		else {
+			this.polledMessageCount.addAndGet(count);
+		}
+		Trigger trigger = this.trigger;
+		if (trigger instanceof AdaptivePollingTrigger) {
+			/*
+			 * With an asynchronous task executor, the scheduler computes the next execution
+			 * time as soon as the poll has been submitted, i.e. before this outcome is known;
+			 * draining immediately would then make it fire again and again while the poll runs.
+			 */
+			boolean limitReached = this.synchronousPolling
+					&& this.maxMessagesPerPoll > 0 && count >= this.maxMessagesPerPoll;
+			((AdaptivePollingTrigger) trigger).pollCompleted(count, limitReached);
 		}
 	}
 
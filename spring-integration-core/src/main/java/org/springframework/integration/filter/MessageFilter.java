@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageRejectedException;
 import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.integration.handler.PayloadOnlyMessageHandler;
 import org.springframework.util.Assert;
 
 /**
@@ -36,7 +37,7 @@ import org.springframework.util.Assert;
  * @author Mark Fisher
  * @author Oleg Zhurakousky
  */
-public class MessageFilter extends AbstractReplyProducingMessageHandler {
+public class MessageFilter extends AbstractReplyProducingMessageHandler implements PayloadOnlyMessageHandler {
 
 	private final MessageSelector selector;
 
@@ -117,4 +118,17 @@ public class MessageFilter extends AbstractReplyProducingMessageHandler {
 		return false;
 	}
 
+	/**
+	 * A filter qualifies as long as rejected Messages are simply dropped.
+	 */
+	public boolean isPayloadOnly() {
+		return this.discardChannel == null && !this.throwExceptionOnRejection
+				&& !this.hasAdviceChain() && !this.isShouldTrack();
+	}
+
+	public Object handlePayloadOnly(Message<?> message) {
+		Assert.state(this.isPayloadOnly(), "MessageFilter '" + this.getComponentName() + "' may not drop Messages silently");
+		return this.selector.accept(message) ? message : null;
+	}
+
 }
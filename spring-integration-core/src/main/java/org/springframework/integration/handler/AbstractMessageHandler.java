@@ -60,6 +60,13 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 		this.shouldTrack = shouldTrack;
 	}
 
+	/**
+	 * Indicate whether this handler writes {@link MessageHistory} for the messages it handles.
+	 */
+	protected boolean isShouldTrack() {
+		return this.shouldTrack;
+	}
+
 	public final void handleMessage(Message<?> message) {
 		Assert.notNull(message, "Message must not be null");
 		Assert.notNull(message.getPayload(), "Message payload must not be null");
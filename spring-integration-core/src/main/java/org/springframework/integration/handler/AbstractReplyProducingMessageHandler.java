@@ -16,6 +16,9 @@
 
 package org.springframework.integration.handler;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 
 import org.aopalliance.aop.Advice;
@@ -91,6 +94,21 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 		this.requiresReply = requiresReply;
 	}
 
+	/**
+	 * Indicate whether an incoming message must result in a reply message being sent.
+	 */
+	protected boolean isRequiresReply() {
+		return this.requiresReply;
+	}
+
+	/**
+	 * Indicate whether an advice chain has been configured for this handler's
+	 * request handling.
+	 */
+	protected boolean hasAdviceChain() {
+		return !CollectionUtils.isEmpty(this.adviceChain);
+	}
+
 	/**
 	 * Provides access to the {@link MessagingTemplate} for subclasses.
 	 */
@@ -155,6 +173,24 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 				this.produceReply(o, requestHeaders);
 			}
 		}
+		else if (result instanceof Iterator<?> && this.shouldSplitIteratorReply()) {
+			Iterator<?> iterator = (Iterator<?>) result;
+			try {
+				while (iterator.hasNext()) {
+					this.produceReply(iterator.next(), requestHeaders);
+				}
+			}
+			finally {
+				if (iterator instanceof Closeable) {
+					try {
+						((Closeable) iterator).close();
+					}
+					catch (IOException e) {
+						logger.warn("failed to close reply iterator", e);
+					}
+				}
+			}
+		}
 		else if (result != null) {
 			this.produceReply(result, requestHeaders);
 		}
@@ -240,11 +276,23 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 		return true;
 	}
 
+	/**
+	 * Whether an {@link Iterator} returned by {@link #handleRequestMessage(Message)} should be
+	 * sent as one reply per element (closing it afterwards if it is {@link Closeable}) rather
+	 * than as a single reply carrying the iterator. Subclasses may override this; false by
+	 * default.
+	 */
+	protected boolean shouldSplitIteratorReply() {
+		return false;
+	}
+
 	/**
 	 * Subclasses must implement this method to handle the request Message. The return
 	 * value may be a Message, a MessageBuilder, or any plain Object. The base class
 	 * will handle the final creation of a reply Message from any of those starting
-	 * points. If the return value is null, the Message flow will end here.
+	 * points. If the return value is null, the Message flow will end here. An
+	 * {@link Iterator} is only split into separate replies when
+	 * {@link #shouldSplitIteratorReply()} returns true.
 	 */
 	protected abstract Object handleRequestMessage(Message<?> requestMessage);
 
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Buffers the messages of a handler that writes them more efficiently in batches,
+ * and passes them to a {@link BatchHandler} once a batch is full or, with a flush
+ * interval, once that interval has elapsed since the last batch.
+ * <p>
+ * Batches are written by a dedicated writer thread (or the configured
+ * {@link #setTaskExecutor(Executor) executor}), never on the thread of the sender
+ * whose message completed the batch: a batch is therefore not part of any sender's
+ * transaction, and its failures are not reported to a sender whose message was not
+ * affected. Each failed message is sent as an {@link ErrorMessage} to the error
+ * channel, if any, and logged otherwise. The {@link TaskScheduler} only triggers
+ * the periodic flush; it never writes a batch, so a sender blocked on a full buffer
+ * can not starve the scheduler threads the writes depend on.
+ * <p>
+ * Batches are written one at a time and in order, whether by the writer,
+ * {@link #flush()} or {@link #destroy()}. Once {@link #setCapacity(int) capacity}
+ * messages are buffered, senders wait up to the {@link #setAddTimeout(long) add timeout}
+ * until a batch has been taken for writing.
+ *
+ * @since 3.0
+ */
+public class MessageBatcher implements InitializingBean, DisposableBean {
+
+	private final Log logger = LogFactory.getLog(this.getClass());
+
+	private final BatchHandler batchHandler;
+
+	private volatile int batchSize = 1;
+
+	private volatile long flushInterval;
+
+	private volatile int capacity;
+
+	private volatile MessageChannel errorChannel;
+
+	private volatile long addTimeout = 30000;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile Executor taskExecutor;
+
+	private volatile ExecutorService defaultExecutor;
+
+	private final Object bufferMonitor = new Object();
+
+	private final Lock writeLock = new ReentrantLock();
+
+	private List<Message<?>> buffer = new ArrayList<Message<?>>();
+
+	private boolean writeScheduled;
+
+	private volatile long lastFlush = System.currentTimeMillis();
+
+	private volatile ScheduledFuture<?> flushTask;
+
+	public MessageBatcher(BatchHandler batchHandler) {
+		Assert.notNull(batchHandler, "'batchHandler' must not be null");
+		this.batchHandler = batchHandler;
+	}
+
+	/**
+	 * Set the number of messages of a batch. Default is 1.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be positive");
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a message waits for its batch to be
+	 * written: a partial batch is written when a message arrives after the interval
+	 * has elapsed since the last batch, and by a task that runs at that interval.
+	 * By default (0), partial batches are only written by {@link #flush()}.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval >= 0, "'flushInterval' must not be negative");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Set the maximum number of buffered messages; once it is reached, {@link #add(Message)}
+	 * blocks until a batch has been taken for writing. It must not be less than the
+	 * batch size. By default, ten batches are buffered.
+	 */
+	public void setCapacity(int capacity) {
+		Assert.isTrue(capacity > 0, "'capacity' must be positive");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds {@link #add(Message)} waits for buffer
+	 * space once the capacity is reached; a {@link MessageHandlingException} is
+	 * thrown when it elapses. Default is 30 seconds.
+	 */
+	public void setAddTimeout(long addTimeout) {
+		Assert.isTrue(addTimeout >= 0, "'addTimeout' must not be negative");
+		this.addTimeout = addTimeout;
+	}
+
+	/**
+	 * Set the channel to which an {@link ErrorMessage} is sent for each message
+	 * that could not be written, its payload being a {@link MessageHandlingException}
+	 * with the failed message. By default, the failures are logged.
+	 */
+	public void setErrorChannel(MessageChannel errorChannel) {
+		this.errorChannel = errorChannel;
+	}
+
+	/**
+	 * Set the scheduler that runs the periodic flush. Required with a flush interval.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Set the executor whose threads write the batches. It should not be shared with
+	 * the senders: a sender waiting for buffer space would otherwise hold a thread
+	 * the write it waits for may need. By default, a dedicated thread is started,
+	 * and stopped by {@link #destroy()}.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	public void afterPropertiesSet() {
+		Assert.state(this.flushInterval == 0 || this.taskScheduler != null,
+				"A TaskScheduler is required for the flush interval");
+		Assert.state(this.capacity == 0 || this.capacity >= this.batchSize,
+				"'capacity' must not be less than 'batchSize'");
+		if (this.taskExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("batch-writer-");
+			threadFactory.setDaemon(true);
+			this.defaultExecutor = Executors.newSingleThreadExecutor(threadFactory);
+			this.taskExecutor = this.defaultExecutor;
+		}
+		if (this.flushInterval > 0) {
+			this.flushTask = this.taskScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					flushIfNecessary();
+				}
+			}, this.flushInterval);
+		}
+	}
+
+	/**
+	 * Buffer the message, scheduling the write of the batch if it is now ready. If
+	 * the buffer is full, wait until a batch has been taken for writing.
+	 * @throws MessageHandlingException if no buffer space became available within
+	 * the add timeout.
+	 */
+	public void add(Message<?> message) {
+		int capacity = (this.capacity > 0) ? this.capacity : this.batchSize * 10;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.addTimeout);
+		while (true) {
+			boolean added = false;
+			boolean scheduleWrite = false;
+			synchronized (this.bufferMonitor) {
+				if (this.buffer.size() < capacity) {
+					this.buffer.add(message);
+					added = true;
+				}
+				if (!this.writeScheduled && this.isBatchReady()) {
+					this.writeScheduled = true;
+					scheduleWrite = true;
+				}
+				else if (!added) {
+					long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remaining <= 0) {
+						throw new MessageHandlingException(message,
+								"Timed out after " + this.addTimeout + "ms while waiting for buffer space");
+					}
+					try {
+						this.bufferMonitor.wait(remaining);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new MessageHandlingException(message, "Interrupted while waiting for buffer space", e);
+					}
+				}
+			}
+			if (scheduleWrite && !this.scheduleWrite() && !added) {
+				throw new MessageHandlingException(message,
+						"The buffer is full and the write of a batch could not be scheduled");
+			}
+			if (added) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Write all buffered messages on the calling thread. The exception for the
+	 * first failed message is thrown when there is no error channel.
+	 */
+	public void flush() {
+		this.writeLock.lock();
+		try {
+			List<Message<?>> batch;
+			synchronized (this.bufferMonitor) {
+				if (this.buffer.isEmpty()) {
+					return;
+				}
+				batch = this.takeBatch(this.buffer.size());
+			}
+			this.reportFailures(this.write(batch), true);
+		}
+		finally {
+			this.writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Stop the periodic flush, write the buffered messages and stop the default
+	 * writer thread.
+	 */
+	public void destroy() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		try {
+			this.flush();
+		}
+		catch (MessageHandlingException e) {
+			logger.error("Failed to write " + e.getFailedMessage(), e);
+		}
+		finally {
+			if (this.defaultExecutor != null) {
+				this.defaultExecutor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Must be called while holding the buffer monitor.
+	 */
+	private boolean isBatchReady() {
+		return !this.buffer.isEmpty() && (this.buffer.size() >= this.batchSize
+				|| (this.flushInterval > 0 && System.currentTimeMillis() - this.lastFlush >= this.flushInterval));
+	}
+
+	/**
+	 * Must be called while holding the write lock and the buffer monitor, so that
+	 * batches are written in the order they are taken.
+	 */
+	private List<Message<?>> takeBatch(int size) {
+		List<Message<?>> batch;
+		if (this.buffer.size() <= size) {
+			batch = this.buffer;
+			this.buffer = new ArrayList<Message<?>>(this.batchSize);
+		}
+		else {
+			List<Message<?>> head = this.buffer.subList(0, size);
+			batch = new ArrayList<Message<?>>(head);
+			head.clear();
+		}
+		this.lastFlush = System.currentTimeMillis();
+		this.bufferMonitor.notifyAll();
+		return batch;
+	}
+
+	/**
+	 * @return false if the write could not be scheduled.
+	 */
+	private boolean scheduleWrite() {
+		try {
+			this.taskExecutor.execute(new Runnable() {
+				public void run() {
+					writeReadyBatches();
+				}
+			});
+			return true;
+		}
+		catch (RuntimeException e) {
+			synchronized (this.bufferMonitor) {
+				this.writeScheduled = false;
+			}
+			logger.error("Failed to schedule the write of a batch; its messages remain buffered", e);
+			return false;
+		}
+	}
+
+	private void flushIfNecessary() {
+		synchronized (this.bufferMonitor) {
+			if (this.writeScheduled || !this.isBatchReady()) {
+				return;
+			}
+			this.writeScheduled = true;
+		}
+		this.scheduleWrite();
+	}
+
+	/**
+	 * Write batches until the buffer no longer holds a ready batch, so that at
+	 * most one scheduled write is in progress and messages are written in order.
+	 */
+	private void writeReadyBatches() {
+		boolean completed = false;
+		try {
+			while (true) {
+				this.writeLock.lock();
+				try {
+					List<Message<?>> batch;
+					synchronized (this.bufferMonitor) {
+						if (!this.isBatchReady()) {
+							this.writeScheduled = false;
+							completed = true;
+							return;
+						}
+						batch = this.takeBatch(this.batchSize);
+					}
+					this.reportFailures(this.write(batch), false);
+				}
+				finally {
+					this.writeLock.unlock();
+				}
+			}
+		}
+		finally {
+			if (!completed) {
+				synchronized (this.bufferMonitor) {
+					this.writeScheduled = false;
+				}
+			}
+		}
+	}
+
+	private List<MessageHandlingException> write(List<Message<?>> batch) {
+		List<MessageHandlingException> failures = new ArrayList<MessageHandlingException>();
+		try {
+			this.batchHandler.handleBatch(batch, failures);
+		}
+		catch (RuntimeException e) {
+			failures.clear();
+			for (Message<?> message : batch) {
+				failures.add(new MessageHandlingException(message, "Failed to write the batch", e));
+			}
+		}
+		return failures;
+	}
+
+	private void reportFailures(List<MessageHandlingException> failures, boolean throwFirst) {
+		if (failures.isEmpty()) {
+			return;
+		}
+		MessageChannel errorChannel = this.errorChannel;
+		if (errorChannel != null) {
+			for (MessageHandlingException failure : failures) {
+				try {
+					errorChannel.send(new ErrorMessage(failure));
+				}
+				catch (RuntimeException e) {
+					logger.error("Failed to send the failure to the error channel", e);
+					logger.error("Failed to write " + failure.getFailedMessage(), failure);
+				}
+			}
+			return;
+		}
+		for (MessageHandlingException failure : failures.subList(throwFirst ? 1 : 0, failures.size())) {
+			logger.error("Failed to write " + failure.getFailedMessage(), failure);
+		}
+		if (throwFirst) {
+			throw failures.get(0);
+		}
+	}
+
+
+	/**
+	 * Writes the messages of a batch.
+	 */
+	public interface BatchHandler {
+
+		/**
+		 * Write the messages, adding an exception to the failures for each message
+		 * that could not be written. An exception thrown by this method fails all
+		 * the messages of the batch.
+		 */
+		void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures);
+
+	}
+
+}
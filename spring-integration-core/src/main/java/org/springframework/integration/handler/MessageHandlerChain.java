@@ -24,15 +24,20 @@ import org.springframework.context.SmartLifecycle;
 import org.springframework.core.Ordered;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageDeliveryException;
 import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.filter.MessageFilter;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
 import org.springframework.integration.support.channel.ChannelResolver;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
@@ -64,6 +69,11 @@ import java.util.concurrent.locks.ReentrantLock;
  *     &lt;aggregator ... /&gt;
  * &lt;/chain&gt;
  * </pre>
+ * <p/>
+ * If handler fusion is enabled, consecutive {@link PayloadOnlyMessageHandler}s
+ * (such as filters and payload transformers) are invoked directly one after
+ * another; the intermediate results share the headers of the Message entering
+ * the run and a new Message is only built once at the end of the run.
  *
  * @author Mark Fisher
  * @author Iwein Fuld
@@ -74,6 +84,10 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 
 	private volatile List<MessageHandler> handlers;
 
+	private volatile List<MessageHandler> chainHandlers;
+
+	private volatile boolean fuseHandlers;
+
 	private volatile MessageChannel outputChannel;
 
 	/**
@@ -109,6 +123,16 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 		this.sendTimeout = sendTimeout;
 	}
 
+	/**
+	 * Specify whether runs of consecutive {@link PayloadOnlyMessageHandler}s
+	 * should be fused, avoiding the creation of a Message for each of their
+	 * intermediate results. Message IDs and timestamps are then only generated
+	 * at the end of a run. Default is <code>false</code>.
+	 */
+	public void setFuseHandlers(boolean fuseHandlers) {
+		this.fuseHandlers = fuseHandlers;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "chain";
@@ -134,28 +158,19 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 		if (!this.initialized) {
 			this.onInit();
 		}
-		this.handlers.get(0).handleMessage(message);
+		this.chainHandlers.get(0).handleMessage(message);
 	}
 
 	private void configureChain() {
 		Assert.isTrue(this.handlers.size() == new HashSet<MessageHandler>(this.handlers).size(),
 				"duplicate handlers are not allowed in a chain");
-		for (int i = 0; i < this.handlers.size(); i++) {
+		List<MessageHandler> handlers = this.fuseHandlers ? this.fuse(this.handlers) : this.handlers;
+		for (int i = 0; i < handlers.size(); i++) {
 			MessageHandler handler = handlers.get(i);
 			if (i < handlers.size() - 1) { // not the last handler
 				Assert.isTrue(handler instanceof MessageProducer, "All handlers except for " +
 						"the last one in the chain must implement the MessageProducer interface.");
-				final MessageHandler nextHandler = handlers.get(i + 1);
-				final MessageChannel nextChannel = new MessageChannel() {
-					public boolean send(Message<?> message, long timeout) {
-						return this.send(message);
-					}
-					public boolean send(Message<?> message) {
-						nextHandler.handleMessage(message);
-						return true;
-					}
-				};
-				((MessageProducer) handler).setOutputChannel(nextChannel);
+				((MessageProducer) handler).setOutputChannel(channelTo(handlers.get(i + 1)));
 
 				// If this 'handler' is a nested non-last &lt;chain&gt;, it is  necessary
 				// to 'force' re-init it for check its configuration in conjunction with current MessageHandlerChain.
@@ -174,6 +189,56 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 						"the chain does not implement the MessageProducer interface.");
 			}
 		}
+		this.chainHandlers = handlers;
+	}
+
+	/**
+	 * Create a channel that passes the messages sent to it to the given handler.
+	 */
+	private static MessageChannel channelTo(final MessageHandler nextHandler) {
+		return new MessageChannel() {
+			public boolean send(Message<?> message, long timeout) {
+				return this.send(message);
+			}
+			public boolean send(Message<?> message) {
+				nextHandler.handleMessage(message);
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Replace each run of two or more consecutive handlers that qualify as
+	 * {@link PayloadOnlyMessageHandler}s by a single {@link FusedMessageHandler}.
+	 */
+	private List<MessageHandler> fuse(List<MessageHandler> handlers) {
+		List<MessageHandler> fused = new ArrayList<MessageHandler>();
+		List<PayloadOnlyMessageHandler> run = new ArrayList<PayloadOnlyMessageHandler>();
+		for (MessageHandler handler : handlers) {
+			if (handler instanceof PayloadOnlyMessageHandler && handler instanceof MessageProducer
+					&& ((PayloadOnlyMessageHandler) handler).isPayloadOnly()) {
+				run.add((PayloadOnlyMessageHandler) handler);
+			}
+			else {
+				this.addRun(run, fused);
+				fused.add(handler);
+			}
+		}
+		this.addRun(run, fused);
+		return fused;
+	}
+
+	private void addRun(List<PayloadOnlyMessageHandler> run, List<MessageHandler> fused) {
+		if (run.size() > 1) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("fusing handlers " + run + " in chain '" + this.getComponentName() + "'");
+			}
+			fused.add(new FusedMessageHandler(new ArrayList<PayloadOnlyMessageHandler>(run)));
+		}
+		else {
+			fused.addAll(run);
+		}
+		run.clear();
 	}
 
 	@Override
@@ -293,6 +358,118 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 		}
 	}
 
+	/**
+	 * Invokes a run of {@link PayloadOnlyMessageHandler}s, passing intermediate
+	 * results along as {@link PayloadOnlyMessage}s, and sends a fully built
+	 * Message to its output channel at the end of the run.
+	 * <p/>
+	 * The handlers of the run are also wired to each other as in a chain without
+	 * fusion. Whether a handler qualifies is checked again for each message, since
+	 * message history tracking, for example, may be enabled after the chain has
+	 * been configured; from the first handler that no longer qualifies on, the
+	 * Message is passed through the regular {@link MessageHandler#handleMessage(Message)}.
+	 */
+	private static class FusedMessageHandler implements MessageHandler, MessageProducer {
+
+		private final List<PayloadOnlyMessageHandler> handlers;
+
+		private volatile MessageChannel outputChannel;
+
+		public FusedMessageHandler(List<PayloadOnlyMessageHandler> handlers) {
+			this.handlers = handlers;
+		}
+
+		public void setOutputChannel(MessageChannel outputChannel) {
+			this.outputChannel = outputChannel;
+			for (int i = 0; i < this.handlers.size(); i++) {
+				MessageChannel nextChannel = (i < this.handlers.size() - 1)
+						? channelTo(this.handlers.get(i + 1)) : outputChannel;
+				((MessageProducer) this.handlers.get(i)).setOutputChannel(nextChannel);
+			}
+		}
+
+		public void handleMessage(Message<?> message) {
+			Message<?> current = message;
+			for (PayloadOnlyMessageHandler handler : this.handlers) {
+				if (!handler.isPayloadOnly()) {
+					handler.handleMessage(this.toMessage(current));
+					return;
+				}
+				Object result = this.handlePayloadOnly(handler, current);
+				if (result == null) {
+					return;
+				}
+				if (result instanceof Message<?>) {
+					current = (Message<?>) result;
+				}
+				else {
+					current = new PayloadOnlyMessage<Object>(result, current.getHeaders());
+				}
+			}
+			current = this.toMessage(current);
+			if (!this.outputChannel.send(current)) {
+				throw new MessageDeliveryException(current, "failed to send message to channel '" + this.outputChannel + "'");
+			}
+		}
+
+		/**
+		 * Invoke the handler, converting exceptions as {@link AbstractMessageHandler#handleMessage(Message)} does.
+		 */
+		private Object handlePayloadOnly(PayloadOnlyMessageHandler handler, Message<?> message) {
+			try {
+				return handler.handlePayloadOnly(message);
+			}
+			catch (MessagingException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new MessageHandlingException(this.toMessage(message),
+						"error occurred in message handler [" + handler + "]", e);
+			}
+		}
+
+		private Message<?> toMessage(Message<?> message) {
+			if (message instanceof PayloadOnlyMessage<?>) {
+				return MessageBuilder.withPayload(message.getPayload()).copyHeaders(message.getHeaders()).build();
+			}
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return "fused" + this.handlers;
+		}
+	}
+
+	/**
+	 * An intermediate result within a {@link FusedMessageHandler}: a new payload
+	 * sharing the (immutable) headers of the Message that entered the run.
+	 */
+	private static class PayloadOnlyMessage<T> implements Message<T> {
+
+		private final T payload;
+
+		private final MessageHeaders headers;
+
+		public PayloadOnlyMessage(T payload, MessageHeaders headers) {
+			this.payload = payload;
+			this.headers = headers;
+		}
+
+		public MessageHeaders getHeaders() {
+			return this.headers;
+		}
+
+		public T getPayload() {
+			return this.payload;
+		}
+
+		@Override
+		public String toString() {
+			return "[Payload=" + this.payload + "][Headers=" + this.headers + "]";
+		}
+	}
+
 	private class ReplyForwardingMessageChannel implements MessageChannel {
 
 		public boolean send(Message<?> message) {
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageHandler;
+
+/**
+ * A {@link MessageHandler} whose reply, when there is one, differs from the
+ * request only by its payload. A {@link MessageHandlerChain} with handler
+ * fusion enabled invokes consecutive handlers of this type directly, so that
+ * a complete reply Message is only built once at the end of such a run rather
+ * than after each step.
+ *
+ * @since 3.0
+ * @see MessageHandlerChain#setFuseHandlers(boolean)
+ */
+public interface PayloadOnlyMessageHandler extends MessageHandler {
+
+	/**
+	 * Indicate whether this handler, as currently configured, may be invoked
+	 * through {@link #handlePayloadOnly(Message)} instead of
+	 * {@link #handleMessage(Message)}. Handlers that send to other channels,
+	 * are advised or track message history should return <code>false</code>.
+	 * This is checked for each Message, so the result may change at runtime.
+	 */
+	boolean isPayloadOnly();
+
+	/**
+	 * Handle the request without sending a reply. The return value may be
+	 * <code>null</code> if the flow should end here, a Message to be passed on
+	 * as is, or any other Object to be used as the payload of a Message that
+	 * carries the request's headers.
+	 */
+	Object handlePayloadOnly(Message<?> message);
+
+}
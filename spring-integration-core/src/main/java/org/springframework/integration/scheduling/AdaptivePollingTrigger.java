@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Trigger} for polling endpoints that adapts its period to the
+ * outcome of the previous polls. While polls return messages the period is
+ * kept at its minimum, and when a poll stopped only because it reached the
+ * endpoint's 'maxMessagesPerPoll' the next poll is scheduled immediately so
+ * that the source is drained continuously. Each poll that returns nothing
+ * multiplies the period by the backoff multiplier, up to the maximum period.
+ * <p/>
+ * The trigger is told about poll outcomes by the polling endpoint through
+ * {@link #pollCompleted(long, boolean)}. Since that makes it stateful, every
+ * polling endpoint works with its own copy (see {@link #copy()}), so a single
+ * instance may be configured on a shared (e.g. default) poller.
+ * <p/>
+ * Draining only applies when polls run on the scheduler's thread. When the
+ * poller has a task executor, the next execution time is computed before the
+ * submitted poll has completed, so the endpoint never reports a reached limit
+ * and the trigger only adapts the period.
+ *
+ * @since 3.0
+ */
+public class AdaptivePollingTrigger implements Trigger {
+
+	private final long minPeriod;
+
+	private final long maxPeriod;
+
+	private volatile TimeUnit timeUnit = TimeUnit.MILLISECONDS;
+
+	private volatile double backoffMultiplier = 2.0;
+
+	private volatile long initialDelay = 0;
+
+	private volatile long currentPeriod;
+
+	private volatile boolean drainImmediately;
+
+
+	/**
+	 * Create a trigger that polls at the given minimum period while messages
+	 * arrive and backs off to at most the given maximum period while idle.
+	 * The periods are in milliseconds unless a time unit is set.
+	 */
+	public AdaptivePollingTrigger(long minPeriod, long maxPeriod) {
+		Assert.isTrue(minPeriod > 0, "minPeriod must be positive");
+		Assert.isTrue(maxPeriod >= minPeriod, "maxPeriod must not be less than minPeriod");
+		this.minPeriod = minPeriod;
+		this.maxPeriod = maxPeriod;
+		this.currentPeriod = minPeriod;
+	}
+
+
+	public void setTimeUnit(TimeUnit timeUnit) {
+		Assert.notNull(timeUnit, "timeUnit must not be null");
+		this.timeUnit = timeUnit;
+	}
+
+	/**
+	 * Specify the factor by which the period grows after each empty poll.
+	 * Must be greater than 1. Default is 2.
+	 */
+	public void setBackoffMultiplier(double backoffMultiplier) {
+		Assert.isTrue(backoffMultiplier > 1, "backoffMultiplier must be greater than 1");
+		this.backoffMultiplier = backoffMultiplier;
+	}
+
+	/**
+	 * Specify the delay before the first poll, in the configured time unit.
+	 */
+	public void setInitialDelay(long initialDelay) {
+		this.initialDelay = initialDelay;
+	}
+
+	/**
+	 * Return the period, in milliseconds, that will be applied after the next
+	 * poll unless its outcome changes it.
+	 */
+	public long getCurrentPeriod() {
+		return this.timeUnit.toMillis(this.currentPeriod);
+	}
+
+	/**
+	 * Record the outcome of a poll.
+	 * @param messageCount the number of messages received by the poll
+	 * @param limitReached whether the poll stopped because it reached the
+	 * maximum number of messages per poll, i.e. more messages may be waiting
+	 */
+	public void pollCompleted(long messageCount, boolean limitReached) {
+		if (messageCount > 0) {
+			this.currentPeriod = this.minPeriod;
+			this.drainImmediately = limitReached;
+		}
+		else {
+			this.currentPeriod = Math.min(this.maxPeriod,
+					Math.max(this.currentPeriod + 1, (long) (this.currentPeriod * this.backoffMultiplier)));
+			this.drainImmediately = false;
+		}
+	}
+
+	/**
+	 * Return a new trigger with this trigger's configuration and initial state.
+	 */
+	public AdaptivePollingTrigger copy() {
+		AdaptivePollingTrigger copy = new AdaptivePollingTrigger(this.minPeriod, this.maxPeriod);
+		copy.setTimeUnit(this.timeUnit);
+		copy.setBackoffMultiplier(this.backoffMultiplier);
+		copy.setInitialDelay(this.initialDelay);
+		return copy;
+	}
+
+	public Date nextExecutionTime(TriggerContext triggerContext) {
+		Date lastCompletion = triggerContext.lastCompletionTime();
+		if (lastCompletion == null) {
+			return new Date(System.currentTimeMillis() + this.timeUnit.toMillis(this.initialDelay));
+		}
+		if (this.drainImmediately) {
+			return lastCompletion;
+		}
+		return new Date(lastCompletion.getTime() + this.timeUnit.toMillis(this.currentPeriod));
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptivePollingTrigger [minPeriod=" + this.minPeriod + ", maxPeriod=" + this.maxPeriod
+				+ ", timeUnit=" + this.timeUnit + ", currentPeriod=" + this.currentPeriod + "]";
+	}
+
+}
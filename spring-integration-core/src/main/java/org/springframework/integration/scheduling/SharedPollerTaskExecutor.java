@@ -0,0 +1,261 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link Executor} meant to be shared by many polling endpoints (as their
+ * poller's task executor) that runs all polls on a small, fixed set of worker
+ * threads, so the number of threads does not grow with the number of endpoints.
+ * <p/>
+ * Each worker has its own queue of tasks. Tasks submitted by a worker (such as
+ * the continuation of a poll) are appended to that worker's queue; other tasks
+ * are distributed round-robin. A worker whose queue is empty steals the oldest
+ * queued task of another worker, so queued polls run in the order they were
+ * queued whichever worker picks them up.
+ * <p/>
+ * Polling endpoints using this executor poll at most {@link #setQuantum(int)
+ * quantum} messages per task; a poll that has more messages to receive (within
+ * its 'maxMessagesPerPoll') resubmits itself behind the tasks already queued,
+ * giving every endpoint a fair share of the workers.
+ *
+ * @since 3.0
+ */
+public class SharedPollerTaskExecutor implements Executor, BeanNameAware, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(SharedPollerTaskExecutor.class);
+
+	private final Worker[] workers;
+
+	private final Semaphore queuedTasks = new Semaphore(0);
+
+	private final AtomicInteger nextWorker = new AtomicInteger();
+
+	private final AtomicLong stealCount = new AtomicLong();
+
+	private volatile int quantum = 10;
+
+	private volatile String beanName = "sharedPoller";
+
+	private volatile boolean started;
+
+	private volatile boolean running = true;
+
+	private final Object startMonitor = new Object();
+
+
+	/**
+	 * Create an executor with one worker thread per available processor.
+	 */
+	public SharedPollerTaskExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create an executor with the given number of worker threads.
+	 */
+	public SharedPollerTaskExecutor(int workerCount) {
+		Assert.isTrue(workerCount > 0, "workerCount must be positive");
+		this.workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			this.workers[i] = new Worker(i);
+		}
+	}
+
+
+	/**
+	 * Specify the maximum number of messages a polling endpoint receives within
+	 * a single task before yielding the worker to other endpoints. Default is 10.
+	 */
+	public void setQuantum(int quantum) {
+		Assert.isTrue(quantum > 0, "quantum must be positive");
+		this.quantum = quantum;
+	}
+
+	public int getQuantum() {
+		return this.quantum;
+	}
+
+	public void setBeanName(String name) {
+		this.beanName = name;
+	}
+
+	public int getWorkerCount() {
+		return this.workers.length;
+	}
+
+	/**
+	 * @return the number of tasks waiting for a worker.
+	 */
+	public int getQueueSize() {
+		return this.queuedTasks.availablePermits();
+	}
+
+	/**
+	 * @return the number of tasks executed by a worker other than the one they were queued for.
+	 */
+	public long getStealCount() {
+		return this.stealCount.get();
+	}
+
+	public void execute(Runnable task) {
+		Assert.notNull(task, "task must not be null");
+		if (!this.running) {
+			throw new RejectedExecutionException("executor '" + this.beanName + "' has been shut down");
+		}
+		this.startIfNecessary();
+		Thread current = Thread.currentThread();
+		Worker target = null;
+		if (current instanceof WorkerThread && ((WorkerThread) current).getExecutor() == this) {
+			target = ((WorkerThread) current).getWorker();
+		}
+		else {
+			target = this.workers[(this.nextWorker.getAndIncrement() & Integer.MAX_VALUE) % this.workers.length];
+		}
+		target.push(task);
+		this.queuedTasks.release();
+	}
+
+	public void destroy() {
+		this.running = false;
+		for (Worker worker : this.workers) {
+			if (worker.thread != null) {
+				worker.thread.interrupt();
+			}
+		}
+	}
+
+	private void startIfNecessary() {
+		if (this.started) {
+			return;
+		}
+		synchronized (this.startMonitor) {
+			if (!this.started) {
+				for (Worker worker : this.workers) {
+					worker.start();
+				}
+				this.started = true;
+			}
+		}
+	}
+
+	/**
+	 * Take a task, preferring the given worker's own queue. Must only be called
+	 * after acquiring a permit from {@link #queuedTasks}, which guarantees that
+	 * at least one unclaimed task is queued.
+	 */
+	private Runnable take(Worker worker) {
+		while (true) {
+			Runnable task = worker.pollFirst();
+			if (task != null) {
+				return task;
+			}
+			for (int i = 1; i < this.workers.length; i++) {
+				Worker victim = this.workers[(worker.index + i) % this.workers.length];
+				task = victim.pollFirst();
+				if (task != null) {
+					this.stealCount.incrementAndGet();
+					return task;
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+
+	private class Worker implements Runnable {
+
+		private final int index;
+
+		private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+		private volatile Thread thread;
+
+		Worker(int index) {
+			this.index = index;
+		}
+
+		void start() {
+			this.thread = new WorkerThread(this, SharedPollerTaskExecutor.this.beanName + "-" + (this.index + 1));
+			this.thread.start();
+		}
+
+		synchronized void push(Runnable task) {
+			this.tasks.addLast(task);
+		}
+
+		synchronized Runnable pollFirst() {
+			return this.tasks.isEmpty() ? null : this.tasks.removeFirst();
+		}
+
+		public void run() {
+			while (SharedPollerTaskExecutor.this.running) {
+				try {
+					SharedPollerTaskExecutor.this.queuedTasks.acquire();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				Runnable task = SharedPollerTaskExecutor.this.take(this);
+				try {
+					task.run();
+				}
+				catch (Throwable t) {
+					logger.error("task failed in shared poller '" + SharedPollerTaskExecutor.this.beanName + "'", t);
+				}
+				if (Thread.interrupted() && !SharedPollerTaskExecutor.this.running) {
+					return;
+				}
+			}
+		}
+	}
+
+
+	private class WorkerThread extends Thread {
+
+		private final Worker worker;
+
+		WorkerThread(Worker worker, String name) {
+			super(worker, name);
+			this.worker = worker;
+			this.setDaemon(true);
+		}
+
+		Worker getWorker() {
+			return this.worker;
+		}
+
+		SharedPollerTaskExecutor getExecutor() {
+			return SharedPollerTaskExecutor.this;
+		}
+	}
+
+}
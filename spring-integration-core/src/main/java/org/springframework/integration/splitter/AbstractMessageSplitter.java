@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,11 @@
 
 package org.springframework.integration.splitter;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.integration.Message;
@@ -55,6 +58,23 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 		}
 		MessageHeaders headers = message.getHeaders();
 		Object correlationId = headers.getId();
+		if (result instanceof Iterator) {
+			Iterator<?> iterator = (Iterator<?>) result;
+			int sequenceSize;
+			try {
+				if (!iterator.hasNext()) {
+					closeIfNecessary(iterator);
+					return null;
+				}
+				sequenceSize = this.obtainSizeIfPossible(iterator);
+			}
+			catch (RuntimeException e) {
+				// the iterator is not handed on, so its resources would otherwise leak
+				closeIfNecessary(iterator);
+				throw e;
+			}
+			return new MessageBuilderIterator(iterator, headers, correlationId, sequenceSize);
+		}
 		List<MessageBuilder<?>> messageBuilders = new ArrayList<MessageBuilder<?>>();
 		if (result instanceof Collection) {
 			Collection<?> items = (Collection<?>) result;
@@ -95,6 +115,31 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 		return builder;
 	}
 
+	/**
+	 * Return the number of elements the given iterator will produce, to be used as the
+	 * sequence size, or 0 if unknown. Subclasses that return an Iterator from
+	 * {@link #splitMessage(Message)} may override this; the default returns 0.
+	 */
+	protected int obtainSizeIfPossible(Iterator<?> iterator) {
+		return 0;
+	}
+
+	private static void closeIfNecessary(Iterator<?> iterator) {
+		if (iterator instanceof Closeable) {
+			try {
+				((Closeable) iterator).close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	@Override
+	protected boolean shouldSplitIteratorReply() {
+		return true;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "splitter";
@@ -105,7 +150,51 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 	 * Array. The individual elements may be Messages, but it is not necessary. If the elements are not Messages, each
 	 * will be provided as the payload of a Message. It is also acceptable to return a single Object or Message. In that
 	 * case, a single reply Message will be produced.
+	 * <p/>
+	 * The return value may also be an Iterator, in which case each element is sent as soon as it is obtained, so that
+	 * the elements do not all have to be held in memory. The sequence size is provided by
+	 * {@link #obtainSizeIfPossible(Iterator)}. An Iterator that holds resources may implement {@link Closeable}; it is
+	 * closed once all elements are sent or sending fails.
 	 */
 	protected abstract Object splitMessage(Message<?> message);
 
+
+	private class MessageBuilderIterator implements Iterator<MessageBuilder<?>>, Closeable {
+
+		private final Iterator<?> iterator;
+
+		private final MessageHeaders headers;
+
+		private final Object correlationId;
+
+		private final int sequenceSize;
+
+		private int sequenceNumber;
+
+		private MessageBuilderIterator(Iterator<?> iterator, MessageHeaders headers, Object correlationId,
+				int sequenceSize) {
+			this.iterator = iterator;
+			this.headers = headers;
+			this.correlationId = correlationId;
+			this.sequenceSize = sequenceSize;
+		}
+
+		public boolean hasNext() {
+			return this.iterator.hasNext();
+		}
+
+		public MessageBuilder<?> next() {
+			return createBuilder(this.iterator.next(), this.headers, this.correlationId, ++this.sequenceNumber,
+					this.sequenceSize);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			closeIfNecessary(this.iterator);
+		}
+	}
+
 }
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.util.Assert;
+
+/**
+ * A compact, versioned binary encoding of {@link Message}s for persistent message stores, as an
+ * alternative to Java serialization of the whole message.
+ * <p/>
+ * The id and timestamp are written as numbers, the well-known headers as a single tag byte instead
+ * of their name, and header values of common types (String, numbers, Boolean, UUID, byte[]) without
+ * class descriptors; other serializable header values are written with Java serialization and
+ * non-serializable ones are dropped, as with Java serialization of the {@link MessageHeaders}. String
+ * and byte[] payloads are written as is; other payloads with the {@link #setPayloadSerializer(Serializer)
+ * payload serializer} (Java serialization by default). Optionally, encoded messages above a
+ * {@link #setCompressionThreshold(int) threshold} are compressed.
+ * <p/>
+ * As this class implements both {@link Serializer} and {@link Deserializer}, the same instance can be
+ * provided as the serializer and deserializer of a store. Since each encoded message starts with a
+ * version, messages encoded by this version can still be read by later versions; messages encoded
+ * with Java serialization (e.g. stored before switching to this codec) are also read.
+ * <p/>
+ * This class is thread-safe.
+ *
+ * @since 3.0
+ */
+public class CompactMessageCodec implements Serializer<Message<?>>, Deserializer<Message<?>> {
+
+	private static final Log logger = LogFactory.getLog(CompactMessageCodec.class);
+
+	/**
+	 * The version of the encoding written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = new byte[] { 'S', 'I' };
+
+	private static final byte[] JAVA_SERIALIZATION_MAGIC = new byte[] { (byte) 0xAC, (byte) 0xED };
+
+	private static final int FLAG_COMPRESSED = 0x01;
+
+	private static final int GENERIC_MESSAGE = 0;
+
+	private static final int ERROR_MESSAGE = 1;
+
+	private static final int TYPE_STRING = 1;
+
+	private static final int TYPE_INTEGER = 2;
+
+	private static final int TYPE_LONG = 3;
+
+	private static final int TYPE_BOOLEAN = 4;
+
+	private static final int TYPE_DOUBLE = 5;
+
+	private static final int TYPE_UUID = 6;
+
+	private static final int TYPE_BYTES = 7;
+
+	private static final int TYPE_SERIALIZED = 8;
+
+	private static final int TYPE_PAYLOAD_OBJECT = 9;
+
+	/**
+	 * The headers written as a tag (their index); tag 0 is followed by the header name. Headers
+	 * must only ever be appended to this array, since the tags are part of the encoding.
+	 */
+	private static final String[] WELL_KNOWN_HEADERS = new String[] {
+			null,
+			MessageHeaders.CORRELATION_ID,
+			MessageHeaders.REPLY_CHANNEL,
+			MessageHeaders.ERROR_CHANNEL,
+			MessageHeaders.EXPIRATION_DATE,
+			MessageHeaders.PRIORITY,
+			MessageHeaders.SEQUENCE_NUMBER,
+			MessageHeaders.SEQUENCE_SIZE,
+			MessageHeaders.SEQUENCE_DETAILS,
+			MessageHeaders.CONTENT_TYPE,
+			MessageHistory.HEADER_NAME
+	};
+
+	private static final Map<String, Integer> WELL_KNOWN_HEADER_TAGS = new HashMap<String, Integer>();
+
+	static {
+		for (int i = 1; i < WELL_KNOWN_HEADERS.length; i++) {
+			WELL_KNOWN_HEADER_TAGS.put(WELL_KNOWN_HEADERS[i], i);
+		}
+	}
+
+	private final Serializer<Object> javaSerializer = new DefaultSerializer();
+
+	private final Deserializer<Object> javaDeserializer = new DefaultDeserializer();
+
+	private volatile Serializer<Object> payloadSerializer = this.javaSerializer;
+
+	private volatile Deserializer<Object> payloadDeserializer = this.javaDeserializer;
+
+	private volatile int compressionThreshold = Integer.MAX_VALUE;
+
+
+	/**
+	 * Specify the serializer for payloads other than String and byte[]. Default is Java serialization.
+	 * @param payloadSerializer the payload serializer
+	 */
+	@SuppressWarnings("unchecked")
+	public void setPayloadSerializer(Serializer<?> payloadSerializer) {
+		Assert.notNull(payloadSerializer, "'payloadSerializer' must not be null");
+		this.payloadSerializer = (Serializer<Object>) payloadSerializer;
+	}
+
+	/**
+	 * Specify the deserializer for payloads other than String and byte[]; it must read what the
+	 * {@link #setPayloadSerializer(Serializer) payload serializer} writes. Default is Java serialization.
+	 * @param payloadDeserializer the payload deserializer
+	 */
+	@SuppressWarnings("unchecked")
+	public void setPayloadDeserializer(Deserializer<?> payloadDeserializer) {
+		Assert.notNull(payloadDeserializer, "'payloadDeserializer' must not be null");
+		this.payloadDeserializer = (Deserializer<Object>) payloadDeserializer;
+	}
+
+	/**
+	 * Specify the size in bytes above which encoded messages are compressed. By default, messages
+	 * are not compressed.
+	 * @param compressionThreshold the compression threshold
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		Assert.isTrue(compressionThreshold >= 0, "'compressionThreshold' must not be negative");
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * @param bytes the bytes of a stored object
+	 * @return true if the bytes are a message encoded by this class.
+	 */
+	public static boolean isEncodedMessage(byte[] bytes) {
+		return bytes != null && bytes.length > MAGIC.length && bytes[0] == MAGIC[0] && bytes[1] == MAGIC[1];
+	}
+
+	/**
+	 * Encode the message to a byte array.
+	 */
+	public byte[] encode(Message<?> message) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+		this.writeBody(message, new DataOutputStream(body));
+		ByteArrayOutputStream result = new ByteArrayOutputStream(body.size() + 8);
+		result.write(MAGIC);
+		result.write(VERSION);
+		if (body.size() > this.compressionThreshold) {
+			result.write(FLAG_COMPRESSED);
+			DataOutputStream out = new DataOutputStream(result);
+			writeVarInt(out, body.size());
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				DeflaterOutputStream deflaterStream = new DeflaterOutputStream(result, deflater);
+				body.writeTo(deflaterStream);
+				deflaterStream.finish();
+			}
+			finally {
+				deflater.end();
+			}
+		}
+		else {
+			result.write(0);
+			body.writeTo(result);
+		}
+		return result.toByteArray();
+	}
+
+	/**
+	 * Decode a message from a byte array written by {@link #encode(Message)} or by Java serialization.
+	 */
+	public Message<?> decode(byte[] bytes) throws IOException {
+		return this.deserialize(new ByteArrayInputStream(bytes));
+	}
+
+	public void serialize(Message<?> message, OutputStream outputStream) throws IOException {
+		outputStream.write(this.encode(message));
+		outputStream.flush();
+	}
+
+	public Message<?> deserialize(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(inputStream);
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (magic[0] == JAVA_SERIALIZATION_MAGIC[0] && magic[1] == JAVA_SERIALIZATION_MAGIC[1]) {
+			Object object = this.javaDeserializer.deserialize(
+					new SequenceInputStream(new ByteArrayInputStream(magic), inputStream));
+			if (!(object instanceof Message)) {
+				throw new IOException("Expected a Message but deserialized a " + object.getClass().getName());
+			}
+			return (Message<?>) object;
+		}
+		if (magic[0] != MAGIC[0] || magic[1] != MAGIC[1]) {
+			throw new IOException("Not an encoded Message");
+		}
+		int version = in.readUnsignedByte();
+		if (version > VERSION) {
+			throw new IOException("Unsupported encoding version " + version + "; this version supports up to "
+					+ VERSION);
+		}
+		int flags = in.readUnsignedByte();
+		if ((flags & FLAG_COMPRESSED) != 0) {
+			// the uncompressed length is only informative
+			readVarInt(in);
+			// release the native memory of the inflater now rather than when it is finalized
+			Inflater inflater = new Inflater();
+			try {
+				return this.readBody(new DataInputStream(new InflaterInputStream(inputStream, inflater)));
+			}
+			finally {
+				inflater.end();
+			}
+		}
+		return this.readBody(in);
+	}
+
+	private void writeBody(Message<?> message, DataOutputStream out) throws IOException {
+		Object payload = message.getPayload();
+		MessageHeaders headers = message.getHeaders();
+		out.writeByte(message instanceof ErrorMessage ? ERROR_MESSAGE : GENERIC_MESSAGE);
+		UUID id = headers.getId();
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+		out.writeLong(headers.getTimestamp());
+		int count = 0;
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream headerOut = new DataOutputStream(headerBytes);
+		for (Map.Entry<String, Object> header : headers.entrySet()) {
+			String name = header.getKey();
+			if (MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)) {
+				continue;
+			}
+			Object value = header.getValue();
+			if (!(value instanceof Serializable)) {
+				if (logger.isInfoEnabled()) {
+					logger.info("removing non-serializable header: " + name);
+				}
+				continue;
+			}
+			Integer tag = WELL_KNOWN_HEADER_TAGS.get(name);
+			if (tag != null) {
+				headerOut.writeByte(tag);
+			}
+			else {
+				headerOut.writeByte(0);
+				writeString(headerOut, name);
+			}
+			this.writeValue(headerOut, value);
+			count++;
+		}
+		writeVarInt(out, count);
+		headerBytes.writeTo(out);
+		if (payload instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) payload);
+		}
+		else if (payload instanceof byte[]) {
+			out.writeByte(TYPE_BYTES);
+			writeBytes(out, (byte[]) payload);
+		}
+		else {
+			out.writeByte(TYPE_PAYLOAD_OBJECT);
+			ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+			this.payloadSerializer.serialize(payload, payloadBytes);
+			writeBytes(out, payloadBytes.toByteArray());
+		}
+		out.flush();
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Message<?> readBody(DataInputStream in) throws IOException {
+		int messageType = in.readUnsignedByte();
+		UUID id = new UUID(in.readLong(), in.readLong());
+		Long timestamp = in.readLong();
+		int count = readVarInt(in);
+		Map<String, Object> headers = new HashMap<String, Object>(count + 2);
+		for (int i = 0; i < count; i++) {
+			int tag = in.readUnsignedByte();
+			String name;
+			if (tag == 0) {
+				name = readString(in);
+			}
+			else if (tag < WELL_KNOWN_HEADERS.length) {
+				name = WELL_KNOWN_HEADERS[tag];
+			}
+			else {
+				throw new IOException("Unknown header tag " + tag);
+			}
+			headers.put(name, this.readValue(in, in.readUnsignedByte()));
+		}
+		Object payload;
+		int payloadType = in.readUnsignedByte();
+		if (payloadType == TYPE_PAYLOAD_OBJECT) {
+			payload = this.payloadDeserializer.deserialize(new ByteArrayInputStream(readBytes(in)));
+		}
+		else {
+			payload = this.readValue(in, payloadType);
+		}
+		Message<?> message = (messageType == ERROR_MESSAGE)
+				? new ErrorMessage((Throwable) payload, headers)
+				: new GenericMessage<Object>(payload, headers);
+		Map innerMap = (Map) new DirectFieldAccessor(message.getHeaders()).getPropertyValue("headers");
+		// using reflection to restore the ID and timestamp since they are immutable through MessageHeaders
+		innerMap.put(MessageHeaders.ID, id);
+		innerMap.put(MessageHeaders.TIMESTAMP, timestamp);
+		return message;
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(TYPE_INTEGER);
+			out.writeInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		}
+		else if (value instanceof UUID) {
+			out.writeByte(TYPE_UUID);
+			out.writeLong(((UUID) value).getMostSignificantBits());
+			out.writeLong(((UUID) value).getLeastSignificantBits());
+		}
+		else if (value instanceof byte[]) {
+			out.writeByte(TYPE_BYTES);
+			writeBytes(out, (byte[]) value);
+		}
+		else {
+			out.writeByte(TYPE_SERIALIZED);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			this.javaSerializer.serialize(value, bytes);
+			writeBytes(out, bytes.toByteArray());
+		}
+	}
+
+	private Object readValue(DataInputStream in, int type) throws IOException {
+		switch (type) {
+			case TYPE_STRING:
+				return readString(in);
+			case TYPE_INTEGER:
+				return in.readInt();
+			case TYPE_LONG:
+				return in.readLong();
+			case TYPE_BOOLEAN:
+				return in.readBoolean();
+			case TYPE_DOUBLE:
+				return in.readDouble();
+			case TYPE_UUID:
+				return new UUID(in.readLong(), in.readLong());
+			case TYPE_BYTES:
+				return readBytes(in);
+			case TYPE_SERIALIZED:
+				return this.javaDeserializer.deserialize(new ByteArrayInputStream(readBytes(in)));
+			default:
+				throw new IOException("Unknown value type " + type);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value.getBytes("UTF-8"));
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), "UTF-8");
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Write a non-negative int in 7 bit groups, least significant first, so that small values take a single byte.
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed length");
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.integration.Message;
+
+/**
+ * A {@link MessageGroup} holding the state of a stored group and the number of its messages, as read by a
+ * persistent {@link MessageGroupStore}; the messages themselves are only loaded (once) by {@link #loadMessages()}
+ * when they are first accessed. This lets a store return a group from
+ * {@link MessageGroupStore#addMessageToGroup(Object, Message)} without reading and deserializing all its messages.
+ *
+ * @since 3.0
+ */
+public abstract class LazyMessageGroup implements MessageGroup {
+
+	private final Object groupId;
+
+	private final int size;
+
+	private final long timestamp;
+
+	private final long lastModified;
+
+	private final int lastReleasedMessageSequence;
+
+	private volatile Integer sequenceSize;
+
+	private volatile boolean complete;
+
+	private volatile List<Message<?>> messages;
+
+	/**
+	 * @param groupId the group id
+	 * @param size the number of messages in the group
+	 * @param sequenceSize the sequence size of the group, if known (i.e. that of its first message), or null
+	 * @param timestamp the creation time of the group
+	 * @param lastModified the time the group was last modified
+	 * @param complete whether the group is complete
+	 * @param lastReleasedMessageSequence the sequence number of the last released message
+	 */
+	protected LazyMessageGroup(Object groupId, int size, Integer sequenceSize, long timestamp, long lastModified,
+			boolean complete, int lastReleasedMessageSequence) {
+		this.groupId = groupId;
+		this.size = size;
+		this.sequenceSize = sequenceSize;
+		this.timestamp = timestamp;
+		this.lastModified = lastModified;
+		this.complete = complete;
+		this.lastReleasedMessageSequence = lastReleasedMessageSequence;
+	}
+
+	/**
+	 * Load the messages of the group, in the order they were added.
+	 */
+	protected abstract List<Message<?>> loadMessages();
+
+	/**
+	 * Load the first message of the group, to determine its sequence size when that has not been provided.
+	 * Loads all messages by default; stores that can read a single message more cheaply should override this.
+	 */
+	protected Message<?> loadFirstMessage() {
+		return this.getOne();
+	}
+
+	public boolean canAdd(Message<?> message) {
+		return true;
+	}
+
+	public Collection<Message<?>> getMessages() {
+		return Collections.unmodifiableList(this.getMessageList());
+	}
+
+	public Object getGroupId() {
+		return this.groupId;
+	}
+
+	public int getLastReleasedMessageSequenceNumber() {
+		return this.lastReleasedMessageSequence;
+	}
+
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	public void complete() {
+		this.complete = true;
+	}
+
+	public int getSequenceSize() {
+		if (this.size == 0) {
+			return 0;
+		}
+		if (this.sequenceSize == null) {
+			Message<?> one = (this.messages != null) ? this.getOne() : this.loadFirstMessage();
+			this.sequenceSize = (one == null) ? 0 : one.getHeaders().getSequenceSize();
+		}
+		return this.sequenceSize;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public Message<?> getOne() {
+		if (this.size == 0) {
+			return null;
+		}
+		List<Message<?>> messages = this.getMessageList();
+		return messages.isEmpty() ? null : messages.get(0);
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public long getLastModified() {
+		return this.lastModified;
+	}
+
+	private synchronized List<Message<?>> getMessageList() {
+		if (this.messages == null) {
+			this.messages = this.loadMessages();
+		}
+		return this.messages;
+	}
+
+	@Override
+	public String toString() {
+		return "LazyMessageGroup{" +
+				"groupId=" + this.groupId +
+				", size=" + this.size +
+				", complete=" + this.complete +
+				", timestamp=" + this.timestamp +
+				", lastModified=" + this.lastModified +
+				'}';
+	}
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.Set;
+
+/**
+ * A {@link MetadataStore} whose keys can be enumerated, e.g. to remove
+ * entries that are no longer needed.
+ *
+ * @since 3.0
+ */
+public interface ListableMetadataStore extends MetadataStore {
+
+	/**
+	 * Returns a copy of the keys of this MetadataStore.
+	 */
+	Set<String> keySet();
+
+}
@@ -37,4 +37,11 @@ public interface MetadataStore {
 	 */
 	String get(String key);
 
+	/**
+	 * Removes the given key from this MetadataStore.
+	 * @return the value that was removed, or null if there was none.
+	 * @since 3.0
+	 */
+	String remove(String key);
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,11 @@ package org.springframework.integration.store;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,12 +38,14 @@ import org.springframework.util.DefaultPropertiesPersister;
  * each instance should be constructed with the unique key from which unique file name 
  * will be generated. The file name will be 'persistentKey' + ".last.entry".
  * Files will be written to the 'java.io.tmpdir' +  "/spring-integration/".
+ * The metadata is written when this store is destroyed and whenever it is
+ * {@link #flush() flushed}.
  * 
  * @author Oleg Zhurakousky
  * @author Mark Fisher
  * @since 2.0
  */
-public class PropertiesPersistingMetadataStore implements MetadataStore, InitializingBean, DisposableBean {
+public class PropertiesPersistingMetadataStore implements ListableMetadataStore, Flushable, InitializingBean, DisposableBean {
 
 	private final Log logger = LogFactory.getLog(getClass());
 
@@ -82,11 +87,30 @@ public class PropertiesPersistingMetadataStore implements MetadataStore, Initial
 		return this.metadata.getProperty(key);
 	}
 
+	public String remove(String key) {
+		return (String) this.metadata.remove(key);
+	}
+
+	public Set<String> keySet() {
+		Set<String> keys = new HashSet<String>();
+		for (Object key : this.metadata.keySet().toArray()) {
+			keys.add((String) key);
+		}
+		return keys;
+	}
+
+	/**
+	 * Write the metadata to the file.
+	 */
+	public void flush() {
+		this.saveMetadata();
+	}
+
 	public void destroy() throws Exception {
 		this.saveMetadata();
 	}
 
-	private void saveMetadata() {
+	private synchronized void saveMetadata() {
 		FileOutputStream outputStream = null;
 		try {
 			outputStream = new FileOutputStream(this.file);
@@ -14,7 +14,9 @@
 package org.springframework.integration.store;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Simple implementation of {@link MetadataStore} that uses an in-memory map only.
@@ -23,7 +25,7 @@ import java.util.Map;
  * @author Mark Fisher
  * @since 2.0
  */
-public class SimpleMetadataStore implements MetadataStore {
+public class SimpleMetadataStore implements ListableMetadataStore {
 
 	private final Map<String, String> metadata = new HashMap<String, String>();
 
@@ -36,4 +38,12 @@ public class SimpleMetadataStore implements MetadataStore {
 		return this.metadata.get(key);
 	}
 
+	public String remove(String key) {
+		return this.metadata.remove(key);
+	}
+
+	public Set<String> keySet() {
+		return new HashSet<String>(this.metadata.keySet());
+	}
+
 }
@@ -0,0 +1,923 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.util.DefaultLockRegistry;
+import org.springframework.integration.util.LockRegistry;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageGroupStore} (and {@link MessageStore}) decorator that writes to a target store asynchronously.
+ * <p>
+ * Groups are served from an in-memory view which is loaded from the target on first access and updated on the
+ * calling thread; the corresponding writes are queued, coalesced per group (e.g. a message that is added and
+ * removed before the next flush never reaches the target, and only the latest released sequence number is
+ * written) and applied in order by a background task every {@link #setFlushInterval(long) flushInterval}
+ * milliseconds. Once {@link #setMaxPendingWrites(int) maxPendingWrites} writes are queued, the next writer
+ * flushes on its own thread, which bounds the lag; if the writes cannot be applied, writers block once
+ * {@link #setPendingWriteCapacity(int) pendingWriteCapacity} writes are queued, which bounds the memory they hold.
+ * <p>
+ * {@link #flush()} is the explicit sync point for flows that must not acknowledge a message before it is durable;
+ * {@link #iterator()} and the count operations flush as well, so the reaper sees every write that could be
+ * applied. They do not fail because of writes that could not: those are logged and retried, so that a single
+ * group the target rejects does not break the reaper and the counters.
+ * <p>
+ * A failed write only holds back the later writes of the same group; all other writes are still applied. The
+ * failed writes are retried on the following flushes until they succeed or, if
+ * {@link #setMaxWriteAttempts(int) maxWriteAttempts} is set, until they have failed that many times, in which
+ * case they are discarded and reported to the {@link #setErrorChannel(MessageChannel) errorChannel}; the
+ * in-memory view of the groups is kept either way. To reject messages the target store could never write on the
+ * caller's thread, messages can be checked with a {@link #setSerializer(Serializer) serializer} before they are
+ * accepted.
+ * <p>
+ * The decorator assumes it is the only writer for the groups it manages; groups that are modified behind its back
+ * after they have been loaded are not reloaded until they become empty.
+ *
+ * @since 3.0
+ */
+@ManagedResource
+public class WriteBehindMessageStore extends AbstractMessageGroupStore
+		implements MessageStore, InitializingBean, DisposableBean {
+
+	private static final Object REMOVED = new Object();
+
+	private final MessageGroupStore target;
+
+	private final LockRegistry lockRegistry = new DefaultLockRegistry();
+
+	private final ConcurrentMap<Object, SimpleMessageGroup> groups = new ConcurrentHashMap<Object, SimpleMessageGroup>();
+
+	private final Object pendingMonitor = new Object();
+
+	private Map<Object, PendingGroup> pendingGroups = new LinkedHashMap<Object, PendingGroup>();
+
+	private Map<UUID, Object> pendingMessages = new LinkedHashMap<UUID, Object>();
+
+	private Map<UUID, Object> flushingMessages = Collections.emptyMap();
+
+	private final Map<UUID, IndexedMessage> pendingGroupMessages = new HashMap<UUID, IndexedMessage>();
+
+	private int pendingWrites;
+
+	private final Map<UUID, Integer> failedMessageWrites = new HashMap<UUID, Integer>();
+
+	private final Lock flushLock = new ReentrantLock();
+
+	private volatile long flushInterval = 1000;
+
+	private volatile int maxPendingWrites = 1000;
+
+	private volatile int pendingWriteCapacity = 10000;
+
+	private volatile int maxWriteAttempts;
+
+	private volatile MessageChannel errorChannel;
+
+	private volatile Serializer<? super Message<?>> serializer;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ThreadPoolTaskScheduler defaultTaskScheduler;
+
+	private volatile ScheduledFuture<?> flushTask;
+
+	public WriteBehindMessageStore(MessageGroupStore target) {
+		Assert.notNull(target, "'target' must not be null");
+		this.target = target;
+	}
+
+	/**
+	 * The maximum time in milliseconds a write may wait before it is applied to the target store.
+	 * Default 1000.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval > 0, "'flushInterval' must be greater than 0");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * The number of queued writes at which the next writer flushes on its own thread. Default 1000.
+	 */
+	public void setMaxPendingWrites(int maxPendingWrites) {
+		Assert.isTrue(maxPendingWrites > 0, "'maxPendingWrites' must be greater than 0");
+		this.maxPendingWrites = maxPendingWrites;
+	}
+
+	/**
+	 * The number of queued writes at which writers block until enough of them have been applied, when the
+	 * flushes fail. Default 10000; it is raised to {@link #setMaxPendingWrites(int) maxPendingWrites} if lower.
+	 */
+	public void setPendingWriteCapacity(int pendingWriteCapacity) {
+		Assert.isTrue(pendingWriteCapacity > 0, "'pendingWriteCapacity' must be greater than 0");
+		this.pendingWriteCapacity = pendingWriteCapacity;
+	}
+
+	/**
+	 * The number of flushes in which a write may fail before it is discarded and reported to the
+	 * {@link #setErrorChannel(MessageChannel) errorChannel}. Default 0: failed writes are retried until they
+	 * succeed.
+	 */
+	public void setMaxWriteAttempts(int maxWriteAttempts) {
+		Assert.isTrue(maxWriteAttempts >= 0, "'maxWriteAttempts' must not be negative");
+		this.maxWriteAttempts = maxWriteAttempts;
+	}
+
+	/**
+	 * The channel to which an {@link ErrorMessage} is sent for each write that is discarded after
+	 * {@link #setMaxWriteAttempts(int) maxWriteAttempts} failures; its payload is a {@link MessagingException}
+	 * with the message that could not be written, if any. By default, discarded writes are only logged.
+	 */
+	public void setErrorChannel(MessageChannel errorChannel) {
+		this.errorChannel = errorChannel;
+	}
+
+	/**
+	 * The serializer used to check that a message can be written before it is accepted; a message it fails to
+	 * serialize is rejected with a {@link MessagingException}. It should match the way the target store writes
+	 * messages, e.g. a {@link org.springframework.core.serializer.DefaultSerializer} for a target that uses
+	 * Java serialization. Note that the check runs on the caller's thread. By default, messages are not checked.
+	 */
+	public void setSerializer(Serializer<? super Message<?>> serializer) {
+		this.serializer = serializer;
+	}
+
+	/**
+	 * The scheduler used for the periodic flush; by default a single-threaded scheduler owned by this store.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	public void afterPropertiesSet() {
+		TaskScheduler scheduler = this.taskScheduler;
+		if (scheduler == null) {
+			this.defaultTaskScheduler = new ThreadPoolTaskScheduler();
+			this.defaultTaskScheduler.setThreadNamePrefix("writeBehind-");
+			this.defaultTaskScheduler.setDaemon(true);
+			this.defaultTaskScheduler.afterPropertiesSet();
+			scheduler = this.defaultTaskScheduler;
+		}
+		this.flushTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				flushQuietly();
+			}
+		}, this.flushInterval);
+	}
+
+	/**
+	 * Cancels the periodic flush and applies any pending writes.
+	 */
+	public void destroy() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		try {
+			this.flush();
+		}
+		finally {
+			if (this.defaultTaskScheduler != null) {
+				this.defaultTaskScheduler.destroy();
+			}
+		}
+	}
+
+	@ManagedAttribute
+	public int getPendingWriteCount() {
+		synchronized (this.pendingMonitor) {
+			return this.pendingWrites;
+		}
+	}
+
+	/**
+	 * Applies all pending writes to the target store and returns once they are durable (as far as the target
+	 * is concerned). A write that fails holds back the later writes of its group, but not the other writes; the
+	 * unapplied writes are kept for the next flush (unless they have failed
+	 * {@link #setMaxWriteAttempts(int) maxWriteAttempts} times) and the first exception is rethrown. If the target
+	 * throws an {@link Error}, the flush stops and all the writes it has not applied are kept before the error is
+	 * propagated.
+	 */
+	@ManagedOperation
+	public void flush() {
+		this.flushLock.lock();
+		try {
+			Map<Object, PendingGroup> groupWrites;
+			List<Map.Entry<UUID, Object>> messageWrites;
+			synchronized (this.pendingMonitor) {
+				groupWrites = this.pendingGroups;
+				messageWrites = new ArrayList<Map.Entry<UUID, Object>>(this.pendingMessages.entrySet());
+				this.flushingMessages = this.pendingMessages;
+				this.pendingGroups = new LinkedHashMap<Object, PendingGroup>();
+				this.pendingMessages = new LinkedHashMap<UUID, Object>();
+				this.pendingWrites = 0;
+			}
+			RuntimeException firstFailure = null;
+			List<Map.Entry<UUID, Object>> failedMessages = new ArrayList<Map.Entry<UUID, Object>>();
+			int next = 0;
+			boolean completed = false;
+			try {
+				for (; next < messageWrites.size(); next++) {
+					Map.Entry<UUID, Object> entry = messageWrites.get(next);
+					try {
+						this.writeMessage(entry.getKey(), entry.getValue());
+						this.failedMessageWrites.remove(entry.getKey());
+					}
+					catch (RuntimeException e) {
+						firstFailure = (firstFailure != null) ? firstFailure : e;
+						if (this.writeFailed(entry.getKey(), entry.getValue(), e)) {
+							failedMessages.add(entry);
+						}
+					}
+				}
+				for (Iterator<Map.Entry<Object, PendingGroup>> iterator = groupWrites.entrySet().iterator(); iterator
+						.hasNext();) {
+					Map.Entry<Object, PendingGroup> entry = iterator.next();
+					try {
+						entry.getValue().writeTo(entry.getKey(), this.target);
+						iterator.remove();
+						this.evictIfEmpty(entry.getKey());
+					}
+					catch (RuntimeException e) {
+						firstFailure = (firstFailure != null) ? firstFailure : e;
+						if (!this.groupWriteFailed(entry.getKey(), entry.getValue(), e)) {
+							iterator.remove();
+						}
+					}
+				}
+				completed = true;
+			}
+			finally {
+				if (!completed) {
+					// an Error escaped: keep the writes that were not attempted
+					failedMessages.addAll(messageWrites.subList(next, messageWrites.size()));
+				}
+				if (firstFailure != null || !completed) {
+					this.requeue(groupWrites, failedMessages);
+				}
+				synchronized (this.pendingMonitor) {
+					this.flushingMessages = Collections.emptyMap();
+					this.pendingMonitor.notifyAll();
+				}
+			}
+			if (firstFailure != null) {
+				throw firstFailure;
+			}
+		}
+		finally {
+			this.flushLock.unlock();
+		}
+	}
+
+	@ManagedAttribute
+	public long getMessageCount() {
+		this.flushQuietly();
+		return this.getTargetMessageStore().getMessageCount();
+	}
+
+	public <T> Message<T> addMessage(Message<T> message) {
+		Assert.notNull(message, "'message' must not be null");
+		this.getTargetMessageStore();
+		this.checkSerializable(message);
+		this.flushIfNecessary();
+		synchronized (this.pendingMonitor) {
+			this.pendingMessages.put(message.getHeaders().getId(), message);
+			this.pendingWrites++;
+		}
+		return message;
+	}
+
+	public Message<?> getMessage(UUID id) {
+		if (id == null) {
+			return null;
+		}
+		Object pending;
+		synchronized (this.pendingMonitor) {
+			pending = this.pendingMessages.get(id);
+			if (pending == null) {
+				pending = this.flushingMessages.get(id);
+			}
+			if (pending == null) {
+				IndexedMessage indexed = this.pendingGroupMessages.get(id);
+				pending = (indexed != null) ? indexed.message : null;
+			}
+		}
+		if (pending == REMOVED) {
+			return null;
+		}
+		if (pending != null) {
+			return (Message<?>) pending;
+		}
+		return this.getTargetMessageStore().getMessage(id);
+	}
+
+	public Message<?> removeMessage(UUID id) {
+		if (id == null) {
+			return null;
+		}
+		this.flushIfNecessary();
+		Message<?> message = this.getMessage(id);
+		if (message != null) {
+			synchronized (this.pendingMonitor) {
+				this.pendingMessages.put(id, REMOVED);
+				this.pendingWrites++;
+			}
+		}
+		return message;
+	}
+
+	public MessageGroup getMessageGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Lock lock = this.obtainLock(groupId);
+		try {
+			SimpleMessageGroup group = this.groups.get(groupId);
+			if (group != null) {
+				return copyOf(group);
+			}
+			MessageGroup stored = this.target.getMessageGroup(groupId);
+			if (stored.size() > 0) {
+				this.groups.put(groupId, copyOf(stored));
+			}
+			return stored;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public int messageGroupSize(Object groupId) {
+		SimpleMessageGroup group = this.groups.get(groupId);
+		if (group != null) {
+			return group.size();
+		}
+		return this.target.messageGroupSize(groupId);
+	}
+
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(message, "'message' must not be null");
+		this.checkSerializable(message);
+		this.flushIfNecessary();
+		Lock lock = this.obtainLock(groupId);
+		try {
+			SimpleMessageGroup group = this.loadGroup(groupId);
+			group.add(message);
+			group.setLastModified(System.currentTimeMillis());
+			synchronized (this.pendingMonitor) {
+				this.pendingGroup(groupId).add(message);
+			}
+			return group;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public MessageGroup removeMessageFromGroup(Object groupId, Message<?> messageToRemove) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.flushIfNecessary();
+		Lock lock = this.obtainLock(groupId);
+		try {
+			SimpleMessageGroup group = this.loadGroup(groupId);
+			group.remove(messageToRemove);
+			group.setLastModified(System.currentTimeMillis());
+			synchronized (this.pendingMonitor) {
+				this.pendingGroup(groupId).remove(messageToRemove);
+			}
+			return group;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.flushIfNecessary();
+		Lock lock = this.obtainLock(groupId);
+		try {
+			SimpleMessageGroup group = this.loadGroup(groupId);
+			Message<?> message = group.getOne();
+			if (message != null) {
+				group.remove(message);
+				group.setLastModified(System.currentTimeMillis());
+				synchronized (this.pendingMonitor) {
+					this.pendingGroup(groupId).remove(message);
+				}
+			}
+			return message;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public void removeMessageGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.flushIfNecessary();
+		Lock lock = this.obtainLock(groupId);
+		try {
+			// an empty view hides the stored group until the removal has been written
+			this.groups.put(groupId, new SimpleMessageGroup(groupId));
+			synchronized (this.pendingMonitor) {
+				this.pendingGroup(groupId).removeGroup();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.flushIfNecessary();
+		Lock lock = this.obtainLock(groupId);
+		try {
+			SimpleMessageGroup group = this.loadGroup(groupId);
+			group.setLastReleasedMessageSequenceNumber(sequenceNumber);
+			group.setLastModified(System.currentTimeMillis());
+			synchronized (this.pendingMonitor) {
+				this.pendingGroup(groupId).setLastReleasedSequenceNumber(sequenceNumber);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public void completeGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.flushIfNecessary();
+		Lock lock = this.obtainLock(groupId);
+		try {
+			SimpleMessageGroup group = this.loadGroup(groupId);
+			group.complete();
+			group.setLastModified(System.currentTimeMillis());
+			synchronized (this.pendingMonitor) {
+				this.pendingGroup(groupId).complete();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public Iterator<MessageGroup> iterator() {
+		this.flushQuietly();
+		return this.target.iterator();
+	}
+
+	@Override
+	public int getMessageGroupCount() {
+		this.flushQuietly();
+		return this.target.getMessageGroupCount();
+	}
+
+	@Override
+	public int getMessageCountForAllMessageGroups() {
+		this.flushQuietly();
+		return this.target.getMessageCountForAllMessageGroups();
+	}
+
+	private MessageStore getTargetMessageStore() {
+		Assert.state(this.target instanceof MessageStore, "The target store [" + this.target
+				+ "] does not implement MessageStore");
+		return (MessageStore) this.target;
+	}
+
+	private Lock obtainLock(Object groupId) {
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+		return lock;
+	}
+
+	/**
+	 * Must be called with the group lock held.
+	 */
+	private SimpleMessageGroup loadGroup(Object groupId) {
+		SimpleMessageGroup group = this.groups.get(groupId);
+		if (group == null) {
+			group = copyOf(this.target.getMessageGroup(groupId));
+			this.groups.put(groupId, group);
+		}
+		return group;
+	}
+
+	/**
+	 * Must be called with the pending monitor held.
+	 */
+	private PendingGroup pendingGroup(Object groupId) {
+		PendingGroup pending = this.pendingGroups.get(groupId);
+		if (pending == null) {
+			pending = new PendingGroup();
+			this.pendingGroups.put(groupId, pending);
+		}
+		this.pendingWrites++;
+		return pending;
+	}
+
+	/**
+	 * Failures are not the caller's concern here: they belong to other writes, which are kept for the next flush.
+	 * If they leave the pending write capacity reached, the caller waits until enough have been applied.
+	 */
+	private void flushIfNecessary() {
+		synchronized (this.pendingMonitor) {
+			if (this.pendingWrites < this.maxPendingWrites) {
+				return;
+			}
+		}
+		int capacity = Math.max(this.pendingWriteCapacity, this.maxPendingWrites);
+		while (true) {
+			this.flushQuietly();
+			synchronized (this.pendingMonitor) {
+				if (this.pendingWrites < capacity) {
+					return;
+				}
+				try {
+					this.pendingMonitor.wait(this.flushInterval);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MessagingException("Interrupted while waiting for pending writes to be applied", e);
+				}
+				if (this.pendingWrites < capacity) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			this.flush();
+		}
+		catch (RuntimeException e) {
+			logger.error("Failed to write to the target store, the failed writes will be retried", e);
+		}
+	}
+
+	private void checkSerializable(Message<?> message) {
+		Serializer<? super Message<?>> serializer = this.serializer;
+		if (serializer == null) {
+			return;
+		}
+		try {
+			serializer.serialize(message, new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			});
+		}
+		catch (Exception e) {
+			throw new MessagingException(message, "Message cannot be written to the target store", e);
+		}
+	}
+
+	private void writeMessage(UUID id, Object write) {
+		if (write == REMOVED) {
+			this.getTargetMessageStore().removeMessage(id);
+		}
+		else {
+			this.getTargetMessageStore().addMessage((Message<?>) write);
+		}
+	}
+
+	private void evictIfEmpty(Object groupId) {
+		Lock lock = this.obtainLock(groupId);
+		try {
+			synchronized (this.pendingMonitor) {
+				if (this.pendingGroups.containsKey(groupId)) {
+					return;
+				}
+			}
+			SimpleMessageGroup group = this.groups.get(groupId);
+			if (group != null && group.size() == 0) {
+				this.groups.remove(groupId);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Counts a failed message write; returns true if it should be retried, otherwise reports it.
+	 * Must be called with the flush lock held.
+	 */
+	private boolean writeFailed(UUID id, Object write, RuntimeException e) {
+		if (this.maxWriteAttempts == 0) {
+			return true;
+		}
+		Integer failures = this.failedMessageWrites.get(id);
+		int attempts = (failures == null) ? 1 : failures + 1;
+		if (attempts < this.maxWriteAttempts) {
+			this.failedMessageWrites.put(id, attempts);
+			return true;
+		}
+		this.failedMessageWrites.remove(id);
+		if (write == REMOVED) {
+			this.writeDiscarded(null, "Discarding the removal of message [" + id + "] after " + attempts
+					+ " failed attempts", e);
+		}
+		else {
+			this.writeDiscarded((Message<?>) write, "Discarding message [" + id + "] after " + attempts
+					+ " failed attempts to write it", e);
+		}
+		return false;
+	}
+
+	/**
+	 * Counts a failed group write; returns true if the group's remaining writes should be retried, otherwise
+	 * reports them. The view of the group is kept, so that the writes are not lost for the callers.
+	 */
+	private boolean groupWriteFailed(Object groupId, PendingGroup pendingGroup, RuntimeException e) {
+		if (this.maxWriteAttempts == 0 || ++pendingGroup.failedAttempts < this.maxWriteAttempts) {
+			return true;
+		}
+		String description = "after " + pendingGroup.failedAttempts + " failed attempts to write group ["
+				+ groupId + "]";
+		List<Message<?>> discarded;
+		synchronized (this.pendingMonitor) {
+			discarded = pendingGroup.discard();
+		}
+		this.writeDiscarded(null, "Discarding the remaining writes of group [" + groupId + "] " + description, e);
+		for (Message<?> message : discarded) {
+			this.writeDiscarded(message, "Discarding message [" + message.getHeaders().getId() + "] "
+					+ description, e);
+		}
+		return false;
+	}
+
+	private void writeDiscarded(Message<?> message, String description, RuntimeException cause) {
+		MessagingException exception = new MessagingException(message, description, cause);
+		MessageChannel errorChannel = this.errorChannel;
+		if (errorChannel != null) {
+			try {
+				if (errorChannel.send(new ErrorMessage(exception))) {
+					return;
+				}
+			}
+			catch (RuntimeException e) {
+				logger.error("Failed to send to the error channel", e);
+			}
+		}
+		logger.error(description, exception);
+	}
+
+	/**
+	 * Must be called with the pending monitor held.
+	 */
+	private void index(Message<?> message) {
+		UUID id = message.getHeaders().getId();
+		IndexedMessage indexed = this.pendingGroupMessages.get(id);
+		if (indexed == null) {
+			this.pendingGroupMessages.put(id, new IndexedMessage(message));
+		}
+		else {
+			indexed.count++;
+		}
+	}
+
+	/**
+	 * Must be called with the pending monitor held.
+	 */
+	private void unindex(UUID id) {
+		IndexedMessage indexed = this.pendingGroupMessages.get(id);
+		if (indexed != null && --indexed.count == 0) {
+			this.pendingGroupMessages.remove(id);
+		}
+	}
+
+	/**
+	 * Puts writes that could not be applied back in front of the writes queued since the flush started, and adds
+	 * them to the writes counted since then.
+	 */
+	private void requeue(Map<Object, PendingGroup> groupWrites, List<Map.Entry<UUID, Object>> messageWrites) {
+		synchronized (this.pendingMonitor) {
+			Map<UUID, Object> messages = new LinkedHashMap<UUID, Object>();
+			int requeued = 0;
+			for (Map.Entry<UUID, Object> entry : messageWrites) {
+				messages.put(entry.getKey(), entry.getValue());
+				if (!this.pendingMessages.containsKey(entry.getKey())) {
+					requeued++;
+				}
+			}
+			for (Map.Entry<UUID, Object> entry : this.pendingMessages.entrySet()) {
+				messages.remove(entry.getKey());
+				messages.put(entry.getKey(), entry.getValue());
+			}
+			for (PendingGroup unwritten : groupWrites.values()) {
+				requeued += unwritten.size();
+			}
+			Map<Object, PendingGroup> groups = new LinkedHashMap<Object, PendingGroup>(groupWrites);
+			for (Map.Entry<Object, PendingGroup> entry : this.pendingGroups.entrySet()) {
+				PendingGroup unwritten = groups.get(entry.getKey());
+				groups.put(entry.getKey(), unwritten == null ? entry.getValue() : unwritten.merge(entry.getValue()));
+			}
+			this.pendingMessages = messages;
+			this.pendingGroups = groups;
+			this.pendingWrites += requeued;
+		}
+	}
+
+	private static SimpleMessageGroup copyOf(MessageGroup group) {
+		SimpleMessageGroup copy = new SimpleMessageGroup(group);
+		copy.setLastModified(group.getLastModified());
+		copy.setLastReleasedMessageSequenceNumber(group.getLastReleasedMessageSequenceNumber());
+		return copy;
+	}
+
+
+	/**
+	 * The coalesced writes for one group, applied in the order: group removal, added messages, removed messages,
+	 * last released sequence number, completion. Each write is discarded as soon as it has been applied so that a
+	 * failed flush leaves only the unwritten ones. The added messages are indexed for {@link #getMessage(UUID)}
+	 * until they are written; apart from {@link #writeTo(Object, MessageGroupStore)}, all methods must be called
+	 * with the pending monitor held.
+	 */
+	private class PendingGroup {
+
+		private boolean removeGroup;
+
+		private final Map<UUID, Message<?>> added = new LinkedHashMap<UUID, Message<?>>();
+
+		private final Map<UUID, Message<?>> removed = new LinkedHashMap<UUID, Message<?>>();
+
+		private Integer lastReleasedSequenceNumber;
+
+		private boolean complete;
+
+		private int failedAttempts;
+
+		void add(Message<?> message) {
+			UUID id = message.getHeaders().getId();
+			if (this.removed.remove(id) == null && this.added.put(id, message) == null) {
+				index(message);
+			}
+		}
+
+		void remove(Message<?> message) {
+			UUID id = message.getHeaders().getId();
+			if (this.added.remove(id) == null) {
+				this.removed.put(id, message);
+			}
+			else {
+				unindex(id);
+			}
+		}
+
+		void removeGroup() {
+			this.removeGroup = true;
+			this.unindexAdded();
+			this.added.clear();
+			this.removed.clear();
+			this.lastReleasedSequenceNumber = null;
+			this.complete = false;
+		}
+
+		void setLastReleasedSequenceNumber(int sequenceNumber) {
+			this.lastReleasedSequenceNumber = sequenceNumber;
+		}
+
+		void complete() {
+			this.complete = true;
+		}
+
+		int size() {
+			return (this.removeGroup ? 1 : 0) + this.added.size() + this.removed.size()
+					+ (this.lastReleasedSequenceNumber != null ? 1 : 0) + (this.complete ? 1 : 0);
+		}
+
+		/**
+		 * Replays the newer writes on top of this one.
+		 */
+		PendingGroup merge(PendingGroup newer) {
+			if (newer.removeGroup) {
+				this.unindexAdded();
+				return newer;
+			}
+			newer.unindexAdded();
+			for (Message<?> message : newer.added.values()) {
+				this.add(message);
+			}
+			for (Message<?> message : newer.removed.values()) {
+				this.remove(message);
+			}
+			if (newer.lastReleasedSequenceNumber != null) {
+				this.lastReleasedSequenceNumber = newer.lastReleasedSequenceNumber;
+			}
+			this.complete |= newer.complete;
+			return this;
+		}
+
+		/**
+		 * Drops all writes, returning the added messages.
+		 */
+		List<Message<?>> discard() {
+			List<Message<?>> messages = new ArrayList<Message<?>>(this.added.values());
+			this.unindexAdded();
+			this.removeGroup = false;
+			this.added.clear();
+			this.removed.clear();
+			this.lastReleasedSequenceNumber = null;
+			this.complete = false;
+			return messages;
+		}
+
+		private void unindexAdded() {
+			for (UUID id : this.added.keySet()) {
+				unindex(id);
+			}
+		}
+
+		void writeTo(Object groupId, MessageGroupStore store) {
+			if (this.removeGroup) {
+				store.removeMessageGroup(groupId);
+				this.removeGroup = false;
+			}
+			for (Iterator<Message<?>> iterator = this.added.values().iterator(); iterator.hasNext();) {
+				Message<?> message = iterator.next();
+				store.addMessageToGroup(groupId, message);
+				synchronized (pendingMonitor) {
+					iterator.remove();
+					unindex(message.getHeaders().getId());
+				}
+			}
+			for (Iterator<Message<?>> iterator = this.removed.values().iterator(); iterator.hasNext();) {
+				store.removeMessageFromGroup(groupId, iterator.next());
+				iterator.remove();
+			}
+			if (this.lastReleasedSequenceNumber != null) {
+				store.setLastReleasedSequenceNumberForGroup(groupId, this.lastReleasedSequenceNumber);
+				this.lastReleasedSequenceNumber = null;
+			}
+			if (this.complete) {
+				store.completeGroup(groupId);
+				this.complete = false;
+			}
+		}
+
+	}
+
+
+	private static class IndexedMessage {
+
+		private final Message<?> message;
+
+		private int count = 1;
+
+		IndexedMessage(Message<?> message) {
+			this.message = message;
+		}
+
+	}
+
+}
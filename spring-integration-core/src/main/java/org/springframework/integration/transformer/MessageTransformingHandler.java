@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,8 @@ import org.springframework.integration.Message;
 import org.springframework.integration.context.NamedComponent;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.integration.handler.PayloadOnlyMessageHandler;
+import org.springframework.integration.handler.ReplyRequiredException;
 import org.springframework.util.Assert;
 
 /**
@@ -31,7 +33,8 @@ import org.springframework.util.Assert;
  * @author Mark Fisher
  * @author Oleg Zhurakousky
  */
-public class MessageTransformingHandler extends AbstractReplyProducingMessageHandler {
+public class MessageTransformingHandler extends AbstractReplyProducingMessageHandler
+		implements PayloadOnlyMessageHandler {
 
 	private final Transformer transformer;
 
@@ -79,4 +82,32 @@ public class MessageTransformingHandler extends AbstractReplyProducingMessageHan
 		return false;
 	}
 
+	/**
+	 * Only transformers that derive the new payload from the payload alone
+	 * ({@link AbstractPayloadTransformer}s) qualify.
+	 */
+	public boolean isPayloadOnly() {
+		return this.transformer instanceof AbstractPayloadTransformer<?, ?>
+				&& !this.hasAdviceChain() && !this.isShouldTrack();
+	}
+
+	public Object handlePayloadOnly(Message<?> message) {
+		Assert.state(this.isPayloadOnly(), "transformer '" + this.transformer + "' is not a payload transformer");
+		Object result = null;
+		try {
+			result = ((AbstractPayloadTransformer<?, ?>) this.transformer).doTransform(message);
+		}
+		catch (Exception e) {
+			if (e instanceof MessageTransformationException) {
+				throw (MessageTransformationException) e;
+			}
+			throw new MessageTransformationException(message, "failed to transform message", e);
+		}
+		if (result == null && this.isRequiresReply()) {
+			throw new ReplyRequiredException(message, "No reply produced by handler '" +
+					this.getComponentName() + "', and its 'requiresReply' property is set to true.");
+		}
+		return result;
+	}
+
 }
@@ -15,30 +15,49 @@
  */
 package org.springframework.integration.util;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.integration.MessagingException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
 /**
  * Implementation of {@link Pool} supporting dynamic resizing and a variable
  * timeout when attempting to obtain an item from the pool. Pool grows on
  * demand up to the limit.
+ * <p/>
+ * Obtaining and releasing items does not lock the pool; only the wait for a
+ * free slot blocks, when the pool is exhausted.
+ * <p/>
+ * Optionally, the pool performs maintenance in the background (see
+ * {@link #startMaintenance()}): idle items are removed after the idle timeout,
+ * idle items are checked with {@link PoolItemCallback#isStale(Object)}, and
+ * the pool is topped up to the minimum number of idle items so that the first
+ * requests after startup do not pay for creating them.
  * @author Gary Russell
  * @since 2.2
  *
  */
 public class SimplePool<T> implements Pool<T> {
 
+	private static ScheduledExecutorService maintenanceExecutor;
+
+	private static int maintenanceExecutorUsers;
+
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
 	private final Semaphore permits = new Semaphore(0);
@@ -47,14 +66,46 @@ public class SimplePool<T> implements Pool<T> {
 
 	private final AtomicInteger targetPoolSize = new AtomicInteger();
 
-	private long waitTimeout = Long.MAX_VALUE;
+	private volatile long waitTimeout = Long.MAX_VALUE;
+
+	private final Queue<IdleItem<T>> available = new ConcurrentLinkedQueue<IdleItem<T>>();
 
-	private final BlockingQueue<T> available = new LinkedBlockingQueue<T>();
+	private final AtomicInteger idleCount = new AtomicInteger();
 
-	private final Set<T> allocated = Collections.synchronizedSet(new HashSet<T>());
+	private final Map<T, Boolean> allocated = new ConcurrentHashMap<T, Boolean>();
 
 	private final PoolItemCallback<T> callback;
 
+	private volatile long idleTimeout;
+
+	private volatile int minIdle;
+
+	private volatile boolean validateIdleItems;
+
+	private volatile long maintenanceInterval = 10000;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ScheduledFuture<?> maintenanceTask;
+
+	private volatile boolean sharedExecutorUsed;
+
+	private final Object maintenanceMonitor = new Object();
+
+	private final AtomicLong checkoutCount = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	private final AtomicLong createdCount = new AtomicLong();
+
+	private final AtomicLong evictedCount = new AtomicLong();
+
+	private final AtomicLong staleCount = new AtomicLong();
+
 	/**
 	 * Creates a SimplePool with a specific limit.
 	 * @param poolSize The maximum number of items the pool supports.
@@ -83,30 +134,37 @@ public class SimplePool<T> implements Pool<T> {
 	 * @param poolSize The desired target pool size.
 	 */
 	public synchronized void setPoolSize(int poolSize) {
-		int delta = poolSize - this.poolSize.get();
-		this.targetPoolSize.addAndGet(delta);
+		this.targetPoolSize.set(poolSize);
 		if (logger.isDebugEnabled()) {
-			logger.debug(String.format("Target pool size changed by %d, now %d", delta, this.targetPoolSize.get()));
+			logger.debug(String.format("Target pool size changed to %d", poolSize));
 		}
-		if (delta > 0) {
-			this.poolSize.addAndGet(delta);
-			this.permits.release(delta);
+		int size;
+		while ((size = this.poolSize.get()) < poolSize) {
+			if (this.poolSize.compareAndSet(size, size + 1)) {
+				this.permits.release();
+			}
 		}
-		else while (delta < 0) {
+		while (this.poolSize.get() > poolSize) {
 			if (!this.permits.tryAcquire()) {
 				break;
 			}
-			T item = this.available.poll();
-			if (item == null) {
+			IdleItem<T> idle = this.pollIdle();
+			if (idle == null) {
 				this.permits.release();
 				break;
 			}
-			doRemoveItem(item);
-			this.poolSize.decrementAndGet();
-			delta++;
+			if (this.shrinkIfOvercommitted()) {
+				doRemoveItem(idle.item);
+			}
+			else {
+				// a concurrent release already brought the pool down to the target
+				this.offerIdle(idle);
+				this.permits.release();
+			}
 		}
-		if (delta < 0 && logger.isDebugEnabled()) {
-			logger.debug(String.format("Pool is overcommitted by %d; items will be removed when returned", -delta));
+		int overcommitted = this.poolSize.get() - poolSize;
+		if (overcommitted > 0 && logger.isDebugEnabled()) {
+			logger.debug(String.format("Pool is overcommitted by %d; items will be removed when returned", overcommitted));
 		}
 	}
 
@@ -120,7 +178,7 @@ public class SimplePool<T> implements Pool<T> {
 	}
 
 	public int getIdleCount() {
-		return this.available.size();
+		return this.idleCount.get();
 	}
 
 	public int getActiveCount() {
@@ -140,21 +198,79 @@ public class SimplePool<T> implements Pool<T> {
 		this.waitTimeout = waitTimeout;
 	}
 
+	/**
+	 * Sets the time after which an idle item is removed from the pool by the
+	 * background maintenance, unless that would leave fewer than minIdle idle
+	 * items. <br/>Default: 0 (idle items are kept).
+	 * @param idleTimeout The idle timeout in milliseconds.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Sets the number of idle items the background maintenance keeps in the pool,
+	 * creating items as necessary (as long as the pool size allows). <br/>Default: 0.
+	 * @param minIdle The minimum number of idle items.
+	 */
+	public void setMinIdle(int minIdle) {
+		Assert.isTrue(minIdle >= 0, "'minIdle' must not be negative");
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * When true, the background maintenance checks idle items with
+	 * {@link PoolItemCallback#isStale(Object)} and removes stale ones, rather
+	 * than leaving that to the next getItem(). <br/>Default: false.
+	 * @param validateIdleItems true to validate idle items.
+	 */
+	public void setValidateIdleItems(boolean validateIdleItems) {
+		this.validateIdleItems = validateIdleItems;
+	}
+
+	/**
+	 * Sets the delay between runs of the background maintenance. <br/>Default: 10 seconds.
+	 * @param maintenanceInterval The interval in milliseconds.
+	 */
+	public void setMaintenanceInterval(long maintenanceInterval) {
+		Assert.isTrue(maintenanceInterval > 0, "'maintenanceInterval' must be positive");
+		this.maintenanceInterval = maintenanceInterval;
+	}
+
+	/**
+	 * Sets the scheduler that runs the background maintenance. By default, a
+	 * daemon thread shared by all pools is used; it is stopped once no pool
+	 * runs maintenance.
+	 * @param taskScheduler The task scheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
 	/**
 	 * Obtains an item from the pool; waits up to waitTime milliseconds (default infinity).
 	 * @throws MessagingException if no items become available in time.
 	 */
 	public T getItem() {
 		boolean permitted = false;
+		this.checkoutCount.incrementAndGet();
 		try {
-			try {
-				permitted = this.permits.tryAcquire(this.waitTimeout, TimeUnit.MILLISECONDS);
-			}
-			catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new MessagingException("Interrupted awaiting a pooled resource", e);
+			permitted = this.permits.tryAcquire();
+			if (!permitted) {
+				long start = System.nanoTime();
+				try {
+					permitted = this.permits.tryAcquire(this.waitTimeout, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MessagingException("Interrupted awaiting a pooled resource", e);
+				}
+				finally {
+					this.recordWait(System.nanoTime() - start);
+				}
 			}
 			if (!permitted) {
+				this.timeoutCount.incrementAndGet();
 				throw new IllegalStateException("Timed out while waiting to aquire a pool entry.");
 			}
 			T item = doGetItem();
@@ -171,36 +287,66 @@ public class SimplePool<T> implements Pool<T> {
 		}
 	}
 
-	private T doGetItem() {
-		T item = this.available.poll();
-		if (item != null && logger.isDebugEnabled()) {
-			logger.debug("Obtained " + item + " from pool.");
+	private void recordWait(long nanos) {
+		this.totalWaitNanos.addAndGet(nanos);
+		long max = this.maxWaitNanos.get();
+		while (nanos > max && !this.maxWaitNanos.compareAndSet(max, nanos)) {
+			max = this.maxWaitNanos.get();
 		}
-		if (item == null) {
-			item = this.callback.createForPool();
-			if (logger.isDebugEnabled()) {
-				logger.debug("Obtained new " + item + ".");
+	}
+
+	private T doGetItem() {
+		IdleItem<T> idle;
+		while ((idle = this.pollIdle()) != null) {
+			if (!this.callback.isStale(idle.item)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Obtained " + idle.item + " from pool.");
+				}
+				return idle.item;
 			}
-			allocated.add(item);
-		}
-		else if (this.callback.isStale(item)) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Received a stale item, will attempt to get a new one.");
 			}
-			item = doGetItem();
+			this.staleCount.incrementAndGet();
+			this.allocated.remove(idle.item);
+		}
+		T item = this.createItem();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Obtained new " + item + ".");
 		}
 		return item;
 	}
 
+	private T createItem() {
+		T item = this.callback.createForPool();
+		this.createdCount.incrementAndGet();
+		if (item != null) {
+			this.allocated.put(item, Boolean.TRUE);
+		}
+		return item;
+	}
+
+	private IdleItem<T> pollIdle() {
+		IdleItem<T> idle = this.available.poll();
+		if (idle != null) {
+			this.idleCount.decrementAndGet();
+		}
+		return idle;
+	}
+
+	private void offerIdle(IdleItem<T> idle) {
+		this.available.offer(idle);
+		this.idleCount.incrementAndGet();
+	}
+
 	/**
 	 * Returns an item to the pool. Item may be null, in which case a subsequent getItem()
 	 * will return a new instance.
 	 */
-	public synchronized void releaseItem(T item) {
-		Assert.isTrue(item == null || this.allocated.contains(item),
+	public void releaseItem(T item) {
+		Assert.isTrue(item == null || this.allocated.containsKey(item),
 				"You can only release items that were obtained from the pool");
-		if (this.poolSize.get() > targetPoolSize.get()) {
-			poolSize.decrementAndGet();
+		if (this.shrinkIfOvercommitted()) {
 			if (item != null) {
 				doRemoveItem(item);
 			}
@@ -210,16 +356,32 @@ public class SimplePool<T> implements Pool<T> {
 				logger.debug("Releasing " + item + " back to the pool");
 			}
 			if (item != null) {
-				available.add(item);
+				this.offerIdle(new IdleItem<T>(item));
+			}
+			this.permits.release();
+		}
+	}
+
+	/**
+	 * Decrements the pool size if it is above the target; the caller then
+	 * keeps the permit of the item it releases. This is the only place the
+	 * pool shrinks, so concurrent releases and {@link #setPoolSize(int)} never
+	 * take the pool below the target.
+	 */
+	private boolean shrinkIfOvercommitted() {
+		int size;
+		while ((size = this.poolSize.get()) > this.targetPoolSize.get()) {
+			if (this.poolSize.compareAndSet(size, size - 1)) {
+				return true;
 			}
-			permits.release();
 		}
+		return false;
 	}
 
-	public synchronized void removeAllIdleItems() {
-		T item;
-		while ((item = this.available.poll()) != null) {
-			doRemoveItem(item);
+	public void removeAllIdleItems() {
+		IdleItem<T> idle;
+		while ((idle = this.pollIdle()) != null) {
+			doRemoveItem(idle.item);
 		}
 	}
 
@@ -228,6 +390,202 @@ public class SimplePool<T> implements Pool<T> {
 		this.callback.removedFromPool(item);
 	}
 
+	/**
+	 * Removes idle items that exceeded the idle timeout, removes stale idle
+	 * items if validation is enabled and creates items until there are at least
+	 * minIdle idle items. Called periodically once {@link #startMaintenance()}
+	 * has been invoked; it may also be called directly.
+	 */
+	public void performMaintenance() {
+		long now = System.currentTimeMillis();
+		long idleTimeout = this.idleTimeout;
+		// each idle item is examined at most once; while it is being examined it
+		// holds a permit, just like an item that is in use
+		int toExamine = this.idleCount.get();
+		for (int i = 0; i < toExamine && this.permits.tryAcquire(); i++) {
+			IdleItem<T> idle = this.pollIdle();
+			if (idle == null) {
+				this.permits.release();
+				break;
+			}
+			try {
+				if (idleTimeout > 0 && now - idle.since >= idleTimeout && this.idleCount.get() >= this.minIdle) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Removing " + idle.item + ", idle for " + (now - idle.since) + "ms.");
+					}
+					this.evictedCount.incrementAndGet();
+					doRemoveItem(idle.item);
+				}
+				else if (this.validateIdleItems && this.callback.isStale(idle.item)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Removing stale idle item " + idle.item + ".");
+					}
+					this.staleCount.incrementAndGet();
+					this.allocated.remove(idle.item);
+				}
+				else {
+					this.offerIdle(idle);
+				}
+			}
+			finally {
+				this.permits.release();
+			}
+		}
+		while (this.idleCount.get() < this.minIdle && this.getAllocatedCount() < this.poolSize.get()
+				&& this.permits.tryAcquire()) {
+			try {
+				T item = this.createItem();
+				if (item == null) {
+					break;
+				}
+				this.offerIdle(new IdleItem<T>(item));
+			}
+			catch (RuntimeException e) {
+				logger.warn("Failed to create an idle item for the pool", e);
+				break;
+			}
+			finally {
+				this.permits.release();
+			}
+		}
+	}
+
+	/**
+	 * Schedules {@link #performMaintenance()} to run in the background at the
+	 * maintenance interval, the first run being immediate. Has no effect unless
+	 * an idle timeout, a minimum number of idle items or validation of idle
+	 * items is configured. The maintenance runs on the task scheduler, if
+	 * provided, or on a daemon thread shared by all pools otherwise;
+	 * {@link #stopMaintenance()} must be invoked once the pool is no longer used.
+	 */
+	public void startMaintenance() {
+		synchronized (this.maintenanceMonitor) {
+			if (this.maintenanceTask != null
+					|| (this.idleTimeout <= 0 && this.minIdle <= 0 && !this.validateIdleItems)) {
+				return;
+			}
+			Runnable maintenance = new Runnable() {
+				public void run() {
+					try {
+						performMaintenance();
+					}
+					catch (Exception e) {
+						logger.error("Pool maintenance failed", e);
+					}
+				}
+			};
+			TaskScheduler taskScheduler = this.taskScheduler;
+			if (taskScheduler != null) {
+				this.maintenanceTask = taskScheduler.scheduleWithFixedDelay(maintenance, new Date(),
+						this.maintenanceInterval);
+			}
+			else {
+				this.maintenanceTask = acquireMaintenanceExecutor().scheduleWithFixedDelay(maintenance,
+						0, this.maintenanceInterval, TimeUnit.MILLISECONDS);
+				this.sharedExecutorUsed = true;
+			}
+		}
+	}
+
+	/**
+	 * Cancels the background maintenance, if running. The shared maintenance
+	 * thread is stopped when no other pool uses it.
+	 */
+	public void stopMaintenance() {
+		synchronized (this.maintenanceMonitor) {
+			if (this.maintenanceTask != null) {
+				this.maintenanceTask.cancel(false);
+				this.maintenanceTask = null;
+				if (this.sharedExecutorUsed) {
+					this.sharedExecutorUsed = false;
+					releaseMaintenanceExecutor();
+				}
+			}
+		}
+	}
+
+	private static synchronized ScheduledExecutorService acquireMaintenanceExecutor() {
+		if (maintenanceExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pool-maintenance-");
+			threadFactory.setDaemon(true);
+			maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		}
+		maintenanceExecutorUsers++;
+		return maintenanceExecutor;
+	}
+
+	private static synchronized void releaseMaintenanceExecutor() {
+		if (--maintenanceExecutorUsers == 0) {
+			maintenanceExecutor.shutdown();
+			maintenanceExecutor = null;
+		}
+	}
+
+	/**
+	 * Returns true while the maintenance thread shared by pools without a task scheduler is running.
+	 */
+	static synchronized boolean isMaintenanceExecutorActive() {
+		return maintenanceExecutor != null;
+	}
+
+	/**
+	 * @return the number of calls to getItem(), successful or not.
+	 */
+	public long getCheckoutCount() {
+		return this.checkoutCount.get();
+	}
+
+	/**
+	 * @return the number of calls to getItem() that timed out waiting for an item.
+	 */
+	public long getTimeoutCount() {
+		return this.timeoutCount.get();
+	}
+
+	/**
+	 * @return the mean time, in milliseconds, that calls to getItem() waited for an
+	 * item to become available, including the calls that timed out.
+	 */
+	public double getMeanWaitTime() {
+		long count = this.checkoutCount.get();
+		return count == 0 ? 0 : this.totalWaitNanos.get() / 1000000.0 / count;
+	}
+
+	/**
+	 * @return the longest time, in milliseconds, getItem() waited for an item to become available.
+	 */
+	public double getMaxWaitTime() {
+		return this.maxWaitNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * @return the ratio of items in use to the pool size.
+	 */
+	public double getUtilization() {
+		return (double) this.getActiveCount() / this.poolSize.get();
+	}
+
+	/**
+	 * @return the number of items created for the pool.
+	 */
+	public long getCreatedCount() {
+		return this.createdCount.get();
+	}
+
+	/**
+	 * @return the number of items removed because they exceeded the idle timeout.
+	 */
+	public long getEvictedCount() {
+		return this.evictedCount.get();
+	}
+
+	/**
+	 * @return the number of items removed because they were stale.
+	 */
+	public long getStaleCount() {
+		return this.staleCount.get();
+	}
+
 	/**
 	 * User of the pool provide an implementation of this interface; called during
 	 * various pool operations.
@@ -246,7 +604,8 @@ public class SimplePool<T> implements Pool<T> {
 		 * Called by the pool when an idle item is retrieved from the pool. Indicates
 		 * whether that item is usable, or should be discarded. The pool takes no
 		 * further action on a stale item, discards it, and attempts to find or create
-		 * another item.
+		 * another item. If idle items are validated, it is also called by the
+		 * background maintenance, which discards stale items in the same way.
 		 * @param item The item.
 		 * @return true if the item should not be used.
 		 */
@@ -260,4 +619,15 @@ public class SimplePool<T> implements Pool<T> {
 		 */
 		void removedFromPool(T item);
 	}
+
+	private static class IdleItem<T> {
+
+		private final T item;
+
+		private final long since = System.currentTimeMillis();
+
+		private IdleItem(T item) {
+			this.item = item;
+		}
+	}
 }
@@ -19,6 +19,7 @@ package org.springframework.integration.channel;
 import java.util.Collections;
 import java.util.Date;
 
+import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.context.support.ConversionServiceFactoryBean;
@@ -29,14 +30,22 @@ import org.springframework.core.convert.support.ConversionServiceFactory;
 import org.springframework.core.convert.support.GenericConversionService;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageDeliveryException;
+import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.util.StopWatch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Mark Fisher
@@ -165,6 +174,67 @@ public class DatatypeChannelTests {
 		channel.send(new ErrorMessage(new Exception("test")));
 	}
 
+	@Test
+	public void conversionDecisionIsCached() {
+		QueueChannel channel = createChannel(Integer.class);
+		ConversionService conversionService = mock(ConversionService.class);
+		when(conversionService.canConvert(Boolean.class, Integer.class)).thenReturn(true);
+		when(conversionService.convert(Boolean.TRUE, Integer.class)).thenReturn(1);
+		channel.setConversionService(conversionService);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(channel.send(new GenericMessage<Boolean>(Boolean.TRUE)));
+			assertEquals(new Integer(1), channel.receive(0).getPayload());
+		}
+		verify(conversionService, times(1)).canConvert(Boolean.class, Integer.class);
+		verify(conversionService, times(3)).convert(Boolean.TRUE, Integer.class);
+	}
+
+	@Test
+	public void cachedDecisionsDiscardedWhenDatatypesChange() {
+		QueueChannel channel = createChannel(String.class);
+		assertTrue(channel.send(new GenericMessage<String>("test")));
+		channel.setDatatypes(Integer.class);
+		try {
+			channel.send(new GenericMessage<String>("test"));
+			fail("expected MessageDeliveryException");
+		}
+		catch (MessageDeliveryException e) {
+			// expected
+		}
+		channel.setDatatypes();
+		assertTrue(channel.send(new GenericMessage<String>("test")));
+	}
+
+	@Test
+	@Ignore
+	@SuppressWarnings("deprecation")
+	public void performanceTest() {
+		int times = 10000000;
+		MessageHandler handler = new MessageHandler() {
+			public void handleMessage(Message<?> message) {
+			}
+		};
+		Message<String> message = new GenericMessage<String>("test");
+		DirectChannel untyped = new DirectChannel();
+		untyped.subscribe(handler);
+		DirectChannel typed = new DirectChannel();
+		typed.setDatatypes(Integer.class, Date.class, CharSequence.class);
+		typed.setConversionService(ConversionServiceFactory.createDefaultConversionService());
+		typed.subscribe(handler);
+		StopWatch watch = new StopWatch();
+		watch.start("untyped");
+		for (int i = 0; i < times; i++) {
+			untyped.send(message);
+		}
+		watch.stop();
+		watch.start("typed");
+		for (int i = 0; i < times; i++) {
+			typed.send(message);
+		}
+		watch.stop();
+		System.out.println(watch.prettyPrint());
+	}
+
 
 	private static QueueChannel createChannel(Class<?> ... datatypes) {
 		QueueChannel channel = new QueueChannel();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -34,6 +36,7 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.channel.AbstractMessageChannel;
+import org.springframework.integration.channel.ChannelInterceptor;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
@@ -173,6 +176,82 @@ public class ChannelInterceptorTests {
 		assertEquals("foo", foo);
 	}
 
+	@Test
+	public void testWireTapSamplingConfiguration() {
+		ApplicationContext ac = new ClassPathXmlApplicationContext("ChannelInterceptorTests-context.xml", ChannelInterceptorTests.class);
+		WireTap wireTap = ac.getBean("sampling", WireTap.class);
+		DirectFieldAccessor accessor = new DirectFieldAccessor(wireTap);
+		assertEquals(3, accessor.getPropertyValue("sampleRate"));
+		assertEquals(100, accessor.getPropertyValue("maxMessagesPerSecond"));
+		MessageChannel sampled = ac.getBean("sampled", MessageChannel.class);
+		QueueChannel tap = ac.getBean("tap", QueueChannel.class);
+		for (int i = 0; i < 6; i++) {
+			sampled.send(new GenericMessage<Integer>(i));
+		}
+		assertEquals(0, tap.receive(0).getPayload());
+		assertEquals(3, tap.receive(0).getPayload());
+		assertNull(tap.receive(0));
+	}
+
+	@Test
+	public void testInterceptorsAddedToUnderlyingListAreInvoked() {
+		final AtomicInteger invokedCount = new AtomicInteger();
+		DirectFieldAccessor cAccessor = new DirectFieldAccessor(channel);
+		Object iList = cAccessor.getPropertyValue("interceptors");
+		DirectFieldAccessor iAccessor = new DirectFieldAccessor(iList);
+		@SuppressWarnings("unchecked")
+		List<ChannelInterceptor> interceptorList = (List<ChannelInterceptor>) iAccessor.getPropertyValue("interceptors");
+		ChannelInterceptor interceptor = new ChannelInterceptorAdapter() {
+			@Override
+			public Message<?> preSend(Message<?> message, MessageChannel channel) {
+				invokedCount.incrementAndGet();
+				return message;
+			}
+		};
+		// as done for global interceptors
+		interceptorList.add(0, interceptor);
+		channel.send(new GenericMessage<String>("test"));
+		assertEquals(1, invokedCount.get());
+		interceptorList.add(interceptor);
+		channel.send(new GenericMessage<String>("test"));
+		assertEquals(3, invokedCount.get());
+		interceptorList.clear();
+		channel.send(new GenericMessage<String>("test"));
+		assertEquals(3, invokedCount.get());
+		assertEquals(3, channel.getQueueSize());
+	}
+
+	@Test
+	public void testInterceptorsModifiedThroughViewsAreInvoked() {
+		final AtomicInteger invokedCount = new AtomicInteger();
+		DirectFieldAccessor cAccessor = new DirectFieldAccessor(channel);
+		Object iList = cAccessor.getPropertyValue("interceptors");
+		DirectFieldAccessor iAccessor = new DirectFieldAccessor(iList);
+		@SuppressWarnings("unchecked")
+		List<ChannelInterceptor> interceptorList = (List<ChannelInterceptor>) iAccessor.getPropertyValue("interceptors");
+		ChannelInterceptor interceptor = new ChannelInterceptorAdapter() {
+			@Override
+			public Message<?> preSend(Message<?> message, MessageChannel channel) {
+				invokedCount.incrementAndGet();
+				return message;
+			}
+		};
+		interceptorList.subList(0, 0).add(interceptor);
+		channel.send(new GenericMessage<String>("test"));
+		assertEquals(1, invokedCount.get());
+		Iterator<ChannelInterceptor> iterator = interceptorList.iterator();
+		iterator.next();
+		iterator.remove();
+		channel.send(new GenericMessage<String>("test"));
+		assertEquals(1, invokedCount.get());
+		interceptorList.add(interceptor);
+		interceptorList.add(new ChannelInterceptorAdapter());
+		Collections.reverse(interceptorList);
+		channel.send(new GenericMessage<String>("test"));
+		assertEquals(2, invokedCount.get());
+		assertSame(interceptor, interceptorList.get(1));
+	}
+
 
 	public static class PreSendReturnsMessageInterceptor extends ChannelInterceptorAdapter { 
 		private String foo;
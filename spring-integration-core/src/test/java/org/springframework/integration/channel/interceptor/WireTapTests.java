@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.channel.interceptor;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -117,6 +118,78 @@ public class WireTapTests {
 		wireTapChannel.send(MessageBuilder.withPayload("test").build());
 	}
 
+	@Test
+	public void wireTapWithSampleRate() {
+		QueueChannel mainChannel = new QueueChannel();
+		QueueChannel secondaryChannel = new QueueChannel();
+		WireTap wireTap = new WireTap(secondaryChannel);
+		wireTap.setSampleRate(4);
+		mainChannel.addInterceptor(wireTap);
+		for (int i = 0; i < 10; i++) {
+			mainChannel.send(new GenericMessage<Integer>(i));
+		}
+		assertEquals(10, mainChannel.getQueueSize());
+		assertEquals(0, secondaryChannel.receive(0).getPayload());
+		assertEquals(4, secondaryChannel.receive(0).getPayload());
+		assertEquals(8, secondaryChannel.receive(0).getPayload());
+		assertNull(secondaryChannel.receive(0));
+		assertEquals(3, wireTap.getTappedCount());
+	}
+
+	@Test
+	public void wireTapSampleRateAppliesToAcceptedMessagesOnly() {
+		QueueChannel mainChannel = new QueueChannel();
+		QueueChannel secondaryChannel = new QueueChannel();
+		WireTap wireTap = new WireTap(secondaryChannel, new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return ((Integer) message.getPayload()) % 2 == 1;
+			}
+		});
+		wireTap.setSampleRate(2);
+		mainChannel.addInterceptor(wireTap);
+		for (int i = 0; i < 8; i++) {
+			mainChannel.send(new GenericMessage<Integer>(i));
+		}
+		assertEquals(1, secondaryChannel.receive(0).getPayload());
+		assertEquals(5, secondaryChannel.receive(0).getPayload());
+		assertNull(secondaryChannel.receive(0));
+	}
+
+	@Test
+	public void wireTapWithMaxMessagesPerSecond() {
+		QueueChannel mainChannel = new QueueChannel();
+		QueueChannel secondaryChannel = new QueueChannel();
+		WireTap wireTap = new WireTap(secondaryChannel);
+		wireTap.setMaxMessagesPerSecond(3);
+		mainChannel.addInterceptor(wireTap);
+		for (int i = 0; i < 100; i++) {
+			mainChannel.send(new GenericMessage<Integer>(i));
+		}
+		assertEquals(100, mainChannel.getQueueSize());
+		// the sends may span the start of a new second
+		long tapped = wireTap.getTappedCount();
+		assertTrue("tapped " + tapped, tapped >= 3 && tapped <= 6);
+		assertEquals(tapped, secondaryChannel.getQueueSize());
+	}
+
+	@Test
+	public void failedTapSendNotCounted() {
+		QueueChannel mainChannel = new QueueChannel();
+		QueueChannel secondaryChannel = new QueueChannel(1);
+		WireTap wireTap = new WireTap(secondaryChannel);
+		mainChannel.addInterceptor(wireTap);
+		mainChannel.send(new GenericMessage<String>("foo"));
+		mainChannel.send(new GenericMessage<String>("bar"));
+		assertEquals(2, mainChannel.getQueueSize());
+		assertEquals(1, wireTap.getTappedCount());
+		assertEquals("foo", secondaryChannel.receive(0).getPayload());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void sampleRateMustBePositive() {
+		new WireTap(new QueueChannel()).setSampleRate(0);
+	}
+
 	private static class TestSelector implements MessageSelector {
 
 		private boolean shouldAccept;
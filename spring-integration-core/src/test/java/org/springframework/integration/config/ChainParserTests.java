@@ -248,6 +248,19 @@ public class ChainParserTests {
 		assertEquals(9876, sendTimeout);
 	}
 
+	@Test
+	public void chainWithFusedHandlers() {
+		Object endpoint = this.context.getBean("fusedChain");
+		MessageHandlerChain chain = (MessageHandlerChain) new DirectFieldAccessor(endpoint).getPropertyValue("handler");
+		assertTrue((Boolean) new DirectFieldAccessor(chain).getPropertyValue("fuseHandlers"));
+		List<?> chainHandlers = (List<?>) new DirectFieldAccessor(chain).getPropertyValue("chainHandlers");
+		assertEquals(1, chainHandlers.size());
+		MessageChannel input = this.context.getBean("fusedChainInput", MessageChannel.class);
+		input.send(MessageBuilder.withPayload(123).build());
+		Message<?> reply = this.output.receive(0);
+		assertEquals("123", reply.getPayload());
+	}
+
 	@Test //INT-1622
 	public void chainWithClaimChecks() {
 		Message<?> message = MessageBuilder.withPayload("test").build();
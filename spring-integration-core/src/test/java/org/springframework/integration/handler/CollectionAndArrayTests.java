@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import static org.hamcrest.CoreMatchers.is;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -80,6 +81,24 @@ public class CollectionAndArrayTests {
 		assertEquals(2, ((Set<?>) reply1.getPayload()).size());
 	}
 
+	@Test
+	public void iteratorWithRequestReplyHandler() {
+		MessageHandler handler = new AbstractReplyProducingMessageHandler() {
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				return Arrays.asList(new String[] { "foo", "bar" }).iterator();
+			}
+		};
+		QueueChannel channel = new QueueChannel();
+		Message<?> message = MessageBuilder.withPayload("test").setReplyChannel(channel).build();
+		handler.handleMessage(message);
+		Message<?> reply1 = channel.receive(0);
+		Message<?> reply2 = channel.receive(0);
+		assertNotNull(reply1);
+		assertNull(reply2);
+		assertTrue(reply1.getPayload() instanceof Iterator);
+	}
+
 	@Test
 	public void arrayWithRequestReplyHandler() {
 		MessageHandler handler = new AbstractReplyProducingMessageHandler() {
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageDeliveryException;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @since 3.0
+ */
+public class MessageBatcherTests {
+
+	private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+	private final BlockingQueue<List<Message<?>>> batches = new LinkedBlockingQueue<List<Message<?>>>();
+
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	private volatile Object failing;
+
+	private final MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+		public void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+			threads.add(Thread.currentThread());
+			for (Message<?> message : messages) {
+				if (message.getPayload().equals(failing)) {
+					failures.add(new MessageHandlingException(message, "failed"));
+				}
+			}
+			batches.add(messages);
+		}
+	});
+
+	@Before
+	public void setUp() {
+		this.taskScheduler.afterPropertiesSet();
+		this.batcher.setTaskScheduler(this.taskScheduler);
+	}
+
+	@After
+	public void tearDown() {
+		this.taskScheduler.destroy();
+	}
+
+	@Test
+	public void fullBatchWrittenOnWriterThread() throws Exception {
+		this.batcher.setBatchSize(2);
+		this.batcher.afterPropertiesSet();
+		this.batcher.add(new GenericMessage<String>("foo"));
+		assertNull(this.batches.poll(100, TimeUnit.MILLISECONDS));
+		this.batcher.add(new GenericMessage<String>("bar"));
+		List<Message<?>> batch = this.batches.poll(10, TimeUnit.SECONDS);
+		assertNotNull(batch);
+		assertEquals(2, batch.size());
+		assertNotSame(Thread.currentThread(), this.threads.get(0));
+		assertTrue(this.threads.get(0).getName().startsWith("batch-writer-"));
+		this.batcher.destroy();
+	}
+
+	@Test
+	public void partialBatchWrittenAfterFlushInterval() throws Exception {
+		this.batcher.setBatchSize(10);
+		this.batcher.setFlushInterval(50);
+		this.batcher.afterPropertiesSet();
+		this.batcher.add(new GenericMessage<String>("foo"));
+		List<Message<?>> batch = this.batches.poll(10, TimeUnit.SECONDS);
+		assertNotNull(batch);
+		assertEquals(1, batch.size());
+		this.batcher.destroy();
+	}
+
+	@Test
+	public void failuresSentToErrorChannel() throws Exception {
+		QueueChannel errorChannel = new QueueChannel();
+		this.failing = "bar";
+		this.batcher.setBatchSize(2);
+		this.batcher.setErrorChannel(errorChannel);
+		this.batcher.afterPropertiesSet();
+		Message<String> failed = new GenericMessage<String>("bar");
+		this.batcher.add(new GenericMessage<String>("foo"));
+		this.batcher.add(failed);
+		Message<?> error = errorChannel.receive(10000);
+		assertNotNull(error);
+		assertSame(failed, ((MessageHandlingException) error.getPayload()).getFailedMessage());
+		assertNull(errorChannel.receive(100));
+		this.batcher.destroy();
+	}
+
+	@Test
+	public void errorChannelFailureDoesNotStopWrites() throws Exception {
+		final AtomicInteger sent = new AtomicInteger();
+		this.failing = "bar";
+		this.batcher.setBatchSize(2);
+		this.batcher.setErrorChannel(new MessageChannel() {
+			public boolean send(Message<?> message) {
+				sent.incrementAndGet();
+				throw new MessageDeliveryException(message, "no subscribers");
+			}
+			public boolean send(Message<?> message, long timeout) {
+				return this.send(message);
+			}
+		});
+		this.batcher.afterPropertiesSet();
+		this.batcher.add(new GenericMessage<String>("foo"));
+		this.batcher.add(new GenericMessage<String>("bar"));
+		assertNotNull(this.batches.poll(10, TimeUnit.SECONDS));
+		this.batcher.add(new GenericMessage<String>("bar"));
+		this.batcher.add(new GenericMessage<String>("baz"));
+		assertNotNull(this.batches.poll(10, TimeUnit.SECONDS));
+		this.batcher.destroy();
+		assertEquals(2, sent.get());
+	}
+
+	@Test
+	public void flushThrowsFirstFailure() throws Exception {
+		this.failing = "bar";
+		this.batcher.setBatchSize(10);
+		this.batcher.afterPropertiesSet();
+		Message<String> failed = new GenericMessage<String>("bar");
+		this.batcher.add(new GenericMessage<String>("foo"));
+		this.batcher.add(failed);
+		try {
+			this.batcher.flush();
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertSame(failed, e.getFailedMessage());
+		}
+		assertSame(Thread.currentThread(), this.threads.get(0));
+		this.batcher.destroy();
+	}
+
+	@Test
+	public void sendersBlockedWhenBufferFull() throws Exception {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Object> written = Collections.synchronizedList(new ArrayList<Object>());
+		final MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+			public void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+				writing.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				for (Message<?> message : messages) {
+					written.add(message.getPayload());
+				}
+			}
+		});
+		batcher.setCapacity(1);
+		batcher.setTaskScheduler(this.taskScheduler);
+		batcher.afterPropertiesSet();
+		batcher.add(new GenericMessage<String>("foo"));
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		batcher.add(new GenericMessage<String>("bar"));
+		final CountDownLatch added = new CountDownLatch(1);
+		Thread sender = new Thread(new Runnable() {
+			public void run() {
+				batcher.add(new GenericMessage<String>("baz"));
+				added.countDown();
+			}
+		});
+		sender.setDaemon(true);
+		sender.start();
+		assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(added.await(10, TimeUnit.SECONDS));
+		batcher.destroy();
+		assertEquals(Arrays.<Object>asList("foo", "bar", "baz"), written);
+	}
+
+	@Test
+	public void addTimesOutWhenBufferStaysFull() throws Exception {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+			public void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+				writing.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		batcher.setCapacity(1);
+		batcher.setAddTimeout(100);
+		batcher.afterPropertiesSet();
+		batcher.add(new GenericMessage<String>("foo"));
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		batcher.add(new GenericMessage<String>("bar"));
+		Message<String> timedOut = new GenericMessage<String>("baz");
+		try {
+			batcher.add(timedOut);
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertSame(timedOut, e.getFailedMessage());
+		}
+		finally {
+			release.countDown();
+		}
+		batcher.destroy();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void capacityNotLessThanBatchSize() {
+		this.batcher.setBatchSize(10);
+		this.batcher.setCapacity(5);
+		this.batcher.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void taskSchedulerRequiredForFlushInterval() {
+		MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+			public void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+			}
+		});
+		batcher.setFlushInterval(1000);
+		batcher.afterPropertiesSet();
+	}
+
+}
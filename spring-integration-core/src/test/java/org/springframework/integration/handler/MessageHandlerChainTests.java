@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,10 @@ package org.springframework.integration.handler;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,10 +31,17 @@ import org.junit.Test;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.MessageProducer;
+import org.springframework.integration.core.MessageSelector;
+import org.springframework.integration.filter.MessageFilter;
+import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.transformer.AbstractPayloadTransformer;
+import org.springframework.integration.transformer.MessageTransformingHandler;
 
 /**
  * @author Mark Fisher
@@ -187,6 +198,157 @@ public class MessageHandlerChainTests {
 		assertEquals("testChain.handler#3", producer3.getComponentName());
 	}
 
+	@Test
+	public void fusedPayloadOnlyHandlers() {
+		final Message<String> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		final List<Object> seenIds = new ArrayList<Object>();
+		MessageFilter filter = new MessageFilter(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				seenIds.add(message.getHeaders().getId());
+				return !"FOO!".equals(message.getPayload());
+			}
+		});
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		handlers.add(new MessageTransformingHandler(new UpperCaseTransformer()));
+		handlers.add(filter);
+		handlers.add(new MessageTransformingHandler(new AppendingTransformer()));
+		QueueChannel out = new QueueChannel();
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(out);
+		chain.setFuseHandlers(true);
+		chain.afterPropertiesSet();
+		chain.handleMessage(message);
+		Message<?> reply = out.receive(0);
+		assertNotNull(reply);
+		assertEquals("FOO!", reply.getPayload());
+		assertEquals("baz", reply.getHeaders().get("bar"));
+		// the filter saw the transformer's result without a new Message being built
+		assertEquals(1, seenIds.size());
+		assertEquals(message.getHeaders().getId(), seenIds.get(0));
+	}
+
+	@Test
+	public void fusedHandlersStopWhenFiltered() {
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		handlers.add(new MessageTransformingHandler(new UpperCaseTransformer()));
+		handlers.add(new MessageFilter(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return !"FOO".equals(message.getPayload());
+			}
+		}));
+		handlers.add(new MessageTransformingHandler(new AppendingTransformer()));
+		QueueChannel out = new QueueChannel();
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(out);
+		chain.setFuseHandlers(true);
+		chain.afterPropertiesSet();
+		chain.handleMessage(message);
+		assertNull(out.receive(0));
+	}
+
+	@Test
+	public void filterWithDiscardChannelIsNotFused() {
+		QueueChannel discard = new QueueChannel();
+		MessageFilter filter = new MessageFilter(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return false;
+			}
+		});
+		filter.setDiscardChannel(discard);
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		handlers.add(new MessageTransformingHandler(new UpperCaseTransformer()));
+		handlers.add(filter);
+		handlers.add(new MessageTransformingHandler(new AppendingTransformer()));
+		QueueChannel out = new QueueChannel();
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(out);
+		chain.setFuseHandlers(true);
+		chain.afterPropertiesSet();
+		chain.handleMessage(message);
+		assertNull(out.receive(0));
+		Message<?> discarded = discard.receive(0);
+		assertNotNull(discarded);
+		assertEquals("FOO", discarded.getPayload());
+	}
+
+	@Test
+	public void fusedHandlerTrackedAfterConfigurationWritesHistory() {
+		MessageFilter filter = new MessageFilter(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return true;
+			}
+		});
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		handlers.add(new MessageTransformingHandler(new UpperCaseTransformer()));
+		handlers.add(filter);
+		handlers.add(new MessageTransformingHandler(new AppendingTransformer()));
+		QueueChannel out = new QueueChannel();
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(out);
+		chain.setFuseHandlers(true);
+		chain.afterPropertiesSet();
+		filter.setComponentName("testFilter");
+		filter.setShouldTrack(true);
+		chain.handleMessage(message);
+		Message<?> reply = out.receive(0);
+		assertNotNull(reply);
+		assertEquals("FOO!", reply.getPayload());
+		MessageHistory history = MessageHistory.read(reply);
+		assertNotNull(history);
+		assertEquals(1, history.size());
+		assertEquals("testFilter", history.get(0).getProperty(MessageHistory.NAME_PROPERTY));
+	}
+
+	@Test
+	public void fusedHandlerExceptionWrapped() {
+		final RuntimeException failure = new IllegalStateException("rejected");
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		handlers.add(new MessageTransformingHandler(new UpperCaseTransformer()));
+		handlers.add(new MessageFilter(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				throw failure;
+			}
+		}));
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(new QueueChannel());
+		chain.setFuseHandlers(true);
+		chain.afterPropertiesSet();
+		try {
+			chain.handleMessage(message);
+			fail("expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertSame(failure, e.getCause());
+			assertEquals("FOO", e.getFailedMessage().getPayload());
+		}
+	}
+
+	private static class UpperCaseTransformer extends AbstractPayloadTransformer<String, String> {
+
+		@Override
+		protected String transformPayload(String payload) throws Exception {
+			return payload.toUpperCase();
+		}
+	}
+
+	private static class AppendingTransformer extends AbstractPayloadTransformer<String, String> {
+
+		@Override
+		protected String transformPayload(String payload) throws Exception {
+			return payload + "!";
+		}
+	}
+
 	private static class ProducingHandlerStub extends IntegrationObjectSupport implements MessageHandler, MessageProducer {
 
 		private volatile MessageChannel output;
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.Message;
+import org.springframework.integration.channel.NullChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.endpoint.SourcePollingChannelAdapter;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+
+/**
+ * @since 3.0
+ */
+public class AdaptivePollingTriggerTests {
+
+	@Test
+	public void backsOffWhileIdleAndResetsOnMessages() {
+		AdaptivePollingTrigger trigger = new AdaptivePollingTrigger(10, 100);
+		Date now = new Date();
+		SimpleTriggerContext context = new SimpleTriggerContext();
+		context.update(now, now, now);
+		assertEquals(now.getTime() + 10, trigger.nextExecutionTime(context).getTime());
+		trigger.pollCompleted(0, false);
+		assertEquals(20, trigger.getCurrentPeriod());
+		trigger.pollCompleted(0, false);
+		trigger.pollCompleted(0, false);
+		assertEquals(80, trigger.getCurrentPeriod());
+		trigger.pollCompleted(0, false);
+		assertEquals(100, trigger.getCurrentPeriod());
+		assertEquals(now.getTime() + 100, trigger.nextExecutionTime(context).getTime());
+		trigger.pollCompleted(3, false);
+		assertEquals(10, trigger.getCurrentPeriod());
+		assertEquals(now.getTime() + 10, trigger.nextExecutionTime(context).getTime());
+	}
+
+	@Test
+	public void drainsImmediatelyWhenLimitReached() {
+		AdaptivePollingTrigger trigger = new AdaptivePollingTrigger(1, 5);
+		trigger.setTimeUnit(TimeUnit.SECONDS);
+		Date now = new Date();
+		SimpleTriggerContext context = new SimpleTriggerContext();
+		context.update(now, now, now);
+		trigger.pollCompleted(10, true);
+		assertEquals(now.getTime(), trigger.nextExecutionTime(context).getTime());
+		trigger.pollCompleted(4, false);
+		assertEquals(now.getTime() + 1000, trigger.nextExecutionTime(context).getTime());
+	}
+
+	@Test
+	public void initialDelay() {
+		AdaptivePollingTrigger trigger = new AdaptivePollingTrigger(10, 100);
+		trigger.setInitialDelay(1000);
+		long before = System.currentTimeMillis();
+		Date first = trigger.nextExecutionTime(new SimpleTriggerContext());
+		assertTrue(first.getTime() >= before + 1000);
+	}
+
+	@Test
+	public void endpointStatistics() throws Exception {
+		final AtomicInteger remaining = new AtomicInteger(5);
+		final CountDownLatch idle = new CountDownLatch(4);
+		MessageSource<String> source = new MessageSource<String>() {
+			public Message<String> receive() {
+				if (remaining.getAndDecrement() > 0) {
+					return new GenericMessage<String>("foo");
+				}
+				idle.countDown();
+				return null;
+			}
+		};
+		AdaptivePollingTrigger trigger = new AdaptivePollingTrigger(1, 50);
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.afterPropertiesSet();
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(source);
+		adapter.setOutputChannel(new QueueChannel());
+		adapter.setTrigger(trigger);
+		adapter.setMaxMessagesPerPoll(2);
+		adapter.setTaskScheduler(taskScheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		Object endpointTrigger = TestUtils.getPropertyValue(adapter, "trigger");
+		assertNotNull(endpointTrigger);
+		assertNotSame("each endpoint must use its own trigger", trigger, endpointTrigger);
+		adapter.start();
+		try {
+			assertTrue(idle.await(10, TimeUnit.SECONDS));
+		}
+		finally {
+			adapter.stop();
+			taskScheduler.destroy();
+		}
+		assertEquals(5, adapter.getPolledMessageCount());
+		assertTrue(adapter.getEmptyPollCount() >= 2);
+		assertTrue(adapter.getPollCount() >= 5);
+		assertTrue(adapter.getCurrentPollPeriod() > 1);
+	}
+
+	@Test
+	public void noDrainingWithTaskExecutor() throws Exception {
+		final CountDownLatch polled = new CountDownLatch(4);
+		MessageSource<String> source = new MessageSource<String>() {
+			public Message<String> receive() {
+				polled.countDown();
+				return new GenericMessage<String>("foo");
+			}
+		};
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.afterPropertiesSet();
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(source);
+		adapter.setOutputChannel(new NullChannel());
+		adapter.setTrigger(new AdaptivePollingTrigger(10, 50));
+		adapter.setMaxMessagesPerPoll(2);
+		adapter.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		adapter.setTaskScheduler(taskScheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+		try {
+			assertTrue(polled.await(10, TimeUnit.SECONDS));
+		}
+		finally {
+			adapter.stop();
+			taskScheduler.destroy();
+		}
+		assertFalse(TestUtils.getPropertyValue(adapter, "trigger.drainImmediately", Boolean.class));
+		assertEquals(10, adapter.getCurrentPollPeriod());
+	}
+
+}
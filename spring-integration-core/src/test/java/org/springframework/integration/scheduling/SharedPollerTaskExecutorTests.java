@@ -0,0 +1,221 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.endpoint.SourcePollingChannelAdapter;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.PeriodicTrigger;
+
+/**
+ * @since 3.0
+ */
+public class SharedPollerTaskExecutorTests {
+
+	private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+	private final List<SourcePollingChannelAdapter> adapters = new ArrayList<SourcePollingChannelAdapter>();
+
+	private SharedPollerTaskExecutor executor;
+
+	@Before
+	public void setup() {
+		this.taskScheduler.setPoolSize(4);
+		this.taskScheduler.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (SourcePollingChannelAdapter adapter : this.adapters) {
+			adapter.stop();
+		}
+		this.taskScheduler.destroy();
+		this.executor.destroy();
+	}
+
+	@Test
+	public void threadsAreBoundedIndependentOfEndpoints() throws Exception {
+		this.executor = new SharedPollerTaskExecutor(2);
+		final Set<Thread> threads = new CopyOnWriteArraySet<Thread>();
+		final CountDownLatch latch = new CountDownLatch(20 * 3);
+		for (int i = 0; i < 20; i++) {
+			final AtomicInteger remaining = new AtomicInteger(3);
+			this.startAdapter(new MessageSource<String>() {
+				public Message<String> receive() {
+					return remaining.getAndDecrement() > 0 ? new GenericMessage<String>("foo") : null;
+				}
+			}, new MessageHandler() {
+				public void handleMessage(Message<?> message) {
+					threads.add(Thread.currentThread());
+					latch.countDown();
+				}
+			}, -1);
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(threads.size() <= 2);
+		assertEquals(2, this.executor.getWorkerCount());
+	}
+
+	@Test
+	public void busyEndpointYieldsToOthers() throws Exception {
+		this.executor = new SharedPollerTaskExecutor(1);
+		this.executor.setQuantum(5);
+		final AtomicInteger busyCount = new AtomicInteger();
+		// never runs dry, so without a quantum it would keep the only worker forever
+		this.startAdapter(new MessageSource<String>() {
+			public Message<String> receive() {
+				return new GenericMessage<String>("busy");
+			}
+		}, new MessageHandler() {
+			public void handleMessage(Message<?> message) {
+				busyCount.incrementAndGet();
+			}
+		}, -1);
+		final CountDownLatch quietLatch = new CountDownLatch(1);
+		this.startAdapter(new MessageSource<String>() {
+			public Message<String> receive() {
+				return new GenericMessage<String>("quiet");
+			}
+		}, new MessageHandler() {
+			public void handleMessage(Message<?> message) {
+				quietLatch.countDown();
+			}
+		}, 1);
+		assertTrue(quietLatch.await(10, TimeUnit.SECONDS));
+		assertTrue(busyCount.get() > 0);
+	}
+
+	@Test
+	public void rejectedContinuationCompletesPoll() throws Exception {
+		final AtomicInteger executions = new AtomicInteger();
+		this.executor = new SharedPollerTaskExecutor(1) {
+			@Override
+			public void execute(Runnable task) {
+				// the second task is the continuation of the first poll
+				if (executions.incrementAndGet() == 2) {
+					throw new RejectedExecutionException("simulated rejection");
+				}
+				super.execute(task);
+			}
+		};
+		this.executor.setQuantum(2);
+		final AtomicInteger remaining = new AtomicInteger(3);
+		SourcePollingChannelAdapter adapter = this.startAdapter(new MessageSource<String>() {
+			public Message<String> receive() {
+				return remaining.getAndDecrement() > 0 ? new GenericMessage<String>("foo") : null;
+			}
+		}, new MessageHandler() {
+			public void handleMessage(Message<?> message) {
+			}
+		}, -1);
+		int n = 0;
+		while (adapter.getPolledMessageCount() < 3 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertEquals(3, adapter.getPolledMessageCount());
+		assertTrue(adapter.getPollCount() >= 2);
+	}
+
+	@Test
+	public void plainTasks() throws Exception {
+		this.executor = new SharedPollerTaskExecutor(3);
+		final CountDownLatch latch = new CountDownLatch(100);
+		for (int i = 0; i < 100; i++) {
+			this.executor.execute(new Runnable() {
+				public void run() {
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(0, this.executor.getQueueSize());
+	}
+
+	@Test
+	public void oldestTaskStolenFirst() throws Exception {
+		this.executor = new SharedPollerTaskExecutor(2);
+		final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+		final CountDownLatch stolen = new CountDownLatch(3);
+		final CountDownLatch done = new CountDownLatch(1);
+		this.executor.execute(new Runnable() {
+			public void run() {
+				// queued on this worker's own queue while it stays busy, so the other worker steals them
+				for (int i = 1; i <= 3; i++) {
+					final int n = i;
+					executor.execute(new Runnable() {
+						public void run() {
+							order.add(n);
+							stolen.countDown();
+						}
+					});
+				}
+				try {
+					stolen.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(1, 2, 3), order);
+		assertTrue(this.executor.getStealCount() >= 3);
+	}
+
+	private SourcePollingChannelAdapter startAdapter(MessageSource<?> source, MessageHandler handler, int maxMessagesPerPoll) {
+		DirectChannel channel = new DirectChannel();
+		channel.subscribe(handler);
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(source);
+		adapter.setOutputChannel(channel);
+		adapter.setTrigger(new PeriodicTrigger(10));
+		adapter.setMaxMessagesPerPoll(maxMessagesPerPoll);
+		adapter.setTaskExecutor(this.executor);
+		adapter.setTaskScheduler(this.taskScheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+		this.adapters.add(adapter);
+		return adapter;
+	}
+
+}
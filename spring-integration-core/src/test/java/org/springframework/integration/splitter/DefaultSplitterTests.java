@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,13 +22,18 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.Closeable;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.endpoint.EventDrivenConsumer;
@@ -106,4 +111,96 @@ public class DefaultSplitterTests {
 		Message<?> output = replyChannel.receive(15);
 		assertThat(output, is(nullValue()));
 	}
+
+	@Test
+	public void splitMessageWithIteratorPayload() throws Exception {
+		List<String> items = Arrays.asList(new String[] { "x", "y", "z" });
+		Message<Iterator<String>> message = MessageBuilder.withPayload(items.iterator()).build();
+		QueueChannel replyChannel = new QueueChannel();
+		DefaultMessageSplitter splitter = new DefaultMessageSplitter();
+		splitter.setOutputChannel(replyChannel);
+		splitter.handleMessage(message);
+		List<Message<?>> replies = replyChannel.clear();
+		assertEquals(3, replies.size());
+		assertEquals("x", replies.get(0).getPayload());
+		assertEquals("z", replies.get(2).getPayload());
+		assertEquals(Integer.valueOf(3), replies.get(2).getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(0), replies.get(2).getHeaders().getSequenceSize());
+		assertEquals(message.getHeaders().getId(), replies.get(0).getHeaders().getCorrelationId());
+	}
+
+	@Test
+	public void closeableIteratorIsClosed() throws Exception {
+		final AtomicBoolean closed = new AtomicBoolean();
+		class CloseableIterator implements Iterator<String>, Closeable {
+			private int count;
+			public boolean hasNext() {
+				return count < 2;
+			}
+			public String next() {
+				return "item" + count++;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public void close() {
+				closed.set(true);
+			}
+		}
+		AbstractMessageSplitter splitter = new AbstractMessageSplitter() {
+			@Override
+			protected Object splitMessage(Message<?> message) {
+				return new CloseableIterator();
+			}
+			@Override
+			protected int obtainSizeIfPossible(Iterator<?> iterator) {
+				return 2;
+			}
+		};
+		QueueChannel replyChannel = new QueueChannel();
+		splitter.setOutputChannel(replyChannel);
+		splitter.handleMessage(MessageBuilder.withPayload("test").build());
+		List<Message<?>> replies = replyChannel.clear();
+		assertEquals(2, replies.size());
+		assertEquals(Integer.valueOf(2), replies.get(1).getHeaders().getSequenceSize());
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void closeableIteratorIsClosedWhenSizeCannotBeObtained() throws Exception {
+		final AtomicBoolean closed = new AtomicBoolean();
+		class CloseableIterator implements Iterator<String>, Closeable {
+			public boolean hasNext() {
+				return true;
+			}
+			public String next() {
+				return "item";
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public void close() {
+				closed.set(true);
+			}
+		}
+		AbstractMessageSplitter splitter = new AbstractMessageSplitter() {
+			@Override
+			protected Object splitMessage(Message<?> message) {
+				return new CloseableIterator();
+			}
+			@Override
+			protected int obtainSizeIfPossible(Iterator<?> iterator) {
+				throw new MessagingException("failed to count");
+			}
+		};
+		splitter.setOutputChannel(new QueueChannel());
+		try {
+			splitter.handleMessage(MessageBuilder.withPayload("test").build());
+			fail("Expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertEquals("failed to count", e.getMessage());
+		}
+		assertTrue(closed.get());
+	}
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.StopWatch;
+
+/**
+ * @since 3.0
+ */
+public class CompactMessageCodecTests {
+
+	private final CompactMessageCodec codec = new CompactMessageCodec();
+
+	@Test
+	public void roundTripWithHeaders() throws Exception {
+		UUID correlationId = UUID.randomUUID();
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId(correlationId)
+				.setSequenceNumber(2)
+				.setSequenceSize(3)
+				.setExpirationDate(1234L)
+				.setReplyChannelName("replies")
+				.setHeader("string", "bar")
+				.setHeader("int", 42)
+				.setHeader("long", 42L)
+				.setHeader("boolean", true)
+				.setHeader("double", 4.2d)
+				.setHeader("bytes", new byte[] { 1, 2, 3 })
+				.setHeader("date", new Date(5678L))
+				.build();
+		byte[] bytes = codec.encode(message);
+		assertTrue(CompactMessageCodec.isEncodedMessage(bytes));
+		Message<?> decoded = codec.decode(bytes);
+		assertEquals("foo", decoded.getPayload());
+		assertEquals(message.getHeaders().getId(), decoded.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), decoded.getHeaders().getTimestamp());
+		assertEquals(correlationId, decoded.getHeaders().getCorrelationId());
+		assertEquals(Integer.valueOf(2), decoded.getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(3), decoded.getHeaders().getSequenceSize());
+		assertEquals(Long.valueOf(1234L), decoded.getHeaders().getExpirationDate());
+		assertEquals("replies", decoded.getHeaders().getReplyChannel());
+		assertEquals("bar", decoded.getHeaders().get("string"));
+		assertEquals(42, decoded.getHeaders().get("int"));
+		assertEquals(42L, decoded.getHeaders().get("long"));
+		assertEquals(true, decoded.getHeaders().get("boolean"));
+		assertEquals(4.2d, decoded.getHeaders().get("double"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) decoded.getHeaders().get("bytes"));
+		assertEquals(new Date(5678L), decoded.getHeaders().get("date"));
+		assertEquals(message.getHeaders().size(), decoded.getHeaders().size());
+	}
+
+	@Test
+	public void payloadTypes() throws Exception {
+		Message<?> decoded = codec.decode(codec.encode(MessageBuilder.withPayload(new byte[] { 4, 5 }).build()));
+		assertArrayEquals(new byte[] { 4, 5 }, (byte[]) decoded.getPayload());
+		decoded = codec.decode(codec.encode(MessageBuilder.withPayload(Arrays.asList("foo", "bar")).build()));
+		assertEquals(Arrays.asList("foo", "bar"), decoded.getPayload());
+	}
+
+	@Test
+	public void errorMessage() throws Exception {
+		Message<?> decoded = codec.decode(codec.encode(new ErrorMessage(new MessagingException("failed"))));
+		assertTrue(decoded instanceof ErrorMessage);
+		assertEquals("failed", ((ErrorMessage) decoded).getPayload().getMessage());
+	}
+
+	@Test
+	public void nonSerializableHeaderDropped() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setReplyChannel(new QueueChannel())
+				.setHeader("bar", "baz").build();
+		Message<?> decoded = codec.decode(codec.encode(message));
+		assertFalse(decoded.getHeaders().containsKey("replyChannel"));
+		assertEquals("baz", decoded.getHeaders().get("bar"));
+	}
+
+	@Test
+	public void compressedAboveThreshold() throws Exception {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			payload.append("payload ");
+		}
+		Message<String> message = MessageBuilder.withPayload(payload.toString()).build();
+		int uncompressed = codec.encode(message).length;
+		codec.setCompressionThreshold(1024);
+		byte[] bytes = codec.encode(message);
+		assertTrue(bytes.length < uncompressed / 10);
+		assertEquals(payload.toString(), codec.decode(bytes).getPayload());
+		Message<String> small = MessageBuilder.withPayload("foo").build();
+		assertEquals(small.getHeaders().getId(), codec.decode(codec.encode(small)).getHeaders().getId());
+	}
+
+	@Test
+	public void readsJavaSerializedMessage() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		byte[] bytes = javaSerialize(message);
+		assertFalse(CompactMessageCodec.isEncodedMessage(bytes));
+		Message<?> decoded = codec.decode(bytes);
+		assertEquals(message, decoded);
+	}
+
+	@Test
+	public void smallerThanJavaSerialization() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setCorrelationId("bar").setSequenceNumber(1)
+				.setSequenceSize(10).build();
+		int compact = codec.encode(message).length;
+		int java = javaSerialize(message).length;
+		assertTrue("compact: " + compact + ", java: " + java, compact * 5 < java);
+	}
+
+	@Test(expected = IOException.class)
+	public void notAMessage() throws Exception {
+		codec.decode("foo".getBytes());
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() throws Exception {
+		int times = 100000;
+		Message<String> message = MessageBuilder.withPayload("foo").setCorrelationId(UUID.randomUUID())
+				.setSequenceNumber(1).setSequenceSize(10).setHeader("bar", "baz").build();
+		byte[] compact = null;
+		byte[] java = null;
+		StopWatch watch = new StopWatch();
+		watch.start("compact");
+		for (int i = 0; i < times; i++) {
+			compact = codec.encode(message);
+			codec.decode(compact);
+		}
+		watch.stop();
+		watch.start("java");
+		for (int i = 0; i < times; i++) {
+			java = javaSerialize(message);
+			codec.decode(java);
+		}
+		watch.stop();
+		System.out.println("Compact: " + compact.length + " bytes, "
+				+ watch.getTaskInfo()[0].getTimeMillis() * 1000000 / times + " ns/op (encode and decode)");
+		System.out.println("Java serialization: " + java.length + " bytes, "
+				+ watch.getTaskInfo()[1].getTimeMillis() * 1000000 / times + " ns/op (encode and decode)");
+	}
+
+	private static byte[] javaSerialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DefaultSerializer().serialize(object, bytes);
+		return bytes.toByteArray();
+	}
+
+}
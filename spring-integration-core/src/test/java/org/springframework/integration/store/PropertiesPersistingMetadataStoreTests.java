@@ -68,4 +68,22 @@ public class PropertiesPersistingMetadataStoreTests {
 		assertEquals("bar", persistentProperties.get("foo"));
 	}
 
+	@Test
+	public void validateFlush() throws Exception {
+		File file = new File("target/flush" + "/metadata-store.properties");
+		file.delete();
+		file.deleteOnExit();
+		PropertiesPersistingMetadataStore metadataStore = new PropertiesPersistingMetadataStore();
+		metadataStore.setBaseDirectory("target/flush");
+		metadataStore.afterPropertiesSet();
+		metadataStore.put("foo", "bar");
+		metadataStore.flush();
+		Properties persistentProperties = PropertiesLoaderUtils.loadProperties(new FileSystemResource(file));
+		assertEquals("bar", persistentProperties.get("foo"));
+		PropertiesPersistingMetadataStore restarted = new PropertiesPersistingMetadataStore();
+		restarted.setBaseDirectory("target/flush");
+		restarted.afterPropertiesSet();
+		assertEquals("bar", restarted.get("foo"));
+	}
+
 }
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.message.GenericMessage;
+
+/**
+ * @since 3.0
+ */
+public class WriteBehindMessageStoreTests {
+
+	private final SimpleMessageStore target = spy(new SimpleMessageStore());
+
+	private final WriteBehindMessageStore store = new WriteBehindMessageStore(this.target);
+
+	@Test
+	public void readsServedBeforeFlush() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		store.addMessageToGroup(1, message1);
+		MessageGroup group = store.addMessageToGroup(1, message2);
+		assertEquals(2, group.size());
+		assertEquals(2, store.getMessageGroup(1).size());
+		assertEquals(2, store.messageGroupSize(1));
+		assertEquals(0, target.messageGroupSize(1));
+		assertEquals(2, store.getPendingWriteCount());
+
+		store.flush();
+		assertEquals(0, store.getPendingWriteCount());
+		group = target.getMessageGroup(1);
+		assertEquals(2, group.size());
+		assertSame(message1, group.getOne());
+	}
+
+	@Test
+	public void groupLoadedFromTarget() {
+		Message<?> message = new GenericMessage<String>("foo");
+		target.addMessageToGroup(1, message);
+		target.completeGroup(1);
+		MessageGroup group = store.addMessageToGroup(1, new GenericMessage<String>("bar"));
+		assertEquals(2, group.size());
+		assertTrue(group.isComplete());
+		assertSame(message, store.pollMessageFromGroup(1));
+		store.flush();
+		assertEquals(1, target.messageGroupSize(1));
+	}
+
+	@Test
+	public void writesCoalesced() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		store.removeMessageFromGroup(1, message1);
+		store.setLastReleasedSequenceNumberForGroup(1, 1);
+		store.setLastReleasedSequenceNumberForGroup(1, 2);
+		store.completeGroup(1);
+		store.completeGroup(1);
+		store.flush();
+
+		verify(target, never()).addMessageToGroup(1, message1);
+		verify(target).addMessageToGroup(1, message2);
+		verify(target, never()).removeMessageFromGroup(any(), any(Message.class));
+		verify(target).setLastReleasedSequenceNumberForGroup(1, 2);
+		verify(target, never()).setLastReleasedSequenceNumberForGroup(1, 1);
+		verify(target, times(1)).completeGroup(1);
+		MessageGroup group = target.getMessageGroup(1);
+		assertEquals(1, group.size());
+		assertTrue(group.isComplete());
+	}
+
+	@Test
+	public void removedGroupHiddenUntilFlushed() {
+		target.addMessageToGroup(1, new GenericMessage<String>("foo"));
+		store.addMessageToGroup(1, new GenericMessage<String>("bar"));
+		store.removeMessageGroup(1);
+		assertEquals(0, store.getMessageGroup(1).size());
+		assertEquals(0, store.messageGroupSize(1));
+		assertEquals(1, target.messageGroupSize(1));
+
+		store.flush();
+		verify(target).removeMessageGroup(1);
+		verify(target, times(1)).addMessageToGroup(eq(1), any(Message.class));
+		assertEquals(0, target.messageGroupSize(1));
+		assertEquals(0, store.getMessageGroupCount());
+	}
+
+	@Test
+	public void individualMessages() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		store.addMessage(message1);
+		store.addMessage(message2);
+		assertSame(message1, store.getMessage(message1.getHeaders().getId()));
+		assertNull(target.getMessage(message1.getHeaders().getId()));
+		assertSame(message2, store.removeMessage(message2.getHeaders().getId()));
+		assertNull(store.getMessage(message2.getHeaders().getId()));
+
+		assertEquals(1, store.getMessageCount());
+		assertSame(message1, target.getMessage(message1.getHeaders().getId()));
+		assertSame(message1, store.getMessage(message1.getHeaders().getId()));
+		verify(target, never()).addMessage(message2);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void individualMessagesNeedMessageStore() {
+		MessageGroupStore groupStore = new AbstractMessageGroupStore() {
+
+			public Iterator<MessageGroup> iterator() {
+				return null;
+			}
+
+			public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+			}
+
+			public void removeMessageGroup(Object groupId) {
+			}
+
+			public MessageGroup removeMessageFromGroup(Object key, Message<?> messageToRemove) {
+				return null;
+			}
+
+			public Message<?> pollMessageFromGroup(Object groupId) {
+				return null;
+			}
+
+			public int messageGroupSize(Object groupId) {
+				return 0;
+			}
+
+			public MessageGroup getMessageGroup(Object groupId) {
+				return null;
+			}
+
+			public void completeGroup(Object groupId) {
+			}
+
+			public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+				return null;
+			}
+		};
+		new WriteBehindMessageStore(groupStore).addMessage(new GenericMessage<String>("foo"));
+	}
+
+	@Test
+	public void flushedWhenMaxPendingWritesReached() {
+		store.setMaxPendingWrites(2);
+		store.addMessageToGroup(1, new GenericMessage<String>("foo"));
+		store.addMessageToGroup(1, new GenericMessage<String>("bar"));
+		assertEquals(0, target.messageGroupSize(1));
+		store.addMessageToGroup(1, new GenericMessage<String>("baz"));
+		assertEquals(2, target.messageGroupSize(1));
+		assertEquals(1, store.getPendingWriteCount());
+	}
+
+	@Test
+	public void flushedInBackground() throws Exception {
+		store.setFlushInterval(20);
+		store.afterPropertiesSet();
+		try {
+			store.addMessageToGroup(1, new GenericMessage<String>("foo"));
+			int n = 0;
+			while (target.messageGroupSize(1) == 0 && n++ < 100) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, target.messageGroupSize(1));
+		}
+		finally {
+			store.destroy();
+		}
+	}
+
+	@Test
+	public void pendingWritesFlushedOnDestroy() throws Exception {
+		store.afterPropertiesSet();
+		store.addMessageToGroup(1, new GenericMessage<String>("foo"));
+		store.destroy();
+		assertEquals(1, target.messageGroupSize(1));
+	}
+
+	@Test
+	public void failedWritesRetried() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		Message<?> message3 = new GenericMessage<String>("baz");
+		doThrow(new MessagingException("planned")).doAnswer(new Answer<MessageGroup>() {
+			public MessageGroup answer(InvocationOnMock invocation) throws Throwable {
+				return (MessageGroup) invocation.callRealMethod();
+			}
+		}).when(target).addMessageToGroup(1, message2);
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		store.setLastReleasedSequenceNumberForGroup(1, 1);
+		try {
+			store.flush();
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertEquals("planned", e.getMessage());
+		}
+		assertEquals(1, target.messageGroupSize(1));
+		assertEquals(2, store.getMessageGroup(1).size());
+
+		store.addMessageToGroup(1, message3);
+		store.setLastReleasedSequenceNumberForGroup(1, 2);
+		store.flush();
+		verify(target, times(1)).addMessageToGroup(1, message1);
+		verify(target, times(2)).addMessageToGroup(1, message2);
+		verify(target, times(1)).setLastReleasedSequenceNumberForGroup(eq(1), anyInt());
+		verify(target).setLastReleasedSequenceNumberForGroup(1, 2);
+		assertEquals(3, target.messageGroupSize(1));
+	}
+
+	@Test
+	public void failureIsolatedPerGroup() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		Message<?> message3 = new GenericMessage<String>("baz");
+		doThrow(new MessagingException("planned")).when(target).addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		store.addMessageToGroup(2, message3);
+		try {
+			store.flush();
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertEquals("planned", e.getMessage());
+		}
+		assertEquals(0, target.messageGroupSize(1));
+		assertEquals(1, target.messageGroupSize(2));
+		assertEquals(2, store.getPendingWriteCount());
+		assertEquals(2, store.getMessageGroup(1).size());
+	}
+
+	@Test
+	public void failedWritesRetriedUntilTheySucceedByDefault() {
+		Message<?> message = new GenericMessage<String>("foo");
+		doThrow(new MessagingException("planned")).when(target).addMessageToGroup(1, message);
+		store.addMessageToGroup(1, message);
+		for (int i = 0; i < 10; i++) {
+			try {
+				store.flush();
+				fail("Expected exception");
+			}
+			catch (MessagingException e) {
+				assertEquals("planned", e.getMessage());
+			}
+			assertEquals(1, store.getPendingWriteCount());
+			assertEquals(1, store.getMessageGroup(1).size());
+		}
+		doCallRealMethod().when(target).addMessageToGroup(1, message);
+		store.flush();
+		assertEquals(0, store.getPendingWriteCount());
+		assertEquals(1, target.messageGroupSize(1));
+	}
+
+	@Test
+	public void readsNotBrokenByFailedWrites() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		doThrow(new MessagingException("planned")).when(target).addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(2, message2);
+		Iterator<MessageGroup> groups = store.iterator();
+		assertTrue(groups.hasNext());
+		assertEquals(2, groups.next().getGroupId());
+		assertFalse(groups.hasNext());
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(1, store.getMessageCountForAllMessageGroups());
+		assertEquals(1, store.getPendingWriteCount());
+	}
+
+	@Test
+	public void writesKeptWhenTargetThrowsError() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		doThrow(new OutOfMemoryError("planned")).when(target).addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(2, message2);
+		try {
+			store.flush();
+			fail("Expected error");
+		}
+		catch (OutOfMemoryError e) {
+			assertEquals("planned", e.getMessage());
+		}
+		assertEquals(2, store.getPendingWriteCount());
+		doCallRealMethod().when(target).addMessageToGroup(1, message1);
+		store.flush();
+		assertEquals(0, store.getPendingWriteCount());
+		assertEquals(1, target.messageGroupSize(1));
+		assertEquals(1, target.messageGroupSize(2));
+	}
+
+	@Test
+	public void writersBlockedAtCapacity() throws Exception {
+		store.setMaxPendingWrites(1);
+		store.setPendingWriteCapacity(2);
+		store.setFlushInterval(10);
+		Message<?> message = new GenericMessage<String>("foo");
+		final AtomicBoolean available = new AtomicBoolean();
+		doAnswer(new Answer<MessageGroup>() {
+			public MessageGroup answer(InvocationOnMock invocation) throws Throwable {
+				if (!available.get()) {
+					throw new MessagingException("planned");
+				}
+				return (MessageGroup) invocation.callRealMethod();
+			}
+		}).when(target).addMessageToGroup(1, message);
+		store.addMessageToGroup(1, message);
+		store.addMessageToGroup(1, new GenericMessage<String>("bar"));
+		final CountDownLatch added = new CountDownLatch(1);
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				store.addMessageToGroup(2, new GenericMessage<String>("baz"));
+				added.countDown();
+			}
+		});
+		writer.setDaemon(true);
+		writer.start();
+		assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(2, store.getPendingWriteCount());
+
+		available.set(true);
+		assertTrue(added.await(10, TimeUnit.SECONDS));
+		assertEquals(2, target.messageGroupSize(1));
+	}
+
+	@Test
+	public void failedWritesDiscardedAfterMaxAttempts() {
+		QueueChannel errorChannel = new QueueChannel();
+		store.setErrorChannel(errorChannel);
+		store.setMaxWriteAttempts(2);
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		doThrow(new MessagingException("planned")).when(target).addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		for (int i = 0; i < 2; i++) {
+			try {
+				store.flush();
+				fail("Expected exception");
+			}
+			catch (MessagingException e) {
+				assertEquals("planned", e.getMessage());
+			}
+		}
+		assertEquals(0, store.getPendingWriteCount());
+		assertEquals(2, store.getMessageGroup(1).size());
+		store.flush();
+		verify(target, times(2)).addMessageToGroup(1, message1);
+		verify(target, never()).addMessageToGroup(1, message2);
+
+		List<Message<?>> errors = errorChannel.clear();
+		assertEquals(3, errors.size());
+		assertTrue(errors.get(0) instanceof ErrorMessage);
+		assertNull(((MessagingException) errors.get(0).getPayload()).getFailedMessage());
+		assertSame(message1, ((MessagingException) errors.get(1).getPayload()).getFailedMessage());
+		assertSame(message2, ((MessagingException) errors.get(2).getPayload()).getFailedMessage());
+	}
+
+	@Test
+	public void unrelatedFailureNotThrownToWriter() {
+		store.setMaxPendingWrites(1);
+		Message<?> message1 = new GenericMessage<String>("foo");
+		doThrow(new MessagingException("planned")).when(target).addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(2, new GenericMessage<String>("bar"));
+		store.addMessageToGroup(2, new GenericMessage<String>("baz"));
+		assertEquals(1, target.messageGroupSize(2));
+		assertEquals(0, target.messageGroupSize(1));
+		assertEquals(1, store.messageGroupSize(1));
+	}
+
+	@Test
+	public void messagesNotCheckedByDefault() {
+		store.addMessageToGroup(1, new GenericMessage<Object>(new Object()));
+		assertEquals(1, store.messageGroupSize(1));
+	}
+
+	@Test
+	public void unserializableMessageRejected() {
+		store.setSerializer(new DefaultSerializer());
+		try {
+			store.addMessageToGroup(1, new GenericMessage<Object>(new Object()));
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertEquals(0, store.getPendingWriteCount());
+			assertEquals(0, store.messageGroupSize(1));
+		}
+		store.addMessageToGroup(1, new GenericMessage<String>("foo"));
+		assertEquals(1, store.messageGroupSize(1));
+	}
+
+	@Test
+	public void pendingGroupMessagesFound() {
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		assertSame(message1, store.getMessage(message1.getHeaders().getId()));
+		store.removeMessageFromGroup(1, message2);
+		assertNull(store.getMessage(message2.getHeaders().getId()));
+		store.removeMessageGroup(1);
+		assertNull(store.getMessage(message1.getHeaders().getId()));
+	}
+
+}
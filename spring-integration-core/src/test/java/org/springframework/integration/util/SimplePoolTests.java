@@ -19,14 +19,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.springframework.integration.MessagingException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Gary Russell
@@ -119,6 +128,47 @@ public class SimplePoolTests {
 		assertEquals(2, pool.getAllocatedCount());
 	}
 
+	@Test
+	public void testReleaseWhileResizingDoesNotShrinkBelowTarget() {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicReference<SimplePool<String>> poolRef = new AtomicReference<SimplePool<String>>();
+		final AtomicReference<String> inUse = new AtomicReference<String>();
+		SimplePool<String> pool = new SimplePool<String>(3, new SimplePool.PoolItemCallback<String>() {
+			private int i;
+			public String createForPool() {
+				String string = new String("String" + i++);
+				strings.add(string);
+				return string;
+			}
+			public boolean isStale(String item) {
+				return false;
+			}
+			public void removedFromPool(String item) {
+				strings.remove(item);
+				// an item in use is returned while the pool is being resized
+				String returned = inUse.getAndSet(null);
+				if (returned != null) {
+					poolRef.get().releaseItem(returned);
+				}
+			}
+		});
+		poolRef.set(pool);
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		String s3 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.releaseItem(s2);
+		inUse.set(s3);
+
+		pool.setPoolSize(1);
+
+		assertEquals(1, pool.getPoolSize());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, strings.size());
+		assertEquals(1, pool.getAllocatedCount());
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void testForeignObject() {
 		final Set<String> strings = new HashSet<String>();
@@ -128,6 +178,183 @@ public class SimplePoolTests {
 		pool.releaseItem("Hello, world!");
 	}
 
+	@Test
+	public void testStaleItemIsRemoved() {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(2, strings, stale);
+		String s1 = pool.getItem();
+		pool.releaseItem(s1);
+		stale.set(true);
+		String s2 = pool.getItem();
+		assertNotSame(s1, s2);
+		assertEquals(1, pool.getAllocatedCount());
+		assertEquals(1, pool.getStaleCount());
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	public void testIdleTimeout() throws Exception {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(4, strings, stale);
+		pool.setIdleTimeout(1);
+		pool.setMinIdle(1);
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		String s3 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.releaseItem(s2);
+		Thread.sleep(10);
+		pool.performMaintenance();
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(1, pool.getActiveCount());
+		assertEquals(1, pool.getEvictedCount());
+		assertEquals(2, strings.size());
+		pool.releaseItem(s3);
+		assertEquals(4, pool.getPoolSize());
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void testValidateIdleItems() {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(2, strings, stale);
+		String s1 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.performMaintenance();
+		assertEquals(1, pool.getIdleCount());
+		pool.setValidateIdleItems(true);
+		pool.performMaintenance();
+		assertEquals(1, pool.getIdleCount());
+		stale.set(true);
+		pool.performMaintenance();
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getAllocatedCount());
+		assertEquals(1, pool.getStaleCount());
+	}
+
+	@Test
+	public void testMinIdle() throws Exception {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(3, strings, stale);
+		pool.setMinIdle(5);
+		pool.setMaintenanceInterval(10000);
+		pool.startMaintenance();
+		int n = 0;
+		while (n++ < 100 && pool.getIdleCount() < 3) {
+			Thread.sleep(10);
+		}
+		pool.stopMaintenance();
+		// limited by the pool size
+		assertEquals(3, pool.getIdleCount());
+		assertEquals(3, pool.getCreatedCount());
+		String s1 = pool.getItem();
+		assertTrue(strings.contains(s1));
+		assertEquals(3, pool.getCreatedCount());
+		assertEquals(1, pool.getCheckoutCount());
+	}
+
+	@Test
+	public void testTimedOutCheckoutCounted() {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(1, strings, stale);
+		pool.setWaitTimeout(20);
+		pool.getItem();
+		try {
+			pool.getItem();
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+		}
+		assertEquals(2, pool.getCheckoutCount());
+		assertEquals(1, pool.getTimeoutCount());
+		assertTrue(pool.getMaxWaitTime() >= 19);
+		assertEquals(pool.getMaxWaitTime() / 2, pool.getMeanWaitTime(), 0.0001);
+	}
+
+	@Test
+	public void testSharedMaintenanceThreadStoppedWithLastPool() {
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool1 = stringPool(1, new HashSet<String>(), stale);
+		SimplePool<String> pool2 = stringPool(1, new HashSet<String>(), stale);
+		pool1.setValidateIdleItems(true);
+		pool2.setValidateIdleItems(true);
+		pool1.startMaintenance();
+		pool2.startMaintenance();
+		pool1.stopMaintenance();
+		assertTrue(SimplePool.isMaintenanceExecutorActive());
+		pool2.stopMaintenance();
+		assertFalse(SimplePool.isMaintenanceExecutorActive());
+	}
+
+	@Test
+	public void testMaintenanceOnTaskScheduler() throws Exception {
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(3, new HashSet<String>(), stale);
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.afterPropertiesSet();
+		pool.setTaskScheduler(taskScheduler);
+		pool.setMinIdle(2);
+		pool.startMaintenance();
+		assertFalse(SimplePool.isMaintenanceExecutorActive());
+		int n = 0;
+		while (n++ < 100 && pool.getIdleCount() < 2) {
+			Thread.sleep(10);
+		}
+		pool.stopMaintenance();
+		taskScheduler.destroy();
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void testConcurrentCheckout() throws Exception {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicBoolean stale = new AtomicBoolean();
+		final SimplePool<String> pool = stringPool(3, strings, stale);
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger maxInUse = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(8);
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			exec.execute(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < 200; j++) {
+							String item = pool.getItem();
+							int count = inUse.incrementAndGet();
+							if (count > maxInUse.get()) {
+								maxInUse.set(count);
+							}
+							inUse.decrementAndGet();
+							pool.releaseItem(item);
+						}
+					}
+					catch (Exception e) {
+						failures.incrementAndGet();
+					}
+					finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		exec.shutdown();
+		assertEquals(0, failures.get());
+		assertTrue(maxInUse.get() <= 3);
+		assertEquals(0, pool.getActiveCount());
+		assertTrue(pool.getAllocatedCount() <= 3);
+		assertEquals(pool.getAllocatedCount(), pool.getIdleCount());
+		assertEquals(1600, pool.getCheckoutCount());
+		assertTrue(pool.getMaxWaitTime() >= pool.getMeanWaitTime());
+		assertEquals(pool.getAllocatedCount(), strings.size());
+	}
+
 	private SimplePool<String> stringPool(int size, final Set<String> strings,
 			final AtomicBoolean stale) {
 		SimplePool<String> pool = new SimplePool<String>(size, new SimplePool.PoolItemCallback<String>() {
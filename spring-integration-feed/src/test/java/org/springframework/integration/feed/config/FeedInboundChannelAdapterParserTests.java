@@ -204,6 +204,10 @@ public class FeedInboundChannelAdapterParserTests {
 		public String get(String key) {
 			return null;
 		}
+
+		public String remove(String key) {
+			return null;
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -42,6 +42,14 @@ public class DefaultDirectoryScanner implements DirectoryScanner {
 		this.filter = filter;
 	}
 
+	/**
+	 * @return the filter, or <code>null</code> if files are not filtered.
+	 * @since 3.0
+	 */
+	protected FileListFilter<File> getFilter() {
+		return this.filter;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -66,7 +74,7 @@ public class DefaultDirectoryScanner implements DirectoryScanner {
 			throw new MessagingException("The path [" + directory
 					+ "] does not denote a properly accessible directory.");
 		}
-		return (this.filter != null) ? this.filter.filterFiles(files) : Arrays.asList(files);
+		return filterEligibleFiles(files);
 	}
 
 	/**
@@ -80,4 +88,17 @@ public class DefaultDirectoryScanner implements DirectoryScanner {
 		return directory.listFiles();
 	}
 
+	/**
+	 * Apply the filter to the files returned by {@link #listEligibleFiles(File)}.
+	 * Subclasses that already filter the files while listing them may override
+	 * this method.
+	 * 
+	 * @param files the files returned by {@link #listEligibleFiles(File)}
+	 * @return the files that passed the filter
+	 * @since 3.0
+	 */
+	protected List<File> filterEligibleFiles(File[] files) {
+		return (this.filter != null) ? this.filter.filterFiles(files) : Arrays.asList(files);
+	}
+
 }
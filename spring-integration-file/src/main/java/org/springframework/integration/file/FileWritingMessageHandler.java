@@ -21,11 +21,21 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.expression.BeanFactoryResolver;
 import org.springframework.context.expression.MapAccessor;
 import org.springframework.expression.Expression;
@@ -33,6 +43,7 @@ import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.file.support.FileExistsMode;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
@@ -41,8 +52,11 @@ import org.springframework.integration.util.DefaultLockRegistry;
 import org.springframework.integration.util.LockRegistry;
 import org.springframework.integration.util.PassThruLockRegistry;
 import org.springframework.integration.util.WhileLockedProcessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.FileCopyUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * A {@link MessageHandler} implementation that writes the Message payload to a
@@ -61,6 +75,21 @@ import org.springframework.util.FileCopyUtils;
  * Likewise, any Object can be converted to a String based on its
  * <code>toString()</code> method by the
  * {@link org.springframework.integration.transformer.ObjectToStringTransformer}.
+ * <p>
+ * With {@link FileExistsMode#APPEND_NO_FLUSH}, the files appended to are kept
+ * open (up to 'maxOpenFiles', the least recently used file being closed first)
+ * and the data is buffered, and written with a single gathering write once
+ * 'bufferSize' bytes are buffered or 'flushInterval' elapsed. Files that were
+ * not written for 'flushInterval' are closed by a task on the 'taskScheduler'
+ * bean, if there is one. All files are flushed and closed by {@link #flush()}
+ * and when this handler is destroyed. With 'deleteSourceFiles', a source file
+ * is deleted only once the data appended from it has been written.
+ * <p>
+ * <code>File</code> payloads are copied with {@link FileChannel#transferTo},
+ * leaving it to the operating system to move the data. Alternatively, when
+ * 'useHardLinks' is true and the files are not appended to, the destination
+ * file is created as a hard link to the source file if the platform supports
+ * it (Java 7 or later) and both are on the same file system.
  *
  * @author Mark Fisher
  * @author Iwein Fuld
@@ -69,7 +98,27 @@ import org.springframework.util.FileCopyUtils;
  * @author Artem Bilan
  * @author Gunnar Hillert
  */
-public class FileWritingMessageHandler extends AbstractReplyProducingMessageHandler {
+public class FileWritingMessageHandler extends AbstractReplyProducingMessageHandler implements DisposableBean {
+
+	private static final Method toPathMethod = ReflectionUtils.findMethod(File.class, "toPath");
+
+	private static final Method createLinkMethod;
+
+	static {
+		Method method = null;
+		if (toPathMethod != null) {
+			try {
+				ClassLoader classLoader = FileWritingMessageHandler.class.getClassLoader();
+				Class<?> pathClass = ClassUtils.forName("java.nio.file.Path", classLoader);
+				method = ReflectionUtils.findMethod(ClassUtils.forName("java.nio.file.Files", classLoader),
+						"createLink", pathClass, pathClass);
+			}
+			catch (ClassNotFoundException e) {
+				// hard links are not supported on this platform
+			}
+		}
+		createLinkMethod = method;
+	}
 
 	private volatile String temporaryFileSuffix =".writing";
 
@@ -89,12 +138,27 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 
 	private volatile boolean deleteSourceFiles;
 
+	private volatile boolean useHardLinks;
+
 	private volatile Charset charset = Charset.defaultCharset();
 
 	private volatile boolean expectReply = true;
 
 	private volatile LockRegistry lockRegistry = new PassThruLockRegistry();
 
+	private volatile int bufferSize = 8192;
+
+	private volatile long flushInterval = 30000;
+
+	private volatile int maxOpenFiles = 16;
+
+	/**
+	 * The files appended to with {@link FileExistsMode#APPEND_NO_FLUSH}, least recently used first.
+	 */
+	private final Map<String, AppendedFile> appendedFiles = new LinkedHashMap<String, AppendedFile>(16, 0.75f, true);
+
+	private volatile ScheduledFuture<?> flushTask;
+
 	/**
 	 * Constructor which sets the {@link #destinationDirectoryExpression} using
 	 * a {@link LiteralExpression}.
@@ -149,9 +213,9 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 	 * instructs this handler to append data to the existing file rather then
 	 * creating a new file for each {@link Message}.
 	 *
-	 * If set to {@link FileExistsMode#APPEND}, the adapter will also
-	 * create a real instance of the {@link LockRegistry} to ensure that there
-	 * is no collisions when multiple threads are writing to the same file.
+	 * If set to {@link FileExistsMode#APPEND} or {@link FileExistsMode#APPEND_NO_FLUSH},
+	 * the adapter will also create a real instance of the {@link LockRegistry} to ensure
+	 * that there is no collisions when multiple threads are writing to the same file.
 	 *
 	 * Otherwise the LockRegistry is set to {@link PassThruLockRegistry} which
 	 * has no effect.
@@ -163,13 +227,41 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 		Assert.notNull(fileExistsMode, "'fileExistsMode' must not be null.");
 		this.fileExistsMode = fileExistsMode;
 
-		if (FileExistsMode.APPEND.equals(fileExistsMode)){
+		if (FileExistsMode.APPEND.equals(fileExistsMode) || FileExistsMode.APPEND_NO_FLUSH.equals(fileExistsMode)) {
 			this.lockRegistry = this.lockRegistry instanceof PassThruLockRegistry
 					? new DefaultLockRegistry()
 					: this.lockRegistry;
 		}
 	}
 
+	/**
+	 * Set the number of bytes buffered per file before they are written out, when
+	 * the mode is {@link FileExistsMode#APPEND_NO_FLUSH}. Default is 8192.
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize > 0, "'bufferSize' must be positive");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Set the time in milliseconds after which buffered data is written out, and
+	 * after which a file that was not written to is closed, when the mode is
+	 * {@link FileExistsMode#APPEND_NO_FLUSH}. Default is 30000.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval > 0, "'flushInterval' must be positive");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Set the maximum number of files kept open when the mode is
+	 * {@link FileExistsMode#APPEND_NO_FLUSH}. Default is 16.
+	 */
+	public void setMaxOpenFiles(int maxOpenFiles) {
+		Assert.isTrue(maxOpenFiles > 0, "'maxOpenFiles' must be positive");
+		this.maxOpenFiles = maxOpenFiles;
+	}
+
 	/**
 	 * Specify whether a reply Message is expected. If not, this handler will simply return null for a
 	 * successful response or throw an Exception for a non-successful response. The default is true.
@@ -202,6 +294,18 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 		this.deleteSourceFiles = deleteSourceFiles;
 	}
 
+	/**
+	 * Specify whether, for <code>File</code> payloads that are not appended to
+	 * an existing file, the destination file should be created as a hard link
+	 * to the source file instead of a copy. This is only possible on Java 7 or
+	 * later and when both files are on the same file system; otherwise the file
+	 * is copied. Note that the files then share their content, so changes made
+	 * in place to one of them are visible through the other. The default is false.
+	 */
+	public void setUseHardLinks(boolean useHardLinks) {
+		this.useHardLinks = useHardLinks;
+	}
+
 	/**
 	 * Set the charset name to use when writing a File from a String-based
 	 * Message payload.
@@ -231,6 +335,16 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 			validateDestinationDirectory(directory, this.autoCreateDirectory);
 		}
 
+		if (FileExistsMode.APPEND_NO_FLUSH.equals(this.fileExistsMode)) {
+			TaskScheduler taskScheduler = this.getTaskScheduler();
+			if (taskScheduler != null) {
+				this.flushTask = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+					public void run() {
+						flushIdleFiles();
+					}
+				}, this.flushInterval);
+			}
+		}
 	}
 
 	private void validateDestinationDirectory(File destinationDirectory, boolean autoCreateDirectory) {
@@ -245,8 +359,7 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 				"Destination path [" + destinationDirectory + "] does not point to a directory.");
 		Assert.isTrue(destinationDirectory.canWrite(),
 				"Destination directory [" + destinationDirectory + "] is not writable.");
-		Assert.state(!(this.temporaryFileSuffixSet
-						&& FileExistsMode.APPEND.equals(this.fileExistsMode)),
+		Assert.state(!(this.temporaryFileSuffixSet && this.isAppend()),
 				"'temporaryFileSuffix' can not be set when appending to an existing file");
 	}
 
@@ -273,7 +386,11 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 		if (!ignore) {
 
 			try {
-				if (payload instanceof File) {
+				if (FileExistsMode.APPEND_NO_FLUSH.equals(this.fileExistsMode)) {
+					this.handleBufferedAppend(payload, resultFile,
+							payload instanceof File ? (File) payload : originalFileFromHeader);
+				}
+				else if (payload instanceof File) {
 					resultFile = this.handleFileMessage((File) payload, tempFile, resultFile);
 				}
 				else if (payload instanceof byte[]) {
@@ -327,12 +444,11 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 	private File handleFileMessage(final File sourceFile, File tempFile, final File resultFile) throws IOException {
 		if (FileExistsMode.APPEND.equals(this.fileExistsMode)){
 			File fileToWriteTo = this.determineFileToWrite(resultFile, tempFile);
-			final FileOutputStream fos = new FileOutputStream(fileToWriteTo, true);
-			final FileInputStream fis = new FileInputStream(sourceFile);
+			final File target = fileToWriteTo;
 			WhileLockedProcessor whileLockedProcessor = new WhileLockedProcessor(this.lockRegistry, fileToWriteTo.getAbsolutePath()){
 				@Override
 				protected void whileLocked() throws IOException {
-					FileCopyUtils.copy(fis, fos);
+					copyFile(sourceFile, target, true);
 				}
 			};
 			whileLockedProcessor.doWhileLocked();
@@ -349,12 +465,74 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 							sourceFile.getAbsolutePath()));
 				}
 			}
-			FileCopyUtils.copy(sourceFile, tempFile);
+			if (!(this.useHardLinks && this.link(sourceFile, tempFile))) {
+				copyFile(sourceFile, tempFile, false);
+			}
 			this.cleanUpAfterCopy(tempFile, resultFile, sourceFile);
 			return resultFile;
 		}
 	}
 
+	/**
+	 * Create the target file as a hard link to the source file.
+	 * @return false if the link could not be created, e.g. because the files are
+	 * on different file systems, or because the platform does not support it.
+	 */
+	private boolean link(File sourceFile, File target) {
+		if (createLinkMethod == null) {
+			return false;
+		}
+		if (target.exists() && !target.delete()) {
+			return false;
+		}
+		try {
+			createLinkMethod.invoke(null, toPathMethod.invoke(target), toPathMethod.invoke(sourceFile));
+			return true;
+		}
+		catch (Exception e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to link file '" + target.getAbsolutePath() + "' to '"
+						+ sourceFile.getAbsolutePath() + "'. Using copy fallback.", e);
+			}
+			return false;
+		}
+	}
+
+	private static void copyFile(File sourceFile, File target, boolean append) throws IOException {
+		FileOutputStream outputStream = new FileOutputStream(target, append);
+		try {
+			transfer(sourceFile, outputStream.getChannel());
+		}
+		finally {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Write the content of the source file to the target channel with
+	 * {@link FileChannel#transferTo}, which avoids copying the data through
+	 * user-space buffers where the operating system supports it.
+	 */
+	private static void transfer(File sourceFile, FileChannel target) throws IOException {
+		FileInputStream inputStream = new FileInputStream(sourceFile);
+		try {
+			FileChannel sourceChannel = inputStream.getChannel();
+			long size = sourceChannel.size();
+			long position = 0;
+			while (position < size) {
+				long transferred = sourceChannel.transferTo(position, size - position, target);
+				if (transferred <= 0) {
+					// the file was truncated while it was being transferred
+					break;
+				}
+				position += transferred;
+			}
+		}
+		finally {
+			inputStream.close();
+		}
+	}
+
 	private File handleByteArrayMessage(final byte[] bytes, File originalFile, File tempFile, final File resultFile) throws IOException {
 		File fileToWriteTo = this.determineFileToWrite(resultFile, tempFile);
 
@@ -398,6 +576,7 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 
 		switch (this.fileExistsMode) {
 			case APPEND:
+			case APPEND_NO_FLUSH:
 				fileToWriteTo = resultFile;
 				break;
 			case FAIL:
@@ -413,7 +592,7 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 	}
 
 	private void cleanUpAfterCopy(File fileToWriteTo, File resultFile, File originalFile) throws IOException{
-		if (!FileExistsMode.APPEND.equals(this.fileExistsMode)) {
+		if (!this.isAppend()) {
 			this.renameTo(fileToWriteTo, resultFile);
 		}
 
@@ -422,6 +601,177 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 		}
 	}
 
+	private boolean isAppend() {
+		return FileExistsMode.APPEND.equals(this.fileExistsMode)
+				|| FileExistsMode.APPEND_NO_FLUSH.equals(this.fileExistsMode);
+	}
+
+	/**
+	 * With 'deleteSourceFiles', the source file is deleted once its content has
+	 * been written to the file, not while it is only buffered.
+	 */
+	private void handleBufferedAppend(Object payload, File resultFile, File sourceFile) throws IOException {
+		File sourceToDelete = this.deleteSourceFiles ? sourceFile : null;
+		ByteBuffer data = null;
+		if (payload instanceof byte[]) {
+			data = ByteBuffer.wrap((byte[]) payload);
+		}
+		else if (payload instanceof String) {
+			data = this.charset.encode((String) payload);
+		}
+		else if (!(payload instanceof File)) {
+			throw new IllegalArgumentException(
+					"unsupported Message payload type [" + payload.getClass().getName() + "]");
+		}
+		while (true) {
+			AppendedFile appendedFile = this.obtainAppendedFile(resultFile);
+			synchronized (appendedFile) {
+				// the file may have been closed since we obtained it; if so, obtain a new one
+				if (!appendedFile.closed) {
+					if (data != null) {
+						appendedFile.append(data, sourceToDelete);
+					}
+					else {
+						appendedFile.append((File) payload, sourceToDelete);
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Obtain the open file for the given file, replacing one that has been closed. When
+	 * more than 'maxOpenFiles' files are then open, the least recently used ones are
+	 * evicted, and closed without holding the lock on the open files.
+	 */
+	private AppendedFile obtainAppendedFile(File file) throws IOException {
+		String key = file.getAbsolutePath();
+		AppendedFile appendedFile;
+		List<AppendedFile> evicted = null;
+		synchronized (this.appendedFiles) {
+			appendedFile = this.appendedFiles.get(key);
+			if (appendedFile == null || appendedFile.closed) {
+				appendedFile = new AppendedFile(file);
+				this.appendedFiles.put(key, appendedFile);
+				Iterator<AppendedFile> iterator = this.appendedFiles.values().iterator();
+				while (this.appendedFiles.size() > this.maxOpenFiles && iterator.hasNext()) {
+					AppendedFile eldest = iterator.next();
+					if (eldest != appendedFile) {
+						iterator.remove();
+						if (evicted == null) {
+							evicted = new ArrayList<AppendedFile>();
+						}
+						evicted.add(eldest);
+					}
+				}
+			}
+		}
+		if (evicted != null) {
+			for (AppendedFile eldest : evicted) {
+				IOException failure = this.close(eldest);
+				if (failure != null) {
+					logger.error("Failed to write to file '" + eldest.file + "'", failure);
+				}
+			}
+		}
+		return appendedFile;
+	}
+
+	/**
+	 * Write out the data buffered for files appended to with
+	 * {@link FileExistsMode#APPEND_NO_FLUSH} and close those files.
+	 * @throws MessagingException if the data of some files could not be written; these
+	 * files are kept open with their data, so that it is written by a later flush.
+	 */
+	public void flush() {
+		List<AppendedFile> files;
+		synchronized (this.appendedFiles) {
+			files = new ArrayList<AppendedFile>(this.appendedFiles.values());
+			this.appendedFiles.clear();
+		}
+		List<File> failedFiles = new ArrayList<File>();
+		IOException firstFailure = null;
+		for (AppendedFile appendedFile : files) {
+			IOException failure = this.close(appendedFile);
+			if (failure != null) {
+				failedFiles.add(appendedFile.file);
+				if (firstFailure == null) {
+					firstFailure = failure;
+				}
+			}
+		}
+		if (firstFailure != null) {
+			throw new MessagingException("Failed to write to files " + failedFiles, firstFailure);
+		}
+	}
+
+	/**
+	 * Close the files that were not written to for the flush interval, and write
+	 * out the data that was buffered for longer than that.
+	 */
+	private void flushIdleFiles() {
+		List<AppendedFile> files;
+		synchronized (this.appendedFiles) {
+			files = new ArrayList<AppendedFile>(this.appendedFiles.values());
+		}
+		long now = System.currentTimeMillis();
+		for (AppendedFile appendedFile : files) {
+			boolean closed = false;
+			synchronized (appendedFile) {
+				try {
+					closed = appendedFile.flushIfIdle(now);
+				}
+				catch (IOException e) {
+					// the file is still open and keeps its data
+					logger.error("Failed to write to file '" + appendedFile.file + "'", e);
+				}
+			}
+			if (closed) {
+				synchronized (this.appendedFiles) {
+					String key = appendedFile.file.getAbsolutePath();
+					if (this.appendedFiles.get(key) == appendedFile) {
+						this.appendedFiles.remove(key);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close a file that has been removed from the open files. If its data could not be
+	 * written, the file is kept open and put back, unless it has been reopened meanwhile.
+	 * @return the write failure, if any.
+	 */
+	private IOException close(AppendedFile appendedFile) {
+		synchronized (appendedFile) {
+			try {
+				appendedFile.close();
+				return null;
+			}
+			catch (IOException e) {
+				synchronized (this.appendedFiles) {
+					String key = appendedFile.file.getAbsolutePath();
+					if (!this.appendedFiles.containsKey(key)) {
+						this.appendedFiles.put(key, appendedFile);
+					}
+				}
+				return e;
+			}
+		}
+	}
+
+	/**
+	 * Flush the files appended to with {@link FileExistsMode#APPEND_NO_FLUSH}.
+	 * @see #flush()
+	 */
+	public void destroy() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		this.flush();
+	}
+
 	private void renameTo(File tempFile, File resultFile) throws IOException{
 		Assert.notNull(resultFile, "'resultFile' must not be null");
 		Assert.notNull(tempFile, "'tempFile' must not be null");
@@ -477,4 +827,161 @@ public class FileWritingMessageHandler extends AbstractReplyProducingMessageHand
 		return destinationDirectory;
 	}
 
+
+	/**
+	 * A file kept open for {@link FileExistsMode#APPEND_NO_FLUSH}, with the data
+	 * buffered for it; must be used while holding its monitor.
+	 */
+	private class AppendedFile {
+
+		private final File file;
+
+		private final FileOutputStream stream;
+
+		private final FileChannel channel;
+
+		private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+		private final List<File> sourcesToDelete = new ArrayList<File>();
+
+		private long bufferedBytes;
+
+		private long firstBufferedTime;
+
+		private long lastWriteTime;
+
+		private volatile boolean closed;
+
+		private AppendedFile(File file) throws IOException {
+			this.file = file;
+			this.stream = new FileOutputStream(file, true);
+			this.channel = this.stream.getChannel();
+			this.lastWriteTime = System.currentTimeMillis();
+		}
+
+		/**
+		 * Buffer the data, writing it out with the data buffered before if necessary. If that
+		 * write fails, the data is not kept, as the message it belongs to fails; the data
+		 * buffered before is kept, to be written with the next write.
+		 */
+		void append(ByteBuffer data, File sourceToDelete) throws IOException {
+			long now = System.currentTimeMillis();
+			if (this.buffers.isEmpty()) {
+				this.firstBufferedTime = now;
+			}
+			this.buffers.add(data);
+			this.bufferedBytes += data.remaining();
+			if (sourceToDelete != null) {
+				this.sourcesToDelete.add(sourceToDelete);
+			}
+			this.lastWriteTime = now;
+			if (this.bufferedBytes >= bufferSize || now - this.firstBufferedTime >= flushInterval) {
+				try {
+					this.writeBuffers();
+				}
+				catch (IOException e) {
+					this.discard(data, sourceToDelete);
+					throw e;
+				}
+			}
+		}
+
+		private void discard(ByteBuffer data, File sourceToDelete) {
+			for (Iterator<ByteBuffer> iterator = this.buffers.iterator(); iterator.hasNext();) {
+				if (iterator.next() == data) {
+					iterator.remove();
+					this.bufferedBytes -= data.remaining();
+					break;
+				}
+			}
+			if (sourceToDelete != null) {
+				this.sourcesToDelete.remove(sourceToDelete);
+			}
+		}
+
+		void append(final File source, File sourceToDelete) throws IOException {
+			this.writeBuffers();
+			new WhileLockedProcessor(lockRegistry, this.file.getAbsolutePath()) {
+				@Override
+				protected void whileLocked() throws IOException {
+					transfer(source, channel);
+				}
+			}.doWhileLocked();
+			this.lastWriteTime = System.currentTimeMillis();
+			if (sourceToDelete != null) {
+				sourceToDelete.delete();
+			}
+		}
+
+		/**
+		 * Buffers are dropped as soon as they have been written, so that a
+		 * failed write is resumed where it stopped.
+		 */
+		private void writeBuffers() throws IOException {
+			if (this.buffers.isEmpty()) {
+				return;
+			}
+			final ByteBuffer[] data = this.buffers.toArray(new ByteBuffer[this.buffers.size()]);
+			try {
+				new WhileLockedProcessor(lockRegistry, this.file.getAbsolutePath()) {
+					@Override
+					protected void whileLocked() throws IOException {
+						for (int i = 0; i < data.length; i++) {
+							while (data[i].hasRemaining()) {
+								channel.write(data, i, data.length - i);
+							}
+						}
+					}
+				}.doWhileLocked();
+			}
+			finally {
+				for (Iterator<ByteBuffer> iterator = this.buffers.iterator(); iterator.hasNext();) {
+					ByteBuffer buffer = iterator.next();
+					if (buffer.hasRemaining()) {
+						break;
+					}
+					iterator.remove();
+				}
+				this.bufferedBytes = 0;
+				for (ByteBuffer buffer : this.buffers) {
+					this.bufferedBytes += buffer.remaining();
+				}
+			}
+			for (File source : this.sourcesToDelete) {
+				source.delete();
+			}
+			this.sourcesToDelete.clear();
+		}
+
+		/**
+		 * @return true if the file was closed.
+		 */
+		boolean flushIfIdle(long now) throws IOException {
+			if (this.closed) {
+				return true;
+			}
+			if (now - this.lastWriteTime >= flushInterval) {
+				this.close();
+				return true;
+			}
+			if (!this.buffers.isEmpty() && now - this.firstBufferedTime >= flushInterval) {
+				this.writeBuffers();
+			}
+			return false;
+		}
+
+		/**
+		 * Write out the buffered data and close the file. If the data can not be written,
+		 * the file stays open and keeps the data.
+		 */
+		void close() throws IOException {
+			if (this.closed) {
+				return;
+			}
+			this.writeBuffers();
+			this.closed = true;
+			this.stream.close();
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,30 +19,270 @@ package org.springframework.integration.file;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.util.Assert;
 
 /**
  * DirectoryScanner that lists all files inside a directory and subdirectories,
  * without limit. This scanner should not be used with directories that contain
  * a vast number of files or on deep trees, as all the file names will be read
  * into memory and the scanning will be done recursively.
- * 
+ * <p>
+ * For such trees, the scan can be limited to a maximum number of files (that
+ * passed the filter), after which it stops; the remaining files are found by
+ * later scans. Also, when a task executor is provided, the subdirectories are
+ * scanned in parallel, each as a separate task. In either case the filter is
+ * applied to the files of each directory separately, and only to as many files
+ * as may still be returned, so that filters that remember the files they have
+ * accepted do not miss any. With a task executor, the filter must be thread-safe.
+ *
  * @author Iwein Fuld
  */
 public class RecursiveLeafOnlyDirectoryScanner extends DefaultDirectoryScanner {
 
+	private volatile int maxNumberOfFiles = Integer.MAX_VALUE;
+
+	private volatile Executor taskExecutor;
+
+
+	/**
+	 * Set the maximum number of files returned by a scan. Default is unlimited.
+	 * @since 3.0
+	 */
+	public void setMaxNumberOfFiles(int maxNumberOfFiles) {
+		Assert.isTrue(maxNumberOfFiles > 0, "'maxNumberOfFiles' must be positive");
+		this.maxNumberOfFiles = maxNumberOfFiles;
+	}
+
+	/**
+	 * Set an executor to scan subdirectories in parallel. By default, the tree
+	 * is scanned by the polling thread.
+	 * @since 3.0
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Walk the directory and its subdirectories, applying the filter to the files of each
+	 * directory separately, up to the maximum number of files.
+	 * <p>
+	 * Unlike the default implementation, the files returned here have already passed the
+	 * filter and are not filtered again (see {@link #filterEligibleFiles(File[])}); a
+	 * subclass overriding this method must filter the files it returns itself.
+	 */
+	@Override
 	protected File[] listEligibleFiles(File directory) throws IllegalArgumentException {
 		File[] rootFiles = directory.listFiles();
-		List<File> files = new ArrayList<File>(rootFiles.length);
-		for (File rootFile : rootFiles) {
-			if (rootFile.isDirectory()) {
-				files.addAll(Arrays.asList(listEligibleFiles(rootFile)));
+		if (rootFiles == null) {
+			return null;
+		}
+		Scan scan = new Scan();
+		Collection<File> files;
+		if (this.taskExecutor == null) {
+			files = new ArrayList<File>();
+			scan.scan(rootFiles, files);
+		}
+		else {
+			files = new ConcurrentLinkedQueue<File>();
+			scan.scanInParallel(rootFiles, files);
+		}
+		return files.toArray(new File[files.size()]);
+	}
+
+	/**
+	 * The files have been filtered by {@link #listEligibleFiles(File)}.
+	 */
+	@Override
+	protected List<File> filterEligibleFiles(File[] files) {
+		return Arrays.asList(files);
+	}
+
+
+	/**
+	 * The state of a single scan.
+	 */
+	private class Scan {
+
+		private final int maxNumberOfFiles = RecursiveLeafOnlyDirectoryScanner.this.maxNumberOfFiles;
+
+		/**
+		 * The number of files that may still be passed to the filter; files that are being filtered
+		 * are neither remaining nor accepted. Guarded by this scan's monitor.
+		 */
+		private int remaining = this.maxNumberOfFiles;
+
+		private volatile int accepted;
+
+		private final AtomicInteger pendingTasks = new AtomicInteger();
+
+		private volatile RuntimeException failure;
+
+		/**
+		 * Scan depth-first on the current thread.
+		 */
+		void scan(File[] children, Collection<File> results) {
+			List<File> directories = this.addFiles(children, results);
+			for (File directory : directories) {
+				if (this.isComplete()) {
+					return;
+				}
+				File[] grandChildren = directory.listFiles();
+				if (grandChildren != null) {
+					this.scan(grandChildren, results);
+				}
 			}
-			else {
-				files.add(rootFile);
+		}
+
+		/**
+		 * Scan each subdirectory as a task on the executor and wait for all tasks to complete.
+		 */
+		void scanInParallel(File[] children, Collection<File> results) {
+			this.pendingTasks.incrementAndGet();
+			this.scanTask(children, results).run();
+			synchronized (this) {
+				while (this.pendingTasks.get() > 0) {
+					try {
+						this.wait();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new MessagingException("Interrupted while scanning directories", e);
+					}
+				}
+			}
+			if (this.failure != null) {
+				throw this.failure;
 			}
 		}
-		return files.toArray(new File[files.size()]);
+
+		private Runnable scanTask(final File[] children, final Collection<File> results) {
+			return new Runnable() {
+				public void run() {
+					try {
+						List<File> directories = addFiles(children, results);
+						for (File directory : directories) {
+							if (isComplete() || failure != null) {
+								break;
+							}
+							File[] grandChildren = directory.listFiles();
+							if (grandChildren != null) {
+								submit(grandChildren, results);
+							}
+						}
+					}
+					catch (RuntimeException e) {
+						failed(e);
+					}
+					finally {
+						taskCompleted();
+					}
+				}
+			};
+		}
+
+		private void submit(File[] children, Collection<File> results) {
+			this.pendingTasks.incrementAndGet();
+			Runnable task = this.scanTask(children, results);
+			try {
+				taskExecutor.execute(task);
+			}
+			catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+
+		private void failed(RuntimeException e) {
+			synchronized (this) {
+				this.failure = e;
+				this.notifyAll();
+			}
+		}
+
+		private void taskCompleted() {
+			if (this.pendingTasks.decrementAndGet() == 0) {
+				synchronized (this) {
+					this.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Add the files among the children that pass the filter, up to the number that may still be returned.
+		 * @return the directories among the children.
+		 */
+		private List<File> addFiles(File[] children, Collection<File> results) {
+			List<File> directories = new ArrayList<File>();
+			List<File> files = new ArrayList<File>(children.length);
+			for (File child : children) {
+				if (child.isDirectory()) {
+					directories.add(child);
+				}
+				else {
+					files.add(child);
+				}
+			}
+			FileListFilter<File> filter = getFilter();
+			int index = 0;
+			while (index < files.size()) {
+				int reserved = this.reserve(files.size() - index);
+				if (reserved == 0) {
+					break;
+				}
+				List<File> candidates = files.subList(index, index + reserved);
+				index += reserved;
+				List<File> acceptedFiles = (filter != null)
+						? filter.filterFiles(candidates.toArray(new File[reserved]))
+						: candidates;
+				results.addAll(acceptedFiles);
+				this.release(reserved, acceptedFiles.size());
+			}
+			return directories;
+		}
+
+		private boolean isComplete() {
+			return this.accepted >= this.maxNumberOfFiles;
+		}
+
+		/**
+		 * Reserve up to the requested number of files among those that may still be returned. If all
+		 * are reserved by other tasks, wait until these have been filtered.
+		 * @return the number of files reserved, 0 if the maximum number of files has been accepted.
+		 */
+		private synchronized int reserve(int requested) {
+			while (this.remaining == 0) {
+				if (this.isComplete() || this.failure != null) {
+					return 0;
+				}
+				try {
+					this.wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MessagingException("Interrupted while scanning directories", e);
+				}
+			}
+			int reserved = Math.min(this.remaining, requested);
+			this.remaining -= reserved;
+			return reserved;
+		}
+
+		/**
+		 * Release reserved files once filtered: those rejected by the filter may be reserved again.
+		 */
+		private synchronized void release(int reserved, int acceptedCount) {
+			this.accepted += acceptedCount;
+			this.remaining += reserved - acceptedCount;
+			this.notifyAll();
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,7 @@ public class FileNamespaceHandler extends AbstractIntegrationNamespaceHandler {
 		registerBeanDefinitionParser("outbound-gateway", new FileOutboundGatewayParser());
 		registerBeanDefinitionParser("file-to-string-transformer", new FileToStringTransformerParser());
 		registerBeanDefinitionParser("file-to-bytes-transformer", new FileToByteArrayTransformerParser());
+		registerBeanDefinitionParser("file-to-bytebuffer-transformer", new FileToByteBufferTransformerParser());
 	}
 
 }
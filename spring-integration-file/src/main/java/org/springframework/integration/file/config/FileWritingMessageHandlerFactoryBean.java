@@ -18,6 +18,7 @@ package org.springframework.integration.file.config;
 
 import java.io.File;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.expression.Expression;
 import org.springframework.integration.config.AbstractSimpleMessageHandlerFactoryBean;
 import org.springframework.integration.file.FileNameGenerator;
@@ -36,7 +37,8 @@ import org.springframework.integration.file.support.FileExistsMode;
  *
  * @since 1.0.3
  */
-public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageHandlerFactoryBean<FileWritingMessageHandler>{
+public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageHandlerFactoryBean<FileWritingMessageHandler>
+		implements DisposableBean {
 
 	private volatile File directory;
 
@@ -48,6 +50,8 @@ public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageH
 
 	private volatile Boolean deleteSourceFiles;
 
+	private volatile Boolean useHardLinks;
+
 	private volatile Boolean autoCreateDirectory;
 
 	private volatile Boolean requiresReply;
@@ -60,6 +64,14 @@ public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageH
 
 	private volatile boolean expectReply = true;
 
+	private volatile Integer bufferSize;
+
+	private volatile Long flushInterval;
+
+	private volatile Integer maxOpenFiles;
+
+	private volatile FileWritingMessageHandler handler;
+
 	public void setFileExistsMode(String fileExistsModeAsString) {
 		this.fileExistsMode = FileExistsMode.getForString(fileExistsModeAsString);
 	}
@@ -84,6 +96,10 @@ public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageH
 		this.deleteSourceFiles = deleteSourceFiles;
 	}
 
+	public void setUseHardLinks(Boolean useHardLinks) {
+		this.useHardLinks = useHardLinks;
+	}
+
 	public void setAutoCreateDirectory(Boolean autoCreateDirectory) {
 		this.autoCreateDirectory = autoCreateDirectory;
 	}
@@ -104,6 +120,18 @@ public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageH
 		this.expectReply = expectReply;
 	}
 
+	public void setBufferSize(Integer bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public void setFlushInterval(Long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	public void setMaxOpenFiles(Integer maxOpenFiles) {
+		this.maxOpenFiles = maxOpenFiles;
+	}
+
 	@Override
 	protected FileWritingMessageHandler createHandler() {
 
@@ -130,6 +158,9 @@ public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageH
 		if (this.deleteSourceFiles != null) {
 			handler.setDeleteSourceFiles(this.deleteSourceFiles);
 		}
+		if (this.useHardLinks != null) {
+			handler.setUseHardLinks(this.useHardLinks);
+		}
 		if (this.autoCreateDirectory != null) {
 			handler.setAutoCreateDirectory(this.autoCreateDirectory);
 		}
@@ -147,7 +178,26 @@ public class FileWritingMessageHandlerFactoryBean extends AbstractSimpleMessageH
 		if (this.fileExistsMode != null) {
 			handler.setFileExistsMode(this.fileExistsMode);
 		}
-
+		if (this.bufferSize != null) {
+			handler.setBufferSize(this.bufferSize);
+		}
+		if (this.flushInterval != null) {
+			handler.setFlushInterval(this.flushInterval);
+		}
+		if (this.maxOpenFiles != null) {
+			handler.setMaxOpenFiles(this.maxOpenFiles);
+		}
+		this.handler = handler;
 		return handler;
 	}
+
+	/**
+	 * The container does not destroy objects created by a FactoryBean, so the
+	 * handler's buffered data is flushed here.
+	 */
+	public void destroy() {
+		if (this.handler != null) {
+			this.handler.destroy();
+		}
+	}
 }
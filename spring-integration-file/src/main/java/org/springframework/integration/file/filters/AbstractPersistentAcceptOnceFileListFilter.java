@@ -0,0 +1,196 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.filters;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.store.ListableMetadataStore;
+import org.springframework.integration.store.MetadataStore;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link FileListFilter} that passes a file only if it is new or has been
+ * modified since it last passed. The name, size and modification time of the
+ * files that passed are kept in a {@link MetadataStore}, so with a persistent
+ * store (e.g. a {@link org.springframework.integration.store.PropertiesPersistingMetadataStore})
+ * this knowledge survives restarts and files are not transferred again.
+ * <p/>
+ * If the store is {@link Flushable}, it is flushed after each listing that
+ * passed at least one file.
+ * <p/>
+ * A file is recorded as soon as it passes; if it cannot be transferred, the
+ * synchronizer {@link #rollback(Object, List) rolls it back}, which removes
+ * its entry, so that it passes again with the next listing.
+ * <p/>
+ * Entries are kept after their files have been removed unless
+ * {@link #setPruneMissingFiles(boolean) pruning} is enabled.
+ * <p/>
+ * When combined with other filters in a {@link CompositeFileListFilter}, add
+ * this filter last so that only files accepted by the other filters are stored.
+ *
+ * @param <F> the type of file entry
+ * @since 3.0
+ */
+public abstract class AbstractPersistentAcceptOnceFileListFilter<F> implements ReversibleFileListFilter<F> {
+
+	private final Log logger = LogFactory.getLog(this.getClass());
+
+	private final MetadataStore store;
+
+	private final String prefix;
+
+	private final Object monitor = new Object();
+
+	private volatile boolean pruneMissingFiles;
+
+
+	/**
+	 * Create a filter that keeps its entries in the given store, under keys
+	 * composed of the given prefix and the file name. Use a distinct prefix
+	 * for each remote directory that shares the store.
+	 */
+	public AbstractPersistentAcceptOnceFileListFilter(MetadataStore store, String prefix) {
+		Assert.notNull(store, "'store' must not be null");
+		Assert.notNull(prefix, "'prefix' must not be null");
+		this.store = store;
+		this.prefix = prefix;
+	}
+
+
+	/**
+	 * When true, the entries of files missing from a listing are removed from the
+	 * store, so that it does not keep growing as files are deleted. This requires a
+	 * {@link ListableMetadataStore} and a prefix that no other user of the store
+	 * shares. Only the files passed to this filter count as present: within a
+	 * {@link CompositeFileListFilter}, the files rejected by the preceding filters
+	 * lose their entries too. Default false.
+	 */
+	public void setPruneMissingFiles(boolean pruneMissingFiles) {
+		Assert.isTrue(!pruneMissingFiles || this.store instanceof ListableMetadataStore,
+				"Pruning requires a ListableMetadataStore");
+		this.pruneMissingFiles = pruneMissingFiles;
+	}
+
+	public List<F> filterFiles(F[] files) {
+		List<F> accepted = new ArrayList<F>();
+		if (files != null) {
+			boolean pruned = false;
+			synchronized (this.monitor) {
+				for (F file : files) {
+					if (file != null && this.accept(file)) {
+						accepted.add(file);
+					}
+				}
+				if (this.pruneMissingFiles) {
+					pruned = this.prune(files);
+				}
+			}
+			if (!accepted.isEmpty() || pruned) {
+				this.flushIfNeeded();
+			}
+		}
+		return accepted;
+	}
+
+	public void rollback(F file, List<F> files) {
+		boolean rollingBack = false;
+		synchronized (this.monitor) {
+			for (F next : files) {
+				if (next == file || next.equals(file)) {
+					rollingBack = true;
+				}
+				if (rollingBack) {
+					this.store.remove(this.getKey(next));
+				}
+			}
+		}
+		if (rollingBack) {
+			this.flushIfNeeded();
+		}
+	}
+
+	private boolean accept(F file) {
+		String key = this.getKey(file);
+		String value = this.getModified(file) + ":" + this.getSize(file);
+		if (value.equals(this.store.get(key))) {
+			return false;
+		}
+		this.store.put(key, value);
+		return true;
+	}
+
+	/**
+	 * Must be called while holding the monitor.
+	 * @return true if any entry was removed.
+	 */
+	private boolean prune(F[] files) {
+		Set<String> present = new HashSet<String>();
+		for (F file : files) {
+			if (file != null) {
+				present.add(this.getKey(file));
+			}
+		}
+		boolean pruned = false;
+		for (String key : ((ListableMetadataStore) this.store).keySet()) {
+			if (key.startsWith(this.prefix) && !present.contains(key)) {
+				this.store.remove(key);
+				pruned = true;
+			}
+		}
+		return pruned;
+	}
+
+	private String getKey(F file) {
+		return this.prefix + this.getFilename(file);
+	}
+
+	private void flushIfNeeded() {
+		if (this.store instanceof Flushable) {
+			try {
+				((Flushable) this.store).flush();
+			}
+			catch (IOException e) {
+				// the files will be accepted again after a restart
+				logger.warn("Failed to flush the metadata store", e);
+			}
+		}
+	}
+
+	/**
+	 * Subclasses must implement this method to extract the file's name.
+	 */
+	protected abstract String getFilename(F file);
+
+	/**
+	 * Subclasses must implement this method to extract the file's modification time.
+	 */
+	protected abstract long getModified(F file);
+
+	/**
+	 * Subclasses must implement this method to extract the file's size.
+	 */
+	protected abstract long getSize(F file);
+
+}
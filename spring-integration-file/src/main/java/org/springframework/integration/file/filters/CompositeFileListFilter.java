@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.file.filters;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -29,13 +30,14 @@ import org.springframework.util.Assert;
 
 /**
  * Simple {@link FileListFilter} that predicates its matches against any of many
- * configured {@link FileListFilter}.
+ * configured {@link FileListFilter}. A rollback is passed on to the configured
+ * {@link ReversibleFileListFilter}s.
  *
  * @author Iwein Fuld
  * @author Josh Long
  * @param <F>
  */
-public class CompositeFileListFilter<F> implements FileListFilter<F> {
+public class CompositeFileListFilter<F> implements ReversibleFileListFilter<F> {
 
 	private final Set<FileListFilter<F>> fileFilters;
 
@@ -86,14 +88,31 @@ public class CompositeFileListFilter<F> implements FileListFilter<F> {
 	}
 
 
+	/**
+	 * Pass the files through the filters in the order they were added; each
+	 * filter only sees the files accepted by the previous ones.
+	 */
+	@SuppressWarnings("unchecked")
 	public List<F> filterFiles(F[] files) {
 		Assert.notNull(files, "'files' should not be null");
 		List<F> results = new ArrayList<F>(Arrays.asList(files));
 		for (FileListFilter<F> fileFilter : this.fileFilters) {
-			List<F> currentResults = fileFilter.filterFiles(files);
+			if (results.isEmpty()) {
+				break;
+			}
+			F[] remaining = results.toArray((F[]) Array.newInstance(files.getClass().getComponentType(), results.size()));
+			List<F> currentResults = fileFilter.filterFiles(remaining);
 			results.retainAll(currentResults);
 		}
 		return results;
 	}
 
+	public void rollback(F file, List<F> files) {
+		for (FileListFilter<F> fileFilter : this.fileFilters) {
+			if (fileFilter instanceof ReversibleFileListFilter) {
+				((ReversibleFileListFilter<F>) fileFilter).rollback(file, files);
+			}
+		}
+	}
+
 }
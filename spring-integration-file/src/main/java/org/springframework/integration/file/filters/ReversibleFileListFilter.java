@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.filters;
+
+import java.util.List;
+
+/**
+ * A {@link FileListFilter} that remembers the files it passed and can be told
+ * that some of them could not be processed, so that it passes them again.
+ *
+ * @param <F> the type of file entry
+ * @since 3.0
+ */
+public interface ReversibleFileListFilter<F> extends FileListFilter<F> {
+
+	/**
+	 * Indicate that the given file, and all files after it in the given list,
+	 * have not been processed and should be passed again.
+	 * @param file the first file that was not processed
+	 * @param files the files returned by {@link #filterFiles(Object[])}
+	 */
+	void rollback(F file, List<F> files);
+
+}
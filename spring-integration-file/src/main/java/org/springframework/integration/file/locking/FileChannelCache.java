@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,9 +24,13 @@ import java.nio.channels.OverlappingFileLockException;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Static cache of FileLocks that can be used to ensure that only a single lock is used inside this ClassLoader.
+ * <p/>
+ * The cache never closes a channel on its own: a channel, and hence its lock and file descriptor, is kept until
+ * {@link #closeChannelFor(File)} is invoked, except when the file could not be locked.
  *
  * @author Iwein Fuld
  * @since 2.0
@@ -35,6 +39,16 @@ final class FileChannelCache {
 
     private static ConcurrentMap<File, FileChannel> channelCache = new ConcurrentHashMap<File, FileChannel>();
 
+    private static final AtomicInteger openChannels = new AtomicInteger();
+
+
+    /**
+     * @return the number of channels currently open.
+     * @since 3.0
+     */
+    public static int getOpenChannelCount() {
+        return openChannels.get();
+    }
 
     /**
      * Try to get a lock for this file while guaranteeing that the same channel will be used for all file locks in this
@@ -46,20 +60,32 @@ final class FileChannelCache {
      */
     public static FileLock tryLockFor(File fileToLock) throws IOException {
         FileChannel channel = channelCache.get(fileToLock);
+        boolean created = false;
         if (channel == null) {
             FileChannel newChannel = new RandomAccessFile(fileToLock, "rw").getChannel();
             FileChannel original = channelCache.putIfAbsent(fileToLock, newChannel);
-            channel = (original != null) ? original : newChannel;
-        }
-        FileLock lock = null;
-        if (channel != null) {
-            try {
-                lock = channel.tryLock();
+            if (original != null) {
+                close(newChannel);
+                channel = original;
             }
-            catch (OverlappingFileLockException e) {
-                // File is already locked in this thread or virtual machine
+            else {
+                openChannels.incrementAndGet();
+                channel = newChannel;
+                created = true;
             }
         }
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        }
+        catch (OverlappingFileLockException e) {
+            // File is already locked in this thread or virtual machine
+        }
+        if (lock == null && created && channelCache.remove(fileToLock, channel)) {
+            // locked by another process; don't hold on to the descriptor
+            openChannels.decrementAndGet();
+            close(channel);
+        }
         return lock;
     }
 
@@ -71,12 +97,8 @@ final class FileChannelCache {
     public static void closeChannelFor(File fileToUnlock) {
         FileChannel fileChannel = channelCache.remove(fileToUnlock);
         if (fileChannel != null) {
-        	try {
-				fileChannel.close();
-			}
-        	catch (IOException e) {
-				// ignore
-			}
+            openChannels.decrementAndGet();
+            close(fileChannel);
         }
     }
 
@@ -84,4 +106,13 @@ final class FileChannelCache {
         return channelCache.containsKey(file);
     }
 
+    private static void close(FileChannel fileChannel) {
+        try {
+            fileChannel.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+    }
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,12 +18,14 @@ package org.springframework.integration.file.locking;
 
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.file.FileReadingMessageSource;
+import org.springframework.util.Assert;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.FileLock;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * File locking strategy that uses java.nio. The locks taken by FileChannel are shared with all the threads in a single
@@ -32,6 +34,14 @@ import java.util.concurrent.ConcurrentMap;
  * <p/>
  * This implementation will acquire or create a {@link FileLock} for the given file. Caching locks might be expensive,
  * so this locking strategy is not recommended for scenarios where many files are accessed in parallel.
+ * <p/>
+ * Each lock holds a file descriptor until the file is unlocked. To stay within the limits of the operating system
+ * when files are not unlocked explicitly, a locker releases its own locks once they have not been renewed by
+ * {@link #lock(File)} for the {@link #setLockTimeout(long) lock timeout}, and it holds no more than
+ * {@link #setMaxOpenChannels(int) maxOpenChannels} locks: once that many are held, it releases the locks of the
+ * files that no longer exist (typically files that have been processed and moved or deleted) and, if that is not
+ * enough, its least recently renewed lock, so that it keeps accepting new files. The maximum should therefore
+ * exceed the number of files being processed at any time. A lock is never released on behalf of another locker.
  *
  * @author Iwein Fuld
  * @author Mark Fisher
@@ -39,43 +49,146 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class NioFileLocker extends AbstractFileLockerFilter {
 
-    private final ConcurrentMap<File, FileLock> lockCache = new ConcurrentHashMap<File, FileLock>();
+    /**
+     * The locks held by this locker, least recently renewed first; guarded by its own monitor.
+     */
+    private final Map<File, HeldLock> lockCache = new LinkedHashMap<File, HeldLock>();
+
+    private volatile int maxOpenChannels = 512;
+
+    private volatile long lockTimeout = 300000;
+
+    /**
+     * Set the maximum number of locks (and hence open file descriptors) held by this locker. Default is 512.
+     * @since 3.0
+     */
+    public void setMaxOpenChannels(int maxOpenChannels) {
+        Assert.isTrue(maxOpenChannels > 0, "'maxOpenChannels' must be positive");
+        this.maxOpenChannels = maxOpenChannels;
+    }
+
+    /**
+     * Set the time in milliseconds after which a lock of this locker that was not renewed is released. It must
+     * exceed the time needed to process a file. Default is 300000 (5 minutes).
+     * @since 3.0
+     */
+    public void setLockTimeout(long lockTimeout) {
+        Assert.isTrue(lockTimeout > 0, "'lockTimeout' must be positive");
+        this.lockTimeout = lockTimeout;
+    }
 
     /**
      * {@inheritDoc}
      */
     public boolean lock(File fileToLock) {
-        FileLock lock = lockCache.get(fileToLock);
-        if (lock == null) {
-            FileLock newLock = null;
-            try {
-                newLock = FileChannelCache.tryLockFor(fileToLock);
-            } catch (IOException e) {
-                throw new MessagingException("Failed to lock file: "
-                        + fileToLock, e);
-            }
-            if (newLock != null) {
-                FileLock original = lockCache.putIfAbsent(fileToLock, newLock);
-                lock = original != null ? original : newLock;
+        synchronized (lockCache) {
+            long now = System.currentTimeMillis();
+            releaseExpiredLocks(now);
+            HeldLock held = lockCache.remove(fileToLock);
+            if (held == null || !held.lock.isValid()) {
+                if (FileChannelCache.isLocked(fileToLock)) {
+                    return false;
+                }
+                makeRoom();
+                FileLock newLock = null;
+                try {
+                    newLock = FileChannelCache.tryLockFor(fileToLock);
+                } catch (IOException e) {
+                    throw new MessagingException("Failed to lock file: "
+                            + fileToLock, e);
+                }
+                if (newLock == null) {
+                    return false;
+                }
+                held = new HeldLock(newLock);
             }
+            held.lastRenewed = now;
+            lockCache.put(fileToLock, held);
+            return true;
         }
-        return lock != null;
     }
 
     public boolean isLockable(File file) {
-        return lockCache.containsKey(file) || !FileChannelCache.isLocked(file);
+        synchronized (lockCache) {
+            releaseExpiredLocks(System.currentTimeMillis());
+            HeldLock held = lockCache.get(file);
+            if (held != null && held.lock.isValid()) {
+                return true;
+            }
+            return !FileChannelCache.isLocked(file);
+        }
     }
 
     public void unlock(File fileToUnlock) {
-        FileLock fileLock = lockCache.get(fileToUnlock);
+        synchronized (lockCache) {
+            HeldLock held = lockCache.remove(fileToUnlock);
+            release(fileToUnlock, held);
+        }
+    }
+
+    /**
+     * Must be called while holding the monitor of the lockCache.
+     */
+    private void releaseExpiredLocks(long now) {
+        Iterator<Map.Entry<File, HeldLock>> iterator = lockCache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<File, HeldLock> entry = iterator.next();
+            if (now - entry.getValue().lastRenewed < lockTimeout) {
+                break;
+            }
+            iterator.remove();
+            release(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Once maxOpenChannels locks are held, release those of the files that no longer exist and, if none do, the
+     * least recently renewed one. Must be called while holding the monitor of the lockCache.
+     */
+    private void makeRoom() {
+        if (lockCache.size() < maxOpenChannels) {
+            return;
+        }
+        Iterator<Map.Entry<File, HeldLock>> iterator = lockCache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<File, HeldLock> entry = iterator.next();
+            if (!entry.getKey().exists()) {
+                iterator.remove();
+                release(entry.getKey(), entry.getValue());
+            }
+        }
+        iterator = lockCache.entrySet().iterator();
+        while (lockCache.size() >= maxOpenChannels && iterator.hasNext()) {
+            Map.Entry<File, HeldLock> entry = iterator.next();
+            iterator.remove();
+            release(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Release a lock of this locker; the channel of a file is only closed while it holds this locker's lock.
+     */
+    private void release(File file, HeldLock held) {
         try {
-            if (fileLock != null) {
-                fileLock.release();
+            if (held != null && held.lock.isValid()) {
+                held.lock.release();
+                FileChannelCache.closeChannelFor(file);
             }
-            FileChannelCache.closeChannelFor(fileToUnlock);
         } catch (IOException e) {
             throw new MessagingException("Failed to unlock file: "
-                    + fileToUnlock, e);
+                    + file, e);
+        }
+    }
+
+
+    private static class HeldLock {
+
+        private final FileLock lock;
+
+        private volatile long lastRenewed;
+
+        HeldLock(FileLock lock) {
+            this.lock = lock;
         }
-	}
+    }
 }
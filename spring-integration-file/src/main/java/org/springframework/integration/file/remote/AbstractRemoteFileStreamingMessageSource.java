@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.context.IntegrationObjectSupport;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.ReversibleFileListFilter;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.file.remote.session.StreamingSession;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A {@link MessageSource} that produces Messages whose payload is an
+ * {@link InputStream} over the content of a remote file, rather than copying
+ * the file to a local directory first. Each stream holds a {@link Session}
+ * until it is closed (see {@link RemoteFileInputStream}), so the consumer of
+ * the Messages must close the stream; consider a
+ * {@link org.springframework.integration.file.remote.session.CachingSessionFactory}
+ * to avoid reconnecting for every file.
+ * <p/>
+ * The remote directory is listed when all files of the previous listing have
+ * been received. Since no local copy is kept, the {@link FileListFilter} is
+ * responsible for not passing the same file again. When a stream cannot be
+ * opened, or its transfer cannot be completed when it is closed, the file is
+ * rolled back if the filter is a {@link ReversibleFileListFilter}, so that it
+ * is received again after the next listing.
+ * <p/>
+ * The Sessions must be {@link StreamingSession}s.
+ *
+ * @param <F> the type of file entry
+ * @since 3.0
+ */
+public abstract class AbstractRemoteFileStreamingMessageSource<F> extends IntegrationObjectSupport
+		implements MessageSource<InputStream> {
+
+	private final SessionFactory<F> sessionFactory;
+
+	private final Queue<F> toBeReceived = new LinkedBlockingQueue<F>();
+
+	private volatile String remoteDirectory;
+
+	private volatile String remoteFileSeparator = "/";
+
+	private volatile FileListFilter<F> filter;
+
+	private final Object listMonitor = new Object();
+
+
+	public AbstractRemoteFileStreamingMessageSource(SessionFactory<F> sessionFactory) {
+		Assert.notNull(sessionFactory, "sessionFactory must not be null");
+		this.sessionFactory = sessionFactory;
+	}
+
+
+	/**
+	 * Specify the full path to the remote directory.
+	 */
+	public void setRemoteDirectory(String remoteDirectory) {
+		this.remoteDirectory = remoteDirectory;
+	}
+
+	public void setRemoteFileSeparator(String remoteFileSeparator) {
+		Assert.notNull(remoteFileSeparator, "'remoteFileSeparator' must not be null");
+		this.remoteFileSeparator = remoteFileSeparator;
+	}
+
+	/**
+	 * Specify the filter for the remote files. It must not pass a file that
+	 * has already been received, unless it should be received again.
+	 */
+	public void setFilter(FileListFilter<F> filter) {
+		this.filter = filter;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		Assert.notNull(this.remoteDirectory, "remoteDirectory must not be null");
+	}
+
+	public Message<InputStream> receive() {
+		F file = this.toBeReceived.poll();
+		if (file == null) {
+			synchronized (this.listMonitor) {
+				file = this.toBeReceived.poll();
+				if (file == null) {
+					this.listFiles();
+					file = this.toBeReceived.poll();
+				}
+			}
+			if (file == null) {
+				return null;
+			}
+		}
+		return this.stream(file);
+	}
+
+	private Message<InputStream> stream(final F file) {
+		String remoteFilename = this.getFilename(file);
+		String remoteFilePath = this.remoteDirectory + this.remoteFileSeparator + remoteFilename;
+		Session<F> session = this.sessionFactory.getSession();
+		try {
+			Assert.state(session instanceof StreamingSession, "The Session [" + session
+					+ "] does not support streaming");
+			StreamingSession<F> streamingSession = (StreamingSession<F>) session;
+			InputStream inputStream = streamingSession.readRaw(remoteFilePath);
+			InputStream payload = new RemoteFileInputStream(inputStream, streamingSession, remoteFilePath) {
+
+				@Override
+				public synchronized void close() throws IOException {
+					try {
+						super.close();
+					}
+					catch (IOException e) {
+						rollback(file);
+						throw e;
+					}
+				}
+			};
+			return MessageBuilder.withPayload(payload)
+					.setHeader(FileHeaders.REMOTE_DIRECTORY, this.remoteDirectory)
+					.setHeader(FileHeaders.REMOTE_FILE, remoteFilename)
+					.build();
+		}
+		catch (Exception e) {
+			session.close();
+			this.rollback(file);
+			throw new MessagingException("Failed to open a stream for remote file '" + remoteFilePath + "'", e);
+		}
+	}
+
+	private void rollback(F file) {
+		if (this.filter instanceof ReversibleFileListFilter) {
+			((ReversibleFileListFilter<F>) this.filter).rollback(file, Collections.singletonList(file));
+		}
+	}
+
+	private void listFiles() {
+		Session<F> session = this.sessionFactory.getSession();
+		try {
+			F[] files = session.list(this.remoteDirectory);
+			if (!ObjectUtils.isEmpty(files)) {
+				List<F> filteredFiles = (this.filter != null) ? this.filter.filterFiles(files) : Arrays.asList(files);
+				for (F file : filteredFiles) {
+					if (file != null && this.isFile(file)) {
+						this.toBeReceived.add(file);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new MessagingException("Problem occurred while listing remote directory '"
+					+ this.remoteDirectory + "'", e);
+		}
+		finally {
+			session.close();
+		}
+	}
+
+	protected abstract boolean isFile(F file);
+
+	protected abstract String getFilename(F file);
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.remote;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.integration.file.remote.session.StreamingSession;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link InputStream} over the content of a remote file, obtained from
+ * {@link StreamingSession#readRaw(String)}. The Session is held until the stream
+ * is closed; closing the stream completes the transfer and closes the Session
+ * (returning it to the pool when it is a cached Session, unless the transfer
+ * could not be completed).
+ * <p/>
+ * Consumers of Messages with such a payload must close the stream.
+ *
+ * @since 3.0
+ */
+public class RemoteFileInputStream extends FilterInputStream {
+
+	private final StreamingSession<?> session;
+
+	private final String remoteFilePath;
+
+	private boolean closed;
+
+
+	public RemoteFileInputStream(InputStream inputStream, StreamingSession<?> session, String remoteFilePath) {
+		super(inputStream);
+		Assert.notNull(session, "session must not be null");
+		this.session = session;
+		this.remoteFilePath = remoteFilePath;
+	}
+
+
+	public String getRemoteFilePath() {
+		return this.remoteFilePath;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			super.close();
+			if (!this.session.finalizeRaw()) {
+				throw new IOException("Failed to complete the transfer of '" + this.remoteFilePath + "'");
+			}
+		}
+		finally {
+			this.session.close();
+		}
+	}
+
+}
@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -35,8 +36,10 @@ import org.springframework.integration.MessagingException;
 import org.springframework.integration.file.FileHeaders;
 import org.springframework.integration.file.filters.FileListFilter;
 import org.springframework.integration.file.remote.AbstractFileInfo;
+import org.springframework.integration.file.remote.RemoteFileInputStream;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.file.remote.session.StreamingSession;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
 import org.springframework.integration.support.MessageBuilder;
@@ -78,6 +81,14 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 
 	public static final String OPTION_EXCEPTION_WHEN_EMPTY = "-x";
 
+	/**
+	 * Option for the 'get' command: the reply payload is a stream over the remote
+	 * file (a {@link RemoteFileInputStream} that holds the Session until it is
+	 * closed) instead of a local copy.
+	 * @since 3.0
+	 */
+	public static final String OPTION_STREAM = "-stream";
+
 	private final Set<String> supportedCommands = new HashSet<String>(Arrays.asList(
 			COMMAND_LS, COMMAND_GET, COMMAND_RM, COMMAND_MGET));
 
@@ -166,7 +177,11 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 				COMMAND_GET.equals(this.command)) {
 			Assert.isNull(this.filter, "Filters are not supported with the rm, get, and mget commands");
 		}
-		if (COMMAND_GET.equals(this.command)
+		if (this.options.contains(OPTION_STREAM)) {
+			Assert.isTrue(COMMAND_GET.equals(this.command), "the " + OPTION_STREAM
+					+ " option is only supported with the get command");
+		}
+		else if (COMMAND_GET.equals(this.command)
 				|| COMMAND_MGET.equals(this.command)) {
 			Assert.notNull(this.localDirectory, "localDirectory must not be null");
 			try {
@@ -197,6 +212,7 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
 		Session<F> session = this.sessionFactory.getSession();
+		boolean sessionHeldByStream = false;
 		try {
 			if (COMMAND_LS.equals(this.command)) {
 				String dir = this.processor.processMessage(requestMessage);
@@ -215,7 +231,14 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 				if (remoteDir.length() == 0) {
 					remoteDir = this.remoteFileSeparator;
 				}
-				File payload = get(session, remoteFilePath, remoteFilename, true);
+				Object payload;
+				if (this.options.contains(OPTION_STREAM)) {
+					payload = getStream(session, remoteFilePath);
+					sessionHeldByStream = true;
+				}
+				else {
+					payload = get(session, remoteFilePath, remoteFilename, true);
+				}
 				return MessageBuilder.withPayload(payload)
 					.setHeader(FileHeaders.REMOTE_DIRECTORY, remoteDir)
 					.setHeader(FileHeaders.REMOTE_FILE, remoteFilename)
@@ -253,7 +276,9 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		} catch (IOException e) {
 			throw new MessagingException(requestMessage, e);
 		} finally {
-			session.close();
+			if (!sessionHeldByStream) {
+				session.close();
+			}
 		}
 	}
 
@@ -374,6 +399,25 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		}
 	}
 
+	/**
+	 * Open a stream over a remote file; the Session, which must be a {@link StreamingSession},
+	 * is closed when the stream is closed.
+	 * @param session
+	 * @param remoteFilePath
+	 * @throws IOException
+	 */
+	protected InputStream getStream(Session<F> session, String remoteFilePath) throws IOException {
+		F[] files = session.list(remoteFilePath);
+		if (files == null || files.length != 1 || isDirectory(files[0]) || isLink(files[0])) {
+			throw new MessagingException(remoteFilePath + " is not a file");
+		}
+		if (!(session instanceof StreamingSession)) {
+			throw new MessagingException("The Session [" + session + "] does not support streaming");
+		}
+		StreamingSession<F> streamingSession = (StreamingSession<F>) session;
+		return new RemoteFileInputStream(streamingSession.readRaw(remoteFilePath), streamingSession, remoteFilePath);
+	}
+
 	protected List<File> mGet(Session<F> session, String remoteDirectory,
 			String remoteFilename) throws IOException {
 		String path = generateFullPath(remoteDirectory, remoteFilename);
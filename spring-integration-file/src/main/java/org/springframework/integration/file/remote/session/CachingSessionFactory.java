@@ -23,6 +23,9 @@ import java.io.OutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.util.Pool;
+import org.springframework.integration.util.PoolProvider;
 import org.springframework.integration.util.SimplePool;
 
 /**
@@ -36,7 +39,7 @@ import org.springframework.integration.util.SimplePool;
  * @author Gary Russell
  * @since 2.0
  */
-public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBean {
+public class CachingSessionFactory<F> implements SessionFactory<F>, InitializingBean, DisposableBean, PoolProvider {
 
 	private static final Log logger = LogFactory.getLog(CachingSessionFactory.class);
 
@@ -79,11 +82,59 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 		this.pool.setPoolSize(poolSize);
 	}
 
+	/**
+	 * Sets the time after which an idle Session is closed, unless that would
+	 * leave fewer than minIdle idle Sessions. Default: 0 (idle Sessions are kept).
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.pool.setIdleTimeout(idleTimeout);
+	}
+
+	/**
+	 * Sets the number of idle Sessions to keep open; they are opened in the
+	 * background when this factory is initialized. Default: 0.
+	 */
+	public void setMinIdle(int minIdle) {
+		this.pool.setMinIdle(minIdle);
+	}
+
+	/**
+	 * When true, idle Sessions are checked (and closed ones discarded) in the
+	 * background rather than when they are next retrieved. Default: false.
+	 */
+	public void setValidateIdleSessions(boolean validateIdleSessions) {
+		this.pool.setValidateIdleItems(validateIdleSessions);
+	}
+
+	/**
+	 * Sets the interval at which idle Sessions are checked. Default: 10 seconds.
+	 */
+	public void setMaintenanceInterval(long maintenanceInterval) {
+		this.pool.setMaintenanceInterval(maintenanceInterval);
+	}
+
+	public Pool<?> getPool() {
+		return this.pool;
+	}
+
+	public void afterPropertiesSet() {
+		this.pool.startMaintenance();
+	}
+
+	/**
+	 * Return a cached Session; it is a {@link StreamingSession} if the target
+	 * Session is one.
+	 */
 	public Session<F> getSession() {
-		return new CachedSession(this.pool.getItem());
+		Session<F> targetSession = this.pool.getItem();
+		if (targetSession instanceof StreamingSession) {
+			return new CachedStreamingSession((StreamingSession<F>) targetSession);
+		}
+		return new CachedSession(targetSession);
 	}
 
 	public void destroy() {
+		this.pool.stopMaintenance();
 		this.pool.removeAllIdleItems();
 	}
 
@@ -94,6 +145,8 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 
 		private boolean released;
 
+		protected boolean rawReadPending;
+
 		private CachedSession(Session<F> targetSession) {
 			this.targetSession = targetSession;
 		}
@@ -105,7 +158,14 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 				}
 			}
 			else {
-				if (logger.isDebugEnabled()){
+				if (this.rawReadPending) {
+					if (logger.isDebugEnabled()){
+						logger.debug("Closing Session with an incomplete streamed read.");
+					}
+					// the pool discards closed Sessions
+					this.targetSession.close();
+				}
+				else if (logger.isDebugEnabled()){
 					logger.debug("Releasing Session back to the pool.");
 				}
 				pool.releaseItem(targetSession);
@@ -150,4 +210,30 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 		}
 	}
 
+
+	/**
+	 * A cached {@link StreamingSession}; a target Session whose streamed read has
+	 * not been completed successfully is closed rather than returned to the pool.
+	 */
+	private class CachedStreamingSession extends CachedSession implements StreamingSession<F> {
+
+		private final StreamingSession<F> targetSession;
+
+		private CachedStreamingSession(StreamingSession<F> targetSession) {
+			super(targetSession);
+			this.targetSession = targetSession;
+		}
+
+		public synchronized InputStream readRaw(String source) throws IOException {
+			this.rawReadPending = true;
+			return this.targetSession.readRaw(source);
+		}
+
+		public synchronized boolean finalizeRaw() throws IOException {
+			boolean finalized = this.targetSession.finalizeRaw();
+			this.rawReadPending = !finalized;
+			return finalized;
+		}
+	}
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.remote.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link Session} that can also stream the content of a remote file, rather
+ * than copying it to an OutputStream.
+ *
+ * @param <T> the type of file entry
+ * @since 3.0
+ * @see org.springframework.integration.file.remote.RemoteFileInputStream
+ */
+public interface StreamingSession<T> extends Session<T> {
+
+	/**
+	 * Open a stream for reading the content of a remote file. While the stream
+	 * is open, no other operation may be performed on this Session; after the
+	 * stream has been closed, {@link #finalizeRaw()} must be invoked.
+	 */
+	InputStream readRaw(String source) throws IOException;
+
+	/**
+	 * Complete a read started with {@link #readRaw(String)}, once its stream
+	 * has been closed.
+	 * @return true if the transfer was completed successfully
+	 */
+	boolean finalizeRaw() throws IOException;
+
+}
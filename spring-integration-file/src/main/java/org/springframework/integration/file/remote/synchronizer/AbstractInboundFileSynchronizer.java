@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,18 +20,23 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.expression.Expression;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.ReversibleFileListFilter;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.util.Assert;
@@ -44,6 +49,14 @@ import org.springframework.util.ObjectUtils;
  * The implementation should run through any configured
  * {@link org.springframework.integration.file.filters.FileListFilter}s to
  * ensure the file entry is acceptable.
+ * <p/>
+ * By default the files are copied one after the other over a single
+ * {@link Session}. When {@link #setConcurrentTransfers(int) concurrent transfers}
+ * are enabled, the files are copied over several Sessions at once (typically
+ * obtained from a {@link org.springframework.integration.file.remote.session.CachingSessionFactory}).
+ * Each file is first copied to a temporary file and then renamed; the renames
+ * happen in the order of the remote listing, so the local files become visible
+ * in that order regardless of which transfers complete first.
  * 
  * @author Josh Long
  * @author Mark Fisher
@@ -52,6 +65,16 @@ import org.springframework.util.ObjectUtils;
  */
 public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileSynchronizer, InitializingBean {
 
+	/**
+	 * Outcome of a file that was not copied.
+	 */
+	private static final Object SKIPPED = new Object();
+
+	/**
+	 * Outcome of a file whose transfer failed.
+	 */
+	private static final Object FAILED = new Object();
+
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
 	private final StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
@@ -86,6 +109,12 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 	 */
 	private volatile boolean deleteRemoteFiles;
 
+	private volatile int concurrentTransfers = 1;
+
+	private volatile int maxTransferAttempts = 1;
+
+	private volatile TaskExecutor taskExecutor;
+
 
 	/**
 	 * Create a synchronizer with the {@link SessionFactory} used to acquire {@link Session} instances.
@@ -125,8 +154,41 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 		this.deleteRemoteFiles = deleteRemoteFiles;
 	}
 
+	/**
+	 * Specify the maximum number of files that are copied at the same time,
+	 * each over its own Session. Default is 1 (files are copied sequentially).
+	 */
+	public void setConcurrentTransfers(int concurrentTransfers) {
+		Assert.isTrue(concurrentTransfers > 0, "'concurrentTransfers' must be positive");
+		this.concurrentTransfers = concurrentTransfers;
+	}
+
+	/**
+	 * Specify how often the copy of a single file is attempted before the
+	 * synchronization fails. Default is 1 (no retries).
+	 */
+	public void setMaxTransferAttempts(int maxTransferAttempts) {
+		Assert.isTrue(maxTransferAttempts > 0, "'maxTransferAttempts' must be positive");
+		this.maxTransferAttempts = maxTransferAttempts;
+	}
+
+	/**
+	 * Specify the executor used to run concurrent transfers. The calling thread
+	 * always takes part in the transfers; the executor runs the others. By default,
+	 * a {@link SimpleAsyncTaskExecutor} is used.
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
 	public final void afterPropertiesSet() {
 		Assert.notNull(this.remoteDirectory, "remoteDirectory must not be null");
+		if (this.concurrentTransfers > 1 && this.taskExecutor == null) {
+			SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor(this.getClass().getSimpleName() + "-");
+			taskExecutor.setDaemon(true);
+			this.taskExecutor = taskExecutor;
+		}
 	}
 
 	protected final List<F> filterFiles(F[] files) {
@@ -144,10 +206,30 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 			Assert.state(session != null, "failed to acquire a Session");
 			F[] files = session.list(this.remoteDirectory);
 			if (!ObjectUtils.isEmpty(files)) {
-				Collection<F> filteredFiles = this.filterFiles(files);
-				for (F file : filteredFiles) {
+				List<F> filteredFiles = new ArrayList<F>();
+				for (F file : this.filterFiles(files)) {
 					if (file != null) {
-						this.copyFileToLocalDirectory(this.remoteDirectory, file, localDirectory, session);
+						filteredFiles.add(file);
+					}
+				}
+				if (this.concurrentTransfers > 1 && filteredFiles.size() > 1) {
+					new ConcurrentSynchronization(filteredFiles, localDirectory).run(session);
+				}
+				else {
+					TransferWorker worker = new TransferWorker(session);
+					int transferred = 0;
+					try {
+						for (F file : filteredFiles) {
+							Transfer transfer = worker.transfer(file, localDirectory);
+							transferred++;
+							if (transfer != null && transfer.complete()) {
+								worker.removeRemoteFile(transfer);
+							}
+						}
+					}
+					finally {
+						this.rollbackFromIndex(filteredFiles, transferred);
+						worker.releaseSession();
 					}
 				}
 			}
@@ -169,7 +251,21 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 		}
 	}
 
-	private void copyFileToLocalDirectory(String remoteDirectoryPath, F remoteFile, File localDirectory, Session<F> session) throws IOException {
+	/**
+	 * Let a {@link ReversibleFileListFilter} pass the files that have not been
+	 * transferred again, starting with the file at the given index.
+	 */
+	private void rollbackFromIndex(List<F> files, int index) {
+		if (index < files.size() && this.filter instanceof ReversibleFileListFilter) {
+			((ReversibleFileListFilter<F>) this.filter).rollback(files.get(index), files);
+		}
+	}
+
+	/**
+	 * Copy the remote file to a temporary file in the local directory.
+	 * @return the transfer to complete, or <code>null</code> if the file is not copied
+	 */
+	private Transfer copyFileToTemporaryFile(String remoteDirectoryPath, F remoteFile, File localDirectory, Session<F> session) throws IOException {
 		String remoteFileName = this.getFilename(remoteFile);
 		String localFileName = this.generateLocalFileName(remoteFileName);
 		String remoteFilePath = remoteDirectoryPath + remoteFileSeparator + remoteFileName;
@@ -177,61 +273,330 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 			if (logger.isDebugEnabled()) {
 				logger.debug("cannot copy, not a file: " + remoteFilePath);
 			}
-			return;
+			return null;
 		}
-				
+
 		File localFile = new File(localDirectory, localFileName);
-		if (!localFile.exists()) {
-			String tempFileName = localFile.getAbsolutePath() + this.temporaryFileSuffix;
-			File tempFile = new File(tempFileName);
-			InputStream inputStream = null;
-			FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+		if (localFile.exists()) {
+			return null;
+		}
+		String tempFileName = localFile.getAbsolutePath() + this.temporaryFileSuffix;
+		File tempFile = new File(tempFileName);
+		FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+		try {
+			session.read(remoteFilePath, fileOutputStream);
+		}
+		catch (Exception e) {
+			if (e instanceof RuntimeException){
+				throw (RuntimeException) e;
+			}
+			else {
+				throw new MessagingException("Failure occurred while copying from remote to local directory", e);
+			}
+		}
+		finally {
 			try {
-				session.read(remoteFilePath, fileOutputStream);
+				fileOutputStream.close();
 			}
-			catch (Exception e) {
-				if (e instanceof RuntimeException){
-					throw (RuntimeException) e;
-				}
-				else {
-					throw new MessagingException("Failure occurred while copying from remote to local directory", e);
-				}
+			catch (Exception ignored2) {
 			}
-			finally {
+		}
+		return new Transfer(remoteFilePath, tempFile, localFile);
+	}
+
+	private String generateLocalFileName(String remoteFileName){
+		if (this.localFilenameGeneratorExpression != null){
+			return this.localFilenameGeneratorExpression.getValue(evaluationContext, remoteFileName, String.class);
+		}
+		return remoteFileName;
+	}
+
+	protected abstract boolean isFile(F file);
+
+	protected abstract String getFilename(F file);
+
+
+
+	/**
+	 * A file that has been copied to a temporary local file.
+	 */
+	private static class Transfer {
+
+		private final String remoteFilePath;
+
+		private final File tempFile;
+
+		private final File localFile;
+
+		Transfer(String remoteFilePath, File tempFile, File localFile) {
+			this.remoteFilePath = remoteFilePath;
+			this.tempFile = tempFile;
+			this.localFile = localFile;
+		}
+
+		/**
+		 * Rename the temporary file to the local file.
+		 */
+		boolean complete() {
+			return this.tempFile.renameTo(this.localFile);
+		}
+	}
+
+
+	/**
+	 * Copies files over a single Session, acquiring a new Session when a failed
+	 * attempt has left the current one closed.
+	 */
+	private class TransferWorker {
+
+		private Session<F> session;
+
+		private boolean ownsSession;
+
+		TransferWorker(Session<F> session) {
+			this.session = session;
+		}
+
+		Transfer transfer(F file, File localDirectory) throws IOException {
+			int attempt = 1;
+			while (true) {
 				try {
-					if (inputStream != null) {
-						inputStream.close();
+					this.acquireSessionIfNecessary();
+					return copyFileToTemporaryFile(remoteDirectory, file, localDirectory, this.session);
+				}
+				catch (Exception e) {
+					if (attempt >= maxTransferAttempts) {
+						if (e instanceof IOException) {
+							throw (IOException) e;
+						}
+						throw (RuntimeException) e;
+					}
+					if (logger.isWarnEnabled()) {
+						logger.warn("attempt " + attempt + " to copy '" + getFilename(file) + "' failed, retrying", e);
+					}
+					attempt++;
+					if (this.session != null && !this.session.isOpen()) {
+						this.releaseSession();
+						this.session = null;
 					}
 				}
-				catch (Exception ignored1) {
+			}
+		}
+
+		void acquireSessionIfNecessary() {
+			if (this.session == null) {
+				this.session = sessionFactory.getSession();
+				Assert.state(this.session != null, "failed to acquire a Session");
+				this.ownsSession = true;
+			}
+		}
+
+		void removeRemoteFile(Transfer transfer) throws IOException {
+			if (deleteRemoteFiles) {
+				this.session.remove(transfer.remoteFilePath);
+				if (logger.isDebugEnabled()) {
+					logger.debug("deleted " + transfer.remoteFilePath);
 				}
+			}
+		}
+
+		/**
+		 * Close the Session if it was acquired by this worker.
+		 */
+		void releaseSession() {
+			if (this.ownsSession && this.session != null) {
 				try {
-					fileOutputStream.close();
-				}
-				catch (Exception ignored2) {
+					this.session.close();
 				}
-			}
-			
-			if (tempFile.renameTo(localFile)) {
-				if (this.deleteRemoteFiles) {
-					session.remove(remoteFilePath);
+				catch (Exception ignored) {
 					if (logger.isDebugEnabled()) {
-						logger.debug("deleted " + remoteFilePath);
+						logger.debug("failed to close Session", ignored);
 					}
 				}
 			}
+			this.ownsSession = false;
 		}
 	}
-	
-	private String generateLocalFileName(String remoteFileName){
-		if (this.localFilenameGeneratorExpression != null){
-			return this.localFilenameGeneratorExpression.getValue(evaluationContext, remoteFileName, String.class);
+
+
+	/**
+	 * Copies a list of files with several {@link TransferWorker}s; each takes
+	 * the next file of the list when it has finished the previous one. The
+	 * temporary files are renamed in the order of the list.
+	 */
+	private class ConcurrentSynchronization {
+
+		private final List<F> files;
+
+		private final File localDirectory;
+
+		private final AtomicInteger nextFile = new AtomicInteger();
+
+		/**
+		 * Per file: null while pending, then the Transfer to complete, SKIPPED or FAILED.
+		 */
+		private final Object[] outcomes;
+
+		/**
+		 * Per file: whether it has been processed, i.e. renamed or skipped in order.
+		 */
+		private final boolean[] processed;
+
+		private int nextToComplete;
+
+		private volatile Exception failure;
+
+		/**
+		 * The remote paths of the files that could not be removed after their transfer.
+		 */
+		private final List<String> failedRemovals = new ArrayList<String>();
+
+		private Exception firstRemovalFailure;
+
+		ConcurrentSynchronization(List<F> files, File localDirectory) {
+			this.files = files;
+			this.localDirectory = localDirectory;
+			this.outcomes = new Object[files.size()];
+			this.processed = new boolean[files.size()];
 		}
-		return remoteFileName;
-	}
 
-	protected abstract boolean isFile(F file);
+		/**
+		 * Copy all files, using the given Session on the calling thread and
+		 * Sessions acquired from the SessionFactory on the other threads.
+		 */
+		void run(Session<F> session) throws IOException {
+			int workerCount = Math.min(concurrentTransfers, this.files.size());
+			final CountDownLatch workersDone = new CountDownLatch(workerCount - 1);
+			for (int i = 1; i < workerCount; i++) {
+				taskExecutor.execute(new Runnable() {
+					public void run() {
+						try {
+							ConcurrentSynchronization.this.work(new TransferWorker(null));
+						}
+						finally {
+							workersDone.countDown();
+						}
+					}
+				});
+			}
+			this.work(new TransferWorker(session));
+			try {
+				workersDone.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted while waiting for file transfers to complete", e);
+			}
+			Exception failure = this.failure;
+			if (failure != null) {
+				rollbackFromIndex(this.unprocessedFiles(), 0);
+			}
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+			synchronized (this) {
+				if (!this.failedRemovals.isEmpty()) {
+					throw new MessagingException("Failed to remove remote files " + this.failedRemovals
+							+ " after their transfer", this.firstRemovalFailure);
+				}
+			}
+		}
 
-	protected abstract String getFilename(F file);
+		private void work(TransferWorker worker) {
+			try {
+				worker.acquireSessionIfNecessary();
+			}
+			catch (RuntimeException e) {
+				// the remaining workers, including the calling thread, copy the files
+				if (logger.isWarnEnabled()) {
+					logger.warn("failed to acquire a Session for concurrent transfers", e);
+				}
+				return;
+			}
+			try {
+				int index;
+				while (this.failure == null && (index = this.nextFile.getAndIncrement()) < this.files.size()) {
+					Object outcome = SKIPPED;
+					try {
+						Transfer transfer = worker.transfer(this.files.get(index), this.localDirectory);
+						if (transfer != null) {
+							outcome = transfer;
+						}
+					}
+					catch (Exception e) {
+						outcome = FAILED;
+						this.fail(e);
+					}
+					for (Transfer completed : this.completed(index, outcome)) {
+						try {
+							worker.removeRemoteFile(completed);
+						}
+						catch (Exception e) {
+							// the file has been transferred; keep removing the others
+							this.removalFailed(completed, e);
+						}
+					}
+				}
+			}
+			catch (Exception e) {
+				this.fail(e);
+			}
+			finally {
+				worker.releaseSession();
+			}
+		}
+
+		private synchronized void fail(Exception e) {
+			if (this.failure == null) {
+				this.failure = e;
+			}
+		}
+
+		private synchronized void removalFailed(Transfer transfer, Exception e) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("failed to remove " + transfer.remoteFilePath, e);
+			}
+			if (this.firstRemovalFailure == null) {
+				this.firstRemovalFailure = e;
+			}
+			this.failedRemovals.add(transfer.remoteFilePath);
+		}
+
+		/**
+		 * @return the files that failed or were not renamed, in the order of the list; files
+		 * after these, whose transfer completed, keep their local file and are not passed again.
+		 */
+		private synchronized List<F> unprocessedFiles() {
+			List<F> unprocessed = new ArrayList<F>();
+			for (int i = 0; i < this.files.size(); i++) {
+				if (!this.processed[i]) {
+					unprocessed.add(this.files.get(i));
+				}
+			}
+			return unprocessed;
+		}
+
+		/**
+		 * Record the outcome of a file and complete all transfers that are next
+		 * in order.
+		 * @return the completed transfers whose temporary file was renamed
+		 */
+		private synchronized List<Transfer> completed(int index, Object outcome) {
+			this.outcomes[index] = outcome;
+			List<Transfer> completed = new ArrayList<Transfer>();
+			while (this.nextToComplete < this.outcomes.length && this.outcomes[this.nextToComplete] != null) {
+				Object next = this.outcomes[this.nextToComplete];
+				this.processed[this.nextToComplete] = (next != FAILED);
+				this.outcomes[this.nextToComplete++] = SKIPPED;
+				if (next != SKIPPED && next != FAILED && ((Transfer) next).complete()) {
+					completed.add((Transfer) next);
+				}
+			}
+			return completed;
+		}
+	}
 
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.splitter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.splitter.AbstractMessageSplitter;
+import org.springframework.util.Assert;
+
+/**
+ * A splitter that reads a File payload in chunks and emits one Message per chunk,
+ * so that large files can be processed with bounded memory. Chunks are read from
+ * a {@link FileChannel} as they are sent; the file is never held in memory as a
+ * whole.
+ * <p/>
+ * By default the file is cut into chunks of 'chunkSize' bytes (the last one may be
+ * shorter) and each chunk is emitted as a <code>byte[]</code>. If a delimiter is
+ * set, the file is cut at each occurrence of the delimiter instead (e.g. "\n" to
+ * emit lines) and each chunk, without the delimiter, is emitted as a String
+ * decoded with the configured charset; a chunk that reaches 'chunkSize' bytes
+ * without a delimiter is emitted as is and the rest follows in the next chunk.
+ * A character cut at the end of such a chunk is emitted with the next chunk.
+ * <p/>
+ * The usual sequence headers are applied. With a delimiter, the file is read once
+ * in advance to count the chunks; if the sequence size is not needed, that can be
+ * avoided with {@link #setCountChunks(boolean)}, in which case the sequence size
+ * is 0.
+ *
+ * @since 3.0
+ */
+public class FileSplitter extends AbstractMessageSplitter {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private volatile int chunkSize = BUFFER_SIZE;
+
+	private volatile String delimiter;
+
+	private volatile Charset charset = Charset.defaultCharset();
+
+	private volatile boolean countChunks = true;
+
+
+	/**
+	 * Specify the size of the chunks in bytes; with a delimiter, the maximum size.
+	 * Default is 8192.
+	 */
+	public void setChunkSize(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Specify the delimiter at which the file is cut into chunks.
+	 */
+	public void setDelimiter(String delimiter) {
+		Assert.hasLength(delimiter, "delimiter must not be empty");
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Set the charset name used to encode the delimiter and to decode the chunks
+	 * when a delimiter is set. Default is the platform's default charset.
+	 */
+	public void setCharset(String charset) {
+		Assert.notNull(charset, "charset must not be null");
+		Assert.isTrue(Charset.isSupported(charset), "Charset '" + charset + "' is not supported.");
+		this.charset = Charset.forName(charset);
+	}
+
+	/**
+	 * Specify whether, with a delimiter, the chunks are counted in advance to provide
+	 * the sequence size. Default is true.
+	 */
+	public void setCountChunks(boolean countChunks) {
+		this.countChunks = countChunks;
+	}
+
+	@Override
+	protected Object splitMessage(Message<?> message) {
+		Object payload = message.getPayload();
+		Assert.isInstanceOf(File.class, payload, "Message payload must be of type [java.io.File]");
+		File file = (File) payload;
+		byte[] delimiterBytes = this.delimiter == null ? null : this.delimiter.getBytes(this.charset);
+		try {
+			return new ChunkIterator(file, this.chunkSize, delimiterBytes, this.charset);
+		}
+		catch (IOException e) {
+			throw new MessagingException(message, "failed to open File '" + file + "'", e);
+		}
+	}
+
+	@Override
+	protected int obtainSizeIfPossible(Iterator<?> iterator) {
+		if (!(iterator instanceof ChunkIterator)) {
+			return 0;
+		}
+		ChunkIterator chunks = (ChunkIterator) iterator;
+		if (chunks.reader.delimiter != null && !this.countChunks) {
+			return 0;
+		}
+		try {
+			return chunks.countChunks();
+		}
+		catch (IOException e) {
+			throw new MessagingException("failed to read File '" + chunks.file + "'", e);
+		}
+	}
+
+
+	private static class ChunkIterator implements Iterator<Object>, Closeable {
+
+		private final File file;
+
+		private final ChunkReader reader;
+
+		private final CharsetDecoder decoder;
+
+		/**
+		 * The bytes at the end of the previous chunk that do not form a complete character.
+		 */
+		private byte[] undecoded;
+
+		private Object next;
+
+		private boolean done;
+
+		private ChunkIterator(File file, int chunkSize, byte[] delimiter, Charset charset) throws IOException {
+			this.file = file;
+			this.reader = new ChunkReader(file, chunkSize, delimiter);
+			this.decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		public boolean hasNext() {
+			if (this.next == null && !this.done) {
+				try {
+					this.next = this.readNext();
+				}
+				catch (IOException e) {
+					this.close();
+					throw new MessagingException("failed to read File '" + this.file + "'", e);
+				}
+				if (this.next == null) {
+					this.close();
+				}
+			}
+			return this.next != null;
+		}
+
+		private Object readNext() throws IOException {
+			if (this.reader.delimiter == null) {
+				return this.reader.readFixed();
+			}
+			if (this.reader.readDelimited()) {
+				// a chunk cut at chunkSize leaves bytes to carry over into the next record
+				return this.decode(this.reader.record, this.reader.recordLength, this.reader.carryLength == 0);
+			}
+			return null;
+		}
+
+		/**
+		 * Decode the bytes of a chunk, preceded by those left undecoded by the previous chunk.
+		 * Unless the chunk ends a record, the bytes of an incomplete last character are kept
+		 * for the next chunk.
+		 */
+		private String decode(byte[] bytes, int length, boolean endOfRecord) {
+			ByteBuffer in;
+			if (this.undecoded == null) {
+				in = ByteBuffer.wrap(bytes, 0, length);
+			}
+			else {
+				in = ByteBuffer.allocate(this.undecoded.length + length);
+				in.put(this.undecoded).put(bytes, 0, length);
+				in.flip();
+				this.undecoded = null;
+			}
+			CharBuffer out = CharBuffer.allocate((int) Math.ceil(in.remaining() * this.decoder.maxCharsPerByte()) + 1);
+			this.decoder.decode(in, out, endOfRecord);
+			if (endOfRecord) {
+				this.decoder.flush(out);
+				this.decoder.reset();
+			}
+			else if (in.hasRemaining()) {
+				this.undecoded = new byte[in.remaining()];
+				in.get(this.undecoded);
+			}
+			out.flip();
+			return out.toString();
+		}
+
+		public Object next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Object chunk = this.next;
+			this.next = null;
+			return chunk;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			this.done = true;
+			this.reader.close();
+		}
+
+		int countChunks() throws IOException {
+			if (this.reader.delimiter == null) {
+				long size = this.reader.channel.size();
+				return (int) Math.min(Integer.MAX_VALUE, (size + this.reader.chunkSize - 1) / this.reader.chunkSize);
+			}
+			ChunkReader counter = new ChunkReader(this.file, this.reader.chunkSize, this.reader.delimiter);
+			try {
+				int count = 0;
+				while (counter.readDelimited()) {
+					count++;
+				}
+				return count;
+			}
+			finally {
+				counter.close();
+			}
+		}
+	}
+
+
+	private static class ChunkReader {
+
+		private final RandomAccessFile randomAccessFile;
+
+		private final FileChannel channel;
+
+		private final int chunkSize;
+
+		private final byte[] delimiter;
+
+		private final ByteBuffer buffer;
+
+		private final byte[] record;
+
+		private int recordLength;
+
+		private int carryLength;
+
+		private ChunkReader(File file, int chunkSize, byte[] delimiter) throws IOException {
+			this.randomAccessFile = new RandomAccessFile(file, "r");
+			this.channel = this.randomAccessFile.getChannel();
+			this.chunkSize = chunkSize;
+			this.delimiter = delimiter;
+			if (delimiter != null) {
+				this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				this.buffer.flip();
+				this.record = new byte[chunkSize + delimiter.length];
+			}
+			else {
+				this.buffer = null;
+				this.record = null;
+			}
+		}
+
+		/**
+		 * Read the next chunk of up to chunkSize bytes directly into a new array.
+		 */
+		byte[] readFixed() throws IOException {
+			byte[] chunk = new byte[this.chunkSize];
+			ByteBuffer target = ByteBuffer.wrap(chunk);
+			while (target.hasRemaining()) {
+				if (this.channel.read(target) < 0) {
+					break;
+				}
+			}
+			int length = target.position();
+			if (length == 0) {
+				return null;
+			}
+			if (length < chunk.length) {
+				byte[] shorter = new byte[length];
+				System.arraycopy(chunk, 0, shorter, 0, length);
+				return shorter;
+			}
+			return chunk;
+		}
+
+		/**
+		 * Read the next record into {@link #record}, its length being {@link #recordLength}.
+		 * @return false if there are no more records.
+		 */
+		boolean readDelimited() throws IOException {
+			int delimiterLength = this.delimiter.length;
+			if (this.carryLength > 0) {
+				// the bytes beyond the previous (oversized) chunk start this record
+				System.arraycopy(this.record, this.chunkSize, this.record, 0, this.carryLength);
+			}
+			this.recordLength = this.carryLength;
+			this.carryLength = 0;
+			while (true) {
+				if (!this.buffer.hasRemaining()) {
+					this.buffer.clear();
+					int read = this.channel.read(this.buffer);
+					this.buffer.flip();
+					if (read < 0) {
+						return this.recordLength > 0;
+					}
+					continue;
+				}
+				this.record[this.recordLength++] = this.buffer.get();
+				if (this.endsWithDelimiter()) {
+					this.recordLength -= delimiterLength;
+					return true;
+				}
+				if (this.recordLength == this.record.length) {
+					this.carryLength = delimiterLength;
+					this.recordLength = this.chunkSize;
+					return true;
+				}
+			}
+		}
+
+		private boolean endsWithDelimiter() {
+			int offset = this.recordLength - this.delimiter.length;
+			if (offset < 0) {
+				return false;
+			}
+			for (int i = 0; i < this.delimiter.length; i++) {
+				if (this.record[offset + i] != this.delimiter[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void close() {
+			try {
+				this.randomAccessFile.close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -33,6 +33,15 @@ public enum FileExistsMode {
 	 */
 	APPEND,
 
+	/**
+	 * Append data to any pre-existing files, keeping the files open and
+	 * buffering the data; it is written out when enough data is buffered, when
+	 * the flush interval elapses, when the file is closed because it was idle
+	 * or too many files are open, and when the writing component is destroyed.
+	 * @since 3.0
+	 */
+	APPEND_NO_FLUSH,
+
 	/**
 	 * Raise an exception in case the file to be written already exists.
 	 */
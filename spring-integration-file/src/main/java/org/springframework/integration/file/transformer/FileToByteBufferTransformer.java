@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.transformer;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.springframework.util.Assert;
+
+/**
+ * A payload transformer that maps a File's contents into memory, producing a
+ * read-only {@link ByteBuffer}. The contents are paged in by the operating
+ * system as they are read rather than copied onto the heap, which makes this
+ * transformer suitable for large files (up to 2GB; use a
+ * {@link org.springframework.integration.file.splitter.FileSplitter} for larger
+ * files).
+ * <p/>
+ * The mapping remains valid until the buffer is garbage collected, even if the
+ * File is deleted; on some platforms (e.g. Windows) a mapped File cannot be
+ * deleted, so 'deleteFiles' should not be used there.
+ *
+ * @since 3.0
+ */
+public class FileToByteBufferTransformer extends AbstractFilePayloadTransformer<ByteBuffer> {
+
+	@Override
+	protected final ByteBuffer transformFile(File file) throws Exception {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			Assert.isTrue(size <= Integer.MAX_VALUE, "File '" + file + "' is too large to be mapped");
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+
+}
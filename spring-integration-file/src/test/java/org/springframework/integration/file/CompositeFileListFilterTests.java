@@ -32,6 +32,7 @@ import org.junit.Test;
 
 import org.springframework.integration.file.filters.CompositeFileListFilter;
 import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.SimplePatternFileListFilter;
 
 /**
  * @author Iwein Fuld
@@ -81,4 +82,21 @@ public class CompositeFileListFilterTests {
         when(fileFilterMock1.filterFiles(isA(File[].class))).thenReturn(new ArrayList<File>());
         assertTrue(compositeFileFilter.filterFiles(new File[]{fileMock}).isEmpty());
     }
+
+    @Test
+    public void filtersSeeFilesAcceptedByPreviousFilters() throws Exception {
+        File foo = new File("foo.txt");
+        File bar = new File("bar.txt");
+        final List<File> seen = new ArrayList<File>();
+        CompositeFileListFilter<File> compositeFileFilter = new CompositeFileListFilter<File>();
+        compositeFileFilter.addFilter(new SimplePatternFileListFilter("foo*"));
+        compositeFileFilter.addFilter(new FileListFilter<File>() {
+            public List<File> filterFiles(File[] files) {
+                seen.addAll(Arrays.asList(files));
+                return Arrays.asList(files);
+            }
+        });
+        assertEquals(Arrays.asList(foo), compositeFileFilter.filterFiles(new File[]{foo, bar}));
+        assertEquals(Arrays.asList(foo), seen);
+    }
 }
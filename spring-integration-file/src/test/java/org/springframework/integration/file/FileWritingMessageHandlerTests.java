@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,10 +18,13 @@ package org.springframework.integration.file;
 
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.channel.NullChannel;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.file.support.FileExistsMode;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.util.FileCopyUtils;
@@ -29,7 +32,10 @@ import org.springframework.util.FileCopyUtils;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
@@ -219,6 +225,147 @@ public class FileWritingMessageHandlerTests {
 		assertThat(result.getName(), is(anyFilename));
 	}
 
+	@Test
+	public void filePayloadAppended() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND);
+		handler.setExpectReply(false);
+		handler.handleMessage(appendMessage(sourceFile, "appended.txt"));
+		handler.handleMessage(appendMessage(sourceFile, "appended.txt"));
+		File file = new File(outputDirectory, "appended.txt");
+		assertEquals(SAMPLE_CONTENT + SAMPLE_CONTENT, new String(FileCopyUtils.copyToByteArray(file), DEFAULT_ENCODING));
+		assertTrue(sourceFile.exists());
+	}
+
+	@Test
+	public void filePayloadHardLinked() throws Exception {
+		handler.setUseHardLinks(true);
+		QueueChannel output = new QueueChannel();
+		handler.setOutputChannel(output);
+		handler.handleMessage(MessageBuilder.withPayload(sourceFile).build());
+		Message<?> result = output.receive(0);
+		assertFileContentIsMatching(result);
+		assertTrue(sourceFile.exists());
+		// a change made in place to the source is visible through the link
+		RandomAccessFile source = new RandomAccessFile(sourceFile, "rw");
+		try {
+			source.write('h');
+		}
+		finally {
+			source.close();
+		}
+		byte[] content = FileCopyUtils.copyToByteArray((File) result.getPayload());
+		assertEquals('h', content[0]);
+	}
+
+	@Test
+	public void bufferedAppendWrittenOnFlush() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND_NO_FLUSH);
+		handler.setExpectReply(false);
+		handler.handleMessage(appendMessage("foo", "buffered.txt"));
+		handler.handleMessage(appendMessage("bar", "buffered.txt"));
+		File file = new File(outputDirectory, "buffered.txt");
+		assertEquals(0, file.length());
+		handler.flush();
+		assertEquals("foobar", new String(FileCopyUtils.copyToByteArray(file), DEFAULT_ENCODING));
+		handler.handleMessage(appendMessage("baz", "buffered.txt"));
+		handler.destroy();
+		assertEquals("foobarbaz", new String(FileCopyUtils.copyToByteArray(file), DEFAULT_ENCODING));
+	}
+
+	@Test
+	public void bufferedAppendWrittenWhenBufferFull() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND_NO_FLUSH);
+		handler.setBufferSize(5);
+		handler.setExpectReply(false);
+		File file = new File(outputDirectory, "buffered.txt");
+		handler.handleMessage(appendMessage("foo", "buffered.txt"));
+		assertEquals(0, file.length());
+		handler.handleMessage(appendMessage("bar".getBytes(DEFAULT_ENCODING), "buffered.txt"));
+		assertEquals("foobar", new String(FileCopyUtils.copyToByteArray(file), DEFAULT_ENCODING));
+		handler.destroy();
+	}
+
+	@Test
+	public void bufferedAppendClosesLeastRecentlyUsedFile() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND_NO_FLUSH);
+		handler.setMaxOpenFiles(1);
+		handler.setExpectReply(false);
+		handler.handleMessage(appendMessage("foo", "first.txt"));
+		handler.handleMessage(appendMessage("bar", "second.txt"));
+		assertEquals("foo", new String(FileCopyUtils.copyToByteArray(
+				new File(outputDirectory, "first.txt")), DEFAULT_ENCODING));
+		assertEquals(0, new File(outputDirectory, "second.txt").length());
+		handler.destroy();
+		assertEquals("bar", new String(FileCopyUtils.copyToByteArray(
+				new File(outputDirectory, "second.txt")), DEFAULT_ENCODING));
+	}
+
+	@Test
+	public void bufferedAppendOfFilePayload() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND_NO_FLUSH);
+		QueueChannel output = new QueueChannel();
+		handler.setOutputChannel(output);
+		handler.handleMessage(appendMessage("foo", "buffered.txt"));
+		handler.handleMessage(appendMessage(sourceFile, "buffered.txt"));
+		File file = (File) output.receive(0).getPayload();
+		assertEquals(new File(outputDirectory, "buffered.txt"), file);
+		assertEquals("foo" + SAMPLE_CONTENT, new String(FileCopyUtils.copyToByteArray(file), DEFAULT_ENCODING));
+		handler.destroy();
+	}
+
+	@Test
+	public void bufferedAppendDeletesSourceFileOnceWritten() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND_NO_FLUSH);
+		handler.setDeleteSourceFiles(true);
+		handler.setExpectReply(false);
+		handler.handleMessage(MessageBuilder.withPayload("foo")
+				.setHeader(FileHeaders.FILENAME, "buffered.txt")
+				.setHeader(FileHeaders.ORIGINAL_FILE, sourceFile)
+				.build());
+		assertTrue(sourceFile.exists());
+		handler.flush();
+		assertFalse(sourceFile.exists());
+		assertEquals("foo", new String(FileCopyUtils.copyToByteArray(
+				new File(outputDirectory, "buffered.txt")), DEFAULT_ENCODING));
+	}
+
+	@Test
+	public void bufferedAppendWriteFailureKeepsOnlyDataOfSuccessfulMessages() throws Exception {
+		handler.setFileExistsMode(FileExistsMode.APPEND_NO_FLUSH);
+		handler.setBufferSize(5);
+		handler.setExpectReply(false);
+		handler.handleMessage(appendMessage("foo", "buffered.txt"));
+		Map<?, ?> appendedFiles = (Map<?, ?>) new DirectFieldAccessor(handler).getPropertyValue("appendedFiles");
+		DirectFieldAccessor appendedFile = new DirectFieldAccessor(appendedFiles.values().iterator().next());
+		// make the writes fail
+		((FileOutputStream) appendedFile.getPropertyValue("stream")).close();
+		try {
+			handler.handleMessage(appendMessage("bar", "buffered.txt"));
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertThat(e.getCause(), instanceOf(IOException.class));
+		}
+		List<?> buffers = (List<?>) appendedFile.getPropertyValue("buffers");
+		assertEquals(1, buffers.size());
+		assertEquals(3L, appendedFile.getPropertyValue("bufferedBytes"));
+		try {
+			handler.flush();
+			fail("Expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertThat(e.getCause(), instanceOf(IOException.class));
+		}
+		// the file keeps its data for a later flush
+		assertEquals(1, appendedFiles.size());
+		assertEquals(Boolean.FALSE, appendedFile.getPropertyValue("closed"));
+		assertEquals(1, buffers.size());
+	}
+
+	private Message<?> appendMessage(Object payload, String fileName) {
+		return MessageBuilder.withPayload(payload).setHeader(FileHeaders.FILENAME, fileName).build();
+	}
+
 	void assertFileContentIsMatching(Message<?> result) throws IOException, UnsupportedEncodingException {
 		assertThat(result, is(notNullValue()));
 		assertThat(result.getPayload(), is(File.class));
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,17 +17,26 @@
 package org.springframework.integration.file;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import org.springframework.integration.file.filters.FileListFilter;
+
 /**
  * @author Iwein Fuld
  */
@@ -71,4 +80,98 @@ public class RecursiveLeafOnlyDirectoryScannerTests {
 		assertThat(files, hasItem(subSubLevelFile));
 	}
 
+	@Test
+	public void shouldStopAtMaxNumberOfFiles() {
+		RecursiveLeafOnlyDirectoryScanner scanner = new RecursiveLeafOnlyDirectoryScanner();
+		scanner.setMaxNumberOfFiles(2);
+		Set<File> files = new HashSet<File>(scanner.listFiles(recursivePath.getRoot()));
+		assertEquals(2, files.size());
+		// the default filter accepts files once, so the next scan returns the remaining file
+		List<File> remaining = scanner.listFiles(recursivePath.getRoot());
+		assertEquals(1, remaining.size());
+		files.addAll(remaining);
+		assertThat(files, hasItem(topLevelFile));
+		assertThat(files, hasItem(subLevelFile));
+		assertThat(files, hasItem(subSubLevelFile));
+		assertEquals(0, scanner.listFiles(recursivePath.getRoot()).size());
+	}
+
+	@Test
+	public void shouldScanInParallel() throws IOException {
+		File root = recursivePath.newFolder("parallel");
+		Set<File> expected = this.createTree(root, 3, 4, 5);
+		RecursiveLeafOnlyDirectoryScanner scanner = new RecursiveLeafOnlyDirectoryScanner();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			scanner.setTaskExecutor(executor);
+			List<File> files = scanner.listFiles(root);
+			assertEquals(expected.size(), files.size());
+			assertEquals(expected, new HashSet<File>(files));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldScanInParallelUpToMaxNumberOfFiles() throws IOException {
+		File root = recursivePath.newFolder("parallel");
+		Set<File> expected = this.createTree(root, 3, 4, 5);
+		RecursiveLeafOnlyDirectoryScanner scanner = new RecursiveLeafOnlyDirectoryScanner();
+		scanner.setMaxNumberOfFiles(7);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			scanner.setTaskExecutor(executor);
+			Set<File> files = new HashSet<File>();
+			List<File> scanned;
+			do {
+				scanned = scanner.listFiles(root);
+				assertThat(scanned.size() <= 7, is(true));
+				files.addAll(scanned);
+			}
+			while (!scanned.isEmpty());
+			assertEquals(expected, files);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldFilterEachFileOnce() {
+		final List<File> filtered = new ArrayList<File>();
+		RecursiveLeafOnlyDirectoryScanner scanner = new RecursiveLeafOnlyDirectoryScanner();
+		scanner.setFilter(new FileListFilter<File>() {
+			public List<File> filterFiles(File[] files) {
+				filtered.addAll(Arrays.asList(files));
+				return Arrays.asList(files);
+			}
+		});
+		List<File> files = scanner.listFiles(recursivePath.getRoot());
+		assertEquals(3, files.size());
+		assertEquals(3, filtered.size());
+		assertEquals(new HashSet<File>(files), new HashSet<File>(filtered));
+	}
+
+	/**
+	 * Create a tree of the given depth where each directory has the given
+	 * numbers of files and subdirectories, and return the files.
+	 */
+	private Set<File> createTree(File directory, int depth, int directories, int files) throws IOException {
+		Set<File> created = new HashSet<File>();
+		for (int i = 0; i < files; i++) {
+			File file = new File(directory, "file" + i);
+			file.createNewFile();
+			created.add(file);
+		}
+		if (depth > 0) {
+			for (int i = 0; i < directories; i++) {
+				File subDirectory = new File(directory, "dir" + i);
+				subDirectory.mkdir();
+				created.addAll(this.createTree(subDirectory, depth - 1, directories, files));
+			}
+		}
+		return created;
+	}
+
 }
@@ -38,6 +38,7 @@ import org.springframework.integration.MessagingException;
 import org.springframework.integration.endpoint.EventDrivenConsumer;
 import org.springframework.integration.file.DefaultFileNameGenerator;
 import org.springframework.integration.file.FileWritingMessageHandler;
+import org.springframework.integration.file.support.FileExistsMode;
 import org.springframework.integration.handler.advice.AbstractRequestHandlerAdvice;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.test.util.TestUtils;
@@ -77,6 +78,9 @@ public class FileOutboundChannelAdapterParserTests {
 	@Autowired
 	EventDrivenConsumer adapterWithDirectoryExpression;
 
+	@Autowired
+	EventDrivenConsumer adapterWithBufferedAppend;
+
 	@Autowired
 	MessageChannel usageChannel;
 
@@ -109,6 +113,7 @@ public class FileOutboundChannelAdapterParserTests {
 		assertNotNull(expression);
 		assertEquals("'foo.txt'", expression);
 		assertEquals(Boolean.FALSE, handlerAccessor.getPropertyValue("deleteSourceFiles"));
+		assertEquals(Boolean.FALSE, handlerAccessor.getPropertyValue("useHardLinks"));
 	}
 
 	@Test
@@ -134,6 +139,7 @@ public class FileOutboundChannelAdapterParserTests {
 				adapterAccessor.getPropertyValue("handler");
 		DirectFieldAccessor handlerAccessor = new DirectFieldAccessor(handler);
 		assertEquals(Boolean.TRUE, handlerAccessor.getPropertyValue("deleteSourceFiles"));
+		assertEquals(Boolean.TRUE, handlerAccessor.getPropertyValue("useHardLinks"));
 	}
 
 	@Test
@@ -160,6 +166,16 @@ public class FileOutboundChannelAdapterParserTests {
 		assertEquals(Charset.forName("UTF-8"), handlerAccessor.getPropertyValue("charset"));
 	}
 
+	@Test
+	public void adapterWithBufferedAppend() {
+		FileWritingMessageHandler handler = TestUtils.getPropertyValue(adapterWithBufferedAppend, "handler", FileWritingMessageHandler.class);
+		assertEquals(FileExistsMode.APPEND_NO_FLUSH, TestUtils.getPropertyValue(handler, "fileExistsMode"));
+		assertEquals(1024, TestUtils.getPropertyValue(handler, "bufferSize"));
+		assertEquals(1000L, TestUtils.getPropertyValue(handler, "flushInterval"));
+		assertEquals(4, TestUtils.getPropertyValue(handler, "maxOpenFiles"));
+		assertNotNull(TestUtils.getPropertyValue(handler, "flushTask"));
+	}
+
 	@Test
 	public void adapterWithDirectoryExpression() {
 
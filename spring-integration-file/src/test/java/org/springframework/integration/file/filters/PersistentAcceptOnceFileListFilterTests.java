@@ -0,0 +1,181 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.integration.store.MetadataStore;
+import org.springframework.integration.store.SimpleMetadataStore;
+
+/**
+ * @since 3.0
+ */
+public class PersistentAcceptOnceFileListFilterTests {
+
+	@Test
+	public void acceptsNewAndModifiedFilesOnly() {
+		SimpleMetadataStore store = new SimpleMetadataStore();
+		TestFilter filter = new TestFilter(store, "dir/");
+		TestFile foo = new TestFile("foo", 1, 10);
+		TestFile bar = new TestFile("bar", 1, 10);
+		assertEquals(Arrays.asList(foo, bar), filter.filterFiles(new TestFile[] { foo, bar }));
+		assertEquals(Collections.emptyList(), filter.filterFiles(new TestFile[] { foo, bar }));
+		TestFile modifiedFoo = new TestFile("foo", 2, 10);
+		TestFile resizedBar = new TestFile("bar", 1, 20);
+		TestFile baz = new TestFile("baz", 1, 10);
+		assertEquals(Arrays.asList(modifiedFoo, resizedBar, baz),
+				filter.filterFiles(new TestFile[] { modifiedFoo, resizedBar, baz }));
+		assertEquals("2:10", store.get("dir/foo"));
+
+		// another filter over the same store, e.g. after a restart
+		TestFilter restarted = new TestFilter(store, "dir/");
+		assertEquals(Collections.emptyList(), restarted.filterFiles(new TestFile[] { modifiedFoo, resizedBar, baz }));
+		// a different prefix has its own entries
+		TestFilter other = new TestFilter(store, "other/");
+		assertEquals(Arrays.asList(foo), other.filterFiles(new TestFile[] { foo }));
+	}
+
+	@Test
+	public void flushableStoreFlushedWhenFilesAccepted() {
+		FlushableStore store = new FlushableStore();
+		TestFilter filter = new TestFilter(store, "");
+		TestFile foo = new TestFile("foo", 1, 10);
+		filter.filterFiles(new TestFile[] { foo });
+		assertEquals(1, store.flushCount);
+		filter.filterFiles(new TestFile[] { foo });
+		assertEquals(1, store.flushCount);
+		assertTrue(filter.filterFiles(null).isEmpty());
+	}
+
+	@Test
+	public void rolledBackFilesAcceptedAgain() {
+		FlushableStore store = new FlushableStore();
+		TestFilter filter = new TestFilter(store, "dir/");
+		TestFile foo = new TestFile("foo", 1, 10);
+		TestFile bar = new TestFile("bar", 1, 10);
+		TestFile baz = new TestFile("baz", 1, 10);
+		List<TestFile> accepted = filter.filterFiles(new TestFile[] { foo, bar, baz });
+		assertEquals(3, accepted.size());
+		filter.rollback(bar, accepted);
+		assertEquals(2, store.flushCount);
+		assertEquals("1:10", store.get("dir/foo"));
+		assertNull(store.get("dir/bar"));
+		assertFalse(store.keySet().contains("dir/baz"));
+		assertEquals(Arrays.asList(bar, baz), filter.filterFiles(new TestFile[] { foo, bar, baz }));
+
+		CompositeFileListFilter<TestFile> composite = new CompositeFileListFilter<TestFile>();
+		composite.addFilter(filter);
+		composite.rollback(baz, Arrays.asList(bar, baz));
+		assertEquals(Arrays.asList(baz), composite.filterFiles(new TestFile[] { foo, bar, baz }));
+	}
+
+
+	@Test
+	public void entriesOfMissingFilesPruned() {
+		SimpleMetadataStore store = new SimpleMetadataStore();
+		store.put("other/foo", "1:10");
+		TestFilter filter = new TestFilter(store, "dir/");
+		TestFile foo = new TestFile("foo", 1, 10);
+		TestFile bar = new TestFile("bar", 1, 10);
+		filter.filterFiles(new TestFile[] { foo, bar });
+		filter.filterFiles(new TestFile[] { foo });
+		assertEquals("1:10", store.get("dir/bar"));
+
+		filter.setPruneMissingFiles(true);
+		assertEquals(Collections.emptyList(), filter.filterFiles(new TestFile[] { foo }));
+		assertNull(store.get("dir/bar"));
+		assertEquals("1:10", store.get("dir/foo"));
+		assertEquals("1:10", store.get("other/foo"));
+		assertEquals(Arrays.asList(bar), filter.filterFiles(new TestFile[] { foo, bar }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void pruningRequiresListableStore() {
+		TestFilter filter = new TestFilter(new MetadataStore() {
+			public void put(String key, String value) {
+			}
+			public String get(String key) {
+				return null;
+			}
+			public String remove(String key) {
+				return null;
+			}
+		}, "dir/");
+		filter.setPruneMissingFiles(true);
+	}
+
+
+	private static class TestFile {
+
+		private final String name;
+
+		private final long modified;
+
+		private final long size;
+
+		TestFile(String name, long modified, long size) {
+			this.name = name;
+			this.modified = modified;
+			this.size = size;
+		}
+	}
+
+
+	private static class TestFilter extends AbstractPersistentAcceptOnceFileListFilter<TestFile> {
+
+		TestFilter(MetadataStore store, String prefix) {
+			super(store, prefix);
+		}
+
+		@Override
+		protected String getFilename(TestFile file) {
+			return file.name;
+		}
+
+		@Override
+		protected long getModified(TestFile file) {
+			return file.modified;
+		}
+
+		@Override
+		protected long getSize(TestFile file) {
+			return file.size;
+		}
+	}
+
+
+	private static class FlushableStore extends SimpleMetadataStore implements Flushable {
+
+		private int flushCount;
+
+		public void flush() throws IOException {
+			this.flushCount++;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,10 @@
 package org.springframework.integration.file.locking;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -67,4 +70,86 @@ public class NioFileLockerTests {
         assertThat(filter2.filterFiles(workdir.listFiles()), is((List<File>) new ArrayList<File>()));
     }
 
+    @Test
+    public void lockReleasedAfterTimeout() throws Exception {
+        NioFileLocker filter1 = new NioFileLocker();
+        NioFileLocker filter2 = new NioFileLocker();
+        filter1.setLockTimeout(1);
+        File testFile = new File(workdir, "test2");
+        testFile.createNewFile();
+        assertTrue(filter1.lock(testFile));
+        Thread.sleep(10);
+        assertFalse(filter2.isLockable(testFile));
+        assertTrue(filter1.isLockable(testFile));
+        assertTrue(filter2.isLockable(testFile));
+        assertTrue(filter2.lock(testFile));
+        filter2.unlock(testFile);
+    }
+
+    @Test
+    public void leastRecentlyRenewedLockReleasedWhenMaxOpenChannelsReached() throws IOException {
+        NioFileLocker filter1 = new NioFileLocker();
+        NioFileLocker filter2 = new NioFileLocker();
+        filter1.setMaxOpenChannels(2);
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(workdir, "max" + i);
+            files[i].createNewFile();
+        }
+        int openChannels = FileChannelCache.getOpenChannelCount();
+        assertTrue(filter1.lock(files[0]));
+        assertTrue(filter1.lock(files[1]));
+        assertTrue(filter1.lock(files[0]));
+        assertTrue(filter1.isLockable(files[2]));
+        assertTrue(filter1.lock(files[2]));
+        assertEquals(openChannels + 2, FileChannelCache.getOpenChannelCount());
+        assertFalse(filter2.isLockable(files[0]));
+        assertTrue(filter2.isLockable(files[1]));
+        assertFalse(filter2.isLockable(files[2]));
+        assertTrue(filter2.lock(files[1]));
+        assertFalse(filter1.lock(files[1]));
+        assertTrue(filter1.isLockable(files[0]));
+        for (File file : files) {
+            filter1.unlock(file);
+            filter2.unlock(file);
+        }
+        assertEquals(openChannels, FileChannelCache.getOpenChannelCount());
+    }
+
+    @Test
+    public void locksOfProcessedFilesReleasedFirst() throws IOException {
+        NioFileLocker filter = new NioFileLocker();
+        filter.setMaxOpenChannels(2);
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(workdir, "processed" + i);
+            files[i].createNewFile();
+        }
+        int openChannels = FileChannelCache.getOpenChannelCount();
+        assertTrue(filter.lock(files[0]));
+        assertTrue(filter.lock(files[1]));
+        assertTrue(files[1].delete());
+        assertTrue(filter.lock(files[2]));
+        assertEquals(openChannels + 2, FileChannelCache.getOpenChannelCount());
+        assertFalse(new NioFileLocker().isLockable(files[0]));
+        for (File file : files) {
+            filter.unlock(file);
+        }
+        assertEquals(openChannels, FileChannelCache.getOpenChannelCount());
+    }
+
+    @Test
+    public void unlockClosesChannel() throws IOException {
+        NioFileLocker filter = new NioFileLocker();
+        File testFile = new File(workdir, "test3");
+        testFile.createNewFile();
+        int openChannels = FileChannelCache.getOpenChannelCount();
+        assertTrue(filter.lock(testFile));
+        assertEquals(openChannels + 1, FileChannelCache.getOpenChannelCount());
+        filter.unlock(testFile);
+        assertEquals(openChannels, FileChannelCache.getOpenChannelCount());
+        assertTrue(new NioFileLocker().lock(testFile));
+        FileChannelCache.closeChannelFor(testFile);
+    }
+
 }
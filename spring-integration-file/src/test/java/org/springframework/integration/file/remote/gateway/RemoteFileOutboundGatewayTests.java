@@ -20,9 +20,11 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -39,9 +41,12 @@ import org.springframework.integration.MessagingException;
 import org.springframework.integration.file.FileHeaders;
 import org.springframework.integration.file.filters.AbstractSimplePatternFileListFilter;
 import org.springframework.integration.file.remote.AbstractFileInfo;
+import org.springframework.integration.file.remote.RemoteFileInputStream;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.file.remote.session.StreamingSession;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.util.FileCopyUtils;
 
 
 /**
@@ -512,6 +517,40 @@ public class RemoteFileOutboundGatewayTests {
 				out.getHeaders().get(FileHeaders.REMOTE_FILE));
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGet_stream() throws Exception {
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		TestRemoteFileOutboundGateway gw = new TestRemoteFileOutboundGateway
+			(sessionFactory, "get", "payload");
+		gw.setOptions("-stream");
+		gw.afterPropertiesSet();
+		StreamingSession session = mock(StreamingSession.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.list("testremote/f1")).thenReturn(new TestLsEntry[] {
+				new TestLsEntry("f1", 1234, false, false, 12345, "-rw-r--r--")
+		});
+		when(session.readRaw("testremote/f1")).thenReturn(new ByteArrayInputStream("testfile".getBytes()));
+		when(session.finalizeRaw()).thenReturn(true);
+		Message<InputStream> out = (Message<InputStream>) gw
+				.handleRequestMessage(new GenericMessage<String>("testremote/f1"));
+		assertTrue(out.getPayload() instanceof RemoteFileInputStream);
+		assertEquals("f1", out.getHeaders().get(FileHeaders.REMOTE_FILE));
+		verify(session, never()).close();
+		assertEquals("testfile", new String(FileCopyUtils.copyToByteArray(out.getPayload())));
+		verify(session).finalizeRaw();
+		verify(session).close();
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMGet_streamNotSupported() throws Exception {
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		TestRemoteFileOutboundGateway gw = new TestRemoteFileOutboundGateway
+			(sessionFactory, "mget", "payload");
+		gw.setOptions("-stream");
+		gw.afterPropertiesSet();
+	}
+
 	@Test
 	public void testGet_P() throws Exception {
 		SessionFactory sessionFactory = mock(SessionFactory.class);
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.splitter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageDeliveryException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @since 3.0
+ */
+public class FileSplitterTests {
+
+	private File file;
+
+	private final QueueChannel output = new QueueChannel();
+
+	private final FileSplitter splitter = new FileSplitter();
+
+	@Before
+	public void setUp() throws Exception {
+		this.file = File.createTempFile("splitter", ".txt");
+		this.file.deleteOnExit();
+		this.splitter.setOutputChannel(this.output);
+	}
+
+	@After
+	public void tearDown() {
+		this.file.delete();
+	}
+
+	@Test
+	public void fixedSizeChunks() throws Exception {
+		FileCopyUtils.copy("0123456789".getBytes("UTF-8"), this.file);
+		this.splitter.setChunkSize(4);
+		this.splitter.handleMessage(MessageBuilder.withPayload(this.file).setHeader("foo", "bar").build());
+		List<Message<?>> chunks = this.output.clear();
+		assertEquals(3, chunks.size());
+		assertArrayEquals("0123".getBytes("UTF-8"), (byte[]) chunks.get(0).getPayload());
+		assertArrayEquals("4567".getBytes("UTF-8"), (byte[]) chunks.get(1).getPayload());
+		assertArrayEquals("89".getBytes("UTF-8"), (byte[]) chunks.get(2).getPayload());
+		assertEquals(Integer.valueOf(3), chunks.get(2).getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(3), chunks.get(2).getHeaders().getSequenceSize());
+		assertEquals("bar", chunks.get(1).getHeaders().get("foo"));
+	}
+
+	@Test
+	public void lines() throws Exception {
+		FileCopyUtils.copy("foo\nbar\n\nbaz".getBytes("UTF-8"), this.file);
+		this.splitter.setDelimiter("\n");
+		this.splitter.setCharset("UTF-8");
+		this.splitter.handleMessage(MessageBuilder.withPayload(this.file).build());
+		List<Message<?>> chunks = this.output.clear();
+		assertEquals(4, chunks.size());
+		assertEquals("foo", chunks.get(0).getPayload());
+		assertEquals("bar", chunks.get(1).getPayload());
+		assertEquals("", chunks.get(2).getPayload());
+		assertEquals("baz", chunks.get(3).getPayload());
+		assertEquals(Integer.valueOf(4), chunks.get(0).getHeaders().getSequenceSize());
+	}
+
+	@Test
+	public void multiByteDelimiterAcrossBuffers() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			content.append("record").append(i).append("\r\n");
+		}
+		FileCopyUtils.copy(content.toString().getBytes("UTF-8"), this.file);
+		this.splitter.setDelimiter("\r\n");
+		this.splitter.setCountChunks(false);
+		this.splitter.handleMessage(MessageBuilder.withPayload(this.file).build());
+		List<Message<?>> chunks = this.output.clear();
+		assertEquals(3000, chunks.size());
+		for (int i = 0; i < 3000; i++) {
+			assertEquals("record" + i, chunks.get(i).getPayload());
+		}
+		assertEquals(Integer.valueOf(0), chunks.get(0).getHeaders().getSequenceSize());
+	}
+
+	@Test
+	public void recordsLongerThanChunkSize() throws Exception {
+		FileCopyUtils.copy("abcdefgh;ij;".getBytes("UTF-8"), this.file);
+		this.splitter.setDelimiter(";");
+		this.splitter.setChunkSize(3);
+		this.splitter.handleMessage(MessageBuilder.withPayload(this.file).build());
+		List<Message<?>> chunks = this.output.clear();
+		assertEquals(4, chunks.size());
+		assertEquals("abc", chunks.get(0).getPayload());
+		assertEquals("def", chunks.get(1).getPayload());
+		assertEquals("gh", chunks.get(2).getPayload());
+		assertEquals("ij", chunks.get(3).getPayload());
+		assertEquals(Integer.valueOf(4), chunks.get(3).getHeaders().getSequenceSize());
+	}
+
+	@Test
+	public void multiByteCharacterAcrossChunks() throws Exception {
+		FileCopyUtils.copy("h\u00e9llo;\u00e9t\u00e9;".getBytes("UTF-8"), this.file);
+		this.splitter.setDelimiter(";");
+		this.splitter.setCharset("UTF-8");
+		this.splitter.setChunkSize(2);
+		this.splitter.handleMessage(MessageBuilder.withPayload(this.file).build());
+		List<Message<?>> chunks = this.output.clear();
+		StringBuilder content = new StringBuilder();
+		for (Message<?> chunk : chunks) {
+			content.append(chunk.getPayload()).append('|');
+		}
+		// the second byte of each '\u00e9' cut at a chunk boundary is decoded with the next chunk
+		assertEquals("h|\u00e9l|lo|\u00e9|t|\u00e9|", content.toString());
+	}
+
+	@Test
+	public void emptyFile() throws Exception {
+		this.splitter.handleMessage(MessageBuilder.withPayload(this.file).build());
+		assertNull(this.output.receive(0));
+	}
+
+	@Test
+	public void sendFailureStopsReading() throws Exception {
+		FileCopyUtils.copy("foo\nbar".getBytes("UTF-8"), this.file);
+		final List<Message<?>> received = new ArrayList<Message<?>>();
+		DirectChannel failing = new DirectChannel();
+		failing.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) throws MessagingException {
+				received.add(message);
+				throw new MessageDeliveryException(message, "test");
+			}
+		});
+		this.splitter.setOutputChannel(failing);
+		this.splitter.setDelimiter("\n");
+		try {
+			this.splitter.handleMessage(MessageBuilder.withPayload(this.file).build());
+			fail("expected exception");
+		}
+		catch (MessageDeliveryException e) {
+			// expected
+		}
+		assertEquals(1, received.size());
+	}
+
+}
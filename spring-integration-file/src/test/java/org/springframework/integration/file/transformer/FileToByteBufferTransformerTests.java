@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.transformer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+
+/**
+ * @since 3.0
+ */
+public class FileToByteBufferTransformerTests extends
+		AbstractFilePayloadTransformerTests<FileToByteBufferTransformer> {
+
+	@Before
+	public void setUp() {
+		transformer = new FileToByteBufferTransformer();
+	}
+
+	@Test
+	public void transform_withFilePayload_convertedToByteBuffer() throws Exception {
+		Message<?> result = transformer.transform(message);
+		assertThat(result, is(notNullValue()));
+		assertTrue(result.getPayload() instanceof ByteBuffer);
+		ByteBuffer buffer = (ByteBuffer) result.getPayload();
+		assertTrue(buffer.isReadOnly());
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		assertThat(bytes, is(SAMPLE_CONTENT.getBytes(DEFAULT_ENCODING)));
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ftp.inbound;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import org.springframework.integration.file.remote.AbstractRemoteFileStreamingMessageSource;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.ftp.filters.FtpPersistentAcceptOnceFileListFilter;
+import org.springframework.integration.store.SimpleMetadataStore;
+
+/**
+ * An {@link AbstractRemoteFileStreamingMessageSource} for FTP. By default,
+ * each file is received once per name, size and modification time (in
+ * memory only); provide a filter to change that.
+ *
+ * @since 3.0
+ */
+public class FtpStreamingMessageSource extends AbstractRemoteFileStreamingMessageSource<FTPFile> {
+
+	public FtpStreamingMessageSource(SessionFactory<FTPFile> sessionFactory) {
+		super(sessionFactory);
+		this.setFilter(new FtpPersistentAcceptOnceFileListFilter(new SimpleMetadataStore(), ""));
+	}
+
+
+	@Override
+	protected boolean isFile(FTPFile file) {
+		return file.isFile();
+	}
+
+	@Override
+	protected String getFilename(FTPFile file) {
+		return file.getName();
+	}
+
+}
@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.StreamingSession;
 import org.springframework.util.Assert;
 
 /**
@@ -35,7 +36,7 @@ import org.springframework.util.Assert;
  * @author Gary Russell
  * @since 2.0
  */
-public class FtpSession implements Session<FTPFile> {
+public class FtpSession implements StreamingSession<FTPFile> {
 
 	private final Log logger = LogFactory.getLog(this.getClass());
 
@@ -78,6 +79,20 @@ public class FtpSession implements Session<FTPFile> {
 		logger.info("File has been successfully transfered from: " + path);
 	}
 
+	public InputStream readRaw(String path) throws IOException {
+		Assert.hasText(path, "path must not be null");
+		InputStream inputStream = this.client.retrieveFileStream(path);
+		if (inputStream == null) {
+			throw new IOException("Failed to obtain InputStream for remote file " + path
+					+ ". Server replied with: " + this.client.getReplyString());
+		}
+		return inputStream;
+	}
+
+	public boolean finalizeRaw() throws IOException {
+		return this.client.completePendingCommand();
+	}
+
 	public void write(InputStream inputStream, String path) throws IOException {
 		Assert.notNull(inputStream, "inputStream must not be null");
 		Assert.hasText(path, "path must not be null");
@@ -70,6 +70,9 @@ public class FtpInboundChannelAdapterParserTests {
 			(FtpInboundFileSynchronizer) TestUtils.getPropertyValue(inbound, "synchronizer");
 		assertNotNull(TestUtils.getPropertyValue(fisync, "localFilenameGeneratorExpression"));
 		assertEquals(".foo", TestUtils.getPropertyValue(fisync, "temporaryFileSuffix", String.class));
+		assertEquals(4, TestUtils.getPropertyValue(fisync, "concurrentTransfers"));
+		assertEquals(3, TestUtils.getPropertyValue(fisync, "maxTransferAttempts"));
+		assertNotNull(TestUtils.getPropertyValue(fisync, "taskExecutor"));
 		String remoteFileSeparator = (String) TestUtils.getPropertyValue(fisync, "remoteFileSeparator");
 		assertNotNull(remoteFileSeparator);
 		assertEquals("", remoteFileSeparator);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,29 +17,45 @@
 package org.springframework.integration.ftp.inbound;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.junit.After;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.ftp.filters.FtpPersistentAcceptOnceFileListFilter;
 import org.springframework.integration.ftp.filters.FtpRegexPatternFileListFilter;
 import org.springframework.integration.ftp.session.AbstractFtpSessionFactory;
+import org.springframework.integration.store.SimpleMetadataStore;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -107,6 +123,246 @@ public class FtpInboundRemoteFileSystemSynchronizerTests {
 		assertTrue(new File("test/B.TEST.a").exists());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcurrentTransfersWithRetry() throws Exception {
+		File localDirectory = new File("test");
+		localDirectory.mkdirs();
+		final int fileCount = 20;
+		FTPFile[] remoteFiles = new FTPFile[fileCount];
+		for (int i = 0; i < fileCount; i++) {
+			remoteFiles[i] = new FTPFile();
+			remoteFiles[i].setName(String.format("file%02d.test", i));
+			remoteFiles[i].setType(FTPFile.FILE_TYPE);
+		}
+		final AtomicInteger sessionCount = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final List<String> removed = new ArrayList<String>();
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		Session<FTPFile> listingSession = mock(Session.class);
+		when(listingSession.list("remote-test-dir")).thenReturn(remoteFiles);
+		when(listingSession.isOpen()).thenReturn(true);
+		final Answer<Void> read = new Answer<Void>() {
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				String path = (String) invocation.getArguments()[0];
+				if (path.endsWith("file07.test") && failures.getAndIncrement() == 0) {
+					throw new IOException("simulated failure");
+				}
+				Thread.sleep(5);
+				((OutputStream) invocation.getArguments()[1]).write(path.getBytes());
+				return null;
+			}
+		};
+		final Answer<Boolean> remove = new Answer<Boolean>() {
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				synchronized (removed) {
+					removed.add((String) invocation.getArguments()[0]);
+				}
+				return true;
+			}
+		};
+		doAnswer(read).when(listingSession).read(anyString(), any(OutputStream.class));
+		doAnswer(remove).when(listingSession).remove(anyString());
+		when(sessionFactory.getSession()).thenReturn(listingSession).thenAnswer(new Answer<Session<FTPFile>>() {
+			public Session<FTPFile> answer(InvocationOnMock invocation) throws Throwable {
+				Session<FTPFile> session = mock(Session.class);
+				doAnswer(read).when(session).read(anyString(), any(OutputStream.class));
+				doAnswer(remove).when(session).remove(anyString());
+				when(session.isOpen()).thenReturn(true);
+				sessionCount.incrementAndGet();
+				return session;
+			}
+		});
+
+		FtpInboundFileSynchronizer synchronizer = new FtpInboundFileSynchronizer(sessionFactory);
+		synchronizer.setRemoteDirectory("remote-test-dir");
+		synchronizer.setDeleteRemoteFiles(true);
+		synchronizer.setConcurrentTransfers(4);
+		synchronizer.setMaxTransferAttempts(2);
+		synchronizer.afterPropertiesSet();
+		synchronizer.synchronizeToLocalDirectory(localDirectory);
+
+		assertEquals(3, sessionCount.get());
+		assertEquals(2, failures.get());
+		assertEquals(fileCount, localDirectory.list().length);
+		for (int i = 0; i < fileCount; i++) {
+			assertTrue(new File(localDirectory, String.format("file%02d.test", i)).exists());
+		}
+		assertEquals(fileCount, removed.size());
+	}
+
+	@Test(expected = IOException.class)
+	@SuppressWarnings("unchecked")
+	public void testConcurrentTransferFailure() throws Throwable {
+		File localDirectory = new File("test");
+		localDirectory.mkdirs();
+		FTPFile[] remoteFiles = new FTPFile[3];
+		for (int i = 0; i < remoteFiles.length; i++) {
+			remoteFiles[i] = new FTPFile();
+			remoteFiles[i].setName("file" + i);
+			remoteFiles[i].setType(FTPFile.FILE_TYPE);
+		}
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		Session<FTPFile> session = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.list("remote-test-dir")).thenReturn(remoteFiles);
+		Mockito.doThrow(new IOException("simulated failure")).when(session).read(anyString(), any(OutputStream.class));
+		FtpInboundFileSynchronizer synchronizer = new FtpInboundFileSynchronizer(sessionFactory);
+		synchronizer.setRemoteDirectory("remote-test-dir");
+		synchronizer.setConcurrentTransfers(2);
+		synchronizer.afterPropertiesSet();
+		try {
+			synchronizer.synchronizeToLocalDirectory(localDirectory);
+		}
+		catch (Exception e) {
+			throw e.getCause();
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFailedTransferRolledBack() throws Exception {
+		File localDirectory = new File("test");
+		localDirectory.mkdirs();
+		FTPFile[] remoteFiles = new FTPFile[3];
+		for (int i = 0; i < remoteFiles.length; i++) {
+			remoteFiles[i] = new FTPFile();
+			remoteFiles[i].setName("file" + i);
+			remoteFiles[i].setType(FTPFile.FILE_TYPE);
+			remoteFiles[i].setSize(10);
+		}
+		final AtomicInteger failures = new AtomicInteger();
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		Session<FTPFile> session = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.list("remote-test-dir")).thenReturn(remoteFiles);
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(new Answer<Void>() {
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				String path = (String) invocation.getArguments()[0];
+				if (path.endsWith("file1") && failures.getAndIncrement() == 0) {
+					throw new IOException("simulated failure");
+				}
+				((OutputStream) invocation.getArguments()[1]).write(path.getBytes());
+				return null;
+			}
+		}).when(session).read(anyString(), any(OutputStream.class));
+		SimpleMetadataStore store = new SimpleMetadataStore();
+		FtpInboundFileSynchronizer synchronizer = new FtpInboundFileSynchronizer(sessionFactory);
+		synchronizer.setRemoteDirectory("remote-test-dir");
+		synchronizer.setFilter(new FtpPersistentAcceptOnceFileListFilter(store, "ftp/"));
+		synchronizer.afterPropertiesSet();
+		try {
+			synchronizer.synchronizeToLocalDirectory(localDirectory);
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertEquals("simulated failure", e.getCause().getMessage());
+		}
+		assertTrue(new File(localDirectory, "file0").exists());
+		assertFalse(new File(localDirectory, "file1").exists());
+		assertEquals("", store.get("ftp/file1"));
+		assertEquals("", store.get("ftp/file2"));
+
+		synchronizer.synchronizeToLocalDirectory(localDirectory);
+		assertTrue(new File(localDirectory, "file1").exists());
+		assertTrue(new File(localDirectory, "file2").exists());
+		verify(session, times(1)).read(Mockito.eq("remote-test-dir/file0"), any(OutputStream.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcurrentFailedTransferRollsBackOnlyUnprocessedFiles() throws Exception {
+		File localDirectory = new File("test");
+		localDirectory.mkdirs();
+		FTPFile[] remoteFiles = new FTPFile[2];
+		for (int i = 0; i < remoteFiles.length; i++) {
+			remoteFiles[i] = new FTPFile();
+			remoteFiles[i].setName("file" + i);
+			remoteFiles[i].setType(FTPFile.FILE_TYPE);
+			remoteFiles[i].setSize(10);
+		}
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch laterFileCopied = new CountDownLatch(1);
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		Session<FTPFile> session = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.list("remote-test-dir")).thenReturn(remoteFiles);
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(new Answer<Void>() {
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				String path = (String) invocation.getArguments()[0];
+				if (path.endsWith("file0") && failures.getAndIncrement() == 0) {
+					// fail only once the later file has been copied, so it is renamed after the failure
+					laterFileCopied.await(10, TimeUnit.SECONDS);
+					throw new IOException("simulated failure");
+				}
+				((OutputStream) invocation.getArguments()[1]).write(path.getBytes());
+				if (path.endsWith("file1")) {
+					laterFileCopied.countDown();
+				}
+				return null;
+			}
+		}).when(session).read(anyString(), any(OutputStream.class));
+		SimpleMetadataStore store = new SimpleMetadataStore();
+		FtpInboundFileSynchronizer synchronizer = new FtpInboundFileSynchronizer(sessionFactory);
+		synchronizer.setRemoteDirectory("remote-test-dir");
+		synchronizer.setFilter(new FtpPersistentAcceptOnceFileListFilter(store, "ftp/"));
+		synchronizer.setConcurrentTransfers(2);
+		synchronizer.afterPropertiesSet();
+		try {
+			synchronizer.synchronizeToLocalDirectory(localDirectory);
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertEquals("simulated failure", e.getCause().getMessage());
+		}
+		assertFalse(new File(localDirectory, "file0").exists());
+		assertTrue(new File(localDirectory, "file1").exists());
+		assertEquals("", store.get("ftp/file0"));
+		assertFalse("".equals(store.get("ftp/file1")));
+
+		synchronizer.synchronizeToLocalDirectory(localDirectory);
+		assertTrue(new File(localDirectory, "file0").exists());
+		verify(session, times(1)).read(Mockito.eq("remote-test-dir/file1"), any(OutputStream.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcurrentFailedRemovalDoesNotSkipOtherRemovals() throws Exception {
+		File localDirectory = new File("test");
+		localDirectory.mkdirs();
+		FTPFile[] remoteFiles = new FTPFile[3];
+		for (int i = 0; i < remoteFiles.length; i++) {
+			remoteFiles[i] = new FTPFile();
+			remoteFiles[i].setName("file" + i);
+			remoteFiles[i].setType(FTPFile.FILE_TYPE);
+			remoteFiles[i].setSize(10);
+		}
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		Session<FTPFile> session = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.list("remote-test-dir")).thenReturn(remoteFiles);
+		when(session.isOpen()).thenReturn(true);
+		when(session.remove("remote-test-dir/file0")).thenThrow(new IOException("simulated failure"));
+		FtpInboundFileSynchronizer synchronizer = new FtpInboundFileSynchronizer(sessionFactory);
+		synchronizer.setRemoteDirectory("remote-test-dir");
+		synchronizer.setDeleteRemoteFiles(true);
+		synchronizer.setConcurrentTransfers(2);
+		synchronizer.afterPropertiesSet();
+		try {
+			synchronizer.synchronizeToLocalDirectory(localDirectory);
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertTrue(e.getMessage().contains("remote-test-dir/file0"));
+			assertEquals("simulated failure", e.getCause().getMessage());
+		}
+		for (int i = 0; i < remoteFiles.length; i++) {
+			assertTrue(new File(localDirectory, "file" + i).exists());
+			verify(session).remove("remote-test-dir/file" + i);
+		}
+	}
 
 	public static class TestFtpSessionFactory extends AbstractFtpSessionFactory<FTPClient> {
 		
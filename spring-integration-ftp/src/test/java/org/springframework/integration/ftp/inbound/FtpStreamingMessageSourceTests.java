@@ -0,0 +1,135 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ftp.inbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.file.remote.session.StreamingSession;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @since 3.0
+ */
+public class FtpStreamingMessageSourceTests {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void streamsEachFileOnce() throws Exception {
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		StreamingSession<FTPFile> session = mock(StreamingSession.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		FTPFile foo = file("foo", 3);
+		FTPFile bar = file("bar", 3);
+		FTPFile dir = file("dir", 0);
+		dir.setType(FTPFile.DIRECTORY_TYPE);
+		when(session.list("remote")).thenReturn(new FTPFile[] { foo, bar, dir });
+		when(session.readRaw("remote/foo")).thenReturn(new ByteArrayInputStream("foo".getBytes()));
+		when(session.readRaw("remote/bar")).thenReturn(new ByteArrayInputStream("bar".getBytes()));
+		when(session.finalizeRaw()).thenReturn(true);
+
+		FtpStreamingMessageSource source = new FtpStreamingMessageSource(sessionFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		Message<InputStream> message = source.receive();
+		assertEquals("foo", message.getHeaders().get(FileHeaders.REMOTE_FILE));
+		assertEquals("remote", message.getHeaders().get(FileHeaders.REMOTE_DIRECTORY));
+		// the listing session has been closed, the streaming one is still held
+		verify(session, times(1)).close();
+		assertEquals("foo", new String(FileCopyUtils.copyToByteArray(message.getPayload())));
+		verify(session).finalizeRaw();
+		verify(session, times(2)).close();
+
+		message = source.receive();
+		assertEquals("bar", message.getHeaders().get(FileHeaders.REMOTE_FILE));
+		message.getPayload().close();
+
+		// unchanged files are not received again
+		assertNull(source.receive());
+
+		FTPFile modifiedFoo = file("foo", 4);
+		when(session.list("remote")).thenReturn(new FTPFile[] { modifiedFoo, bar });
+		when(session.readRaw("remote/foo")).thenReturn(new ByteArrayInputStream("fooo".getBytes()));
+		message = source.receive();
+		assertEquals("fooo", new String(FileCopyUtils.copyToByteArray(message.getPayload())));
+		assertNull(source.receive());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failedTransferReceivedAgain() throws Exception {
+		SessionFactory<FTPFile> sessionFactory = mock(SessionFactory.class);
+		StreamingSession<FTPFile> session = mock(StreamingSession.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		FTPFile foo = file("foo", 3);
+		when(session.list("remote")).thenReturn(new FTPFile[] { foo });
+		when(session.readRaw("remote/foo")).thenThrow(new IOException("simulated failure"))
+				.thenReturn(new ByteArrayInputStream("foo".getBytes()))
+				.thenReturn(new ByteArrayInputStream("foo".getBytes()));
+		when(session.finalizeRaw()).thenReturn(false, true);
+
+		FtpStreamingMessageSource source = new FtpStreamingMessageSource(sessionFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		try {
+			source.receive();
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {
+			assertEquals("simulated failure", e.getCause().getMessage());
+		}
+		Message<InputStream> message = source.receive();
+		try {
+			message.getPayload().close();
+			fail("Expected exception");
+		}
+		catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Failed to complete the transfer"));
+		}
+		message = source.receive();
+		assertEquals("foo", new String(FileCopyUtils.copyToByteArray(message.getPayload())));
+		assertNull(source.receive());
+	}
+
+	private static FTPFile file(String name, long size) {
+		FTPFile file = new FTPFile();
+		file.setName(name);
+		file.setSize(size);
+		file.setType(FTPFile.FILE_TYPE);
+		return file;
+	}
+
+}
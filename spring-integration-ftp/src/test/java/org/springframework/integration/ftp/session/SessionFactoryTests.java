@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
@@ -27,15 +28,20 @@ import org.apache.commons.net.ftp.FTPClient;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.file.remote.session.CachingSessionFactory;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.file.remote.session.StreamingSession;
 import org.springframework.integration.test.util.TestUtils;
 
 import static junit.framework.Assert.fail;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Oleg Zhurakousky
@@ -118,6 +124,56 @@ public class SessionFactoryTests {
 		assertEquals(TestUtils.getPropertyValue(firstSession, "targetSession"), TestUtils.getPropertyValue(nonStaleSession, "targetSession"));
 	}
 	
+	@Test
+	public void testSessionWithFailedStreamClosed() throws Exception{
+		SessionFactory sessionFactory = Mockito.mock(SessionFactory.class);
+		StreamingSession session = Mockito.mock(StreamingSession.class);
+		final AtomicBoolean open = new AtomicBoolean(true);
+		Mockito.when(session.isOpen()).thenAnswer(new Answer<Boolean>() {
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				return open.get();
+			}
+		});
+		Mockito.doAnswer(new Answer<Void>() {
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				open.set(false);
+				return null;
+			}
+		}).when(session).close();
+		Mockito.when(session.finalizeRaw()).thenReturn(true, false);
+		Mockito.when(sessionFactory.getSession()).thenReturn(session);
+
+		CachingSessionFactory cachingFactory = new CachingSessionFactory(sessionFactory, 2);
+
+		StreamingSession s1 = (StreamingSession) cachingFactory.getSession();
+		s1.readRaw("foo");
+		assertTrue(s1.finalizeRaw());
+		s1.close();
+		Mockito.verify(session, Mockito.never()).close();
+
+		StreamingSession s2 = (StreamingSession) cachingFactory.getSession();
+		s2.readRaw("foo");
+		assertFalse(s2.finalizeRaw());
+		s2.close();
+		Mockito.verify(session).close();
+		Mockito.verify(sessionFactory, Mockito.times(1)).getSession();
+		cachingFactory.getSession();
+		Mockito.verify(sessionFactory, Mockito.times(2)).getSession();
+	}
+
+	@Test
+	public void testCachedSessionStreamsOnlyWhenTargetStreams() throws Exception{
+		SessionFactory sessionFactory = Mockito.mock(SessionFactory.class);
+		Mockito.when(sessionFactory.getSession()).thenReturn(Mockito.mock(Session.class));
+		CachingSessionFactory cachingFactory = new CachingSessionFactory(sessionFactory, 2);
+		assertFalse(cachingFactory.getSession() instanceof StreamingSession);
+
+		SessionFactory streamingSessionFactory = Mockito.mock(SessionFactory.class);
+		Mockito.when(streamingSessionFactory.getSession()).thenReturn(Mockito.mock(StreamingSession.class));
+		CachingSessionFactory cachingStreamingFactory = new CachingSessionFactory(streamingSessionFactory, 2);
+		assertTrue(cachingStreamingFactory.getSession() instanceof StreamingSession);
+	}
+
 	@Test
 	public void testSameSessionFromThePool() throws Exception{
 		SessionFactory sessionFactory = Mockito.mock(SessionFactory.class);
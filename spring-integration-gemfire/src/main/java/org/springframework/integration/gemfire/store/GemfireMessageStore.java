@@ -21,8 +21,13 @@ import java.util.Collection;
 import java.util.List;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.data.gemfire.RegionAttributesFactoryBean;
 import org.springframework.data.gemfire.RegionFactoryBean;
+import org.springframework.integration.Message;
 import org.springframework.integration.store.AbstractKeyValueMessageStore;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
@@ -51,6 +56,10 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 
 	private volatile boolean ignoreJta = true;
 
+	private volatile SerializingConverter serializer;
+
+	private volatile DeserializingConverter deserializer;
+
 	/**
 	 * Provides the region to be used for the message store. This is useful when
 	 * using a configured region. This is also required if using a client region
@@ -74,9 +83,37 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 	public void setIgnoreJta(boolean ignoreJta) {
 		this.ignoreJta = ignoreJta;
 	}
-	
+
+	/**
+	 * A serializer for the messages put in the region, e.g. a
+	 * {@link org.springframework.integration.store.CompactMessageCodec}. By default,
+	 * messages are put in the region as they are. A matching
+	 * {@link #setDeserializer(Deserializer) deserializer} must also be provided.
+	 * @param serializer the serializer
+	 * @since 3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void setSerializer(Serializer<? super Message<?>> serializer) {
+		Assert.notNull(serializer, "'serializer' must not be null");
+		this.serializer = new SerializingConverter((Serializer<Object>) serializer);
+	}
+
+	/**
+	 * A deserializer for the messages that were put in the region by the
+	 * {@link #setSerializer(Serializer) serializer}.
+	 * @param deserializer the deserializer
+	 * @since 3.0
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setDeserializer(Deserializer<? extends Message<?>> deserializer) {
+		Assert.notNull(deserializer, "'deserializer' must not be null");
+		this.deserializer = new DeserializingConverter((Deserializer) deserializer);
+	}
+
 	@SuppressWarnings("unchecked")
 	public void afterPropertiesSet() {
+		Assert.state((this.serializer == null) == (this.deserializer == null),
+				"Both a serializer and a deserializer must be provided");
 		if (this.messageStoreRegion != null) {
 			return;
 		}
@@ -104,20 +141,25 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 	@Override
 	protected Object doRetrieve(Object id) {
 		Assert.notNull(id, "'id' must not be null");
-		return this.messageStoreRegion.get(id);
+		return this.fromRegion(this.messageStoreRegion.get(id));
 	}
 
 	@Override
 	protected void doStore(Object id, Object objectToStore) {
 		Assert.notNull(id, "'id' must not be null");
 		Assert.notNull(objectToStore, "'objectToStore' must not be null");
-		this.messageStoreRegion.put(id, objectToStore);
+		if (this.serializer != null && objectToStore instanceof Message) {
+			this.messageStoreRegion.put(id, this.serializer.convert(objectToStore));
+		}
+		else {
+			this.messageStoreRegion.put(id, objectToStore);
+		}
 	}
 
 	@Override
 	protected Object doRemove(Object id) {
 		Assert.notNull(id, "'id' must not be null");
-		return this.messageStoreRegion.remove(id);
+		return this.fromRegion(this.messageStoreRegion.remove(id));
 	}
 
 	@Override
@@ -134,4 +176,11 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 		return keyList;
 	}
 
+	private Object fromRegion(Object value) {
+		if (this.deserializer != null && value instanceof byte[]) {
+			return this.deserializer.convert((byte[]) value);
+		}
+		return value;
+	}
+
 }
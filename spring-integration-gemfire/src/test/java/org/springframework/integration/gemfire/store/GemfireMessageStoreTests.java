@@ -31,6 +31,7 @@ import org.springframework.integration.Message;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.store.CompactMessageCodec;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.util.Assert;
@@ -56,6 +57,22 @@ public class GemfireMessageStoreTests {
 		Message<?> retrieved = store.getMessage(message.getHeaders().getId());
 		assertEquals(message, retrieved);
 	}
+
+	@Test
+	public void addAndGetMessageWithCompactCodec() throws Exception {
+		GemfireMessageStore store = new GemfireMessageStore(this.cache);
+		CompactMessageCodec codec = new CompactMessageCodec();
+		store.setSerializer(codec);
+		store.setDeserializer(codec);
+		store.afterPropertiesSet();
+
+		Message<?> message = MessageBuilder.withPayload("test").setHeader("foo", "bar").build();
+		store.addMessage(message);
+		Message<?> retrieved = store.getMessage(message.getHeaders().getId());
+		assertEquals(message, retrieved);
+		store.addMessageToGroup("group", message);
+		assertEquals(message, store.getMessageGroup("group").getOne());
+	}
 	
 	@Test
 	public void testRegionConstructor() throws Exception {
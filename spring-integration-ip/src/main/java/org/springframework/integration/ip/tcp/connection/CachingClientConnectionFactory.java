@@ -25,6 +25,8 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.Pool;
+import org.springframework.integration.util.PoolProvider;
 import org.springframework.integration.util.SimplePool;
 
 /**
@@ -32,7 +34,7 @@ import org.springframework.integration.util.SimplePool;
  * @since 2.2
  *
  */
-public class CachingClientConnectionFactory extends AbstractClientConnectionFactory {
+public class CachingClientConnectionFactory extends AbstractClientConnectionFactory implements PoolProvider {
 
 	private final Log logger = LogFactory.getLog(this.getClass());
 
@@ -95,6 +97,41 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 		return this.pool.getAllocatedCount();
 	}
 
+	/**
+	 * Sets the time after which an idle connection is closed, unless that would
+	 * leave fewer than minIdle idle connections. Default: 0 (idle connections are kept).
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.pool.setIdleTimeout(idleTimeout);
+	}
+
+	/**
+	 * Sets the number of idle connections to keep open; they are opened in the
+	 * background when this factory is started. Default: 0.
+	 */
+	public void setMinIdle(int minIdle) {
+		this.pool.setMinIdle(minIdle);
+	}
+
+	/**
+	 * When true, idle connections are checked (and closed ones discarded) in
+	 * the background rather than when they are next used. Default: false.
+	 */
+	public void setValidateIdleConnections(boolean validateIdleConnections) {
+		this.pool.setValidateIdleItems(validateIdleConnections);
+	}
+
+	/**
+	 * Sets the interval at which idle connections are checked. Default: 10 seconds.
+	 */
+	public void setMaintenanceInterval(long maintenanceInterval) {
+		this.pool.setMaintenanceInterval(maintenanceInterval);
+	}
+
+	public Pool<?> getPool() {
+		return this.pool;
+	}
+
 	@Override
 	public TcpConnection obtainConnection() throws Exception {
 		return new CachedConnection(this.pool.getItem());
@@ -368,10 +405,12 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 		this.setActive(true);
 		targetConnectionFactory.start();
 		super.start();
+		this.pool.startMaintenance();
 	}
 
 	@Override
 	public synchronized void stop() {
+		this.pool.stopMaintenance();
 		targetConnectionFactory.stop();
 		this.pool.removeAllIdleItems();
 	}
@@ -13,17 +13,25 @@
 
 package org.springframework.integration.jdbc;
 
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageDeliveryException;
 import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.MessageRejectedException;
 import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.integration.handler.MessageBatcher;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
@@ -31,6 +39,8 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedCaseInsensitiveMap;
 
 /**
@@ -44,11 +54,17 @@ import org.springframework.util.LinkedCaseInsensitiveMap;
  *
  * N.B. do not use quotes to escape the header keys. The default SQL parameter source (from Spring JDBC) can also handle
  * headers with dotted names (e.g. <code>business.id</code>)
+ * <p/>
+ * With a {@link #setBatchSize(int) batchSize} greater than 1, messages are buffered and their updates are
+ * executed as a single JDBC batch once the batch is full or the {@link #setFlushInterval(long) flushInterval}
+ * has elapsed. Batches are executed by a task on the 'taskScheduler', outside of any sender's transaction (the
+ * sender has already returned, so a rollback of its transaction does not undo its buffered update), and the
+ * messages still buffered are written when this handler is destroyed.
  *
  * @author Dave Syer
  * @since 2.0
  */
-public class JdbcMessageHandler extends AbstractMessageHandler {
+public class JdbcMessageHandler extends AbstractMessageHandler implements DisposableBean {
 
 	private final NamedParameterJdbcOperations jdbcOperations;
 
@@ -58,6 +74,12 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 
 	private volatile boolean keysGenerated;
 
+	private final MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+		public void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+			executeBatch(messages, failures);
+		}
+	});
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be obtained and the select query to
 	 * execute to retrieve new rows.
@@ -98,22 +120,101 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		this.sqlParameterSourceFactory = sqlParameterSourceFactory;
 	}
 
+	/**
+	 * Set the number of messages whose updates are executed as one JDBC batch. Default is 1: the update is executed
+	 * for each message, within the sender's thread and transaction.
+	 * @param batchSize the batch size
+	 * @since 3.0
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batcher.setBatchSize(batchSize);
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a message waits for its batch to be executed (see 'batchSize'). A
+	 * partial batch is executed when a message arrives after the interval has elapsed since the last execution, and
+	 * by a task on the 'taskScheduler' that runs at that interval. By default (0), partial batches are only executed
+	 * by {@link #flush()} and when this handler is destroyed.
+	 * @param flushInterval the flush interval
+	 * @since 3.0
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.batcher.setFlushInterval(flushInterval);
+	}
+
+	/**
+	 * Set the maximum number of messages buffered for batches (see 'batchSize'); once it is reached, senders wait
+	 * up to 30 seconds until a batch has been taken for execution. By default, ten batches are buffered.
+	 * @param capacity the capacity
+	 * @since 3.0
+	 */
+	public void setBatchCapacity(int capacity) {
+		this.batcher.setCapacity(capacity);
+	}
+
+	/**
+	 * Set the channel to which an {@link ErrorMessage} is sent for each message whose update failed within a batch,
+	 * its payload being a {@link MessageHandlingException} with the failed message. The other updates of the batch
+	 * are not affected. By default, the failures are logged: the senders of the failed messages have already
+	 * returned, and the failures are not reported to the sender of another message. Only {@link #flush()}
+	 * throws the exception for the first failed message.
+	 * @param errorChannel the error channel
+	 * @since 3.0
+	 */
+	public void setErrorChannel(MessageChannel errorChannel) {
+		this.batcher.setErrorChannel(errorChannel);
+	}
+
+	/**
+	 * Set the scheduler that runs the periodic flush (see 'flushInterval'); the batches themselves are executed by
+	 * a dedicated writer thread. By default, the 'taskScheduler' bean is used.
+	 * @since 3.0
+	 */
+	@Override // super class is protected
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		super.setTaskScheduler(taskScheduler);
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.batcher.getBatchSize() > 1) {
+			Assert.state(!this.keysGenerated, "'keysGenerated' is not supported with batches");
+			this.batcher.setTaskScheduler(this.getTaskScheduler());
+			this.batcher.afterPropertiesSet();
+		}
+	}
+
 	/**
 	 * Executes the update, passing the message into the {@link SqlParameterSourceFactory}.
 	 */
 	protected void handleMessageInternal(Message<?> message) throws MessageRejectedException, MessageHandlingException,
 			MessageDeliveryException {
+		if (this.batcher.getBatchSize() > 1) {
+			this.batcher.add(message);
+			return;
+		}
 		List<? extends Map<String, Object>> keys = executeUpdateQuery(message, keysGenerated);
 		if (logger.isDebugEnabled() && !keys.isEmpty()) {
 			logger.debug("Generated keys: "+keys);
 		}
 	}
 
+	/**
+	 * Execute the updates of the buffered messages, on the calling thread. Without an error channel, the
+	 * exception for the first failed message is thrown.
+	 * @since 3.0
+	 */
+	public void flush() {
+		this.batcher.flush();
+	}
+
+	public void destroy() {
+		this.batcher.destroy();
+	}
+
 	protected List<? extends Map<String, Object>> executeUpdateQuery(Object obj, boolean keysGenerated) {
-		SqlParameterSource updateParameterSource = new MapSqlParameterSource();
-		if (this.sqlParameterSourceFactory != null) {
-			updateParameterSource = this.sqlParameterSourceFactory.createParameterSource(obj);
-		}
+		SqlParameterSource updateParameterSource = this.createParameterSource(obj);
 		if (keysGenerated) {
 			KeyHolder keyHolder = new GeneratedKeyHolder();
 			this.jdbcOperations.update(this.updateSql, updateParameterSource,
@@ -129,4 +230,71 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 
 	}
 
+	private SqlParameterSource createParameterSource(Object obj) {
+		if (this.sqlParameterSourceFactory != null) {
+			return this.sqlParameterSourceFactory.createParameterSource(obj);
+		}
+		return new MapSqlParameterSource();
+	}
+
+	/**
+	 * Execute the updates for the messages as a batch. When the driver reports which updates of a failed batch
+	 * failed, only these messages are failed; when it stopped at the first failure, the remaining updates are
+	 * executed as a new batch.
+	 */
+	private void executeBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+		List<Message<?>> batch = new ArrayList<Message<?>>(messages.size());
+		List<SqlParameterSource> parameterSources = new ArrayList<SqlParameterSource>(messages.size());
+		for (Message<?> message : messages) {
+			try {
+				parameterSources.add(this.createParameterSource(message));
+				batch.add(message);
+			}
+			catch (RuntimeException e) {
+				failures.add(new MessageHandlingException(message, "Failed to create the update parameters", e));
+			}
+		}
+		int start = 0;
+		while (start < batch.size()) {
+			List<SqlParameterSource> remaining = parameterSources.subList(start, parameterSources.size());
+			try {
+				this.jdbcOperations.batchUpdate(this.updateSql,
+						remaining.toArray(new SqlParameterSource[remaining.size()]));
+				break;
+			}
+			catch (DataAccessException e) {
+				int[] updateCounts = this.getUpdateCounts(e);
+				if (updateCounts == null) {
+					for (Message<?> message : batch.subList(start, batch.size())) {
+						failures.add(new MessageHandlingException(message, "Failed to execute the update", e));
+					}
+					break;
+				}
+				if (updateCounts.length >= remaining.size()) {
+					for (int i = 0; i < remaining.size(); i++) {
+						if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+							failures.add(new MessageHandlingException(batch.get(start + i),
+									"Failed to execute the update", e));
+						}
+					}
+					break;
+				}
+				failures.add(new MessageHandlingException(batch.get(start + updateCounts.length),
+						"Failed to execute the update", e));
+				start += updateCounts.length + 1;
+			}
+		}
+	}
+
+	private int[] getUpdateCounts(DataAccessException e) {
+		Throwable cause = e.getCause();
+		while (cause != null) {
+			if (cause instanceof BatchUpdateException) {
+				return ((BatchUpdateException) cause).getUpdateCounts();
+			}
+			cause = cause.getCause();
+		}
+		return null;
+	}
+
 }
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -42,6 +43,7 @@ import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.LazyMessageGroup;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageGroup;
@@ -50,6 +52,7 @@ import org.springframework.integration.util.UUIDConverter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
@@ -89,8 +92,6 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	public static final String DEFAULT_TABLE_PREFIX = "INT_";
 
 	private enum Query {
-		GROUP_EXISTS("SELECT COUNT(GROUP_KEY) FROM %PREFIX%MESSAGE_GROUP where GROUP_KEY = ?"),
-
 		CREATE_MESSAGE_GROUP("INSERT into %PREFIX%MESSAGE_GROUP" +
 			"(GROUP_KEY, REGION, MARKED, COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE, UPDATED_DATE)"
 			+ " values (?, ?, 0, 0, 0, ?, ?)"),
@@ -124,9 +125,11 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		GET_GROUP_INFO("SELECT COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE, UPDATED_DATE" +
 				" from %PREFIX%MESSAGE_GROUP where GROUP_KEY = ?"),
 
-		GET_MESSAGE("SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%MESSAGE where MESSAGE_ID=? and REGION=?"),
+		GET_GROUP_INFO_AND_SIZE("SELECT COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE, UPDATED_DATE, " +
+				"(SELECT COUNT(MESSAGE_ID) from %PREFIX%GROUP_TO_MESSAGE where GROUP_KEY = ?) as GROUP_SIZE" +
+				" from %PREFIX%MESSAGE_GROUP where GROUP_KEY = ? and REGION = ?"),
 
-		GET_GROUP_CREATED_DATE("SELECT CREATED_DATE from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=?"),
+		GET_MESSAGE("SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%MESSAGE where MESSAGE_ID=? and REGION=?"),
 
 		GET_MESSAGE_COUNT("SELECT COUNT(MESSAGE_ID) from %PREFIX%MESSAGE where REGION=?"),
 
@@ -191,6 +194,20 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private volatile Map<Query, String> queryCache = new HashMap<Query, String>();
 
+	private volatile boolean lazyLoadMessageGroups = true;
+
+	private volatile int messageCacheSize = 0;
+
+	private final Map<String, Message<?>> messageCache = new LinkedHashMap<String, Message<?>>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Message<?>> eldest) {
+			return this.size() > messageCacheSize;
+		}
+	};
+
 	/**
 	 * Convenient constructor for configuration use.
 	 */
@@ -227,6 +244,9 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	 */
 	public void setRegion(String region) {
 		this.region = region;
+		synchronized (this.messageCache) {
+			this.messageCache.clear();
+		}
 	}
 
 	/**
@@ -279,6 +299,40 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		this.deserializer = new DeserializingConverter((Deserializer) deserializer);
 	}
 
+	/**
+	 * Specify whether the {@link MessageGroup}s returned by {@link #getMessageGroup(Object)} and
+	 * {@link #addMessageToGroup(Object, Message)} load their messages lazily. When <code>true</code> (the default),
+	 * only the group row and the number of messages in the group are read; the messages are read when they are
+	 * first accessed, e.g. when an aggregator checks for duplicate sequence numbers or releases the group. When
+	 * <code>false</code>, the whole group is read and deserialized every time.
+	 *
+	 * @param lazyLoadMessageGroups false to always read the whole group
+	 * @since 3.0
+	 * @see #setMessageCacheSize(int)
+	 */
+	public void setLazyLoadMessageGroups(boolean lazyLoadMessageGroups) {
+		this.lazyLoadMessageGroups = lazyLoadMessageGroups;
+	}
+
+	/**
+	 * The maximum number of deserialized messages kept in memory for loading groups lazily. Stored messages never
+	 * change, so when all messages of a group are cached, loading it only reads their ids; otherwise the whole
+	 * group is read and cached. Messages added to groups through this store are cached as they are added and
+	 * evicted when they are removed, so an aggregator deserializes each message at most once as long as this is at
+	 * least the number of messages in the groups being aggregated. Messages that are not in a group (such as those
+	 * stored by a claim check) are never cached. Default 0 (no cache).
+	 *
+	 * @param messageCacheSize the maximum number of cached messages
+	 * @since 3.0
+	 */
+	public void setMessageCacheSize(int messageCacheSize) {
+		Assert.isTrue(messageCacheSize >= 0, "'messageCacheSize' must not be negative");
+		this.messageCacheSize = messageCacheSize;
+		synchronized (this.messageCache) {
+			this.messageCache.clear();
+		}
+	}
+
 	/**
 	 * Check mandatory properties (data source and incrementer).
 	 *
@@ -289,7 +343,13 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	}
 
 	public Message<?> removeMessage(UUID id) {
-		Message<?> message = getMessage(id);
+		Message<?> message;
+		synchronized (this.messageCache) {
+			message = this.messageCache.remove(getKey(id));
+		}
+		if (message == null) {
+			message = getMessage(id);
+		}
 		if (message == null) {
 			return null;
 		}
@@ -353,39 +413,37 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
 		final String groupKey = getKey(groupId);
 		final String messageId = getKey(message.getHeaders().getId());
-		boolean groupNotExist = jdbcTemplate.queryForInt(this.getQuery(Query.GROUP_EXISTS), groupKey) < 1;
-
 		final Timestamp updatedDate = new Timestamp(System.currentTimeMillis());
 
-		final Timestamp createdDate = groupNotExist ?
-				updatedDate :
-			    jdbcTemplate.queryForObject(getQuery(Query.GET_GROUP_CREATED_DATE), new Object[] { groupKey, region}, Timestamp.class);
-
-		if (groupNotExist){
+		// most messages are added to an existing group, so try the update first
+		if (this.doUpdateMessageGroup(groupKey, updatedDate) == 0) {
 			try {
-				this.doCreateMessageGroup(groupKey, createdDate);
-			} catch (DuplicateKeyException e) {
+				this.doCreateMessageGroup(groupKey, updatedDate);
+			}
+			catch (DuplicateKeyException e) {
 				logger.warn("Lost race to create group; attempting update instead", e);
 				this.doUpdateMessageGroup(groupKey, updatedDate);
 			}
 		}
-		else {
-			this.doUpdateMessageGroup(groupKey, updatedDate);
-		}
 
-		this.addMessage(message);
+		Message<?> saved = this.addMessage(message);
 
 		jdbcTemplate.update(getQuery(Query.CREATE_GROUP_TO_MESSAGE), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				if (logger.isDebugEnabled()){
-					logger.debug("Inserting message with id key=" + messageId + " and created date=" + createdDate);
+					logger.debug("Inserting message with id key=" + messageId + " into group with key=" + groupKey);
 				}
 				ps.setString(1, groupKey);
 				ps.setString(2, messageId);
 			}
 		});
-		return getMessageGroup(groupId);
+		this.cacheMessage(messageId, saved);
 
+		if (!this.lazyLoadMessageGroups) {
+			return this.loadMessageGroup(groupId);
+		}
+		LazyMessageGroup messageGroup = this.getLazyMessageGroup(groupId, groupKey, message);
+		return (messageGroup != null) ? messageGroup : this.loadMessageGroup(groupId);
 	}
 
 	@Override
@@ -407,13 +465,24 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	}
 
 	public MessageGroup getMessageGroup(Object groupId) {
+		if (this.lazyLoadMessageGroups) {
+			LazyMessageGroup messageGroup = this.getLazyMessageGroup(groupId, getKey(groupId), null);
+			if (messageGroup == null || messageGroup.size() == 0) {
+				return new SimpleMessageGroup(groupId);
+			}
+			return messageGroup;
+		}
+		return this.loadMessageGroup(groupId);
+	}
+
+	private MessageGroup loadMessageGroup(Object groupId) {
 		String key = getKey(groupId);
 		final AtomicReference<Date> createDate = new AtomicReference<Date>();
 		final AtomicReference<Date> updateDate = new AtomicReference<Date>();
 		final AtomicReference<Boolean> completeFlag = new AtomicReference<Boolean>();
 		final AtomicReference<Integer> lastReleasedSequenceRef = new AtomicReference<Integer>();
 
-		List<Message<?>> messages = jdbcTemplate.query(getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY), new Object[] { key, region }, mapper);
+		List<Message<?>> messages = this.loadMessages(key);
 
 		if (messages.size() == 0){
 			return new SimpleMessageGroup(groupId);
@@ -624,8 +693,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		});
 	}
 
-	private void doUpdateMessageGroup(final String groupKey, final Timestamp updatedDate){
-		jdbcTemplate.update(getQuery(Query.UPDATE_MESSAGE_GROUP), new PreparedStatementSetter() {
+	private int doUpdateMessageGroup(final String groupKey, final Timestamp updatedDate){
+		return jdbcTemplate.update(getQuery(Query.UPDATE_MESSAGE_GROUP), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				if (logger.isDebugEnabled()){
 					logger.debug("Updating message group with id key=" + groupKey + " and updated date=" + updatedDate);
@@ -650,6 +719,101 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		});
 	}
 
+	private LazyMessageGroup getLazyMessageGroup(final Object groupId, final String groupKey, final Message<?> added) {
+		List<LazyMessageGroup> groups = jdbcTemplate.query(getQuery(Query.GET_GROUP_INFO_AND_SIZE),
+				new Object[] { groupKey, groupKey, region }, new RowMapper<LazyMessageGroup>() {
+					public LazyMessageGroup mapRow(ResultSet rs, int rowNum) throws SQLException {
+						int size = rs.getInt("GROUP_SIZE");
+						// the sequence size of a group is that of its first message
+						Integer sequenceSize = (added != null && size == 1) ? added.getHeaders().getSequenceSize() : null;
+						return new LazyMessageGroup(groupId, size, sequenceSize,
+								rs.getTimestamp("CREATED_DATE").getTime(), rs.getTimestamp("UPDATED_DATE").getTime(),
+								rs.getInt("COMPLETE") > 0, rs.getInt("LAST_RELEASED_SEQUENCE")) {
+
+							@Override
+							protected List<Message<?>> loadMessages() {
+								return JdbcMessageStore.this.loadMessages(groupKey);
+							}
+
+							@Override
+							protected Message<?> loadFirstMessage() {
+								return JdbcMessageStore.this.loadFirstMessage(groupKey);
+							}
+						};
+					}
+				});
+		return groups.isEmpty() ? null : groups.get(0);
+	}
+
+	/**
+	 * Read the messages of a group, in the order they were added, from the cache if all of them are cached.
+	 */
+	private List<Message<?>> loadMessages(String groupKey) {
+		if (this.messageCacheSize > 0) {
+			List<String> messageIds = this.getMessageKeysForGroup(groupKey);
+			List<Message<?>> messages = new ArrayList<Message<?>>(messageIds.size());
+			synchronized (this.messageCache) {
+				for (String messageId : messageIds) {
+					Message<?> message = this.messageCache.get(messageId);
+					if (message == null) {
+						messages = null;
+						break;
+					}
+					messages.add(message);
+				}
+			}
+			if (messages != null) {
+				return messages;
+			}
+		}
+		List<Message<?>> messages = jdbcTemplate.query(getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY),
+				new Object[] { groupKey, region }, mapper);
+		for (Message<?> message : messages) {
+			this.cacheMessage(getKey(message.getHeaders().getId()), message);
+		}
+		return messages;
+	}
+
+	/**
+	 * Read the first message of a group from the cache, or deserialize only that one.
+	 */
+	private Message<?> loadFirstMessage(String groupKey) {
+		if (this.messageCacheSize > 0) {
+			List<String> messageIds = this.getMessageKeysForGroup(groupKey);
+			if (!messageIds.isEmpty()) {
+				synchronized (this.messageCache) {
+					Message<?> message = this.messageCache.get(messageIds.get(0));
+					if (message != null) {
+						return message;
+					}
+				}
+			}
+		}
+		return jdbcTemplate.query(getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY), new Object[] { groupKey, region },
+				new ResultSetExtractor<Message<?>>() {
+					public Message<?> extractData(ResultSet rs) throws SQLException {
+						return rs.next() ? mapper.mapRow(rs, 0) : null;
+					}
+				});
+	}
+
+	private List<String> getMessageKeysForGroup(String groupKey) {
+		return jdbcTemplate.query(getQuery(Query.LIST_MESSAGEIDS_BY_GROUP_KEY), new Object[] { groupKey, region },
+				new RowMapper<String>() {
+					public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+						return rs.getString("MESSAGE_ID");
+					}
+				});
+	}
+
+	private void cacheMessage(String messageId, Message<?> message) {
+		if (this.messageCacheSize > 0) {
+			synchronized (this.messageCache) {
+				this.messageCache.put(messageId, message);
+			}
+		}
+	}
+
 	private List<UUID> getMessageIdsForGroup(Object groupId){
 		String key = getKey(groupId);
 
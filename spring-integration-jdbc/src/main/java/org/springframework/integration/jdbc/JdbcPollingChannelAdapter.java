@@ -19,6 +19,7 @@ package org.springframework.integration.jdbc;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 import javax.sql.DataSource;
@@ -30,17 +31,27 @@ import org.springframework.integration.core.MessageSource;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.util.Assert;
 
 /**
  * A polling channel adapter that creates messages from the payload returned by
  * executing a select query. Optionally an update can be executed after the
  * select in order to update processed rows.
+ * <p/>
+ * To poll large tables with bounded memory, the rows selected by a poll can be
+ * limited ('maxRowsPerPoll') and read from the cursor a few at a time
+ * ('fetchSize'), and they can be emitted over several messages
+ * ('rowsPerMessage'). In the latter case, the rows that have not been emitted
+ * yet are kept for the next calls to {@link #receive()}, and the select query is
+ * only executed again once they have all been emitted; the update is executed
+ * for the rows of each message when that message is emitted. Since those rows
+ * are held in memory, 'maxRowsPerPoll' is required with 'rowsPerMessage'.
  *
  * @author Jonas Partner
  * @author Dave Syer
@@ -50,6 +61,11 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 
 	private final NamedParameterJdbcOperations jdbcOperations;
 
+	/**
+	 * The template created by this adapter, if it was given a DataSource.
+	 */
+	private final JdbcTemplate jdbcTemplate;
+
 	private final String selectQuery;
 
 	private volatile RowMapper<?> rowMapper;
@@ -64,6 +80,12 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 
 	private volatile int maxRowsPerPoll = 0;
 
+	private volatile int fetchSize = 0;
+
+	private volatile int rowsPerMessage = 0;
+
+	private final LinkedList<Object> pendingRows = new LinkedList<Object>();
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be
 	 * obtained and the select query to execute to retrieve new rows.
@@ -72,7 +94,8 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	 * @param selectQuery query to execute
 	 */
 	public JdbcPollingChannelAdapter(DataSource dataSource, String selectQuery) {
-		this.jdbcOperations = new NamedParameterJdbcTemplate(dataSource);
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcOperations = new NamedParameterJdbcTemplate(this.jdbcTemplate);
 		this.selectQuery = selectQuery;
 	}
 
@@ -84,6 +107,7 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	 * @param selectQuery query to execute
 	 */
 	public JdbcPollingChannelAdapter(JdbcOperations jdbcOperations, String selectQuery) {
+		this.jdbcTemplate = null;
 		this.jdbcOperations = new NamedParameterJdbcTemplate(jdbcOperations);
 		this.selectQuery = selectQuery;
 	}
@@ -124,6 +148,50 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.maxRowsPerPoll = maxRows;
 	}
 
+	/**
+	 * The number of rows the JDBC driver fetches from the database each time it
+	 * needs more rows while the select query results are read. Default is zero,
+	 * leaving it to the driver. Some drivers (e.g. PostgreSQL) only use a
+	 * cursor when the fetch size is set on the statement: when this adapter is
+	 * given a {@link JdbcOperations}, set it on that template instead.
+	 *
+	 * @param fetchSize the fetch size to set
+	 * @since 3.0
+	 */
+	public void setFetchSize(int fetchSize) {
+		Assert.isTrue(fetchSize >= 0, "'fetchSize' must not be negative");
+		this.fetchSize = fetchSize;
+		if (this.jdbcTemplate != null) {
+			this.jdbcTemplate.setFetchSize(fetchSize);
+		}
+	}
+
+	/**
+	 * The number of rows per message. If greater than zero, the rows selected
+	 * by a poll are emitted over several messages, each message being
+	 * returned by a separate call to {@link #receive()}. With 1, the payload
+	 * of each message is the row itself rather than a list. Default is zero:
+	 * all the rows selected by a poll are packed into one message.
+	 * <p/>
+	 * The rows that have not been emitted yet are held in memory until they
+	 * are, so 'maxRowsPerPoll' is required with a 'rowsPerMessage' to bound
+	 * the number of those rows.
+	 *
+	 * @param rowsPerMessage the rows per message to set
+	 * @since 3.0
+	 */
+	public void setRowsPerMessage(int rowsPerMessage) {
+		Assert.isTrue(rowsPerMessage >= 0, "'rowsPerMessage' must not be negative");
+		this.rowsPerMessage = rowsPerMessage;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		Assert.state(this.rowsPerMessage == 0 || this.maxRowsPerPoll > 0,
+				"'maxRowsPerPoll' is required with 'rowsPerMessage'");
+	}
+
 	/**
 	 * Executes the query. If a query result set contains one or more rows, the
 	 * Message payload will contain either a List of Maps for each row or, if a
@@ -144,21 +212,44 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	 * mapped results are returned.
 	 */
 	private Object poll() {
-		List<?> payload = doPoll(this.sqlQueryParameterSource);
-		if (payload.size() < 1) {
-			payload = null;
+		int rowsPerMessage = this.rowsPerMessage;
+		List<?> rows = nextRows(rowsPerMessage);
+		if (rows.size() < 1) {
+			return null;
 		}
-		if (payload != null && updateSql != null) {
+		if (updateSql != null) {
 			if (this.updatePerRow) {
-				for (Object row : payload) {
-					executeUpdateQuery(row);
-				}
+				executeBatchUpdateQuery(rows);
 			}
 			else {
-				executeUpdateQuery(payload);
+				executeUpdateQuery(rows);
 			}
 		}
-		return payload;
+		if (rowsPerMessage == 1) {
+			return rows.get(0);
+		}
+		return rows;
+	}
+
+	/**
+	 * Return the rows for the next message, executing the select query if no
+	 * rows are pending.
+	 */
+	private List<?> nextRows(int rowsPerMessage) {
+		if (rowsPerMessage == 0) {
+			return doPoll(this.sqlQueryParameterSource);
+		}
+		synchronized (this.pendingRows) {
+			if (this.pendingRows.isEmpty()) {
+				this.pendingRows.addAll(doPoll(this.sqlQueryParameterSource));
+			}
+			int size = Math.min(rowsPerMessage, this.pendingRows.size());
+			List<Object> rows = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++) {
+				rows.add(this.pendingRows.removeFirst());
+			}
+			return rows;
+		}
 	}
 
 	private void executeUpdateQuery(Object obj) {
@@ -166,30 +257,37 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.jdbcOperations.update(this.updateSql, updateParamaterSource);
 	}
 
+	private void executeBatchUpdateQuery(List<?> rows) {
+		if (rows.size() == 1) {
+			executeUpdateQuery(rows.get(0));
+			return;
+		}
+		SqlParameterSource[] updateParameterSources = new SqlParameterSource[rows.size()];
+		for (int i = 0; i < updateParameterSources.length; i++) {
+			updateParameterSources[i] = this.sqlParameterSourceFactory.createParameterSource(rows.get(i));
+		}
+		this.jdbcOperations.batchUpdate(this.updateSql, updateParameterSources);
+	}
+
 	protected List<?> doPoll(SqlParameterSource sqlQueryParameterSource) {
 
 		List<?> payload = null;
 		final RowMapper<?> rowMapper = this.rowMapper == null ? new ColumnMapRowMapper() : this.rowMapper;
-		ResultSetExtractor<List<Object>> resultSetExtractor;
-
-		if (maxRowsPerPoll > 0) {
-			resultSetExtractor = new ResultSetExtractor<List<Object>>() {
-				public List<Object> extractData(ResultSet rs) throws SQLException, DataAccessException {
-					List<Object> results = new ArrayList<Object>(maxRowsPerPoll);
-					int rowNum = 0;
-					while (rs.next() && rowNum < maxRowsPerPoll) {
-						results.add(rowMapper.mapRow(rs, rowNum++));
-					}
-					return results;
+		final int maxRowsPerPoll = this.maxRowsPerPoll;
+		final int fetchSize = this.fetchSize;
+		ResultSetExtractor<List<Object>> resultSetExtractor = new ResultSetExtractor<List<Object>>() {
+			public List<Object> extractData(ResultSet rs) throws SQLException, DataAccessException {
+				if (fetchSize > 0) {
+					rs.setFetchSize(fetchSize);
 				}
-			};
-		}
-		else {
-			@SuppressWarnings("unchecked")
-			ResultSetExtractor<List<Object>> temp = new RowMapperResultSetExtractor<Object>(
-					(RowMapper<Object>) rowMapper);
-			resultSetExtractor = temp;
-		}
+				List<Object> results = maxRowsPerPoll > 0 ? new ArrayList<Object>(maxRowsPerPoll) : new ArrayList<Object>();
+				int rowNum = 0;
+				while ((maxRowsPerPoll <= 0 || rowNum < maxRowsPerPoll) && rs.next()) {
+					results.add(rowMapper.mapRow(rs, rowNum++));
+				}
+				return results;
+			}
+		};
 
 		if (sqlQueryParameterSource != null) {
 			payload = this.jdbcOperations.query(this.selectQuery,
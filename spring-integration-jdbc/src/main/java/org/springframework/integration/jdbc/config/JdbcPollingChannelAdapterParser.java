@@ -72,6 +72,8 @@ public class JdbcPollingChannelAdapterParser extends AbstractPollingInboundChann
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "update-sql-parameter-source-factory");
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "select-sql-parameter-source");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "max-rows-per-poll");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "fetch-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "rows-per-message");
 		if (update!=null) {
 			builder.addPropertyValue("updateSql", update);
 		}
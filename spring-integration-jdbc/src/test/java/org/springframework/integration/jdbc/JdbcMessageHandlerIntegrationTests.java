@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,19 +17,31 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Dave Syer
@@ -40,8 +52,12 @@ public class JdbcMessageHandlerIntegrationTests {
 
 	private JdbcTemplate jdbcTemplate;
 
+	private ThreadPoolTaskScheduler taskScheduler;
+
 	@Before
 	public void setUp() {
+		this.taskScheduler = new ThreadPoolTaskScheduler();
+		this.taskScheduler.afterPropertiesSet();
 		EmbeddedDatabaseBuilder builder = new EmbeddedDatabaseBuilder();
 		builder.setType(EmbeddedDatabaseType.HSQL).addScript(
 				"classpath:org/springframework/integration/jdbc/messageHandlerIntegrationTest.sql");
@@ -51,6 +67,7 @@ public class JdbcMessageHandlerIntegrationTests {
 
 	@After
 	public void tearDown() {
+		this.taskScheduler.destroy();
 		this.embeddedDatabase.shutdown();
 	}
 
@@ -96,4 +113,142 @@ public class JdbcMessageHandlerIntegrationTests {
 		assertEquals("Wrong name", "foo", map.get("NAME"));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testBatchedInsert() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], 0, :payload)");
+		handler.setBatchSize(3);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+		handler.handleMessage(MessageBuilder.withPayload("foo").setHeader("business.id", "1").build());
+		handler.handleMessage(MessageBuilder.withPayload("bar").setHeader("business.id", "2").build());
+		Thread.sleep(100);
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		handler.handleMessage(MessageBuilder.withPayload("baz").setHeader("business.id", "3").build());
+		waitForCount(3);
+		assertEquals("bar", jdbcTemplate.queryForObject("SELECT NAME FROM FOOS WHERE ID=?", String.class, "2"));
+		handler.handleMessage(MessageBuilder.withPayload("qux").setHeader("business.id", "4").build());
+		Thread.sleep(100);
+		assertEquals(3, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		handler.destroy();
+		assertEquals(4, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+	}
+
+	@Test
+	public void testBatchNotExecutedOnSenderThread() throws Exception {
+		final JdbcTemplate template = new JdbcTemplate(this.embeddedDatabase);
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		JdbcMessageHandler handler = new JdbcMessageHandler(new JdbcTemplate(this.embeddedDatabase) {
+			@Override
+			public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+				threads.add(Thread.currentThread());
+				return template.batchUpdate(sql, pss);
+			}
+		}, "insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(2);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		handler.handleMessage(new GenericMessage<String>("bar"));
+		waitForCount(2);
+		assertEquals(1, threads.size());
+		assertFalse(threads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testBatchFlushedAfterInterval() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(100);
+		handler.setFlushInterval(100);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		handler.handleMessage(new GenericMessage<String>("bar"));
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		waitForCount(2);
+		handler.destroy();
+		handler.handleMessage(new GenericMessage<String>("baz"));
+		assertEquals(2, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		handler.flush();
+		assertEquals(3, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+	}
+
+	@Test
+	public void testFailedUpdateInBatchSentToErrorChannel() throws Exception {
+		jdbcTemplate.execute("alter table foos add constraint foos_id unique (id)");
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:payload, 0, 'foo')");
+		QueueChannel errorChannel = new QueueChannel();
+		handler.setBatchSize(3);
+		handler.setErrorChannel(errorChannel);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+		Message<String> duplicate = new GenericMessage<String>("1");
+		handler.handleMessage(new GenericMessage<String>("1"));
+		handler.handleMessage(duplicate);
+		handler.handleMessage(new GenericMessage<String>("2"));
+		Message<?> error = errorChannel.receive(10000);
+		assertNotNull(error);
+		assertSame(duplicate, ((MessageHandlingException) error.getPayload()).getFailedMessage());
+		assertNull(errorChannel.receive(100));
+		assertEquals(2, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+	}
+
+	@Test
+	public void testFailedUpdateInBatchNotThrownToSender() throws Exception {
+		jdbcTemplate.execute("alter table foos add constraint foos_id unique (id)");
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:payload, 0, 'foo')");
+		handler.setBatchSize(2);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("1"));
+		handler.handleMessage(new GenericMessage<String>("1"));
+		handler.handleMessage(new GenericMessage<String>("2"));
+		handler.handleMessage(new GenericMessage<String>("3"));
+		waitForCount(3);
+	}
+
+	@Test
+	public void testFailedUpdateThrownByFlush() throws Exception {
+		jdbcTemplate.execute("alter table foos add constraint foos_id unique (id)");
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:payload, 0, 'foo')");
+		handler.setBatchSize(3);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("1"));
+		Message<String> duplicate = new GenericMessage<String>("1");
+		handler.handleMessage(duplicate);
+		try {
+			handler.flush();
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertSame(duplicate, e.getFailedMessage());
+		}
+		assertEquals(1, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFlushIntervalRequiresTaskScheduler() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(2);
+		handler.setFlushInterval(1000);
+		handler.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testKeysGeneratedNotSupportedWithBatches() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(2);
+		handler.setKeysGenerated(true);
+		handler.setTaskScheduler(this.taskScheduler);
+		handler.afterPropertiesSet();
+	}
+
+	private void waitForCount(int expected) throws InterruptedException {
+		int n = 0;
+		while (jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS") < expected && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertEquals(expected, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+	}
+
+}
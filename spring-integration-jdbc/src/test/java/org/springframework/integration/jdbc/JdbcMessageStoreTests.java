@@ -17,6 +17,7 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -30,8 +31,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -40,15 +43,20 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.serializer.DefaultDeserializer;
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
 import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupCallback;
 import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.util.UUIDConverter;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -389,4 +397,107 @@ public class JdbcMessageStoreTests {
 		assertEquals(1, group.size());
 	}
 
+	@Test
+	@Transactional
+	public void testAddMessageToGroupLoadsMessagesLazily() throws Exception {
+		AtomicInteger deserialized = this.countDeserializations();
+		String groupId = "X";
+		long now = System.currentTimeMillis();
+		MessageGroup group = null;
+		for (int i = 1; i <= 3; i++) {
+			group = messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo" + i)
+					.setCorrelationId(groupId).setSequenceNumber(i).setSequenceSize(3).build());
+			assertEquals(i, group.size());
+		}
+		assertFalse(group.isComplete());
+		assertTrue(group.getTimestamp() >= now);
+		assertEquals(0, deserialized.get());
+
+		assertEquals(3, group.getSequenceSize());
+		assertEquals(1, deserialized.get());
+		assertEquals(3, group.getMessages().size());
+		assertEquals(4, deserialized.get());
+		assertNotNull(group.getOne());
+		assertEquals(4, deserialized.get());
+	}
+
+	@Test
+	@Transactional
+	public void testSequenceSizeTakenFromFirstMessage() throws Exception {
+		AtomicInteger deserialized = this.countDeserializations();
+		String groupId = "X";
+		MessageGroup group = messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo")
+				.setCorrelationId(groupId).setSequenceNumber(1).setSequenceSize(2).build());
+		assertEquals(2, group.getSequenceSize());
+		assertEquals(0, deserialized.get());
+		Thread.sleep(10);
+		group = messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("bar")
+				.setCorrelationId(groupId).setSequenceNumber(2).setSequenceSize(5).build());
+		assertEquals(2, group.getSequenceSize());
+		assertEquals(1, deserialized.get());
+	}
+
+	@Test
+	@Transactional
+	public void testAggregatorDoesNotDeserializeGroupOnAdd() throws Exception {
+		AtomicInteger deserialized = this.countDeserializations();
+		QueueChannel output = new QueueChannel();
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(new DefaultAggregatingMessageGroupProcessor(),
+				messageStore);
+		handler.setOutputChannel(output);
+		handler.afterPropertiesSet();
+		int size = 20;
+		messageStore.setMessageCacheSize(size);
+		for (int i = 1; i <= size; i++) {
+			handler.handleMessage(MessageBuilder.withPayload("foo" + i).setCorrelationId("X")
+					.setSequenceNumber(i).setSequenceSize(size).build());
+			if (i < size) {
+				assertEquals(0, deserialized.get());
+			}
+		}
+		Message<?> result = output.receive(0);
+		assertNotNull(result);
+		assertEquals(size, ((List<?>) result.getPayload()).size());
+		assertEquals(0, deserialized.get());
+	}
+
+	@Test
+	@Transactional
+	public void testGetMessageGroupServedFromMessageCache() throws Exception {
+		AtomicInteger deserialized = this.countDeserializations();
+		messageStore.setLazyLoadMessageGroups(false);
+		messageStore.setMessageCacheSize(10);
+		messageStore.addMessageToGroup("X", MessageBuilder.withPayload("foo").setCorrelationId("X").build());
+		assertEquals(1, messageStore.getMessageGroup("X").size());
+		assertEquals(0, deserialized.get());
+		messageStore.setMessageCacheSize(10);
+		assertEquals(1, messageStore.getMessageGroup("X").size());
+		assertEquals(1, deserialized.get());
+		assertEquals(1, messageStore.getMessageGroup("X").size());
+		assertEquals(1, deserialized.get());
+	}
+
+	@Test
+	@Transactional
+	public void testAddMessageToGroupWithoutLazyLoad() throws Exception {
+		messageStore.setLazyLoadMessageGroups(false);
+		String groupId = "X";
+		messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo").setCorrelationId(groupId).build());
+		MessageGroup group = messageStore.addMessageToGroup(groupId,
+				MessageBuilder.withPayload("bar").setCorrelationId(groupId).build());
+		assertTrue(group instanceof SimpleMessageGroup);
+		assertEquals(2, group.getMessages().size());
+	}
+
+	private AtomicInteger countDeserializations() {
+		final AtomicInteger deserialized = new AtomicInteger();
+		messageStore.setDeserializer(new Deserializer<Message<?>>() {
+			public Message<?> deserialize(InputStream inputStream) throws IOException {
+				deserialized.incrementAndGet();
+				return (Message<?>) new DefaultDeserializer().deserialize(inputStream);
+			}
+		});
+		return deserialized;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -277,6 +277,71 @@ public class JdbcPollingChannelAdapterIntegrationTests {
 
 	}
 
+	@Test
+	public void testSimplePollWithRowsPerMessageAndUpdatePerRow() {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(
+				this.embeddedDatabase, "select * from item where status=2 order by id");
+		adapter.setUpdateSql("update item set status = 10 where id = :id");
+		adapter.setUpdatePerRow(true);
+		adapter.setMaxRowsPerPoll(3);
+		adapter.setFetchSize(2);
+		adapter.setRowsPerMessage(2);
+		adapter.setRowMapper(new ItemRowMapper());
+
+		this.jdbcTemplate.update("insert into item values(1,2)");
+		this.jdbcTemplate.update("insert into item values(2,2)");
+		this.jdbcTemplate.update("insert into item values(3,2)");
+		this.jdbcTemplate.update("insert into item values(4,2)");
+
+		List<?> rows = (List<?>) adapter.receive().getPayload();
+		assertEquals("Wrong number of elements", 2, rows.size());
+		assertEquals("Wrong id", 1, ((Item) rows.get(0)).getId());
+		assertEquals("Wrong id", 2, ((Item) rows.get(1)).getId());
+		assertEquals("Status not updated", 2,
+				this.jdbcTemplate.queryForInt("select count(*) from item where status = 10"));
+
+		rows = (List<?>) adapter.receive().getPayload();
+		assertEquals("Wrong number of elements", 1, rows.size());
+		assertEquals("Wrong id", 3, ((Item) rows.get(0)).getId());
+		assertEquals("Status not updated", 3,
+				this.jdbcTemplate.queryForInt("select count(*) from item where status = 10"));
+
+		rows = (List<?>) adapter.receive().getPayload();
+		assertEquals("Wrong number of elements", 1, rows.size());
+		assertEquals("Wrong id", 4, ((Item) rows.get(0)).getId());
+		assertNull(adapter.receive());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRowsPerMessageRequiresMaxRowsPerPoll() {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(
+				this.embeddedDatabase, "select * from item where status=2 order by id");
+		adapter.setRowsPerMessage(1);
+		adapter.afterPropertiesSet();
+	}
+
+	@Test
+	public void testSimplePollWithOneRowPerMessage() {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(
+				this.embeddedDatabase, "select * from item where status=2 order by id");
+		adapter.setUpdateSql("update item set status = 10 where id in (:id)");
+		adapter.setMaxRowsPerPoll(10);
+		adapter.setRowsPerMessage(1);
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.afterPropertiesSet();
+
+		this.jdbcTemplate.update("insert into item values(1,2)");
+		this.jdbcTemplate.update("insert into item values(2,2)");
+
+		Item item = (Item) adapter.receive().getPayload();
+		assertEquals("Wrong id", 1, item.getId());
+		assertEquals("Status not updated", 1,
+				this.jdbcTemplate.queryForInt("select count(*) from item where status = 10"));
+		item = (Item) adapter.receive().getPayload();
+		assertEquals("Wrong id", 2, item.getId());
+		assertNull(adapter.receive());
+	}
+
 	@Test
 	public void testEmptyPoll() {
 		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(
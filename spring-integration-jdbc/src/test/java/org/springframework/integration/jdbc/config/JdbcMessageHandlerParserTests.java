@@ -15,6 +15,7 @@ package org.springframework.integration.jdbc.config;
 
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.Collections;
 import java.util.Map;
@@ -108,6 +109,23 @@ public class JdbcMessageHandlerParserTests {
 		assertEquals("Wrong name", "bar", map.get("name"));
 	}
 
+	@Test
+	public void testBatchedOutboundChannelAdapter() throws Exception {
+		setUp("handlingBatchedJdbcOutboundChannelAdapterTest.xml", getClass());
+		JdbcMessageHandler handler = context.getBean(JdbcMessageHandler.class);
+		assertEquals(2, TestUtils.getPropertyValue(handler, "batcher.batchSize"));
+		assertEquals(60000L, TestUtils.getPropertyValue(handler, "batcher.flushInterval"));
+		assertSame(context.getBean("errors"), TestUtils.getPropertyValue(handler, "batcher.errorChannel"));
+		channel.send(MessageBuilder.withPayload("foo").build());
+		assertEquals(0, this.jdbcTemplate.queryForInt("SELECT COUNT(*) from FOOS"));
+		channel.send(MessageBuilder.withPayload("bar").build());
+		int n = 0;
+		while (this.jdbcTemplate.queryForInt("SELECT COUNT(*) from FOOS") < 2 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) from FOOS"));
+	}
+
 	@Test
 	public void testOutboundAdapterWithPoller() throws Exception{
 		ApplicationContext ac = new ClassPathXmlApplicationContext("JdbcOutboundAdapterWithPollerTest-context.xml", this.getClass());
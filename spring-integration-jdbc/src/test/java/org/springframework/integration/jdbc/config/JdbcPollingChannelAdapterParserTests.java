@@ -22,9 +22,11 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -38,6 +40,7 @@ import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.core.PollableChannel;
 import org.springframework.integration.endpoint.SourcePollingChannelAdapter;
 import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.jdbc.JdbcPollingChannelAdapter;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
@@ -158,6 +161,33 @@ public class JdbcPollingChannelAdapterParserTests {
 		}
 	}
 
+	@Test
+	public void testRowsPerMessageInboundChannelAdapter() {
+		setUp("pollingWithRowsPerMessageJdbcInboundChannelAdapterTest.xml", getClass());
+		JdbcPollingChannelAdapter adapter = TestUtils.getPropertyValue(appCtx.getBean("jdbcAdapter"), "source",
+				JdbcPollingChannelAdapter.class);
+		assertEquals(2, TestUtils.getPropertyValue(adapter, "fetchSize"));
+		assertEquals(2, TestUtils.getPropertyValue(adapter, "jdbcTemplate.fetchSize"));
+		assertEquals(1, TestUtils.getPropertyValue(adapter, "rowsPerMessage"));
+		new TransactionTemplate(transactionManager).execute(new TransactionCallback<Void>() {
+			public Void doInTransaction(TransactionStatus status) {
+				jdbcTemplate.update("insert into item values(1,'',2)");
+				jdbcTemplate.update("insert into item values(2,'',2)");
+				jdbcTemplate.update("insert into item values(3,'',2)");
+				jdbcTemplate.update("insert into item values(4,'',2)");
+				return null;
+			}
+		});
+		Set<Object> ids = new HashSet<Object>();
+		for (int i = 0; i < 4; i++) {
+			Message<?> message = messagingTemplate.receive();
+			assertNotNull(message);
+			ids.add(((Map<?, ?>) message.getPayload()).get("ID"));
+		}
+		assertEquals(4, ids.size());
+		assertEquals(4, jdbcTemplate.queryForInt("select count(*) from item where status=10"));
+	}
+
 	@Test
 	public void testAutoChannel() {
 		setUp("autoChannelJdbcPollingChannelAdapterParserTests-context.xml", getClass());
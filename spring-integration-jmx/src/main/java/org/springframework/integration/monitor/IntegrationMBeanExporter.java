@@ -63,6 +63,8 @@ import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.MessageSource;
 import org.springframework.integration.core.PollableChannel;
 import org.springframework.integration.endpoint.AbstractEndpoint;
+import org.springframework.integration.util.Pool;
+import org.springframework.integration.util.PoolProvider;
 import org.springframework.jmx.export.MBeanExporter;
 import org.springframework.jmx.export.UnableToRegisterMBeanException;
 import org.springframework.jmx.export.annotation.AnnotationJmxAttributeSource;
@@ -402,6 +404,7 @@ public class IntegrationMBeanExporter extends MBeanExporter implements BeanPostP
 		registerHandlers();
 		registerSources();
 		registerEndpoints();
+		registerPools();
 	}
 
 	@Override
@@ -868,6 +871,20 @@ public class IntegrationMBeanExporter extends MBeanExporter implements BeanPostP
 		}
 	}
 
+	private void registerPools() {
+		String[] names = beanFactory.getBeanNamesForType(PoolProvider.class);
+		for (String name : names) {
+			if (!PatternMatchUtils.simpleMatch(this.componentNamePatterns, name)) {
+				continue;
+			}
+			Pool<?> pool = beanFactory.getBean(name, PoolProvider.class).getPool();
+			if (pool != null) {
+				ObjectName objectName = registerBeanInstance(new ManagedPool(pool), getPoolBeanKey(name));
+				logger.info("Registered pool: " + objectName);
+			}
+		}
+	}
+
 	private Object applyChannelInterceptor(Object bean, DirectChannelMetrics interceptor, ClassLoader beanClassLoader) {
 		NameMatchMethodPointcutAdvisor channelsAdvice = new NameMatchMethodPointcutAdvisor(interceptor);
 		channelsAdvice.addMethodName("send");
@@ -952,6 +969,10 @@ public class IntegrationMBeanExporter extends MBeanExporter implements BeanPostP
 		return String.format(domain + ":type=ManagedEndpoint,name=%s,bean=%s" + getStaticNames(), name, source);
 	}
 
+	private String getPoolBeanKey(String name) {
+		return String.format(domain + ":type=Pool,name=%s" + getStaticNames(), name);
+	}
+
 	private String getMonitoredIntegrationObjectBeanKey(Object object, String name) {
 		// This ordering of keys seems to work with default settings of JConsole
 		return String.format(domain + ":type=" + object.getClass().getSimpleName() + ",name=%s" + getStaticNames(), name);
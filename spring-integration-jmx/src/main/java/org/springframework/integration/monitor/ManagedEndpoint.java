@@ -17,12 +17,17 @@ package org.springframework.integration.monitor;
 
 import org.springframework.context.Lifecycle;
 import org.springframework.integration.endpoint.AbstractEndpoint;
+import org.springframework.integration.endpoint.AbstractPollingEndpoint;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
 
 /**
  * Wrapper for an {@link AbstractEndpoint} that exposes a management interface.
+ * For polling endpoints, the poll statistics are exposed as well; the polling
+ * attributes return -1 for any other endpoint.
  * 
  * @author Dave Syer
  * 
@@ -51,4 +56,28 @@ public class ManagedEndpoint implements Lifecycle {
 		delegate.stop();
 	}
 
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Endpoint Poll Count")
+	public final long getPollCount() {
+		return this.isPolling() ? ((AbstractPollingEndpoint) delegate).getPollCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Endpoint Empty Poll Count")
+	public final long getEmptyPollCount() {
+		return this.isPolling() ? ((AbstractPollingEndpoint) delegate).getEmptyPollCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Endpoint Polled Message Count")
+	public final long getPolledMessageCount() {
+		return this.isPolling() ? ((AbstractPollingEndpoint) delegate).getPolledMessageCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Endpoint Current Poll Period in Milliseconds")
+	public final long getCurrentPollPeriod() {
+		return this.isPolling() ? ((AbstractPollingEndpoint) delegate).getCurrentPollPeriod() : -1;
+	}
+
+	private boolean isPolling() {
+		return delegate instanceof AbstractPollingEndpoint;
+	}
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.monitor;
+
+import org.springframework.integration.util.Pool;
+import org.springframework.integration.util.SimplePool;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+
+/**
+ * Wrapper for a {@link Pool} that exposes its statistics. The wait time,
+ * utilization and item counters are only available for a {@link SimplePool};
+ * they return -1 for any other pool.
+ *
+ * @since 3.0
+ */
+@ManagedResource
+public class ManagedPool {
+
+	private final Pool<?> delegate;
+
+	public ManagedPool(Pool<?> delegate) {
+		this.delegate = delegate;
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Size")
+	public int getPoolSize() {
+		return this.delegate.getPoolSize();
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Idle Count")
+	public int getIdleCount() {
+		return this.delegate.getIdleCount();
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Active Count")
+	public int getActiveCount() {
+		return this.delegate.getActiveCount();
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Allocated Count")
+	public int getAllocatedCount() {
+		return this.delegate.getAllocatedCount();
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Utilization")
+	public double getUtilization() {
+		return this.isSimplePool() ? this.simplePool().getUtilization() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Pool Checkout Count")
+	public long getCheckoutCount() {
+		return this.isSimplePool() ? this.simplePool().getCheckoutCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Pool Timeout Count")
+	public long getTimeoutCount() {
+		return this.isSimplePool() ? this.simplePool().getTimeoutCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Mean Wait Time", unit = "milliseconds")
+	public double getMeanWaitTime() {
+		return this.isSimplePool() ? this.simplePool().getMeanWaitTime() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Pool Max Wait Time", unit = "milliseconds")
+	public double getMaxWaitTime() {
+		return this.isSimplePool() ? this.simplePool().getMaxWaitTime() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Pool Created Count")
+	public long getCreatedCount() {
+		return this.isSimplePool() ? this.simplePool().getCreatedCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Pool Evicted Count")
+	public long getEvictedCount() {
+		return this.isSimplePool() ? this.simplePool().getEvictedCount() : -1;
+	}
+
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Pool Stale Count")
+	public long getStaleCount() {
+		return this.isSimplePool() ? this.simplePool().getStaleCount() : -1;
+	}
+
+	@ManagedOperation
+	public void removeAllIdleItems() {
+		this.delegate.removeAllIdleItems();
+	}
+
+	private boolean isSimplePool() {
+		return this.delegate instanceof SimplePool<?>;
+	}
+
+	private SimplePool<?> simplePool() {
+		return (SimplePool<?>) this.delegate;
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.endpoint.EventDrivenConsumer;
+import org.springframework.integration.endpoint.PollingConsumer;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.scheduling.AdaptivePollingTrigger;
+import org.springframework.jmx.export.annotation.AnnotationMBeanExporter;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+
+/**
+ * @since 3.0
+ */
+public class ManagedEndpointTests {
+
+	@Test
+	public void pollingStatistics() {
+		PollingConsumer consumer = new PollingConsumer(new QueueChannel(), mock(MessageHandler.class));
+		consumer.setTrigger(new AdaptivePollingTrigger(100, 1000));
+		ManagedEndpoint endpoint = new ManagedEndpoint(consumer);
+		assertEquals(0, endpoint.getPollCount());
+		assertEquals(0, endpoint.getEmptyPollCount());
+		assertEquals(0, endpoint.getPolledMessageCount());
+		assertEquals(100, endpoint.getCurrentPollPeriod());
+	}
+
+	@Test
+	public void pollingStatisticsFollowPolls() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		PollingConsumer consumer = new PollingConsumer(channel, mock(MessageHandler.class));
+		consumer.setReceiveTimeout(0);
+		consumer.setTrigger(new AdaptivePollingTrigger(100, 400));
+		TaskScheduler scheduler = mock(TaskScheduler.class);
+		consumer.setTaskScheduler(scheduler);
+		consumer.setBeanFactory(mock(BeanFactory.class));
+		consumer.afterPropertiesSet();
+		consumer.start();
+		ArgumentCaptor<Runnable> poller = ArgumentCaptor.forClass(Runnable.class);
+		verify(scheduler).schedule(poller.capture(), any(Trigger.class));
+
+		ManagedEndpoint endpoint = new ManagedEndpoint(consumer);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("test.ManagedEndpointTests:type=ManagedEndpoint,name=consumer");
+		AnnotationMBeanExporter exporter = new AnnotationMBeanExporter();
+		exporter.setServer(server);
+		exporter.setBeans(Collections.<String, Object>singletonMap(name.toString(), endpoint));
+		exporter.afterPropertiesSet();
+		try {
+			// empty polls back off up to the maximum period
+			poller.getValue().run();
+			assertEquals(200, endpoint.getCurrentPollPeriod());
+			poller.getValue().run();
+			assertEquals(400, endpoint.getCurrentPollPeriod());
+			poller.getValue().run();
+			assertEquals(400L, server.getAttribute(name, "CurrentPollPeriod"));
+			assertEquals(3L, server.getAttribute(name, "PollCount"));
+			assertEquals(3L, server.getAttribute(name, "EmptyPollCount"));
+			assertEquals(0L, server.getAttribute(name, "PolledMessageCount"));
+
+			// a poll that receives messages resets the period
+			channel.send(new GenericMessage<String>("foo"));
+			channel.send(new GenericMessage<String>("bar"));
+			poller.getValue().run();
+			assertEquals(100L, server.getAttribute(name, "CurrentPollPeriod"));
+			assertEquals(4L, server.getAttribute(name, "PollCount"));
+			assertEquals(3L, server.getAttribute(name, "EmptyPollCount"));
+			assertEquals(2L, server.getAttribute(name, "PolledMessageCount"));
+
+			poller.getValue().run();
+			assertEquals(200L, server.getAttribute(name, "CurrentPollPeriod"));
+			assertEquals(4L, server.getAttribute(name, "EmptyPollCount"));
+		}
+		finally {
+			exporter.destroy();
+			consumer.stop();
+		}
+	}
+
+	@Test
+	public void notPolling() {
+		EventDrivenConsumer consumer = new EventDrivenConsumer(new DirectChannel(), mock(MessageHandler.class));
+		ManagedEndpoint endpoint = new ManagedEndpoint(consumer);
+		assertEquals(-1, endpoint.getPollCount());
+		assertEquals(-1, endpoint.getCurrentPollPeriod());
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.util.Pool;
+import org.springframework.integration.util.PoolProvider;
+import org.springframework.integration.util.SimplePool;
+
+/**
+ * @since 3.0
+ */
+public class ManagedPoolTests {
+
+	@Test
+	public void simplePoolStatistics() {
+		SimplePool<Object> simplePool = new SimplePool<Object>(4, new SimplePool.PoolItemCallback<Object>() {
+			public Object createForPool() {
+				return new Object();
+			}
+			public boolean isStale(Object item) {
+				return false;
+			}
+			public void removedFromPool(Object item) {
+			}
+		});
+		ManagedPool pool = new ManagedPool(simplePool);
+		Object item = simplePool.getItem();
+		simplePool.getItem();
+		assertEquals(4, pool.getPoolSize());
+		assertEquals(2, pool.getActiveCount());
+		assertEquals(0.5, pool.getUtilization(), 0.0001);
+		assertEquals(2, pool.getCheckoutCount());
+		assertEquals(2, pool.getCreatedCount());
+		simplePool.releaseItem(item);
+		assertEquals(1, pool.getIdleCount());
+		pool.removeAllIdleItems();
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(1, pool.getAllocatedCount());
+	}
+
+	@Test
+	public void otherPool() {
+		Pool<?> delegate = mock(Pool.class);
+		when(delegate.getPoolSize()).thenReturn(3);
+		ManagedPool pool = new ManagedPool(delegate);
+		assertEquals(3, pool.getPoolSize());
+		assertEquals(-1, pool.getCreatedCount());
+		assertEquals(-1, pool.getMeanWaitTime(), 0.0001);
+	}
+
+	@Test
+	public void poolIsExported() throws Exception {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.registerBeanDefinition("pooled", new RootBeanDefinition(TestPoolProvider.class));
+		RootBeanDefinition exporter = new RootBeanDefinition(IntegrationMBeanExporter.class);
+		exporter.getPropertyValues().add("defaultDomain", "test.ManagedPoolTests");
+		context.registerBeanDefinition("exporter", exporter);
+		context.refresh();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("test.ManagedPoolTests:type=Pool,name=pooled");
+			assertEquals(2, server.getAttribute(name, "PoolSize"));
+		}
+		finally {
+			context.close();
+		}
+	}
+
+
+	public static class TestPoolProvider implements PoolProvider {
+
+		private final Pool<?> pool = new SimplePool<String>(2, new SimplePool.PoolItemCallback<String>() {
+			public String createForPool() {
+				return "foo";
+			}
+			public boolean isStale(String item) {
+				return false;
+			}
+			public void removedFromPool(String item) {
+			}
+		});
+
+		public Pool<?> getPool() {
+			return this.pool;
+		}
+	}
+
+}
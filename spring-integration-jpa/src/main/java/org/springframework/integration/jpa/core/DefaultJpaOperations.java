@@ -38,7 +38,7 @@ import org.springframework.util.StringUtils;
  * @since 2.2
  *
  */
-public class DefaultJpaOperations extends AbstractJpaOperations {
+public class DefaultJpaOperations extends AbstractJpaOperations implements FlushableJpaOperations {
 
 	public void delete(Object entity) {
 		Assert.notNull(entity, "The entity must not be null!");
@@ -103,6 +103,10 @@ public class DefaultJpaOperations extends AbstractJpaOperations {
 		return query;
 	}
 
+	public String getEntityName(Class<?> entityClass) {
+		return JpaUtils.getEntityName(entityManager, entityClass);
+	}
+
 	public List<?> getResultListForClass(Class<?> entityClass, int maxNumberOfResults) {
 
 		final String entityName = JpaUtils.getEntityName(entityManager, entityClass);
@@ -179,6 +183,14 @@ public class DefaultJpaOperations extends AbstractJpaOperations {
 		entityManager.persist(entity);
 	}
 
+	public void flush() {
+		entityManager.flush();
+	}
+
+	public void clear() {
+		entityManager.clear();
+	}
+
 	/**
 	 * Given a JPQL query, this method gets all parameters defined in this query and
 	 * use the {@link JPAQLParameterSource} to find their values and set them
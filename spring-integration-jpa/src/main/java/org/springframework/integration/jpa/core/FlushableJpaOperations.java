@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jpa.core;
+
+/**
+ * {@link JpaOperations} that also give control over the persistence context,
+ * as required by the 'flush', 'flushSize' and 'clearOnFlush' options and by
+ * the paging of the {@link JpaExecutor}. Implemented by {@link DefaultJpaOperations}.
+ *
+ * @since 3.0
+ *
+ */
+public interface FlushableJpaOperations extends JpaOperations {
+
+	/**
+	 * Synchronizes the persistence context with the database, executing the
+	 * pending inserts, updates and deletes.
+	 */
+	void flush();
+
+	/**
+	 * Clears the persistence context, detaching all managed entities.
+	 * Changes that have not been flushed are not written to the database.
+	 */
+	void clear();
+
+	/**
+	 * Return the name of the entity class in JPA queries, as defined by the
+	 * metamodel of the persistence unit.
+	 */
+	String getEntityName(Class<?> entityClass);
+
+}
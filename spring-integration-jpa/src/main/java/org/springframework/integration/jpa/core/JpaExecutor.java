@@ -15,12 +15,16 @@
  */
 package org.springframework.integration.jpa.core;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
@@ -30,7 +34,11 @@ import org.springframework.integration.jpa.support.parametersource.BeanPropertyP
 import org.springframework.integration.jpa.support.parametersource.ExpressionEvaluatingParameterSourceFactory;
 import org.springframework.integration.jpa.support.parametersource.ParameterSource;
 import org.springframework.integration.jpa.support.parametersource.ParameterSourceFactory;
+import org.springframework.integration.jpa.support.parametersource.PositionSupportingParameterSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 /**
  * Executes Jpa Operations that produce payload objects from the result of the provided:
@@ -52,6 +60,11 @@ import org.springframework.util.Assert;
  * If neither entityClass nor any other query is specified then the entity-class
  * is "guessed" from the {@link Message} payload.
  *
+ * When a {@link #setPagingKey(String) pagingKey} is set, each {@link #poll()}
+ * retrieves the next page of results (of at most 'maxNumberOfResults' objects)
+ * after the key of the last object retrieved by the previous poll, and the
+ * persistence context is cleared after each page.
+ *
  * @author Gunnar Hillert
  * @author Amol Nayak
  * @since 2.2
@@ -80,6 +93,16 @@ public class JpaExecutor implements InitializingBean {
 
 	private volatile boolean  expectSingleResult = false;
 
+	private volatile String   pagingKey;
+	private volatile Object   lastKey;
+	private final Object      pagingMonitor = new Object();
+	private volatile String   firstPageQuery;
+	private volatile String   nextPageQuery;
+
+	private volatile boolean  flush = false;
+	private volatile int      flushSize = 0;
+	private volatile boolean  clearOnFlush = false;
+
 	/**
 	 * Indicates that whether only the payload of the passed in {@link Message}
 	 * will be used as a source of parameters. The is 'true' by default because as a
@@ -140,6 +163,19 @@ public class JpaExecutor implements InitializingBean {
 	 */
 	public void afterPropertiesSet() {
 
+		if (this.flush || this.flushSize > 0 || this.clearOnFlush || this.pagingKey != null) {
+			Assert.state(this.jpaOperations instanceof FlushableJpaOperations, "The 'flush', 'flushSize', "
+					+ "'clearOnFlush' and 'pagingKey' options require FlushableJpaOperations.");
+		}
+
+		if (this.pagingKey != null && this.jpaQuery == null && this.nativeQuery == null
+				&& this.namedQuery == null && this.entityClass != null) {
+			final String pagedQuery = "select x from "
+					+ ((FlushableJpaOperations) this.jpaOperations).getEntityName(this.entityClass) + " x";
+			this.firstPageQuery = pagedQuery + " order by x." + this.pagingKey;
+			this.nextPageQuery = pagedQuery + " where x." + this.pagingKey + " > :lastKey order by x." + this.pagingKey;
+		}
+
 		if (this.jpaParameters != null) {
 
 			if (this.parameterSourceFactory == null) {
@@ -215,20 +251,25 @@ public class JpaExecutor implements InitializingBean {
 		}
 		else {
 
-			if (PersistMode.PERSIST.equals(this.persistMode)) {
-				this.jpaOperations.persist(message.getPayload());
-				result = message.getPayload();
-			}
-			else if (PersistMode.MERGE.equals(this.persistMode)) {
-				final Object mergedEntity = this.jpaOperations.merge(message.getPayload());
-				result = mergedEntity;
-			}
-			else if (PersistMode.DELETE.equals(this.persistMode)) {
-				this.jpaOperations.delete(message.getPayload());
-				result = message.getPayload();
+			final Object payload = message.getPayload();
+
+			if (payload instanceof Iterable && this.flushSize > 0) {
+				final List<Object> entities = new ArrayList<Object>();
+				int count = 0;
+				for (Object entity : (Iterable<?>) payload) {
+					entities.add(executePersistOperation(entity));
+					if (++count % this.flushSize == 0) {
+						flush();
+					}
+				}
+				if (count % this.flushSize != 0) {
+					flush();
+				}
+				result = PersistMode.MERGE.equals(this.persistMode) ? entities : payload;
 			}
 			else {
-				throw new IllegalStateException(String.format("Unsupported PersistMode: '%s'", this.persistMode.name()));
+				result = executePersistOperation(payload);
+				flushIfRequired();
 			}
 
 		}
@@ -237,6 +278,39 @@ public class JpaExecutor implements InitializingBean {
 
 	}
 
+	private Object executePersistOperation(Object entity) {
+
+		if (PersistMode.PERSIST.equals(this.persistMode)) {
+			this.jpaOperations.persist(entity);
+			return entity;
+		}
+		else if (PersistMode.MERGE.equals(this.persistMode)) {
+			return this.jpaOperations.merge(entity);
+		}
+		else if (PersistMode.DELETE.equals(this.persistMode)) {
+			this.jpaOperations.delete(entity);
+			return entity;
+		}
+		else {
+			throw new IllegalStateException(String.format("Unsupported PersistMode: '%s'", this.persistMode.name()));
+		}
+
+	}
+
+	private void flushIfRequired() {
+		if (this.flush || this.flushSize > 0) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		final FlushableJpaOperations flushableJpaOperations = (FlushableJpaOperations) this.jpaOperations;
+		flushableJpaOperations.flush();
+		if (this.clearOnFlush) {
+			flushableJpaOperations.clear();
+		}
+	}
+
 	/**
 	 * Execute a (typically retrieving) JPA operation. The <i>requestMessage</i>
 	 * can be used to provide additional query parameters using
@@ -254,14 +328,27 @@ public class JpaExecutor implements InitializingBean {
 
 		final List<?> result;
 
+		final ParameterSource parameterSource;
+
 		if (requestMessage == null) {
-			result = doPoll(this.parameterSource);
+			parameterSource = this.parameterSource;
 		}
 		else {
-			ParameterSource parameterSource = determineParameterSource(requestMessage);
+			parameterSource = determineParameterSource(requestMessage);
+		}
+
+		final Object pageKey;
 
+		if (this.pagingKey == null) {
+			pageKey = null;
 			result = doPoll(parameterSource);
 		}
+		else {
+			Assert.state(requestMessage == null, "Paging (see 'pagingKey') is only supported when "
+					+ "polling without a request message, i.e. by the inbound channel adapter.");
+			pageKey = getLastKey();
+			result = doPollPage(parameterSource, pageKey);
+		}
 
 		if (result.isEmpty()) {
 			payload = null;
@@ -304,9 +391,101 @@ public class JpaExecutor implements InitializingBean {
 
 		}
 
+		if (this.pagingKey != null && !result.isEmpty()) {
+			final Object nextKey = getPagingKeyValue(result.get(result.size() - 1));
+			clearPersistenceContext();
+			advancePaging(pageKey, nextKey);
+		}
+
 		return payload;
 	}
 
+	/**
+	 * Retrieve the page of results following the given key.
+	 */
+	private List<?> doPollPage(ParameterSource parameterSource, Object pageKey) {
+
+		final PagingParameterSource pagingParameterSource = new PagingParameterSource(parameterSource, pageKey);
+
+		if (this.firstPageQuery != null) {
+			return this.jpaOperations.getResultListForQuery(pageKey == null ? this.firstPageQuery : this.nextPageQuery,
+					pagingParameterSource, this.maxNumberOfResults);
+		}
+		else {
+			return doPoll(pagingParameterSource);
+		}
+
+	}
+
+	private Object getLastKey() {
+		synchronized (this.pagingMonitor) {
+			return this.lastKey;
+		}
+	}
+
+	/**
+	 * Move on to the page after the given key once the poll has completed, that
+	 * is after the commit when a transaction is active: if the transaction rolls
+	 * back, the same page is retrieved again by the next poll.
+	 */
+	private void advancePaging(final Object pageKey, final Object nextKey) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					setLastKey(pageKey, nextKey);
+				}
+			});
+		}
+		else {
+			setLastKey(pageKey, nextKey);
+		}
+	}
+
+	/**
+	 * Only move on if the paging has not been reset, nor already moved on by
+	 * another poll of the same page, in the meantime.
+	 */
+	private void setLastKey(Object pageKey, Object nextKey) {
+		synchronized (this.pagingMonitor) {
+			if (ObjectUtils.nullSafeEquals(this.lastKey, pageKey)) {
+				this.lastKey = nextKey;
+			}
+		}
+	}
+
+	private Object getPagingKeyValue(Object entity) {
+		final BeanWrapper beanWrapper = new BeanWrapperImpl(entity);
+		if (beanWrapper.isReadableProperty(this.pagingKey)) {
+			return beanWrapper.getPropertyValue(this.pagingKey);
+		}
+		return new DirectFieldAccessor(entity).getPropertyValue(this.pagingKey);
+	}
+
+	/**
+	 * Detach the retrieved entities so that the persistence context does not
+	 * grow with each page. Pending changes are flushed first when a transaction
+	 * is active, so that they are not lost.
+	 */
+	private void clearPersistenceContext() {
+		final FlushableJpaOperations flushableJpaOperations = (FlushableJpaOperations) this.jpaOperations;
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			flushableJpaOperations.flush();
+		}
+		flushableJpaOperations.clear();
+	}
+
+	/**
+	 * Restart the paging (see {@link #setPagingKey(String)}) from the first page.
+	 *
+	 * @since 3.0
+	 */
+	public void resetPaging() {
+		synchronized (this.pagingMonitor) {
+			this.lastKey = null;
+		}
+	}
+
 	private ParameterSource determineParameterSource(final Message<?> requestMessage) {
 		ParameterSource parameterSource;
 		if (usePayloadAsParameterSource) {
@@ -486,6 +665,79 @@ public class JpaExecutor implements InitializingBean {
 		this.expectSingleResult = expectSingleResult;
 	}
 
+	/**
+	 * Enables keyset pagination: each poll retrieves the results after the value
+	 * of this property in the last object retrieved by the previous poll, at most
+	 * 'maxNumberOfResults' of them, and the persistence context is then cleared,
+	 * detaching the retrieved entities. The property must be unique and its values
+	 * must increase as rows are added, as rows with lower values are not retrieved
+	 * once the paging has gone past them (see {@link #resetPaging()}).
+	 *
+	 * With an entityClass, the query is generated, using the entity name defined by
+	 * the metamodel of the persistence unit. A jpaQuery, nativeQuery or
+	 * namedQuery must restrict and order its results by the property itself, using
+	 * the named parameter 'lastKey', e.g.
+	 * <code>select s from Student s where s.rollNumber > :lastKey order by s.rollNumber</code>;
+	 * for the first page, the value of that parameter is obtained from the
+	 * parameter source.
+	 *
+	 * The paging moves on to the next page once the poll has completed and, when
+	 * a transaction is active, only after it has committed, so that a page whose
+	 * processing rolled back is retrieved again. The polls of a given executor
+	 * should therefore not run concurrently, or they may retrieve the same page.
+	 *
+	 * Paging is only supported by {@link #poll()}, i.e. by the inbound channel
+	 * adapter: clearing the persistence context would otherwise detach the
+	 * entities of the caller of an outbound gateway.
+	 *
+	 * @param pagingKey The name of the property of the retrieved objects.
+	 * @since 3.0
+	 */
+	public void setPagingKey(String pagingKey) {
+		Assert.hasText(pagingKey, "pagingKey must neither be null nor empty.");
+		this.pagingKey = pagingKey;
+	}
+
+	/**
+	 * If set to 'true', the persistence context is flushed after each
+	 * persist, merge or delete operation, so that database errors are raised
+	 * by the operation itself rather than when the transaction commits.
+	 *
+	 * @param flush Defaults to 'false'.
+	 * @since 3.0
+	 */
+	public void setFlush(boolean flush) {
+		this.flush = flush;
+	}
+
+	/**
+	 * If set to a value greater than 0 and the payload is an {@link Iterable}
+	 * of entities (e.g. a collection released by an upstream aggregator), each
+	 * entity is persisted, merged or deleted in turn, and the persistence context
+	 * is flushed each time this number of entities has been processed, and
+	 * after the last one. Otherwise, the payload is passed as a whole. This allows the JPA provider to write the entities
+	 * with JDBC batches of a bounded size. Implies 'flush'.
+	 *
+	 * @param flushSize Defaults to 0.
+	 * @since 3.0
+	 */
+	public void setFlushSize(int flushSize) {
+		Assert.isTrue(flushSize >= 0, "flushSize must not be negative.");
+		this.flushSize = flushSize;
+	}
+
+	/**
+	 * If set to 'true', the persistence context is cleared after each flush
+	 * (see 'flush' and 'flushSize'), so that the entities of a large payload
+	 * do not all remain managed until the transaction completes.
+	 *
+	 * @param clearOnFlush Defaults to 'false'.
+	 * @since 3.0
+	 */
+	public void setClearOnFlush(boolean clearOnFlush) {
+		this.clearOnFlush = clearOnFlush;
+	}
+
 	/**
 	 * Set the max number of results to retrieve from the database. Defaults to
 	 * 0, which means that all possible objects shall be retrieved.
@@ -499,4 +751,55 @@ public class JpaExecutor implements InitializingBean {
 		this.maxNumberOfResults = maxNumberOfResults;
 	}
 
+	/**
+	 * Provides the last key for the 'lastKey' parameter of a paging query,
+	 * delegating to the configured parameter source for the other parameters
+	 * and for the first page.
+	 */
+	private static class PagingParameterSource implements PositionSupportingParameterSource {
+
+		private static final String LAST_KEY = "lastKey";
+
+		private final ParameterSource parameterSource;
+
+		private final Object lastKey;
+
+		PagingParameterSource(ParameterSource parameterSource, Object lastKey) {
+			this.parameterSource = parameterSource;
+			this.lastKey = lastKey;
+		}
+
+		public boolean hasValue(String paramName) {
+			if (LAST_KEY.equals(paramName) && this.lastKey != null) {
+				return true;
+			}
+			return this.parameterSource != null && this.parameterSource.hasValue(paramName);
+		}
+
+		public Object getValue(String paramName) {
+			if (LAST_KEY.equals(paramName)) {
+				if (this.lastKey != null) {
+					return this.lastKey;
+				}
+				if (this.parameterSource == null || !this.parameterSource.hasValue(paramName)) {
+					throw new IllegalStateException("No value for the 'lastKey' parameter of the first page: "
+							+ "please provide it as a parameter.");
+				}
+			}
+			if (this.parameterSource == null) {
+				throw new IllegalArgumentException("Query has parameters but no parameter source provided");
+			}
+			return this.parameterSource.getValue(paramName);
+		}
+
+		public Object getValueByPosition(int position) {
+			if (!(this.parameterSource instanceof PositionSupportingParameterSource)) {
+				throw new JpaOperationFailedException("Positional Parameters are only support "
+						+ "for PositionSupportingParameterSources.");
+			}
+			return ((PositionSupportingParameterSource) this.parameterSource).getValueByPosition(position);
+		}
+
+	}
+
 }
@@ -85,6 +85,7 @@ public class JpaInboundChannelAdapterParserTests {
 		assertNotNull(jpaOperations);
 
 		assertEquals(Integer.valueOf(13), TestUtils.getPropertyValue(jpaExecutor, "maxNumberOfResults", Integer.class));
+		assertEquals("rollNumber", TestUtils.getPropertyValue(jpaExecutor, "pagingKey", String.class));
 
 	}
 
@@ -81,6 +81,10 @@ public class JpaMessageHandlerParserTests {
 		assertNotNull(jpaParameters);
 		assertTrue(jpaParameters.size() == 3);
 
+		assertEquals(100, TestUtils.getPropertyValue(jpaExecutor, "flushSize"));
+		assertEquals(Boolean.TRUE, TestUtils.getPropertyValue(jpaExecutor, "clearOnFlush"));
+		assertEquals(Boolean.FALSE, TestUtils.getPropertyValue(jpaExecutor, "flush"));
+
 	}
 
 	@Test
@@ -12,9 +12,18 @@
  */
 package org.springframework.integration.jpa.core;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import javax.persistence.EntityManager;
@@ -23,16 +32,24 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.Message;
 import org.springframework.integration.jpa.support.JpaParameter;
+import org.springframework.integration.jpa.support.PersistMode;
 import org.springframework.integration.jpa.support.parametersource.ExpressionEvaluatingParameterSourceFactory;
+import org.springframework.integration.jpa.support.parametersource.ParameterSource;
 import org.springframework.integration.jpa.test.entity.StudentDomain;
+import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
 /**
  *
@@ -222,4 +239,235 @@ public class JpaExecutorTests {
 
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testPersistIterablePayloadWithFlushSize() throws Exception {
+
+		final FlushableJpaOperations jpaOperations = mock(FlushableJpaOperations.class);
+		final JpaExecutor jpaExecutor = new JpaExecutor(jpaOperations);
+		jpaExecutor.setPersistMode(PersistMode.PERSIST);
+		jpaExecutor.setFlushSize(2);
+		jpaExecutor.setClearOnFlush(true);
+		jpaExecutor.afterPropertiesSet();
+
+		final List<String> entities = Arrays.asList("foo", "bar", "baz");
+		final Object result = jpaExecutor.executeOutboundJpaOperation(new GenericMessage<List<String>>(entities));
+
+		Assert.assertSame(entities, result);
+
+		InOrder inOrder = inOrder(jpaOperations);
+		inOrder.verify(jpaOperations).persist("foo");
+		inOrder.verify(jpaOperations).persist("bar");
+		inOrder.verify(jpaOperations).flush();
+		inOrder.verify(jpaOperations).clear();
+		inOrder.verify(jpaOperations).persist("baz");
+		inOrder.verify(jpaOperations).flush();
+		inOrder.verify(jpaOperations).clear();
+		inOrder.verifyNoMoreInteractions();
+
+	}
+
+	@Test
+	public void testIterablePayloadPassedAsWholeWithoutFlushSize() throws Exception {
+
+		final FlushableJpaOperations jpaOperations = mock(FlushableJpaOperations.class);
+		final JpaExecutor jpaExecutor = new JpaExecutor(jpaOperations);
+		jpaExecutor.setPersistMode(PersistMode.PERSIST);
+		jpaExecutor.setFlush(true);
+		jpaExecutor.afterPropertiesSet();
+
+		final List<String> entities = Arrays.asList("foo", "bar");
+		jpaExecutor.executeOutboundJpaOperation(new GenericMessage<List<String>>(entities));
+
+		InOrder inOrder = inOrder(jpaOperations);
+		inOrder.verify(jpaOperations).persist(entities);
+		inOrder.verify(jpaOperations).flush();
+		inOrder.verifyNoMoreInteractions();
+
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFlushRequiresFlushableJpaOperations() throws Exception {
+
+		final JpaExecutor jpaExecutor = new JpaExecutor(mock(JpaOperations.class));
+		jpaExecutor.setFlush(true);
+		jpaExecutor.afterPropertiesSet();
+
+	}
+
+	@Test
+	public void testFlushAfterMerge() throws Exception {
+
+		final FlushableJpaOperations jpaOperations = mock(FlushableJpaOperations.class);
+		final JpaExecutor jpaExecutor = new JpaExecutor(jpaOperations);
+		jpaExecutor.setFlush(true);
+		jpaExecutor.afterPropertiesSet();
+
+		jpaExecutor.executeOutboundJpaOperation(new GenericMessage<String>("foo"));
+
+		InOrder inOrder = inOrder(jpaOperations);
+		inOrder.verify(jpaOperations).merge("foo");
+		inOrder.verify(jpaOperations).flush();
+		verify(jpaOperations, never()).clear();
+
+	}
+
+	@Test
+	public void testNegativeFlushSize() throws Exception {
+
+		final JpaExecutor jpaExecutor = new JpaExecutor(mock(EntityManager.class));
+
+		try {
+			jpaExecutor.setFlushSize(-1);
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("flushSize must not be negative.", e.getMessage());
+			return;
+		}
+
+		Assert.fail("Was expecting an IllegalArgumentException to be thrown.");
+
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testKeysetPagingWithEntityClass() throws Exception {
+
+		final FlushableJpaOperations jpaOperations = mock(FlushableJpaOperations.class);
+		when(jpaOperations.getEntityName(StudentDomain.class)).thenReturn("Student");
+		final List<StudentDomain> firstPage = Arrays.asList(new StudentDomain().withRollNumber(1L),
+				new StudentDomain().withRollNumber(2L));
+		final List<StudentDomain> secondPage = Arrays.asList(new StudentDomain().withRollNumber(3L));
+		final String firstPageQuery = "select x from Student x order by x.rollNumber";
+		final String nextPageQuery = "select x from Student x where x.rollNumber > :lastKey order by x.rollNumber";
+		final ArgumentCaptor<ParameterSource> parameterSource = ArgumentCaptor.forClass(ParameterSource.class);
+		when(jpaOperations.getResultListForQuery(eq(firstPageQuery), any(ParameterSource.class), eq(2)))
+			.thenReturn((List) firstPage);
+		when(jpaOperations.getResultListForQuery(eq(nextPageQuery), any(ParameterSource.class), eq(2)))
+			.thenReturn((List) secondPage, (List) Collections.emptyList());
+
+		final JpaExecutor jpaExecutor = new JpaExecutor(jpaOperations);
+		jpaExecutor.setEntityClass(StudentDomain.class);
+		jpaExecutor.setMaxNumberOfResults(2);
+		jpaExecutor.setPagingKey("rollNumber");
+		jpaExecutor.afterPropertiesSet();
+
+		Assert.assertEquals(firstPage, jpaExecutor.poll());
+		Assert.assertEquals(secondPage, jpaExecutor.poll());
+		Assert.assertNull(jpaExecutor.poll());
+		Assert.assertNull(jpaExecutor.poll());
+
+		verify(jpaOperations, times(2)).clear();
+		verify(jpaOperations, never()).flush();
+		verify(jpaOperations, times(3)).getResultListForQuery(eq(nextPageQuery),
+				parameterSource.capture(), eq(2));
+		Assert.assertEquals(2L, parameterSource.getAllValues().get(0).getValue("lastKey"));
+		Assert.assertEquals(3L, parameterSource.getAllValues().get(1).getValue("lastKey"));
+		Assert.assertEquals(3L, parameterSource.getAllValues().get(2).getValue("lastKey"));
+
+		jpaExecutor.resetPaging();
+		Assert.assertEquals(firstPage, jpaExecutor.poll());
+
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testKeysetPagingWithQuery() throws Exception {
+
+		final FlushableJpaOperations jpaOperations = mock(FlushableJpaOperations.class);
+		final String query = "select s from Student s where s.rollNumber > :lastKey order by s.rollNumber";
+		final ArgumentCaptor<ParameterSource> parameterSource = ArgumentCaptor.forClass(ParameterSource.class);
+		when(jpaOperations.getResultListForQuery(eq(query), any(ParameterSource.class), eq(10)))
+			.thenReturn((List) Arrays.asList(new StudentDomain().withRollNumber(5L)));
+
+		final JpaExecutor jpaExecutor = new JpaExecutor(jpaOperations);
+		jpaExecutor.setJpaQuery(query);
+		jpaExecutor.setMaxNumberOfResults(10);
+		jpaExecutor.setPagingKey("rollNumber");
+		final ExpressionEvaluatingParameterSourceFactory parameterSourceFactory =
+				new ExpressionEvaluatingParameterSourceFactory();
+		parameterSourceFactory.setParameters(Collections.singletonList(new JpaParameter("lastKey", 0L, null)));
+		jpaExecutor.setParameterSource(parameterSourceFactory.createParameterSource(null));
+		jpaExecutor.afterPropertiesSet();
+
+		jpaExecutor.poll();
+		jpaExecutor.poll();
+
+		verify(jpaOperations, times(2)).getResultListForQuery(eq(query),
+				parameterSource.capture(), eq(10));
+		Assert.assertEquals(0L, parameterSource.getAllValues().get(0).getValue("lastKey"));
+		Assert.assertEquals(5L, parameterSource.getAllValues().get(1).getValue("lastKey"));
+
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void testKeysetPagingMovesOnAfterCommit() throws Exception {
+
+		final FlushableJpaOperations jpaOperations = mock(FlushableJpaOperations.class);
+		when(jpaOperations.getEntityName(StudentDomain.class)).thenReturn("Student");
+		final List<StudentDomain> firstPage = Arrays.asList(new StudentDomain().withRollNumber(1L));
+		final List<StudentDomain> secondPage = Arrays.asList(new StudentDomain().withRollNumber(2L));
+		final String nextPageQuery = "select x from Student x where x.rollNumber > :lastKey order by x.rollNumber";
+		final ArgumentCaptor<ParameterSource> parameterSource = ArgumentCaptor.forClass(ParameterSource.class);
+		when(jpaOperations.getResultListForQuery(eq("select x from Student x order by x.rollNumber"),
+				any(ParameterSource.class), eq(1)))
+			.thenReturn((List) firstPage);
+		when(jpaOperations.getResultListForQuery(eq(nextPageQuery), any(ParameterSource.class), eq(1)))
+			.thenReturn((List) secondPage, (List) Collections.emptyList());
+
+		final JpaExecutor jpaExecutor = new JpaExecutor(jpaOperations);
+		jpaExecutor.setEntityClass(StudentDomain.class);
+		jpaExecutor.setMaxNumberOfResults(1);
+		jpaExecutor.setPagingKey("rollNumber");
+		jpaExecutor.afterPropertiesSet();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			Assert.assertEquals(firstPage, jpaExecutor.poll());
+			Assert.assertEquals(firstPage, jpaExecutor.poll());
+			List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+			Assert.assertEquals(2, synchronizations.size());
+			TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations,
+					TransactionSynchronization.STATUS_ROLLED_BACK);
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		Assert.assertEquals(firstPage, jpaExecutor.poll());
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			Assert.assertEquals(secondPage, jpaExecutor.poll());
+			TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		Assert.assertNull(jpaExecutor.poll());
+
+		verify(jpaOperations, times(2)).getResultListForQuery(eq(nextPageQuery),
+				parameterSource.capture(), eq(1));
+		Assert.assertEquals(1L, parameterSource.getAllValues().get(0).getValue("lastKey"));
+		Assert.assertEquals(2L, parameterSource.getAllValues().get(1).getValue("lastKey"));
+
+	}
+
+	@Test
+	public void testKeysetPagingNotSupportedWithRequestMessage() throws Exception {
+
+		final JpaExecutor jpaExecutor = new JpaExecutor(mock(FlushableJpaOperations.class));
+		jpaExecutor.setEntityClass(StudentDomain.class);
+		jpaExecutor.setPagingKey("rollNumber");
+		jpaExecutor.afterPropertiesSet();
+
+		try {
+			jpaExecutor.poll(MessageBuilder.withPayload("foo").build());
+		}
+		catch (IllegalStateException e) {
+			return;
+		}
+
+		Assert.fail("Was expecting an IllegalStateException to be thrown.");
+
+	}
+
+}
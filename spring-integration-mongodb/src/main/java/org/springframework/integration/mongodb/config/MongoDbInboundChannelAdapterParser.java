@@ -18,6 +18,7 @@ package org.springframework.integration.mongodb.config;
 import org.w3c.dom.Element;
 
 import org.springframework.beans.BeanMetadataElement;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
@@ -26,6 +27,7 @@ import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.integration.config.xml.AbstractPollingInboundChannelAdapterParser;
 import org.springframework.integration.config.xml.IntegrationNamespaceUtils;
 import org.springframework.integration.mongodb.inbound.MongoDbMessageSource;
+import org.springframework.util.StringUtils;
 /**
  * Parser for Mongodb store inbound adapters
  *
@@ -51,9 +53,22 @@ public class MongoDbInboundChannelAdapterParser extends AbstractPollingInboundCh
 
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "entity-class");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "expect-single-result");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "batch-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "tailable");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "metadata-store");
 
-		String beanName = BeanDefinitionReaderUtils.registerWithGeneratedName(
-				builder.getBeanDefinition(), parserContext.getRegistry());
+		// a stable name, as it is part of the key of the position recorded in the MetadataStore
+		String id = element.getAttribute(ID_ATTRIBUTE);
+		String beanName;
+		if (StringUtils.hasText(id)) {
+			beanName = id + ".source";
+			BeanDefinitionReaderUtils.registerBeanDefinition(
+					new BeanDefinitionHolder(builder.getBeanDefinition(), beanName), parserContext.getRegistry());
+		}
+		else {
+			beanName = BeanDefinitionReaderUtils.registerWithGeneratedName(
+					builder.getBeanDefinition(), parserContext.getRegistry());
+		}
 		return new RuntimeBeanReference(beanName);
 	}
 }
@@ -21,7 +21,11 @@ import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.integration.config.xml.AbstractOutboundChannelAdapterParser;
+import org.springframework.integration.config.xml.IntegrationNamespaceUtils;
 import org.springframework.integration.mongodb.outbound.MongoDbStoringMessageHandler;
+import org.springframework.util.StringUtils;
+
+import com.mongodb.WriteConcern;
 /**
  * Parser for Mongodb store outbound adapters
  *
@@ -38,6 +42,21 @@ public class MongoDbOutboundChannelAdapterParser extends AbstractOutboundChannel
 		// 'collection-name', 'collection-name-expression' and 'mongo-converter'
 		MongoParserUtils.processCommonAttributes(element, parserContext, builder);
 
+		String writeConcern = element.getAttribute("write-concern");
+		if (StringUtils.hasText(writeConcern)) {
+			if (StringUtils.hasText(element.getAttribute("mongo-template"))) {
+				parserContext.getReaderContext().error("'write-concern' is not allowed with 'mongo-template'",
+						element);
+			}
+			BeanDefinitionBuilder writeConcernBuilder = BeanDefinitionBuilder.genericBeanDefinition(WriteConcern.class)
+					.setFactoryMethod("valueOf")
+					.addConstructorArgValue(writeConcern);
+			builder.addPropertyValue("writeConcern", writeConcernBuilder.getBeanDefinition());
+		}
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "batch-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "flush-interval");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "error-channel");
+
 		return builder.getBeanDefinition();
 	}
 }
\ No newline at end of file
@@ -15,8 +15,14 @@
  */
 package org.springframework.integration.mongodb.inbound;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.bson.types.ObjectId;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
@@ -27,16 +33,25 @@ import org.springframework.expression.Expression;
 import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.Message;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageSource;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.mongodb.support.MongoHeaders;
+import org.springframework.integration.store.MetadataStore;
+import org.springframework.integration.store.SimpleMetadataStore;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.transaction.IntegrationResourceHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 
 /**
@@ -52,6 +67,15 @@ import com.mongodb.DBObject;
  * When expectSingleResult is true, the {@link MongoOperations#findOne(Query, Class)} is
  * used instead, and the message payload will be the single object returned from the
  * query.
+ * <p>
+ * With a {@link #setBatchSize(int) batchSize} greater than 0, the results are streamed instead: the
+ * query is executed once and its cursor is kept open across calls to {@link #receive()}, each of which
+ * returns a {@link List} of at most 'batchSize' results (or the result itself when 'batchSize' is 1).
+ * The '_id' of the last result is recorded in a {@link MetadataStore}; once the cursor is exhausted,
+ * the next call executes the query again for the documents whose '_id' is greater, so only new documents
+ * are read. When the poll is transactional, the '_id' is only recorded once the transaction has committed;
+ * if it rolls back, the cursor is closed and the batch is read again by the next call. With {@link #setTailable(boolean) tailable}, the cursor is a tailable cursor on a capped
+ * collection, which stays open when it reaches the end of the collection.
  *
  * @author Amol Nayak
  * @author Oleg Zhurakousky
@@ -59,7 +83,7 @@ import com.mongodb.DBObject;
  * @since 2.2
  */
 public class MongoDbMessageSource extends IntegrationObjectSupport
-				implements MessageSource<Object> {
+				implements MessageSource<Object>, DisposableBean {
 
 	private final Expression queryExpression;
 
@@ -79,6 +103,26 @@ public class MongoDbMessageSource extends IntegrationObjectSupport
 
 	private volatile boolean expectSingleResult = false;
 
+	private volatile int batchSize;
+
+	private volatile boolean tailable;
+
+	private volatile MetadataStore metadataStore;
+
+	private volatile String metadataKey;
+
+	private final Object cursorMonitor = new Object();
+
+	private DBCursor cursor;
+
+	private String cursorCollectionName;
+
+	private Object lastId;
+
+	private Object readId;
+
+	private volatile boolean unsupportedIdTypeLogged;
+
 	/**
 	 * Creates an instance with the provided {@link MongoDbFactory} and SpEL expression
 	 * which should resolve to a MongoDb 'query' string
@@ -166,6 +210,52 @@ public class MongoDbMessageSource extends IntegrationObjectSupport
 		this.mongoConverter = mongoConverter;
 	}
 
+	/**
+	 * Set the maximum number of results of each message, streaming the results through a cursor kept open
+	 * across calls to {@link #receive()}. With a 'batchSize' of 1, the payload is the result itself rather
+	 * than a {@link List}. Default is 0: the payload contains all results of the query, which is executed on
+	 * every call to {@link #receive()}.
+	 *
+	 * @param batchSize
+	 * @since 3.0
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize >= 0, "'batchSize' must not be negative");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Allows you to tail a capped collection: the streaming cursor (see {@link #setBatchSize(int)}) is
+	 * opened as a tailable cursor, in natural order, and remains open when it reaches the end of the
+	 * collection, so that documents inserted later are returned by subsequent calls to {@link #receive()}.
+	 * Requires a 'batchSize'. Default is 'false'.
+	 *
+	 * @param tailable
+	 * @since 3.0
+	 */
+	public void setTailable(boolean tailable) {
+		this.tailable = tailable;
+	}
+
+	/**
+	 * Sets the {@link MetadataStore} in which the '_id' of the last streamed result is recorded (see
+	 * {@link #setBatchSize(int)}). By default, the 'metadataStore' bean of the context is used, or an
+	 * in-memory store if there is none. Only {@link ObjectId}, String, Integer and Long ids are recorded;
+	 * for other types, the position is only kept in memory.
+	 *
+	 * @param metadataStore
+	 * @since 3.0
+	 */
+	public void setMetadataStore(MetadataStore metadataStore) {
+		Assert.notNull(metadataStore, "'metadataStore' must not be null");
+		this.metadataStore = metadataStore;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "mongo:inbound-channel-adapter";
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		if (this.getBeanFactory() != null){
@@ -179,9 +269,70 @@ public class MongoDbMessageSource extends IntegrationObjectSupport
 		if (this.mongoTemplate == null){
 			this.mongoTemplate = new MongoTemplate(this.mongoDbFactory, this.mongoConverter);
 		}
+		Assert.isTrue(!this.tailable || this.batchSize > 0, "'tailable' requires a 'batchSize'");
+		Assert.isTrue(!this.expectSingleResult || this.batchSize == 0,
+				"'expectSingleResult' can not be combined with a 'batchSize'");
+		if (this.batchSize > 0) {
+			this.initMetadata();
+		}
 		this.initialized = true;
 	}
 
+	private void initMetadata() {
+		if (this.metadataStore == null) {
+			BeanFactory beanFactory = this.getBeanFactory();
+			if (beanFactory != null) {
+				this.metadataStore = IntegrationContextUtils.getMetadataStore(beanFactory);
+			}
+			if (this.metadataStore == null) {
+				this.metadataStore = new SimpleMetadataStore();
+			}
+		}
+		StringBuilder metadataKeyBuilder = new StringBuilder(this.getComponentType());
+		if (StringUtils.hasText(this.getComponentName())) {
+			metadataKeyBuilder.append("." + this.getComponentName());
+		}
+		else if (logger.isWarnEnabled()) {
+			logger.warn("MongoDbMessageSource has no name. MetadataStore key might not be unique.");
+		}
+		this.metadataKey = metadataKeyBuilder.toString();
+		String lastIdValue = this.metadataStore.get(this.metadataKey);
+		if (StringUtils.hasText(lastIdValue)) {
+			this.lastId = decodeId(lastIdValue);
+		}
+	}
+
+	/**
+	 * Encodes the id with its type, so that it is restored as the same type.
+	 * @return the encoded id, or null if ids of that type are not supported.
+	 */
+	static String encodeId(Object id) {
+		if (id instanceof ObjectId || id instanceof String || id instanceof Integer || id instanceof Long) {
+			return id.getClass().getSimpleName() + ":" + id;
+		}
+		return null;
+	}
+
+	static Object decodeId(String value) {
+		int index = value.indexOf(':');
+		Assert.isTrue(index > 0, "Invalid '_id' value in the MetadataStore: " + value);
+		String type = value.substring(0, index);
+		String id = value.substring(index + 1);
+		if ("ObjectId".equals(type)) {
+			return new ObjectId(id);
+		}
+		else if ("String".equals(type)) {
+			return id;
+		}
+		else if ("Integer".equals(type)) {
+			return Integer.valueOf(id);
+		}
+		else if ("Long".equals(type)) {
+			return Long.valueOf(id);
+		}
+		throw new IllegalArgumentException("Unsupported '_id' type in the MetadataStore: " + value);
+	}
+
 	/**
 	 * Will execute a {@link Query} returning its results as the Message payload.
 	 * The payload can be either {@link List} of elements of objects of type
@@ -189,31 +340,37 @@ public class MongoDbMessageSource extends IntegrationObjectSupport
 	 * based on the value of {{@link #expectSingleResult} attribute which defaults to 'false' resulting
 	 * {@link Message} with payload of type {@link List}. The collection name used in the
 	 * query will be provided in the {@link MongoHeaders#COLLECTION_NAME} header.
+	 * With a 'batchSize', the next batch of results of the streaming cursor is returned instead.
 	 */
 	public Message<Object> receive() {
 		Assert.isTrue(this.initialized, "This class is not yet initialized. Invoke its afterPropertiesSet() method");
 		Message<Object> message = null;
-		Query query = new BasicQuery(this.queryExpression.getValue(this.evaluationContext, String.class));
-		Assert.notNull(query, "'queryExpression' must not evaluate to null");
-		String collectionName = this.collectionNameExpression.getValue(this.evaluationContext, String.class);
-		Assert.notNull(collectionName, "'collectionNameExpression' must not evaluate to null");
-
-		Object result = null;
-		if (this.expectSingleResult){
-			result = this.mongoTemplate.
-					findOne(query, this.entityClass, collectionName);
+		if (this.batchSize > 0) {
+			message = this.receiveFromCursor();
 		}
 		else {
-			List<?> results = this.mongoTemplate.
-					find(query, this.entityClass, collectionName);
-			if (!CollectionUtils.isEmpty(results)){
-				result = results;
+			Query query = new BasicQuery(this.queryExpression.getValue(this.evaluationContext, String.class));
+			Assert.notNull(query, "'queryExpression' must not evaluate to null");
+			String collectionName = this.collectionNameExpression.getValue(this.evaluationContext, String.class);
+			Assert.notNull(collectionName, "'collectionNameExpression' must not evaluate to null");
+
+			Object result = null;
+			if (this.expectSingleResult){
+				result = this.mongoTemplate.
+						findOne(query, this.entityClass, collectionName);
+			}
+			else {
+				List<?> results = this.mongoTemplate.
+						find(query, this.entityClass, collectionName);
+				if (!CollectionUtils.isEmpty(results)){
+					result = results;
+				}
+			}
+			if (result != null){
+				message = MessageBuilder.withPayload(result)
+						.setHeader(MongoHeaders.COLLECTION_NAME, collectionName)
+						.build();
 			}
-		}
-		if (result != null){
-			message = MessageBuilder.withPayload(result)
-					.setHeader(MongoHeaders.COLLECTION_NAME, collectionName)
-					.build();
 		}
 
 		Object holder = TransactionSynchronizationManager.getResource(this);
@@ -224,4 +381,154 @@ public class MongoDbMessageSource extends IntegrationObjectSupport
 
 		return message;
 	}
+
+	/**
+	 * Closes the streaming cursor, if any.
+	 */
+	public void destroy() {
+		synchronized (this.cursorMonitor) {
+			this.closeCursor();
+		}
+	}
+
+	private Message<Object> receiveFromCursor() {
+		Object startId;
+		Object lastId = null;
+		Message<Object> message;
+		synchronized (this.cursorMonitor) {
+			if (this.cursor == null) {
+				this.openCursor();
+			}
+			startId = this.readId;
+			List<Object> results = new ArrayList<Object>(this.batchSize);
+			try {
+				while (results.size() < this.batchSize && this.cursor.hasNext()) {
+					DBObject document = this.cursor.next();
+					lastId = document.get("_id");
+					results.add(this.read(document));
+				}
+			}
+			catch (RuntimeException e) {
+				// the query is executed again from the last returned result by the next call
+				this.closeCursor();
+				throw e;
+			}
+			String collectionName = this.cursorCollectionName;
+			if (this.tailable ? this.cursor.getCursorId() == 0 : results.size() < this.batchSize) {
+				// exhausted (or, when tailable, dead because the collection was empty)
+				this.closeCursor();
+			}
+			if (results.isEmpty()) {
+				return null;
+			}
+			if (lastId != null) {
+				this.readId = lastId;
+			}
+			Object payload = (this.batchSize == 1) ? results.get(0) : results;
+			message = MessageBuilder.withPayload(payload)
+					.setHeader(MongoHeaders.COLLECTION_NAME, collectionName)
+					.build();
+		}
+		if (lastId != null) {
+			this.advance(startId, lastId);
+		}
+		return message;
+	}
+
+	/**
+	 * Records the position once the transaction, if any, has committed; if it rolls back,
+	 * the cursor is closed so that the batch is read again from the recorded position.
+	 */
+	private void advance(final Object startId, final Object lastId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status == STATUS_COMMITTED) {
+						commitPosition(startId, lastId);
+					}
+					else {
+						rollbackPosition(startId);
+					}
+				}
+			});
+		}
+		else {
+			this.commitPosition(startId, lastId);
+		}
+	}
+
+	private void commitPosition(Object startId, Object lastId) {
+		synchronized (this.cursorMonitor) {
+			// ignore a batch that was read again after another batch rolled back
+			if (ObjectUtils.nullSafeEquals(this.lastId, startId)) {
+				this.lastId = lastId;
+				String value = encodeId(lastId);
+				if (value != null) {
+					this.metadataStore.put(this.metadataKey, value);
+				}
+				else if (!this.unsupportedIdTypeLogged && logger.isWarnEnabled()) {
+					this.unsupportedIdTypeLogged = true;
+					logger.warn("'_id' of type " + lastId.getClass().getName() + " can not be recorded in the "
+							+ "MetadataStore; the position is only kept in memory.");
+				}
+			}
+		}
+	}
+
+	private void rollbackPosition(Object startId) {
+		synchronized (this.cursorMonitor) {
+			if (ObjectUtils.nullSafeEquals(this.lastId, startId)) {
+				this.closeCursor();
+			}
+		}
+	}
+
+	/**
+	 * Must be called while holding the cursor monitor.
+	 */
+	private void openCursor() {
+		String queryString = this.queryExpression.getValue(this.evaluationContext, String.class);
+		Assert.notNull(queryString, "'queryExpression' must not evaluate to null");
+		String collectionName = this.collectionNameExpression.getValue(this.evaluationContext, String.class);
+		Assert.notNull(collectionName, "'collectionNameExpression' must not evaluate to null");
+		DBObject query = new BasicQuery(queryString).getQueryObject();
+		if (this.lastId != null) {
+			query = new BasicDBObject("$and",
+					Arrays.asList(query, new BasicDBObject("_id", new BasicDBObject("$gt", this.lastId))));
+		}
+		DBCursor cursor = this.mongoTemplate.getCollection(collectionName).find(query);
+		if (this.tailable) {
+			cursor.addOption(Bytes.QUERYOPTION_TAILABLE);
+		}
+		else {
+			cursor.sort(new BasicDBObject("_id", 1));
+		}
+		cursor.batchSize(this.batchSize);
+		this.cursor = cursor;
+		this.readId = this.lastId;
+		this.cursorCollectionName = collectionName;
+	}
+
+	/**
+	 * Must be called while holding the cursor monitor.
+	 */
+	private void closeCursor() {
+		if (this.cursor != null) {
+			try {
+				this.cursor.close();
+			}
+			catch (RuntimeException e) {
+				logger.warn("Failed to close the cursor", e);
+			}
+			this.cursor = null;
+		}
+	}
+
+	private Object read(DBObject document) {
+		if (this.entityClass.isInstance(document)) {
+			return document;
+		}
+		return this.mongoTemplate.getConverter().read(this.entityClass, document);
+	}
 }
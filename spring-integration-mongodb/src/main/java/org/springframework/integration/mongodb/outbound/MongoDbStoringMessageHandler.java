@@ -15,28 +15,62 @@
  */
 package org.springframework.integration.mongodb.outbound;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.types.ObjectId;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.convert.ConversionService;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mapping.PersistentEntity;
+import org.springframework.data.mapping.model.BeanWrapper;
 import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.expression.Expression;
 import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.integration.handler.MessageBatcher;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
+
+import com.mongodb.DBObject;
+import com.mongodb.WriteConcern;
 /**
  * Implementation of {@link MessageHandler} which writes Message payload into a MongoDb collection
  * identified by evaluation of the {@link #collectionNameExpression}.
+ * <p/>
+ * With a {@link #setBatchSize(int) batchSize} greater than 1, messages are buffered and their payloads are written
+ * with a bulk insert per collection once the batch is full or the {@link #setFlushInterval(long) flushInterval} has
+ * elapsed. The collection name is evaluated when the message is handled. Batches are written by a task on the
+ * 'taskScheduler', not by the sender's thread, and the messages still buffered are written when this handler is
+ * destroyed. Payloads that have an id property are given an id before the bulk insert, if they have none yet, and
+ * the payloads of a failed bulk insert are then saved one by one, so that, as without batching, a payload whose id
+ * already exists replaces the existing document, and a payload that was already inserted is not inserted again.
  *
  * @author Amol Nayak
  * @author Oleg Zhurakousky
  * @since 2.2
  *
  */
-public class MongoDbStoringMessageHandler extends AbstractMessageHandler {
+public class MongoDbStoringMessageHandler extends AbstractMessageHandler implements DisposableBean {
+
+	private static final String ID_FIELD = "_id";
 
 	private volatile MongoOperations mongoTemplate;
 
@@ -50,6 +84,14 @@ public class MongoDbStoringMessageHandler extends AbstractMessageHandler {
 
 	private volatile boolean initialized = false;
 
+	private volatile WriteConcern writeConcern;
+
+	private final MessageBatcher batcher = new MessageBatcher(new MessageBatcher.BatchHandler() {
+		public void handleBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+			writeBatch(messages, failures);
+		}
+	});
+
 	/**
 	 * Will construct this instance using provided {@link MongoDbFactory}
 	 *
@@ -97,6 +139,79 @@ public class MongoDbStoringMessageHandler extends AbstractMessageHandler {
 		this.collectionNameExpression = collectionNameExpression;
 	}
 
+	/**
+	 * Set the {@link WriteConcern} of the writes. Only allowed if this instance was constructed with a
+	 * {@link MongoDbFactory}. Failed writes (and therefore failed batches) are only detected with a write
+	 * concern that waits for the server's acknowledgement, such as {@link WriteConcern#SAFE}.
+	 *
+	 * @param writeConcern
+	 * @since 3.0
+	 */
+	public void setWriteConcern(WriteConcern writeConcern) {
+		Assert.isNull(this.mongoTemplate,
+				"'writeConcern' can not be set when instance was constructed with MongoTemplate");
+		this.writeConcern = writeConcern;
+	}
+
+	/**
+	 * Set the number of messages whose payloads are written as one batch, with a bulk insert per collection.
+	 * Default is 1: each payload is saved when its message is handled, within the sender's thread.
+	 *
+	 * @param batchSize
+	 * @since 3.0
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batcher.setBatchSize(batchSize);
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a payload waits for its batch to be written (see 'batchSize'). A partial
+	 * batch is written when a message arrives after the interval has elapsed since the last write, and by a task on
+	 * the 'taskScheduler' that runs at that interval. By default (0), partial batches are only written by
+	 * {@link #flush()} and when this handler is destroyed.
+	 *
+	 * @param flushInterval
+	 * @since 3.0
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.batcher.setFlushInterval(flushInterval);
+	}
+
+	/**
+	 * Set the maximum number of messages buffered for batches (see 'batchSize'); once it is reached, senders wait
+	 * up to 30 seconds until a batch has been taken for writing. By default, ten batches are buffered.
+	 *
+	 * @param capacity
+	 * @since 3.0
+	 */
+	public void setBatchCapacity(int capacity) {
+		this.batcher.setCapacity(capacity);
+	}
+
+	/**
+	 * Set the channel to which an {@link ErrorMessage} is sent for each message whose payload could not be written
+	 * within a batch, its payload being a {@link MessageHandlingException} with the failed message. By default, the
+	 * failures are logged: the senders of the failed messages have already returned. Only {@link #flush()} throws the
+	 * exception for the first failed message.
+	 *
+	 * @param errorChannel
+	 * @since 3.0
+	 */
+	public void setErrorChannel(MessageChannel errorChannel) {
+		this.batcher.setErrorChannel(errorChannel);
+	}
+
+	/**
+	 * Set the scheduler that runs the periodic flush (see 'flushInterval'); the batches themselves are written by
+	 * a dedicated writer thread. By default, the 'taskScheduler' bean is used.
+	 *
+	 * @since 3.0
+	 */
+	@Override // super class is protected
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		super.setTaskScheduler(taskScheduler);
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		if (this.getBeanFactory() != null) {
@@ -107,7 +222,15 @@ public class MongoDbStoringMessageHandler extends AbstractMessageHandler {
 			this.evaluationContext = ExpressionUtils.createStandardEvaluationContext();
 		}
 		if (this.mongoTemplate == null){
-			this.mongoTemplate = new MongoTemplate(this.mongoDbFactory, this.mongoConverter);
+			MongoTemplate mongoTemplate = new MongoTemplate(this.mongoDbFactory, this.mongoConverter);
+			if (this.writeConcern != null) {
+				mongoTemplate.setWriteConcern(this.writeConcern);
+			}
+			this.mongoTemplate = mongoTemplate;
+		}
+		if (this.batcher.getBatchSize() > 1) {
+			this.batcher.setTaskScheduler(this.getTaskScheduler());
+			this.batcher.afterPropertiesSet();
 		}
 		this.initialized = true;
 	}
@@ -115,11 +238,168 @@ public class MongoDbStoringMessageHandler extends AbstractMessageHandler {
 	@Override
 	protected void handleMessageInternal(Message<?> message) throws Exception {
 		Assert.isTrue(this.initialized, "This class is not yet initialized. Invoke its afterPropertiesSet() method");
-		String collectionName = this.collectionNameExpression.getValue(this.evaluationContext, message, String.class);
-		Assert.notNull(collectionName, "'collectionNameExpression' must not evaluate to null");
+
+		String collectionName = this.getCollectionName(message);
+
+		if (this.batcher.getBatchSize() > 1) {
+			this.batcher.add(new CollectionMessage(message, collectionName));
+			return;
+		}
 
 		Object payload = message.getPayload();
 
 		this.mongoTemplate.save(payload, collectionName);
 	}
+
+	/**
+	 * Write the payloads of the buffered messages, on the calling thread. Without an error channel, the exception
+	 * for the first failed message is thrown.
+	 *
+	 * @since 3.0
+	 */
+	public void flush() {
+		this.batcher.flush();
+	}
+
+	public void destroy() {
+		if (this.initialized) {
+			this.batcher.destroy();
+		}
+	}
+
+	private String getCollectionName(Message<?> message) {
+		String collectionName = this.collectionNameExpression.getValue(this.evaluationContext, message, String.class);
+		Assert.notNull(collectionName, "'collectionNameExpression' must not evaluate to null");
+		return collectionName;
+	}
+
+	/**
+	 * Write the payloads of a batch with a bulk insert per collection. A bulk insert stops at the first payload
+	 * that fails, for instance because a document with its id already exists, without reporting which payloads
+	 * were inserted: the payloads of a failed insert are then saved one by one, as without batching, so that
+	 * existing documents are replaced and only the messages whose own save fails are failed. This is only safe for
+	 * payloads with an id, which are given one before the insert if necessary; the others may or may not have been
+	 * inserted, so they are failed rather than saved again.
+	 */
+	private void writeBatch(List<Message<?>> messages, List<MessageHandlingException> failures) {
+		Map<String, List<CollectionMessage>> batches = new LinkedHashMap<String, List<CollectionMessage>>();
+		for (Message<?> message : messages) {
+			CollectionMessage collectionMessage = (CollectionMessage) message;
+			List<CollectionMessage> batch = batches.get(collectionMessage.collectionName);
+			if (batch == null) {
+				batch = new ArrayList<CollectionMessage>();
+				batches.put(collectionMessage.collectionName, batch);
+			}
+			batch.add(collectionMessage);
+		}
+		for (Map.Entry<String, List<CollectionMessage>> batch : batches.entrySet()) {
+			List<Object> payloads = new ArrayList<Object>(batch.getValue().size());
+			Set<CollectionMessage> withoutId = new HashSet<CollectionMessage>();
+			for (CollectionMessage message : batch.getValue()) {
+				payloads.add(message.getPayload());
+				boolean identified;
+				try {
+					identified = this.assignIdIfNecessary(message.getPayload());
+				}
+				catch (RuntimeException e) {
+					identified = false;
+				}
+				if (!identified) {
+					withoutId.add(message);
+				}
+			}
+			try {
+				this.mongoTemplate.insert(payloads, batch.getKey());
+			}
+			catch (RuntimeException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Bulk insert into collection '" + batch.getKey()
+							+ "' failed, saving its payloads one by one", e);
+				}
+				this.saveEach(batch.getValue(), withoutId, batch.getKey(), e, failures);
+			}
+		}
+	}
+
+	private void saveEach(List<CollectionMessage> messages, Set<CollectionMessage> withoutId, String collectionName,
+			RuntimeException insertFailure, List<MessageHandlingException> failures) {
+		for (CollectionMessage message : messages) {
+			if (withoutId.contains(message)) {
+				failures.add(new MessageHandlingException(message.message, "The bulk insert into collection '"
+						+ collectionName + "' failed and the payload has no id, so it may or may not have been inserted",
+						insertFailure));
+				continue;
+			}
+			try {
+				this.mongoTemplate.save(message.getPayload(), collectionName);
+			}
+			catch (RuntimeException e) {
+				failures.add(new MessageHandlingException(message.message,
+						"Failed to save the payload into collection '" + collectionName + "'", e));
+			}
+		}
+	}
+
+	/**
+	 * Give the payload an id, as a save would, if it has an id property (or is a {@link DBObject}) without a value.
+	 * @return false if the payload has no id.
+	 */
+	private boolean assignIdIfNecessary(Object payload) {
+		if (payload instanceof DBObject) {
+			DBObject dbObject = (DBObject) payload;
+			if (!dbObject.containsField(ID_FIELD)) {
+				dbObject.put(ID_FIELD, new ObjectId());
+			}
+			return true;
+		}
+		MongoConverter converter = this.mongoTemplate.getConverter();
+		if (converter == null) {
+			return false;
+		}
+		MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(payload.getClass());
+		MongoPersistentProperty idProperty = (entity != null) ? entity.getIdProperty() : null;
+		if (idProperty == null) {
+			return false;
+		}
+		ConversionService conversionService = converter.getConversionService();
+		BeanWrapper<PersistentEntity<Object, ?>, Object> wrapper = BeanWrapper.create(payload, conversionService);
+		Object id = wrapper.getProperty(idProperty, idProperty.getType(), true);
+		if (id != null) {
+			return true;
+		}
+		if (!conversionService.canConvert(ObjectId.class, idProperty.getType())) {
+			return false;
+		}
+		wrapper.setProperty(idProperty, conversionService.convert(new ObjectId(), idProperty.getType()));
+		return true;
+	}
+
+
+	/**
+	 * A buffered message with the collection name evaluated when it was handled.
+	 */
+	private static class CollectionMessage implements Message<Object> {
+
+		private final Message<?> message;
+
+		private final String collectionName;
+
+		CollectionMessage(Message<?> message, String collectionName) {
+			this.message = message;
+			this.collectionName = collectionName;
+		}
+
+		public MessageHeaders getHeaders() {
+			return this.message.getHeaders();
+		}
+
+		public Object getPayload() {
+			return this.message.getPayload();
+		}
+
+		@Override
+		public String toString() {
+			return this.message.toString();
+		}
+	}
 }
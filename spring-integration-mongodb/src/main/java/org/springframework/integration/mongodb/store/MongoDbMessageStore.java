@@ -40,9 +40,11 @@ import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.CustomConversions;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Order;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.integration.Message;
@@ -57,7 +59,6 @@ import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import com.mongodb.BasicDBList;
@@ -67,6 +68,9 @@ import com.mongodb.DBObject;
 /**
  * An implementation of both the {@link MessageStore} and {@link MessageGroupStore}
  * strategies that relies upon MongoDB for persistence.
+ * <p>
+ * On first use the store ensures an index on the message id and a compound index on the group id and
+ * creation date, so that group operations only touch the documents of the affected group.
  *
  * @author Mark Fisher
  * @author Oleg Zhurakousky
@@ -91,6 +95,8 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 
 	private final static String CREATED_DATE = "_createdDate";
 
+	private final static String MESSAGE_ID_KEY = "headers.id._value";
+
 
 	private final MongoTemplate template;
 
@@ -98,6 +104,8 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 
 	private volatile ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
 
+	private volatile boolean indexesEnsured;
+
 
 	/**
 	 * Create a MongoDbMessageStore using the provided {@link MongoDbFactory}.and the default collection name.
@@ -125,12 +133,14 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 
 	public <T> Message<T> addMessage(Message<T> message) {
 		Assert.notNull(message, "'message' must not be null");
+		this.ensureIndexes();
 		this.template.insert(new MessageWrapper(message), this.collectionName);
 		return message;
 	}
 
 	public Message<?> getMessage(UUID id) {
 		Assert.notNull(id, "'id' must not be null");
+		this.ensureIndexes();
 		MessageWrapper messageWrapper = this.template.findOne(whereMessageIdIs(id), MessageWrapper.class, this.collectionName);
 		return (messageWrapper != null) ? messageWrapper.getMessage() : null;
 	}
@@ -142,12 +152,14 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 
 	public Message<?> removeMessage(UUID id) {
 		Assert.notNull(id, "'id' must not be null");
+		this.ensureIndexes();
 		MessageWrapper messageWrapper =  this.template.findAndRemove(whereMessageIdIs(id), MessageWrapper.class, this.collectionName);
 		return (messageWrapper != null) ? messageWrapper.getMessage() : null;
 	}
 
 	public MessageGroup getMessageGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
+		this.ensureIndexes();
 		List<MessageWrapper> messageWrappers = this.template.find(whereGroupIdIs(groupId), MessageWrapper.class, this.collectionName);
 		List<Message<?>> messages = new ArrayList<Message<?>>();
 		long timestamp = 0;
@@ -211,22 +223,46 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 	}
 
 	public void removeMessageGroup(Object groupId) {
-		List<MessageWrapper> messageWrappers = this.template.find(whereGroupIdIs(groupId), MessageWrapper.class, this.collectionName);
-		for (MessageWrapper messageWrapper : messageWrappers) {
-			this.removeMessageFromGroup(groupId, messageWrapper.getMessage());
-		}
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.ensureIndexes();
+		this.template.remove(new Query(where(GROUP_ID_KEY).is(groupId)), this.collectionName);
 	}
 
+	/**
+	 * Returns an iterator over the groups of the store. Only the distinct group ids are retrieved up front;
+	 * each group is retrieved when the iterator reaches it.
+	 */
 	public Iterator<MessageGroup> iterator() {
-		List<MessageWrapper> groupedMessages = this.template.find(whereGroupIdExists(), MessageWrapper.class, this.collectionName);
-		Map<Object, MessageGroup> messageGroups = new HashMap<Object, MessageGroup>();
-		for (MessageWrapper groupedMessage : groupedMessages) {
-			Object groupId = groupedMessage.get_GroupId();
-			if (!messageGroups.containsKey(groupId)) {
-				messageGroups.put(groupId, this.getMessageGroup(groupId));
+		final Iterator<?> groupIds = this.getGroupIds().iterator();
+		return new Iterator<MessageGroup>() {
+
+			public boolean hasNext() {
+				return groupIds.hasNext();
 			}
-		}
-		return messageGroups.values().iterator();
+
+			public MessageGroup next() {
+				return getMessageGroup(groupIds.next());
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		return this.getGroupIds().size();
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageCountForAllMessageGroups() {
+		this.ensureIndexes();
+		long count = this.template.count(whereGroupIdExists(), this.collectionName);
+		Assert.isTrue(count <= Integer.MAX_VALUE, "Message count is out of Integer's range");
+		return (int) count;
 	}
 
 	public void completeGroup(Object groupId) {
@@ -245,18 +281,14 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 
 	public Message<?> pollMessageFromGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		List<MessageWrapper> messageWrappers = this.template.find(whereGroupIdIsOrdered(groupId), MessageWrapper.class, this.collectionName);
-		Message<?> message = null;
-
-		if (!CollectionUtils.isEmpty(messageWrappers)){
-			message = messageWrappers.get(0).getMessage();
-			this.removeMessageFromGroup(groupId, message);
-		}
+		this.ensureIndexes();
+		MessageWrapper messageWrapper = this.template.findAndRemove(whereGroupIdIsOrdered(groupId), MessageWrapper.class, this.collectionName);
 		this.updateGroup(groupId);
-		return message;
+		return (messageWrapper != null) ? messageWrapper.getMessage() : null;
 	}
 
 	public int messageGroupSize(Object groupId) {
+		this.ensureIndexes();
 		long lCount = this.template.count(new Query(where(GROUP_ID_KEY).is(groupId)), this.collectionName);
 		Assert.isTrue(lCount <= Integer.MAX_VALUE, "Message count is out of Integer's range");
 		return (int) lCount;
@@ -267,7 +299,7 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 	 */
 
 	private static Query whereMessageIdIs(UUID id) {
-		return new Query(where("headers.id._value").is(id.toString()));
+		return new Query(where(MESSAGE_ID_KEY).is(id.toString()));
 	}
 
 	private static Query whereGroupIdIs(Object groupId) {
@@ -286,6 +318,23 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 		return q;
 	}
 
+	private List<?> getGroupIds() {
+		this.ensureIndexes();
+		return this.template.getCollection(this.collectionName).distinct(GROUP_ID_KEY);
+	}
+
+	/**
+	 * Ensure the indexes used by the queries of this store; {@code ensureIndex} is a no-op for existing indexes.
+	 */
+	private void ensureIndexes() {
+		if (!this.indexesEnsured) {
+			this.template.indexOps(this.collectionName).ensureIndex(new Index(MESSAGE_ID_KEY, Order.ASCENDING));
+			this.template.indexOps(this.collectionName).ensureIndex(new Index(GROUP_ID_KEY, Order.ASCENDING)
+					.on(CREATED_DATE, Order.ASCENDING));
+			this.indexesEnsured = true;
+		}
+	}
+
 	private void updateGroup(Object groupId) {
 		Update update = Update.update(GROUP_UPDATE_TIMESTAMP_KEY, System.currentTimeMillis());
 		Query q = whereGroupIdIs(groupId);
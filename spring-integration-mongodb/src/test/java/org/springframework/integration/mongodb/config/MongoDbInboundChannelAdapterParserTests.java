@@ -48,6 +48,21 @@ public class MongoDbInboundChannelAdapterParserTests {
 		assertEquals("data", TestUtils.getPropertyValue(source, "collectionNameExpression.literalValue"));
 	}
 
+	@Test
+	public void streamingConfig(){
+		ClassPathXmlApplicationContext context =
+				new ClassPathXmlApplicationContext("inbound-adapter-parser-config.xml", this.getClass());
+		SourcePollingChannelAdapter spca = context.getBean("streamingConfig.adapter", SourcePollingChannelAdapter.class);
+		MongoDbMessageSource source = TestUtils.getPropertyValue(spca, "source", MongoDbMessageSource.class);
+
+		assertEquals(100, TestUtils.getPropertyValue(source, "batchSize"));
+		assertEquals(true, TestUtils.getPropertyValue(source, "tailable"));
+		assertEquals(context.getBean("metadataStore"), TestUtils.getPropertyValue(source, "metadataStore"));
+		assertEquals("mongo:inbound-channel-adapter.streamingConfig.source",
+				TestUtils.getPropertyValue(source, "metadataKey"));
+		context.close();
+	}
+
 	@Test
 	public void fullConfigWithCollectionExpression(){
 		ClassPathXmlApplicationContext context =
@@ -27,6 +27,8 @@ import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.integration.mongodb.outbound.MongoDbStoringMessageHandler;
 import org.springframework.integration.test.util.TestUtils;
+
+import com.mongodb.WriteConcern;
 /**
  * @author Oleg Zhurakousky
  */
@@ -91,6 +93,20 @@ public class MongoDbOutboundChannelAdapterParserTests {
 		assertEquals("foo", TestUtils.getPropertyValue(handler, "collectionNameExpression.literalValue"));
 	}
 
+	@Test
+	public void batchedConfig(){
+		ClassPathXmlApplicationContext context =
+				new ClassPathXmlApplicationContext("outbound-adapter-parser-config.xml", this.getClass());
+		MongoDbStoringMessageHandler handler =
+				TestUtils.getPropertyValue(context.getBean("batchedConfig.adapter"), "handler", MongoDbStoringMessageHandler.class);
+		assertEquals(WriteConcern.SAFE, TestUtils.getPropertyValue(handler, "writeConcern"));
+		assertEquals(WriteConcern.SAFE, TestUtils.getPropertyValue(handler, "mongoTemplate.writeConcern"));
+		assertEquals(100, TestUtils.getPropertyValue(handler, "batcher.batchSize"));
+		assertEquals(1000L, TestUtils.getPropertyValue(handler, "batcher.flushInterval"));
+		assertEquals(context.getBean("errors"), TestUtils.getPropertyValue(handler, "batcher.errorChannel"));
+		context.close();
+	}
+
 	@Test(expected=BeanDefinitionParsingException.class)
 	public void templateAndFactoryFail(){
 		new ClassPathXmlApplicationContext("outbound-adapter-parser-fail-template-factory-config.xml", this.getClass());
@@ -18,13 +18,19 @@ package org.springframework.integration.mongodb.inbound;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
+import org.bson.types.ObjectId;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoOperations;
@@ -33,9 +39,19 @@ import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.common.LiteralExpression;
+import org.springframework.integration.Message;
 import org.springframework.integration.mongodb.rules.MongoDbAvailable;
 import org.springframework.integration.mongodb.rules.MongoDbAvailableTests;
-
+import org.springframework.integration.mongodb.support.MongoHeaders;
+import org.springframework.integration.store.SimpleMetadataStore;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
 
@@ -259,4 +275,150 @@ public class MongoDbMessageSourceTests extends MongoDbAvailableTests {
 		result = (DBObject) messageSource.receive().getPayload();
 		assertEquals(id, result.get("_id"));
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void validateStreamingBatches() throws Exception {
+		MongoOperations template = mock(MongoOperations.class);
+		DBCollection collection = mock(DBCollection.class);
+		when(template.getCollection("data")).thenReturn(collection);
+		DBObject document1 = new BasicDBObject("_id", new ObjectId());
+		DBObject document2 = new BasicDBObject("_id", new ObjectId());
+		DBObject document3 = new BasicDBObject("_id", new ObjectId());
+		DBCursor cursor = mock(DBCursor.class);
+		when(cursor.hasNext()).thenReturn(true, true, true, false);
+		when(cursor.next()).thenReturn(document1, document2, document3);
+		DBCursor emptyCursor = mock(DBCursor.class);
+		when(collection.find(Mockito.any(DBObject.class))).thenReturn(cursor, emptyCursor);
+
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		MongoDbMessageSource messageSource = new MongoDbMessageSource(template, new LiteralExpression("{'name' : 'Bob'}"));
+		messageSource.setBatchSize(2);
+		messageSource.setMetadataStore(metadataStore);
+		messageSource.setBeanName("source");
+		messageSource.afterPropertiesSet();
+
+		Message<Object> message = messageSource.receive();
+		assertEquals(Arrays.asList(document1, document2), message.getPayload());
+		assertEquals("data", message.getHeaders().get(MongoHeaders.COLLECTION_NAME));
+		verify(cursor).sort(new BasicDBObject("_id", 1));
+		verify(cursor).batchSize(2);
+		message = messageSource.receive();
+		assertEquals(Arrays.asList(document3), message.getPayload());
+		verify(cursor).close();
+		assertEquals("ObjectId:" + document3.get("_id"), metadataStore.get("mongo:inbound-channel-adapter.source"));
+
+		assertNull(messageSource.receive());
+		ArgumentCaptor<DBObject> query = ArgumentCaptor.forClass(DBObject.class);
+		verify(collection, times(2)).find(query.capture());
+		assertEquals(JSON.parse("{'name' : 'Bob'}"), query.getAllValues().get(0));
+		List<DBObject> and = (List<DBObject>) query.getAllValues().get(1).get("$and");
+		assertEquals(JSON.parse("{'name' : 'Bob'}"), and.get(0));
+		assertEquals(new BasicDBObject("$gt", document3.get("_id")), and.get(1).get("_id"));
+	}
+
+	@Test
+	public void validateTailableCursorKeptOpen() throws Exception {
+		MongoOperations template = mock(MongoOperations.class);
+		DBCollection collection = mock(DBCollection.class);
+		when(template.getCollection("capped")).thenReturn(collection);
+		DBObject document1 = new BasicDBObject("_id", new ObjectId());
+		DBObject document2 = new BasicDBObject("_id", new ObjectId());
+		DBCursor cursor = mock(DBCursor.class);
+		when(cursor.hasNext()).thenReturn(true, false, true, false);
+		when(cursor.next()).thenReturn(document1, document2);
+		when(cursor.getCursorId()).thenReturn(42L);
+		when(collection.find(Mockito.any(DBObject.class))).thenReturn(cursor);
+
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		ObjectId lastId = new ObjectId();
+		metadataStore.put("mongo:inbound-channel-adapter.source", "ObjectId:" + lastId);
+		MongoDbMessageSource messageSource = new MongoDbMessageSource(template, new LiteralExpression("{}"));
+		messageSource.setCollectionNameExpression(new LiteralExpression("capped"));
+		messageSource.setBatchSize(1);
+		messageSource.setTailable(true);
+		messageSource.setMetadataStore(metadataStore);
+		messageSource.setBeanName("source");
+		messageSource.afterPropertiesSet();
+
+		assertEquals(document1, messageSource.receive().getPayload());
+		assertNull(messageSource.receive());
+		assertEquals(document2, messageSource.receive().getPayload());
+		verify(collection, times(1)).find(Mockito.any(DBObject.class));
+		verify(cursor).addOption(Bytes.QUERYOPTION_TAILABLE);
+		verify(cursor, never()).sort(Mockito.any(DBObject.class));
+		verify(cursor, never()).close();
+		verify(collection).find(new BasicDBObject("$and", Arrays.asList(new BasicDBObject(),
+				new BasicDBObject("_id", new BasicDBObject("$gt", lastId)))));
+
+		messageSource.destroy();
+		verify(cursor).close();
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void validateTailableRequiresBatchSize() throws Exception {
+		MongoDbMessageSource messageSource = new MongoDbMessageSource(mock(MongoOperations.class),
+				new LiteralExpression("{}"));
+		messageSource.setTailable(true);
+		messageSource.afterPropertiesSet();
+	}
+
+	@Test
+	public void validateRolledBackBatchReadAgain() throws Exception {
+		MongoOperations template = mock(MongoOperations.class);
+		DBCollection collection = mock(DBCollection.class);
+		when(template.getCollection("data")).thenReturn(collection);
+		DBObject document1 = new BasicDBObject("_id", 1L);
+		DBObject document2 = new BasicDBObject("_id", 2L);
+		DBCursor cursor = mock(DBCursor.class);
+		when(cursor.hasNext()).thenReturn(true);
+		when(cursor.next()).thenReturn(document1, document2);
+		DBCursor secondCursor = mock(DBCursor.class);
+		when(secondCursor.hasNext()).thenReturn(true);
+		when(secondCursor.next()).thenReturn(document1);
+		when(collection.find(Mockito.any(DBObject.class))).thenReturn(cursor, secondCursor);
+
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		MongoDbMessageSource messageSource = new MongoDbMessageSource(template, new LiteralExpression("{}"));
+		messageSource.setBatchSize(1);
+		messageSource.setMetadataStore(metadataStore);
+		messageSource.setBeanName("source");
+		messageSource.afterPropertiesSet();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			assertEquals(document1, messageSource.receive().getPayload());
+			assertNull(metadataStore.get("mongo:inbound-channel-adapter.source"));
+			TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+					TransactionSynchronization.STATUS_ROLLED_BACK);
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		verify(cursor).close();
+		assertNull(metadataStore.get("mongo:inbound-channel-adapter.source"));
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			assertEquals(document1, messageSource.receive().getPayload());
+			TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+					TransactionSynchronization.STATUS_COMMITTED);
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		verify(collection, times(2)).find(new BasicDBObject());
+		assertEquals("Long:1", metadataStore.get("mongo:inbound-channel-adapter.source"));
+	}
+
+	@Test
+	public void validateIdRestoredWithItsType() throws Exception {
+		String stringId = new ObjectId().toString();
+		assertEquals(stringId, MongoDbMessageSource.decodeId(MongoDbMessageSource.encodeId(stringId)));
+		ObjectId objectId = new ObjectId();
+		assertEquals(objectId, MongoDbMessageSource.decodeId(MongoDbMessageSource.encodeId(objectId)));
+		assertEquals(42, MongoDbMessageSource.decodeId(MongoDbMessageSource.encodeId(42)));
+		assertEquals(42L, MongoDbMessageSource.decodeId(MongoDbMessageSource.encodeId(42L)));
+		assertNull(MongoDbMessageSource.encodeId(new Date()));
+	}
 }
@@ -16,12 +16,23 @@
 package org.springframework.integration.mongodb.outbound;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
@@ -30,11 +41,17 @@ import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.expression.common.LiteralExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.mongodb.rules.MongoDbAvailable;
 import org.springframework.integration.mongodb.rules.MongoDbAvailableTests;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 
 /**
@@ -45,6 +62,18 @@ import com.mongodb.DBObject;
  */
 public class MongoDbStoringMessageHandlerTests extends MongoDbAvailableTests {
 
+	private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+	@Before
+	public void setUp() {
+		this.taskScheduler.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		this.taskScheduler.destroy();
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void withNullMongoDBFactory() {
 		new MongoDbStoringMessageHandler((MongoDbFactory)null);
@@ -141,4 +170,128 @@ public class MongoDbStoringMessageHandlerTests extends MongoDbAvailableTests {
 		assertEquals("PA", person.getAddress().getState());
 		verify(converter, times(1)).write(Mockito.any(), Mockito.any(DBObject.class));
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void validateBatchedInsertsPerCollection() throws Exception {
+		MongoOperations template = Mockito.mock(MongoOperations.class);
+		MongoDbStoringMessageHandler handler = this.batchingHandler(template);
+		handler.setCollectionNameExpression(new SpelExpressionParser().parseExpression("headers.collection"));
+		handler.setBatchSize(3);
+		handler.afterPropertiesSet();
+		handler.handleMessage(MessageBuilder.withPayload("a").setHeader("collection", "foo").build());
+		handler.handleMessage(MessageBuilder.withPayload("b").setHeader("collection", "bar").build());
+		Thread.sleep(100);
+		verify(template, never()).insert(Mockito.any(Collection.class), Mockito.anyString());
+
+		handler.handleMessage(MessageBuilder.withPayload("c").setHeader("collection", "foo").build());
+		verify(template, timeout(10000)).insert(Arrays.asList("a", "c"), "foo");
+		verify(template, timeout(10000)).insert(Arrays.asList("b"), "bar");
+		verify(template, never()).save(Mockito.any(), Mockito.anyString());
+
+		handler.handleMessage(MessageBuilder.withPayload("d").setHeader("collection", "bar").build());
+		handler.destroy();
+		verify(template).insert(Arrays.asList("d"), "bar");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void validateBatchedInsertsWithFlushInterval() throws Exception {
+		MongoOperations template = Mockito.mock(MongoOperations.class);
+		MongoDbStoringMessageHandler handler = this.batchingHandler(template);
+		handler.setBatchSize(10);
+		handler.setFlushInterval(50);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("a"));
+		verify(template, timeout(10000)).insert(Arrays.asList("a"), "data");
+		handler.destroy();
+		verify(template, times(1)).insert(Mockito.any(Collection.class), Mockito.anyString());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void validateFailedBulkInsertSavedOneByOne() throws Exception {
+		MongoOperations template = Mockito.mock(MongoOperations.class);
+		DBObject a = new BasicDBObject("name", "a");
+		DBObject b = new BasicDBObject("name", "b");
+		Mockito.doThrow(new DataIntegrityViolationException("duplicate key"))
+				.when(template).insert(Mockito.any(Collection.class), Mockito.eq("data"));
+		Mockito.doThrow(new DataIntegrityViolationException("invalid document"))
+				.when(template).save(b, "data");
+		MongoDbStoringMessageHandler handler = this.batchingHandler(template);
+		QueueChannel errorChannel = new QueueChannel();
+		handler.setErrorChannel(errorChannel);
+		handler.setBatchSize(2);
+		handler.afterPropertiesSet();
+		Message<DBObject> message1 = new GenericMessage<DBObject>(a);
+		Message<DBObject> message2 = new GenericMessage<DBObject>(b);
+		handler.handleMessage(message1);
+		handler.handleMessage(message2);
+
+		Message<?> error = errorChannel.receive(10000);
+		assertSame(message2, ((MessageHandlingException) error.getPayload()).getFailedMessage());
+		assertNull(errorChannel.receive(100));
+		verify(template).save(a, "data");
+		assertNotNull(a.get("_id"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void validateFailedBulkInsertNotRetriedWithoutIds() throws Exception {
+		MongoOperations template = Mockito.mock(MongoOperations.class);
+		Mockito.doThrow(new DataIntegrityViolationException("duplicate key"))
+				.when(template).insert(Mockito.any(Collection.class), Mockito.eq("data"));
+		MongoDbStoringMessageHandler handler = this.batchingHandler(template);
+		QueueChannel errorChannel = new QueueChannel();
+		handler.setErrorChannel(errorChannel);
+		handler.setBatchSize(2);
+		handler.afterPropertiesSet();
+		Message<String> message1 = new GenericMessage<String>("a");
+		Message<String> message2 = new GenericMessage<String>("b");
+		handler.handleMessage(message1);
+		handler.handleMessage(message2);
+
+		Message<?> error = errorChannel.receive(10000);
+		assertSame(message1, ((MessageHandlingException) error.getPayload()).getFailedMessage());
+		error = errorChannel.receive(10000);
+		assertSame(message2, ((MessageHandlingException) error.getPayload()).getFailedMessage());
+		verify(template, never()).save(Mockito.any(), Mockito.anyString());
+	}
+
+	@Test(expected=MessageHandlingException.class)
+	public void validateCollectionNameEvaluatedWhenBatchedMessageHandled() throws Exception {
+		MongoOperations template = Mockito.mock(MongoOperations.class);
+		MongoDbStoringMessageHandler handler = this.batchingHandler(template);
+		handler.setCollectionNameExpression(new SpelExpressionParser().parseExpression("headers.collection"));
+		handler.setBatchSize(2);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("a"));
+	}
+
+	@Test(expected=MessageHandlingException.class)
+	@SuppressWarnings("unchecked")
+	public void validateFailedBatchThrownByFlush() throws Exception {
+		MongoOperations template = Mockito.mock(MongoOperations.class);
+		Mockito.doThrow(new DataIntegrityViolationException("duplicate key"))
+				.when(template).insert(Mockito.any(Collection.class), Mockito.eq("data"));
+		MongoDbStoringMessageHandler handler = this.batchingHandler(template);
+		handler.setBatchSize(2);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("a"));
+		handler.flush();
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void validateFlushIntervalRequiresTaskScheduler() throws Exception {
+		MongoDbStoringMessageHandler handler = new MongoDbStoringMessageHandler(Mockito.mock(MongoOperations.class));
+		handler.setBatchSize(2);
+		handler.setFlushInterval(1000);
+		handler.afterPropertiesSet();
+	}
+
+	private MongoDbStoringMessageHandler batchingHandler(MongoOperations template) {
+		MongoDbStoringMessageHandler handler = new MongoDbStoringMessageHandler(template);
+		handler.setTaskScheduler(this.taskScheduler);
+		return handler;
+	}
 }
@@ -15,6 +15,7 @@
  */
 package org.springframework.integration.mongodb.store;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Properties;
 import java.util.UUID;
@@ -23,6 +24,8 @@ import org.junit.Test;
 
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.channel.DirectChannel;
@@ -290,6 +293,63 @@ public class MongoDbMessageGroupStoreTests extends MongoDbAvailableTests {
 		assertEquals(2, counter);
 	}
 
+	@Test
+	@MongoDbAvailable
+	public void testPollMessagesInOrder() throws Exception{
+		MongoDbFactory mongoDbFactory = this.prepareMongoFactory();
+		MongoDbMessageStore store = new MongoDbMessageStore(mongoDbFactory);
+
+		Message<?> messageA = new GenericMessage<String>("A");
+		Message<?> messageB = new GenericMessage<String>("B");
+		store.addMessageToGroup(1, messageA);
+		Thread.sleep(10);
+		store.addMessageToGroup(1, messageB);
+		store.addMessageToGroup(2, new GenericMessage<String>("C"));
+
+		assertEquals(messageA.getHeaders().getId(), store.pollMessageFromGroup(1).getHeaders().getId());
+		assertEquals(1, store.messageGroupSize(1));
+		assertEquals(messageB.getHeaders().getId(), store.pollMessageFromGroup(1).getHeaders().getId());
+		assertNull(store.pollMessageFromGroup(1));
+		assertEquals(1, store.messageGroupSize(2));
+	}
+
+	@Test
+	@MongoDbAvailable
+	public void testRemoveMessageGroupLeavesOtherGroups() throws Exception{
+		MongoDbFactory mongoDbFactory = this.prepareMongoFactory();
+		MongoDbMessageStore store = new MongoDbMessageStore(mongoDbFactory);
+
+		store.addMessageToGroup(1, new GenericMessage<String>("1"));
+		store.addMessageToGroup(1, new GenericMessage<String>("2"));
+		store.addMessageToGroup(2, new GenericMessage<String>("3"));
+		store.addMessage(new GenericMessage<String>("4"));
+		assertEquals(2, store.getMessageGroupCount());
+		assertEquals(3, store.getMessageCountForAllMessageGroups());
+
+		store.removeMessageGroup(1);
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(1, store.getMessageCountForAllMessageGroups());
+		assertEquals(2, store.getMessageCount());
+		assertEquals(1, store.iterator().next().getGroupId());
+	}
+
+	@Test
+	@MongoDbAvailable
+	public void testIndexesEnsured() throws Exception{
+		MongoDbFactory mongoDbFactory = this.prepareMongoFactory();
+		MongoDbMessageStore store = new MongoDbMessageStore(mongoDbFactory);
+		store.addMessageToGroup(1, new GenericMessage<String>("1"));
+
+		boolean groupIndex = false;
+		boolean messageIdIndex = false;
+		for (IndexInfo indexInfo : new MongoTemplate(mongoDbFactory).indexOps("messages").getIndexInfo()) {
+			groupIndex |= indexInfo.isIndexForFields(Arrays.asList("_groupId", "_createdDate"));
+			messageIdIndex |= indexInfo.isIndexForFields(Arrays.asList("headers.id._value"));
+		}
+		assertTrue(groupIndex);
+		assertTrue(messageIdIndex);
+	}
+
 //	@Test
 //	@MongoDbAvailable
 //	public void testConcurrentModifications() throws Exception{
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import java.io.IOException;
+
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.integration.Message;
+import org.springframework.integration.store.CompactMessageCodec;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RedisSerializer} for the values of a {@link RedisMessageStore} that writes messages with
+ * a {@link CompactMessageCodec}, and the other stored objects (the message group metadata) with Java
+ * serialization. Messages stored with Java serialization can still be read.
+ *
+ * @since 3.0
+ */
+public class CompactMessageRedisSerializer implements RedisSerializer<Object> {
+
+	private final CompactMessageCodec codec;
+
+	private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+
+	public CompactMessageRedisSerializer() {
+		this(new CompactMessageCodec());
+	}
+
+	public CompactMessageRedisSerializer(CompactMessageCodec codec) {
+		Assert.notNull(codec, "'codec' must not be null");
+		this.codec = codec;
+	}
+
+
+	public byte[] serialize(Object object) throws SerializationException {
+		if (object instanceof Message) {
+			try {
+				return this.codec.encode((Message<?>) object);
+			}
+			catch (IOException e) {
+				throw new SerializationException("Cannot encode message", e);
+			}
+		}
+		return this.jdkSerializer.serialize(object);
+	}
+
+	public Object deserialize(byte[] bytes) throws SerializationException {
+		if (CompactMessageCodec.isEncodedMessage(bytes)) {
+			try {
+				return this.codec.decode(bytes);
+			}
+			catch (IOException e) {
+				throw new SerializationException("Cannot decode message", e);
+			}
+		}
+		return this.jdkSerializer.deserialize(bytes);
+	}
+
+}
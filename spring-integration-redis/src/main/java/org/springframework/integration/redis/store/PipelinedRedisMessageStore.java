@@ -0,0 +1,521 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.LazyMessageGroup;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.store.MessageStore;
+import org.springframework.integration.store.SimpleMessageGroup;
+import org.springframework.integration.util.DefaultLockRegistry;
+import org.springframework.integration.util.LockRegistry;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.util.Assert;
+
+/**
+ * Redis implementation of {@link MessageStore} and {@link MessageGroupStore} that uses Redis data structures
+ * rather than a value per group: the messages are held in a hash, the ids of the messages of each group in a
+ * list, the group metadata in a hash and the group ids in a set.
+ * <p>
+ * The commands of each operation are pipelined, so that adding a message to a group takes a single round trip
+ * whatever the size of the group, and the groups returned by {@link #getMessageGroup(Object)} and
+ * {@link #addMessageToGroup(Object, Message)} only retrieve their messages when these are accessed. Groups are
+ * iterated from the set of group ids rather than by listing keys.
+ * <p>
+ * Adding messages to a group and removing the group are serialized per group with a {@link LockRegistry}, so
+ * that no message added while a group is removed is left behind.
+ * <p>
+ * The keys used by this store do not overlap with those of {@link RedisMessageStore}, but the two stores do not
+ * share data.
+ *
+ * @since 3.0
+ */
+public class PipelinedRedisMessageStore extends AbstractMessageGroupStore implements MessageStore {
+
+	private static final String MESSAGES_KEY = "MESSAGES";
+
+	private static final String GROUP_IDS_KEY = "MESSAGE_GROUP_IDS";
+
+	private static final String GROUP_KEY_PREFIX = "MESSAGE_GROUP_INFO_";
+
+	private static final String GROUP_MESSAGES_KEY_PREFIX = "MESSAGE_GROUP_MESSAGES_";
+
+	private static final String CREATED = "CREATED";
+
+	private static final String LAST_MODIFIED = "LAST_MODIFIED";
+
+	private static final String COMPLETE = "COMPLETE";
+
+	private static final String LAST_RELEASED_SEQUENCE = "LAST_RELEASED_SEQUENCE";
+
+	private final RedisTemplate<Object, Object> redisTemplate;
+
+	private final RedisSerializer<String> stringSerializer = new StringRedisSerializer();
+
+	private final RedisSerializer<Object> groupIdSerializer = new JdkSerializationRedisSerializer();
+
+	private volatile RedisSerializer<Object> valueSerializer = new JdkSerializationRedisSerializer();
+
+	private volatile LockRegistry lockRegistry = new DefaultLockRegistry();
+
+
+	public PipelinedRedisMessageStore(RedisConnectionFactory connectionFactory) {
+		Assert.notNull(connectionFactory, "'connectionFactory' must not be null");
+		this.redisTemplate = new RedisTemplate<Object, Object>();
+		this.redisTemplate.setConnectionFactory(connectionFactory);
+		this.redisTemplate.afterPropertiesSet();
+	}
+
+	/**
+	 * Set the serializer for the messages, e.g. a {@link CompactMessageRedisSerializer}.
+	 * Default is a {@link JdkSerializationRedisSerializer}.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setValueSerializer(RedisSerializer<?> valueSerializer) {
+		Assert.notNull(valueSerializer, "'valueSerializer' must not be null");
+		this.valueSerializer = (RedisSerializer<Object>) valueSerializer;
+	}
+
+	/**
+	 * Set the registry of the locks that serialize adding messages to a group and removing it. The default
+	 * {@link DefaultLockRegistry} only covers this instance; provide a registry shared by all the stores that
+	 * use the same Redis server to cover them as well.
+	 */
+	public void setLockRegistry(LockRegistry lockRegistry) {
+		Assert.notNull(lockRegistry, "'lockRegistry' must not be null");
+		this.lockRegistry = lockRegistry;
+	}
+
+
+	// MessageStore methods
+
+	public Message<?> getMessage(final UUID id) {
+		Assert.notNull(id, "'id' must not be null");
+		byte[] bytes = this.redisTemplate.execute(new RedisCallback<byte[]>() {
+			public byte[] doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.hGet(key(MESSAGES_KEY), field(id));
+			}
+		});
+		return this.deserializeMessage(bytes);
+	}
+
+	public <T> Message<T> addMessage(Message<T> message) {
+		Assert.notNull(message, "'message' must not be null");
+		final byte[] id = field(message.getHeaders().getId());
+		final byte[] bytes = this.serializeMessage(message);
+		this.redisTemplate.execute(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.hSet(key(MESSAGES_KEY), id, bytes);
+			}
+		});
+		return message;
+	}
+
+	public Message<?> removeMessage(UUID id) {
+		Assert.notNull(id, "'id' must not be null");
+		final byte[] field = field(id);
+		List<Object> replies = this.executePipelined(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hGet(key(MESSAGES_KEY), field);
+				connection.hDel(key(MESSAGES_KEY), field);
+				return null;
+			}
+		});
+		return this.deserializeMessage(toBytes(replies.get(0)));
+	}
+
+	@ManagedAttribute
+	public long getMessageCount() {
+		return this.redisTemplate.execute(new RedisCallback<Long>() {
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.hLen(key(MESSAGES_KEY));
+			}
+		});
+	}
+
+
+	// MessageGroupStore methods
+
+	public MessageGroup getMessageGroup(final Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		List<Object> replies = this.executePipelined(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hMGet(groupKey(groupId), field(CREATED), field(LAST_MODIFIED), field(COMPLETE),
+						field(LAST_RELEASED_SEQUENCE));
+				connection.lLen(groupMessagesKey(groupId));
+				return null;
+			}
+		});
+		List<?> info = (List<?>) replies.get(0);
+		if (info.get(0) == null) {
+			return new SimpleMessageGroup(groupId);
+		}
+		return new RedisMessageGroup(groupId, (int) toLong(replies.get(1)), null, toLong(info.get(0)),
+				toLong(info.get(1)), toBoolean(info.get(2)), (int) toLong(info.get(3)));
+	}
+
+	public MessageGroup addMessageToGroup(final Object groupId, Message<?> message) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(message, "'message' must not be null");
+		final byte[] id = field(message.getHeaders().getId());
+		final byte[] bytes = this.serializeMessage(message);
+		final long now = System.currentTimeMillis();
+		List<Object> replies;
+		Lock lock = this.lockGroup(groupId);
+		try {
+			replies = this.executePipelined(new RedisCallback<Object>() {
+				public Object doInRedis(RedisConnection connection) throws DataAccessException {
+					connection.hSet(key(MESSAGES_KEY), id, bytes);
+					connection.rPush(groupMessagesKey(groupId), id);
+					touchGroup(connection, groupId, now);
+					connection.hMGet(groupKey(groupId), field(CREATED), field(COMPLETE), field(LAST_RELEASED_SEQUENCE));
+					return null;
+				}
+			});
+		}
+		finally {
+			lock.unlock();
+		}
+		List<?> info = (List<?>) replies.get(replies.size() - 1);
+		int size = (int) toLong(replies.get(1));
+		// the sequence size of a group is that of its first message
+		Integer sequenceSize = (size == 1) ? message.getHeaders().getSequenceSize() : null;
+		return new RedisMessageGroup(groupId, size, sequenceSize,
+				toLong(info.get(0)), now, toBoolean(info.get(1)), (int) toLong(info.get(2)));
+	}
+
+	public MessageGroup removeMessageFromGroup(final Object groupId, Message<?> messageToRemove) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(messageToRemove, "'messageToRemove' must not be null");
+		final byte[] id = field(messageToRemove.getHeaders().getId());
+		final long now = System.currentTimeMillis();
+		this.executePipelined(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.lRem(groupMessagesKey(groupId), 0, id);
+				connection.hDel(key(MESSAGES_KEY), id);
+				touchGroup(connection, groupId, now);
+				return null;
+			}
+		});
+		return this.getMessageGroup(groupId);
+	}
+
+	public void removeMessageGroup(final Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Lock lock = this.lockGroup(groupId);
+		try {
+			final List<byte[]> ids = this.getMessageIds(groupId);
+			this.executePipelined(new RedisCallback<Object>() {
+				public Object doInRedis(RedisConnection connection) throws DataAccessException {
+					for (byte[] id : ids) {
+						connection.hDel(key(MESSAGES_KEY), id);
+					}
+					connection.del(groupKey(groupId), groupMessagesKey(groupId));
+					connection.sRem(key(GROUP_IDS_KEY), serializeGroupId(groupId));
+					return null;
+				}
+			});
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public void completeGroup(final Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		final long now = System.currentTimeMillis();
+		this.executePipelined(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hSet(groupKey(groupId), field(COMPLETE), field(Boolean.TRUE));
+				touchGroup(connection, groupId, now);
+				return null;
+			}
+		});
+	}
+
+	public void setLastReleasedSequenceNumberForGroup(final Object groupId, final int sequenceNumber) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		final long now = System.currentTimeMillis();
+		this.executePipelined(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hSet(groupKey(groupId), field(LAST_RELEASED_SEQUENCE), field(sequenceNumber));
+				touchGroup(connection, groupId, now);
+				return null;
+			}
+		});
+	}
+
+	public Message<?> pollMessageFromGroup(final Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		final byte[] id = this.redisTemplate.execute(new RedisCallback<byte[]>() {
+			public byte[] doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.lPop(groupMessagesKey(groupId));
+			}
+		});
+		if (id == null) {
+			return null;
+		}
+		final long now = System.currentTimeMillis();
+		List<Object> replies = this.executePipelined(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hGet(key(MESSAGES_KEY), id);
+				connection.hDel(key(MESSAGES_KEY), id);
+				touchGroup(connection, groupId, now);
+				return null;
+			}
+		});
+		return this.deserializeMessage(toBytes(replies.get(0)));
+	}
+
+	public int messageGroupSize(final Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Long size = this.redisTemplate.execute(new RedisCallback<Long>() {
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.lLen(groupMessagesKey(groupId));
+			}
+		});
+		return (size == null) ? 0 : size.intValue();
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		Long count = this.redisTemplate.execute(new RedisCallback<Long>() {
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.sCard(key(GROUP_IDS_KEY));
+			}
+		});
+		return (count == null) ? 0 : count.intValue();
+	}
+
+	public Iterator<MessageGroup> iterator() {
+		Set<byte[]> members = this.redisTemplate.execute(new RedisCallback<Set<byte[]>>() {
+			public Set<byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.sMembers(key(GROUP_IDS_KEY));
+			}
+		});
+		final List<Object> groupIds = new ArrayList<Object>(members.size());
+		for (byte[] member : members) {
+			groupIds.add(this.groupIdSerializer.deserialize(member));
+		}
+		final Iterator<Object> idIterator = groupIds.iterator();
+		return new Iterator<MessageGroup>() {
+
+			public boolean hasNext() {
+				return idIterator.hasNext();
+			}
+
+			public MessageGroup next() {
+				return getMessageGroup(idIterator.next());
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Issue the commands of the callback in a pipeline, returning their replies.
+	 */
+	private List<Object> executePipelined(final RedisCallback<?> commands) {
+		return this.redisTemplate.execute(new RedisCallback<List<Object>>() {
+			public List<Object> doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.openPipeline();
+				boolean closing = false;
+				try {
+					commands.doInRedis(connection);
+					closing = true;
+					return connection.closePipeline();
+				}
+				finally {
+					if (!closing) {
+						try {
+							connection.closePipeline();
+						}
+						catch (RuntimeException e) {
+							// the original exception is more relevant
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Issue the commands that record the creation (if necessary) and modification of the group.
+	 */
+	private void touchGroup(RedisConnection connection, Object groupId, long now) {
+		byte[] timestamp = field(now);
+		connection.hSetNX(groupKey(groupId), field(CREATED), timestamp);
+		connection.hSet(groupKey(groupId), field(LAST_MODIFIED), timestamp);
+		connection.sAdd(key(GROUP_IDS_KEY), serializeGroupId(groupId));
+	}
+
+	private Lock lockGroup(Object groupId) {
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+		return lock;
+	}
+
+	private List<byte[]> getMessageIds(final Object groupId) {
+		return this.redisTemplate.execute(new RedisCallback<List<byte[]>>() {
+			public List<byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.lRange(groupMessagesKey(groupId), 0, -1);
+			}
+		});
+	}
+
+	private List<Message<?>> loadMessages(Object groupId) {
+		final List<byte[]> ids = this.getMessageIds(groupId);
+		List<Message<?>> messages = new ArrayList<Message<?>>(ids.size());
+		if (ids.isEmpty()) {
+			return messages;
+		}
+		List<byte[]> values = this.redisTemplate.execute(new RedisCallback<List<byte[]>>() {
+			public List<byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.hMGet(key(MESSAGES_KEY), ids.toArray(new byte[ids.size()][]));
+			}
+		});
+		for (byte[] value : values) {
+			Message<?> message = this.deserializeMessage(value);
+			if (message != null) {
+				messages.add(message);
+			}
+		}
+		return messages;
+	}
+
+	private byte[] serializeMessage(Message<?> message) {
+		try {
+			return this.valueSerializer.serialize(message);
+		}
+		catch (SerializationException e) {
+			throw new IllegalArgumentException("If relying on the default RedisSerializer (JdkSerializationRedisSerializer) " +
+					"the Message must be Serializable. Either make it Serializable or provide your own implementation of " +
+					"RedisSerializer via 'setValueSerializer(..)'", e);
+		}
+	}
+
+	private Message<?> deserializeMessage(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		Object message = this.valueSerializer.deserialize(bytes);
+		Assert.isInstanceOf(Message.class, message);
+		return (Message<?>) message;
+	}
+
+	private byte[] serializeGroupId(Object groupId) {
+		return this.groupIdSerializer.serialize(groupId);
+	}
+
+	private byte[] key(String key) {
+		return this.stringSerializer.serialize(key);
+	}
+
+	private byte[] groupKey(Object groupId) {
+		return this.key(GROUP_KEY_PREFIX + groupId);
+	}
+
+	private byte[] groupMessagesKey(Object groupId) {
+		return this.key(GROUP_MESSAGES_KEY_PREFIX + groupId);
+	}
+
+	private byte[] field(Object value) {
+		return this.stringSerializer.serialize(value.toString());
+	}
+
+	/**
+	 * Pipelined replies are the raw replies of the driver: integer replies may be numbers, bulk replies bytes.
+	 */
+	private static long toLong(Object reply) {
+		if (reply instanceof Number) {
+			return ((Number) reply).longValue();
+		}
+		if (reply instanceof byte[]) {
+			return Long.parseLong(new String((byte[]) reply));
+		}
+		if (reply instanceof String) {
+			return Long.parseLong((String) reply);
+		}
+		return 0;
+	}
+
+	private static boolean toBoolean(Object reply) {
+		if (reply instanceof byte[]) {
+			return Boolean.parseBoolean(new String((byte[]) reply));
+		}
+		return reply != null && Boolean.parseBoolean(reply.toString());
+	}
+
+	private static byte[] toBytes(Object reply) {
+		if (reply instanceof String) {
+			try {
+				return ((String) reply).getBytes("UTF-8");
+			}
+			catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return (byte[]) reply;
+	}
+
+
+	/**
+	 * A group whose messages are only read from Redis when they are first accessed.
+	 */
+	private class RedisMessageGroup extends LazyMessageGroup {
+
+		RedisMessageGroup(Object groupId, int size, Integer sequenceSize, long timestamp, long lastModified,
+				boolean complete, int lastReleasedMessageSequence) {
+			super(groupId, size, sequenceSize, timestamp, lastModified, complete, lastReleasedMessageSequence);
+		}
+
+		@Override
+		protected List<Message<?>> loadMessages() {
+			return PipelinedRedisMessageStore.this.loadMessages(this.getGroupId());
+		}
+	}
+
+}
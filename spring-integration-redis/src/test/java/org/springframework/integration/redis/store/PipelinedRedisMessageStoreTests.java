@@ -0,0 +1,215 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.integration.Message;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.redis.rules.RedisAvailable;
+import org.springframework.integration.redis.rules.RedisAvailableTests;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.StopWatch;
+
+/**
+ * @since 3.0
+ */
+public class PipelinedRedisMessageStoreTests extends RedisAvailableTests {
+
+	@Test
+	@RedisAvailable
+	public void testNonExistingEmptyMessageGroup() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		MessageGroup messageGroup = store.getMessageGroup(1);
+		assertEquals(0, messageGroup.size());
+		assertEquals(0, store.getMessageGroupCount());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testAddMessagesToGroup() throws Exception {
+		JedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(jcf);
+		Message<?> message1 = MessageBuilder.withPayload("foo").setSequenceSize(2).build();
+		MessageGroup messageGroup = store.addMessageToGroup(1, message1);
+		assertEquals(1, messageGroup.size());
+		assertEquals(2, messageGroup.getSequenceSize());
+		assertEquals(messageGroup.getTimestamp(), messageGroup.getLastModified());
+		Thread.sleep(10);
+		Message<?> message2 = MessageBuilder.withPayload("bar").setSequenceSize(2).build();
+		messageGroup = store.addMessageToGroup(1, message2);
+		assertEquals(2, messageGroup.size());
+		assertTrue(messageGroup.getLastModified() > messageGroup.getTimestamp());
+		assertTrue(messageGroup.getMessages().contains(message1));
+
+		// make sure the store is properly rebuilt from Redis
+		store = new PipelinedRedisMessageStore(jcf);
+		messageGroup = store.getMessageGroup(1);
+		assertEquals(2, messageGroup.size());
+		assertEquals(2, messageGroup.getSequenceSize());
+		assertEquals(message1, messageGroup.getOne());
+		assertTrue(messageGroup.getMessages().contains(message2));
+		assertFalse(messageGroup.canAdd(message2));
+		assertEquals(2, store.messageGroupSize(1));
+		assertEquals(2, store.getMessageCount());
+		assertEquals(message2, store.getMessage(message2.getHeaders().getId()));
+	}
+
+	@Test
+	@RedisAvailable
+	public void testRemoveMessageFromGroup() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		MessageGroup messageGroup = store.removeMessageFromGroup(1, message1);
+		assertEquals(1, messageGroup.size());
+		assertEquals(message2, messageGroup.getOne());
+		assertNull(store.getMessage(message1.getHeaders().getId()));
+		assertEquals(1, store.getMessageCount());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testCompleteAndLastReleasedSequence() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		store.addMessageToGroup(1, new GenericMessage<String>("foo"));
+		store.completeGroup(1);
+		store.setLastReleasedSequenceNumberForGroup(1, 5);
+		MessageGroup messageGroup = store.getMessageGroup(1);
+		assertTrue(messageGroup.isComplete());
+		assertEquals(5, messageGroup.getLastReleasedMessageSequenceNumber());
+		messageGroup = store.addMessageToGroup(1, new GenericMessage<String>("bar"));
+		assertTrue(messageGroup.isComplete());
+		assertEquals(5, messageGroup.getLastReleasedMessageSequenceNumber());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testPollMessageFromGroup() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		Message<?> message1 = new GenericMessage<String>("foo");
+		Message<?> message2 = new GenericMessage<String>("bar");
+		store.addMessageToGroup(1, message1);
+		store.addMessageToGroup(1, message2);
+		assertEquals(message1, store.pollMessageFromGroup(1));
+		assertEquals(message2, store.pollMessageFromGroup(1));
+		assertNull(store.pollMessageFromGroup(1));
+		assertEquals(0, store.getMessageCount());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testRemoveMessageGroupAndIterate() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		store.addMessageToGroup(1, new GenericMessage<String>("foo"));
+		store.addMessageToGroup("2", new GenericMessage<String>("bar"));
+		store.addMessageToGroup("2", new GenericMessage<String>("baz"));
+		assertEquals(2, store.getMessageGroupCount());
+		assertEquals(3, store.getMessageCountForAllMessageGroups());
+		Set<Object> groupIds = new HashSet<Object>();
+		Iterator<MessageGroup> iterator = store.iterator();
+		while (iterator.hasNext()) {
+			groupIds.add(iterator.next().getGroupId());
+		}
+		assertEquals(2, groupIds.size());
+		assertTrue(groupIds.contains(1));
+		assertTrue(groupIds.contains("2"));
+
+		store.removeMessageGroup("2");
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(1, store.getMessageCount());
+		assertEquals(0, store.getMessageGroup("2").size());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testRemoveMessageGroupWhileAdding() throws Exception {
+		final PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		final CountDownLatch added = new CountDownLatch(1);
+		Thread adder = new Thread(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 200; i++) {
+					store.addMessageToGroup(1, new GenericMessage<String>("foo" + i));
+					added.countDown();
+				}
+			}
+		});
+		adder.start();
+		assertTrue(added.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 20; i++) {
+			store.removeMessageGroup(1);
+		}
+		adder.join(10000);
+		store.removeMessageGroup(1);
+		// no message added while the group was being removed is left behind
+		assertEquals(0, store.getMessageCount());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testCompactValueSerializer() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		store.setValueSerializer(new CompactMessageRedisSerializer());
+		Message<?> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		store.addMessageToGroup(1, message);
+		assertEquals(message, store.getMessageGroup(1).getOne());
+	}
+
+	@Test
+	@RedisAvailable
+	@Ignore
+	public void testAddLatencyIndependentOfGroupSize() throws Exception {
+		PipelinedRedisMessageStore store = new PipelinedRedisMessageStore(this.getConnectionFactoryForTest());
+		int times = 1000;
+		int largeGroupSize = 10000;
+		for (int i = 0; i < largeGroupSize; i++) {
+			store.addMessageToGroup("large", new GenericMessage<String>("foo"));
+		}
+		StopWatch watch = new StopWatch();
+		watch.start("small");
+		for (int i = 0; i < times; i++) {
+			store.addMessageToGroup("small", new GenericMessage<String>("foo"));
+		}
+		watch.stop();
+		watch.start("large");
+		for (int i = 0; i < times; i++) {
+			store.addMessageToGroup("large", new GenericMessage<String>("foo"));
+		}
+		watch.stop();
+		System.out.println("Add to a group of up to " + times + " messages: "
+				+ watch.getTaskInfo()[0].getTimeMillis() * 1000 / times + " us/op");
+		System.out.println("Add to a group of over " + largeGroupSize + " messages: "
+				+ watch.getTaskInfo()[1].getTimeMillis() * 1000 / times + " us/op");
+	}
+
+}
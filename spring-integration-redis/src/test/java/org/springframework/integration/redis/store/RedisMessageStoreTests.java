@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2011 the original author or authors
+ * Copyright 2007-2012 the original author or authors
  *
  *     Licensed under the Apache License, Version 2.0 (the "License");
  *     you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.redis.rules.RedisAvailable;
 import org.springframework.integration.redis.rules.RedisAvailableTests;
+import org.springframework.integration.support.MessageBuilder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -105,6 +106,22 @@ public class RedisMessageStoreTests extends RedisAvailableTests {
 		assertNotNull(retrievedMessage);
 		assertEquals("Hello Redis", retrievedMessage.getPayload());
 	}
+
+	@Test
+	@RedisAvailable
+	public void testAddAndGetMessageWithCompactSerializer(){
+		JedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		store.setValueSerializer(new CompactMessageRedisSerializer());
+		Message<String> stringMessage = MessageBuilder.withPayload("Hello Redis").setHeader("foo", 42).build();
+		store.addMessage(stringMessage);
+		Message<?> retrievedMessage = store.getMessage(stringMessage.getHeaders().getId());
+		assertEquals(stringMessage, retrievedMessage);
+		store.addMessageToGroup("compactGroup", stringMessage);
+		assertEquals(1, store.getMessageGroup("compactGroup").size());
+		store.removeMessageGroup("compactGroup");
+		store.removeMessage(stringMessage.getHeaders().getId());
+	}
 	@SuppressWarnings("unchecked")
 	@Test
 	@RedisAvailable
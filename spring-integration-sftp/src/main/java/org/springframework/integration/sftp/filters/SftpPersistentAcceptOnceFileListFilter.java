@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.sftp.filters;
+
+import org.springframework.integration.file.filters.AbstractPersistentAcceptOnceFileListFilter;
+import org.springframework.integration.store.MetadataStore;
+
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+
+/**
+ * Implementation of {@link AbstractPersistentAcceptOnceFileListFilter} for SFTP.
+ *
+ * @since 3.0
+ */
+public class SftpPersistentAcceptOnceFileListFilter extends AbstractPersistentAcceptOnceFileListFilter<LsEntry> {
+
+	public SftpPersistentAcceptOnceFileListFilter(MetadataStore store, String prefix) {
+		super(store, prefix);
+	}
+
+
+	@Override
+	protected String getFilename(LsEntry entry) {
+		return entry.getFilename();
+	}
+
+	@Override
+	protected long getModified(LsEntry entry) {
+		return (entry.getAttrs() != null) ? entry.getAttrs().getMTime() * 1000L : 0;
+	}
+
+	@Override
+	protected long getSize(LsEntry entry) {
+		return (entry.getAttrs() != null) ? entry.getAttrs().getSize() : 0;
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.sftp.inbound;
+
+import org.springframework.integration.file.remote.AbstractRemoteFileStreamingMessageSource;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.sftp.filters.SftpPersistentAcceptOnceFileListFilter;
+import org.springframework.integration.store.SimpleMetadataStore;
+
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+
+/**
+ * An {@link AbstractRemoteFileStreamingMessageSource} for SFTP. By default,
+ * each file is received once per name, size and modification time (in
+ * memory only); provide a filter to change that.
+ *
+ * @since 3.0
+ */
+public class SftpStreamingMessageSource extends AbstractRemoteFileStreamingMessageSource<LsEntry> {
+
+	public SftpStreamingMessageSource(SessionFactory<LsEntry> sessionFactory) {
+		super(sessionFactory);
+		this.setFilter(new SftpPersistentAcceptOnceFileListFilter(new SimpleMetadataStore(), ""));
+	}
+
+
+	@Override
+	protected boolean isFile(LsEntry file) {
+		return (file.getAttrs() != null && !file.getAttrs().isDir() && !file.getAttrs().isLink());
+	}
+
+	@Override
+	protected String getFilename(LsEntry file) {
+		return file.getFilename();
+	}
+
+}
@@ -27,6 +27,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.core.NestedIOException;
 import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.StreamingSession;
 import org.springframework.util.Assert;
 import org.springframework.util.FileCopyUtils;
 
@@ -46,7 +47,7 @@ import com.jcraft.jsch.SftpException;
  * @author Gary Russell
  * @since 2.0
  */
-class SftpSession implements Session<LsEntry> {
+class SftpSession implements StreamingSession<LsEntry> {
 
 	private final Log logger = LogFactory.getLog(this.getClass());
 
@@ -118,6 +119,20 @@ class SftpSession implements Session<LsEntry> {
 		}
 	}
 
+	public InputStream readRaw(String source) throws IOException {
+		Assert.state(this.channel != null, "session is not connected");
+		try {
+			return this.channel.get(source);
+		}
+		catch (SftpException e) {
+			throw new NestedIOException("failed to read file", e);
+		}
+	}
+
+	public boolean finalizeRaw() throws IOException {
+		return true;
+	}
+
 	public void write(InputStream inputStream, String destination) throws IOException {
 		Assert.state(this.channel != null, "session is not connected");
 		try {
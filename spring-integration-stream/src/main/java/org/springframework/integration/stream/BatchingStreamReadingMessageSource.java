@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.util.Assert;
+
+/**
+ * A pollable source that combines the payloads of a stream source, such as a
+ * {@link CharacterStreamReadingMessageSource} or a
+ * {@link ByteStreamReadingMessageSource}, into List payloads: each Message
+ * carries up to 'batchSize' lines or byte arrays, namely those that can be
+ * read without blocking, so that large volumes of input do not need to pass
+ * through the poller one line at a time.
+ *
+ * @param <T> the payload type of the stream source
+ * @since 3.0
+ */
+public class BatchingStreamReadingMessageSource<T> implements MessageSource<List<T>> {
+
+	private final MessageSource<T> source;
+
+	private final int batchSize;
+
+
+	public BatchingStreamReadingMessageSource(MessageSource<T> source, int batchSize) {
+		Assert.notNull(source, "source must not be null");
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		this.source = source;
+		this.batchSize = batchSize;
+	}
+
+
+	public Message<List<T>> receive() {
+		List<T> payloads = new ArrayList<T>();
+		while (payloads.size() < this.batchSize) {
+			Message<T> message = this.source.receive();
+			if (message == null) {
+				break;
+			}
+			payloads.add(message.getPayload());
+		}
+		return (!payloads.isEmpty()) ? new GenericMessage<List<T>>(payloads) : null;
+	}
+
+}
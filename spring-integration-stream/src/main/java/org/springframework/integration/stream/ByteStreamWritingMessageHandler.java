@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,26 +19,48 @@ package org.springframework.integration.stream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
 
 /**
  * A {@link MessageHandler} that writes a byte array to an {@link OutputStream}.
+ * With the {@link #setWriteCollectionElements(boolean) writeCollectionElements}
+ * flag set, the elements of a Collection payload (such as the Lists of byte
+ * arrays produced by a {@link BatchingStreamReadingMessageSource}) are written
+ * one by one.
+ * <p>
+ * The stream is flushed after each Message unless a
+ * {@link #setFlushInterval(long) flushInterval} is set.
  * 
  * @author Mark Fisher
  */
-public class ByteStreamWritingMessageHandler extends AbstractMessageHandler {
+public class ByteStreamWritingMessageHandler extends AbstractMessageHandler implements DisposableBean {
 
 	private final Log logger = LogFactory.getLog(this.getClass());
 
 	private final BufferedOutputStream stream;
 
+	private volatile boolean writeCollectionElements = false;
+
+	private volatile long flushInterval;
+
+	private volatile long lastFlush = System.currentTimeMillis();
+
+	private volatile boolean pending;
+
+	private volatile ScheduledFuture<?> flushTask;
+
 
 	public ByteStreamWritingMessageHandler(OutputStream stream) {
 		this(stream, -1);
@@ -54,6 +76,43 @@ public class ByteStreamWritingMessageHandler extends AbstractMessageHandler {
 	}
 
 
+	/**
+	 * If set to 'true', the elements of a Collection payload are written one by
+	 * one. By default, only byte array and String payloads are supported.
+	 * @since 3.0
+	 */
+	public void setWriteCollectionElements(boolean writeCollectionElements) {
+		this.writeCollectionElements = writeCollectionElements;
+	}
+
+	/**
+	 * Set the interval in milliseconds at which buffered data is written out.
+	 * By default (0), the stream is flushed after each Message. Otherwise the data
+	 * is only written out when the buffer (see 'bufferSize') is full, when a
+	 * Message arrives and the interval has elapsed since the last flush, and by
+	 * a task on the 'taskScheduler' bean (if there is one) that runs at that
+	 * interval. Data still buffered is written out when this handler is destroyed.
+	 * @since 3.0
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval >= 0, "flushInterval must not be negative");
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		TaskScheduler taskScheduler = this.getTaskScheduler();
+		if (this.flushInterval > 0 && taskScheduler != null) {
+			this.flushTask = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					flushIfNecessary();
+				}
+			}, this.flushInterval);
+		}
+	}
+
+
 	protected void handleMessageInternal(Message<?> message) {
 		Object payload = message.getPayload();
 		if (payload == null) {
@@ -63,21 +122,77 @@ public class ByteStreamWritingMessageHandler extends AbstractMessageHandler {
 			return;
 		}
 		try {
-			if (payload instanceof String) {
-				this.stream.write(((String) payload).getBytes());
-			}
-			else if (payload instanceof byte[]){
-				this.stream.write((byte[]) payload);
+			if (this.writeCollectionElements && payload instanceof Collection<?>) {
+				for (Object element : (Collection<?>) payload) {
+					if (element != null) {
+						this.write(element);
+					}
+				}
 			}
 			else {
-				throw new MessagingException(this.getClass().getSimpleName() +
-						" only supports byte array and String-based messages");
+				this.write(payload);
 			}
+		}
+		catch (IOException e) {
+			throw new MessagingException("IO failure occurred in target", e);
+		}
+		this.afterWrite();
+	}
+
+	private void write(Object payload) throws IOException {
+		if (payload instanceof String) {
+			this.stream.write(((String) payload).getBytes());
+		}
+		else if (payload instanceof byte[]){
+			this.stream.write((byte[]) payload);
+		}
+		else {
+			throw new MessagingException(this.getClass().getSimpleName() +
+					" only supports byte array and String-based messages");
+		}
+	}
+
+	/**
+	 * Write out any buffered data.
+	 * @since 3.0
+	 */
+	public void flush() {
+		try {
 			this.stream.flush();
+			this.lastFlush = System.currentTimeMillis();
+			this.pending = false;
 		}
 		catch (IOException e) {
 			throw new MessagingException("IO failure occurred in target", e);
 		}
 	}
 
+	private void flushIfNecessary() {
+		if (this.pending && System.currentTimeMillis() - this.lastFlush >= this.flushInterval) {
+			this.flush();
+		}
+	}
+
+	private void afterWrite() {
+		if (this.flushInterval > 0) {
+			this.pending = true;
+			this.flushIfNecessary();
+		}
+		else {
+			this.flush();
+		}
+	}
+
+	public void destroy() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		try {
+			this.flush();
+		}
+		catch (MessagingException e) {
+			logger.error("Failed to flush buffered data", e);
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,13 +23,17 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Collection;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 
 /**
@@ -38,10 +42,17 @@ import org.springframework.util.Assert;
  * but for other payload types, the result of the object's {@link #toString()}
  * method will be written. To append a new-line after each write, set the
  * {@link #setShouldAppendNewLine(boolean) shouldAppendNewLine} flag to 'true'. It is 'false' by default.
+ * With the {@link #setWriteCollectionElements(boolean) writeCollectionElements}
+ * flag set, the elements of a Collection payload (such as the Lists of lines
+ * produced by a {@link BatchingStreamReadingMessageSource}) are written one by
+ * one, each followed by a new-line if that flag is set.
+ * <p>
+ * The writer is flushed after each Message unless a
+ * {@link #setFlushInterval(long) flushInterval} is set.
  * 
  * @author Mark Fisher
  */
-public class CharacterStreamWritingMessageHandler extends AbstractMessageHandler {
+public class CharacterStreamWritingMessageHandler extends AbstractMessageHandler implements DisposableBean {
 
 	private final Log logger = LogFactory.getLog(this.getClass());
 
@@ -49,6 +60,16 @@ public class CharacterStreamWritingMessageHandler extends AbstractMessageHandler
 
 	private volatile boolean shouldAppendNewLine = false;
 
+	private volatile boolean writeCollectionElements = false;
+
+	private volatile long flushInterval;
+
+	private volatile long lastFlush = System.currentTimeMillis();
+
+	private volatile boolean pending;
+
+	private volatile ScheduledFuture<?> flushTask;
+
 
 	public CharacterStreamWritingMessageHandler(Writer writer) {
 		this(writer, -1);
@@ -117,6 +138,43 @@ public class CharacterStreamWritingMessageHandler extends AbstractMessageHandler
 		this.shouldAppendNewLine = shouldAppendNewLine;
 	}
 
+	/**
+	 * If set to 'true', the elements of a Collection payload are written one by
+	 * one. By default, the result of the Collection's {@link #toString()} method
+	 * is written, as for other payload types.
+	 * @since 3.0
+	 */
+	public void setWriteCollectionElements(boolean writeCollectionElements) {
+		this.writeCollectionElements = writeCollectionElements;
+	}
+
+	/**
+	 * Set the interval in milliseconds at which buffered data is written out.
+	 * By default (0), the writer is flushed after each Message. Otherwise the data
+	 * is only written out when the buffer (see 'bufferSize') is full, when a
+	 * Message arrives and the interval has elapsed since the last flush, and by
+	 * a task on the 'taskScheduler' bean (if there is one) that runs at that
+	 * interval. Data still buffered is written out when this handler is destroyed.
+	 * @since 3.0
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval >= 0, "flushInterval must not be negative");
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		TaskScheduler taskScheduler = this.getTaskScheduler();
+		if (this.flushInterval > 0 && taskScheduler != null) {
+			this.flushTask = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					flushIfNecessary();
+				}
+			}, this.flushInterval);
+		}
+	}
+
 	protected void handleMessageInternal(Message<?> message) {
 		Object payload = message.getPayload();
 		if (payload == null) {
@@ -126,30 +184,86 @@ public class CharacterStreamWritingMessageHandler extends AbstractMessageHandler
 			return;
 		}
 		try {
-			if (payload instanceof String) {
-				writer.write((String) payload);
-			}
-			else if (payload instanceof char[]) {
-				this.writer.write((char[]) payload);
-			}
-			else if (payload instanceof byte[]) {
-				this.writer.write(new String((byte[]) payload));
-			}
-			else if (payload instanceof Exception) {
-				PrintWriter printWriter = new PrintWriter(this.writer, true);
-				((Exception) payload).printStackTrace(printWriter);
+			if (this.writeCollectionElements && payload instanceof Collection<?>) {
+				for (Object element : (Collection<?>) payload) {
+					if (element != null) {
+						this.write(element);
+					}
+				}
 			}
 			else {
-				writer.write(payload.toString());
-			}
-			if (this.shouldAppendNewLine) {
-				writer.newLine();
+				this.write(payload);
 			}
-			writer.flush();
 		}
 		catch (IOException e) {
 			throw new MessagingException("IO failure occurred in target", e);
 		}
+		this.afterWrite();
+	}
+
+	private void write(Object payload) throws IOException {
+		if (payload instanceof String) {
+			writer.write((String) payload);
+		}
+		else if (payload instanceof char[]) {
+			this.writer.write((char[]) payload);
+		}
+		else if (payload instanceof byte[]) {
+			this.writer.write(new String((byte[]) payload));
+		}
+		else if (payload instanceof Exception) {
+			PrintWriter printWriter = new PrintWriter(this.writer, this.flushInterval == 0);
+			((Exception) payload).printStackTrace(printWriter);
+		}
+		else {
+			writer.write(payload.toString());
+		}
+		if (this.shouldAppendNewLine) {
+			writer.newLine();
+		}
+	}
+
+	/**
+	 * Write out any buffered data.
+	 * @since 3.0
+	 */
+	public void flush() {
+		try {
+			this.writer.flush();
+			this.lastFlush = System.currentTimeMillis();
+			this.pending = false;
+		}
+		catch (IOException e) {
+			throw new MessagingException("IO failure occurred in target", e);
+		}
+	}
+
+	private void flushIfNecessary() {
+		if (this.pending && System.currentTimeMillis() - this.lastFlush >= this.flushInterval) {
+			this.flush();
+		}
+	}
+
+	private void afterWrite() {
+		if (this.flushInterval > 0) {
+			this.pending = true;
+			this.flushIfNecessary();
+		}
+		else {
+			this.flush();
+		}
+	}
+
+	public void destroy() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		try {
+			this.flush();
+		}
+		catch (MessagingException e) {
+			logger.error("Failed to flush buffered data", e);
+		}
 	}
 
 }
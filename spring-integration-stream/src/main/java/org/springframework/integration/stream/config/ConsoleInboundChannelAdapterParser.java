@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -40,6 +40,14 @@ public class ConsoleInboundChannelAdapterParser extends AbstractPollingInboundCh
 		if (StringUtils.hasText(charsetName)) {
 			builder.addConstructorArgValue(charsetName);
 		}
+		String batchSize = element.getAttribute("batch-size");
+		if (StringUtils.hasText(batchSize)) {
+			BeanDefinitionBuilder batchingBuilder = BeanDefinitionBuilder.genericBeanDefinition(
+					"org.springframework.integration.stream.BatchingStreamReadingMessageSource");
+			batchingBuilder.addConstructorArgValue(builder.getBeanDefinition());
+			batchingBuilder.addConstructorArgValue(batchSize);
+			return batchingBuilder.getBeanDefinition();
+		}
 		return builder.getBeanDefinition();
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 import java.io.ByteArrayInputStream;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -45,6 +46,26 @@ public class ByteStreamSourceTests {
 		assertNull(message2);
 	}
 
+	@Test
+	public void testBatch() {
+		byte[] bytes = new byte[] {0,1,2,3,4,5,6,7,8,9};
+		ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+		ByteStreamReadingMessageSource source = new ByteStreamReadingMessageSource(stream);
+		source.setBytesPerMessage(3);
+		BatchingStreamReadingMessageSource<byte[]> batchingSource =
+				new BatchingStreamReadingMessageSource<byte[]>(source, 3);
+		List<byte[]> payload = batchingSource.receive().getPayload();
+		assertEquals(3, payload.size());
+		assertEquals(0, payload.get(0)[0]);
+		assertEquals(3, payload.get(1)[0]);
+		assertEquals(8, payload.get(2)[2]);
+		payload = batchingSource.receive().getPayload();
+		assertEquals(1, payload.size());
+		assertEquals(1, payload.get(0).length);
+		assertEquals(9, payload.get(0)[0]);
+		assertNull(batchingSource.receive());
+	}
+
 	@Test
 	public void testByteArrayIsTruncated() {
 		byte[] bytes = new byte[] {0,1,2,3,4,5};
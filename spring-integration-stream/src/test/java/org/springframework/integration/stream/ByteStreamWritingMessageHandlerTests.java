@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.mock;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -94,6 +95,25 @@ public class ByteStreamWritingMessageHandlerTests {
 		assertEquals("foo", new String(result));
 	}
 
+	@Test
+	public void listOfByteArrays() {
+		handler.setWriteCollectionElements(true);
+		handler.handleMessage(new GenericMessage<Object>(Arrays.asList(new byte[] {1,2}, new byte[] {3})));
+		byte[] result = stream.toByteArray();
+		assertEquals(3, result.length);
+		assertEquals(1, result[0]);
+		assertEquals(3, result[2]);
+	}
+
+	@Test
+	public void bufferedUntilFlushInterval() throws Exception {
+		handler.setFlushInterval(60000);
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		assertEquals(0, stream.size());
+		handler.destroy();
+		assertEquals("foo", new String(stream.toByteArray()));
+	}
+
 	@Test
 	public void maxMessagesPerTaskSameAsMessageCount() {
 		endpoint.setTrigger(trigger);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 import java.io.StringReader;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -40,4 +41,15 @@ public class CharacterStreamSourceTests {
 		assertNull(message2);
 	}
 
+	@Test
+	public void testBatch() {
+		StringReader reader = new StringReader("foo\nbar\nbaz");
+		CharacterStreamReadingMessageSource source = new CharacterStreamReadingMessageSource(reader);
+		BatchingStreamReadingMessageSource<String> batchingSource =
+				new BatchingStreamReadingMessageSource<String>(source, 2);
+		assertEquals(Arrays.asList("foo", "bar"), batchingSource.receive().getPayload());
+		assertEquals(Arrays.asList("baz"), batchingSource.receive().getPayload());
+		assertNull(batchingSource.receive());
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +31,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.endpoint.PollingConsumer;
 import org.springframework.integration.message.GenericMessage;
@@ -82,6 +84,50 @@ public class CharacterStreamWritingMessageHandlerTests {
 		assertEquals("foo", writer.toString());
 	}
 
+	@Test
+	public void listOfStringsWrittenWithToStringByDefault() {
+		handler.handleMessage(new GenericMessage<Object>(Arrays.asList("foo", "bar")));
+		assertEquals("[foo, bar]", writer.toString());
+	}
+
+	@Test
+	public void listOfStrings() {
+		handler.setWriteCollectionElements(true);
+		handler.setShouldAppendNewLine(true);
+		handler.handleMessage(new GenericMessage<Object>(Arrays.asList("foo", "bar")));
+		String newLine = System.getProperty("line.separator");
+		assertEquals("foo" + newLine + "bar" + newLine, writer.toString());
+	}
+
+	@Test
+	public void bufferedUntilFlushInterval() throws Exception {
+		handler.setFlushInterval(60000);
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		handler.handleMessage(new GenericMessage<String>("bar"));
+		assertEquals("", writer.toString());
+		handler.flush();
+		assertEquals("foobar", writer.toString());
+		handler.handleMessage(new GenericMessage<String>("baz"));
+		handler.destroy();
+		assertEquals("foobarbaz", writer.toString());
+	}
+
+	@Test
+	public void flushedByScheduledTask() throws Exception {
+		handler.setFlushInterval(50);
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("taskScheduler", scheduler);
+		handler.setBeanFactory(beanFactory);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (writer.toString().length() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals("foo", writer.toString());
+		handler.destroy();
+	}
+
 	@Test
 	public void twoStringsAndNoNewLinesByDefault() {
 		endpoint.setMaxMessagesPerPoll(1);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Collections;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -94,6 +95,19 @@ public class ConsoleInboundChannelAdapterParserTests {
 		assertEquals("foo", message.getPayload());
 	}
 
+	@Test
+	public void adapterWithBatchSize() {
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(
+				"consoleInboundChannelAdapterParserTests.xml", ConsoleInboundChannelAdapterParserTests.class);
+		SourcePollingChannelAdapter adapter =
+				(SourcePollingChannelAdapter) context.getBean("adapterWithBatchSize.adapter");
+		MessageSource<?> source = (MessageSource<?>) new DirectFieldAccessor(adapter).getPropertyValue("source");
+		assertEquals(10, new DirectFieldAccessor(source).getPropertyValue("batchSize"));
+		Message<?> message = source.receive();
+		assertNotNull(message);
+		assertEquals(Collections.singletonList("foo"), message.getPayload());
+	}
+
 	@Test
 	public void testConsoleSourceWithInvalidCharset() {
 		BeanCreationException beanCreationException = null;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2012 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -158,6 +158,22 @@ public class ConsoleOutboundChannelAdapterParserTests {
 		assertEquals("foo" + System.getProperty("line.separator"), out.toString());
 	}
 
+	@Test
+	public void stdoutAdapterWithFlushInterval() throws Exception {
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(
+				"consoleOutboundChannelAdapterParserTests.xml", ConsoleOutboundChannelAdapterParserTests.class);
+		Object adapter = context.getBean("bufferingAdapter");
+		CharacterStreamWritingMessageHandler handler = (CharacterStreamWritingMessageHandler)
+				new DirectFieldAccessor(adapter).getPropertyValue("handler");
+		assertEquals(60000L, new DirectFieldAccessor(handler).getPropertyValue("flushInterval"));
+		assertEquals(true, new DirectFieldAccessor(handler).getPropertyValue("writeCollectionElements"));
+		this.resetStreams();
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		assertEquals("", out.toString());
+		context.close();
+		assertEquals("foo", out.toString());
+	}
+
 	@Test //INT-2275
 	public void stdoutInsideNestedChain() {
 		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(